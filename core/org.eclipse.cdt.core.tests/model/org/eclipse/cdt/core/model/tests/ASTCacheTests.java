@@ -142,6 +142,7 @@ public class ASTCacheTests extends BaseTestCase {
 		checkSingleThreadAccess();
 		checkAccessWithSequentialReconciler();
 		checkAccessWithConcurrentReconciler();
+		checkRetainedASTs();
 	}
 	
 	private void checkActiveElement() throws Exception {
@@ -311,6 +312,60 @@ public class ASTCacheTests extends BaseTestCase {
 		}
 	}
 
+	private void checkRetainedASTs() throws Exception {
+		final ASTCache cache= new ASTCache();
+		final IASTTranslationUnit[] asts= new IASTTranslationUnit[2];
+		cache.setActiveElement(fTU1);
+		cache.runOnAST(fTU2, true, null, new ASTRunnable() {
+			@Override
+			public IStatus runOnAST(ILanguage lang, IASTTranslationUnit ast) {
+				assertNotNull(ast);
+				asts[0]= ast;
+				return Status.OK_STATUS;
+			}
+		});
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getRetainedCount());
+		assertTrue(cache.getRetainedSize() > 0);
+
+		// The AST of the inactive translation unit is reused, also without waiting.
+		cache.runOnAST(fTU2, false, null, new ASTRunnable() {
+			@Override
+			public IStatus runOnAST(ILanguage lang, IASTTranslationUnit ast) {
+				assertSame(asts[0], ast);
+				return Status.OK_STATUS;
+			}
+		});
+		assertEquals(1, cache.getHitCount());
+
+		// Activating the translation unit takes over the retained AST.
+		cache.setActiveElement(fTU2);
+		assertEquals(0, cache.getRetainedCount());
+		cache.runOnAST(fTU2, false, null, new ASTRunnable() {
+			@Override
+			public IStatus runOnAST(ILanguage lang, IASTTranslationUnit ast) {
+				assertSame(asts[0], ast);
+				return Status.OK_STATUS;
+			}
+		});
+
+		// The AST of the previously active translation unit is retained.
+		cache.runOnAST(fTU1, true, null, new ASTRunnable() {
+			@Override
+			public IStatus runOnAST(ILanguage lang, IASTTranslationUnit ast) {
+				assertNotNull(ast);
+				asts[1]= ast;
+				return Status.OK_STATUS;
+			}
+		});
+		cache.setActiveElement(fTU1);
+		assertEquals(1, cache.getRetainedCount());
+		cache.setMaxRetainedSize(0);
+		assertEquals(0, cache.getRetainedCount());
+		assertEquals(0, cache.getRetainedSize());
+	}
+
 	private void waitForAST(ASTCache cache, ITranslationUnit tUnit, ASTRunnable runnable) {
 		if (DEBUG) System.out.println("waiting for "+tUnit.getElementName());
 		long start= System.currentTimeMillis();
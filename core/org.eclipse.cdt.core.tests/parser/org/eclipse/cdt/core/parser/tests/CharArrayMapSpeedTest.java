@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests;
+
+import java.util.Random;
+
+import org.eclipse.cdt.core.parser.util.CharArrayIntMap;
+import org.eclipse.cdt.core.parser.util.CharArrayMap;
+import org.eclipse.cdt.core.parser.util.CharArrayObjectMap;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayIntMap;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayMap;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures {@link OpenCharArrayMap} and {@link OpenCharArrayIntMap} next to {@link CharArrayMap},
+ * {@link CharArrayObjectMap} and {@link CharArrayIntMap}. The keys are looked up by slices of a
+ * buffer the way the preprocessor looks up identifiers. The maps are kept until the measurement
+ * stops, such that the heap recorded by the framework includes them.
+ */
+public class CharArrayMapSpeedTest extends PerformanceTestCase {
+	private static final int SIZE= 4096;
+	private static final int MAPS= 16;
+	private static final int LOOKUPS= 2000000;
+	private static final int ITERATIONS= 10;
+
+	private interface MapFactory {
+		Object create(char[][] keys);
+	}
+
+	private interface Lookup {
+		/** Looks up the slices of the buffer and returns the number found. */
+		int run(Object map, char[] buffer, int[] offsets, int[] lengths);
+	}
+
+	public void testCharArrayMap() throws Exception {
+		measure(k -> {
+					CharArrayMap<Object> map= new CharArrayMap<>(k.length);
+					for (char[] key : k)
+						map.put(key, key);
+					return map;
+				},
+				(m, b, o, l) -> {
+					CharArrayMap<?> map= (CharArrayMap<?>) m;
+					int found= 0;
+					for (int j = 0; j < o.length; j++) {
+						if (map.get(b, o[j], l[j]) != null)
+							found++;
+					}
+					return found;
+				});
+	}
+
+	public void testCharArrayObjectMap() throws Exception {
+		measure(k -> {
+					CharArrayObjectMap<Object> map= new CharArrayObjectMap<>(k.length);
+					for (char[] key : k)
+						map.put(key, key);
+					return map;
+				},
+				(m, b, o, l) -> {
+					CharArrayObjectMap<?> map= (CharArrayObjectMap<?>) m;
+					int found= 0;
+					for (int j = 0; j < o.length; j++) {
+						if (map.get(b, o[j], l[j]) != null)
+							found++;
+					}
+					return found;
+				});
+	}
+
+	public void testOpenCharArrayMap() throws Exception {
+		measure(k -> {
+					OpenCharArrayMap<Object> map= new OpenCharArrayMap<>(k.length);
+					for (char[] key : k)
+						map.put(key, key);
+					return map;
+				},
+				(m, b, o, l) -> {
+					OpenCharArrayMap<?> map= (OpenCharArrayMap<?>) m;
+					int found= 0;
+					for (int j = 0; j < o.length; j++) {
+						if (map.get(b, o[j], l[j]) != null)
+							found++;
+					}
+					return found;
+				});
+	}
+
+	public void testCharArrayIntMap() throws Exception {
+		measure(k -> {
+					CharArrayIntMap map= new CharArrayIntMap(k.length, -1);
+					for (int j = 0; j < k.length; j++)
+						map.put(k[j], j);
+					return map;
+				},
+				(m, b, o, l) -> {
+					CharArrayIntMap map= (CharArrayIntMap) m;
+					int found= 0;
+					for (int j = 0; j < o.length; j++) {
+						if (map.get(b, o[j], l[j]) != map.undefined)
+							found++;
+					}
+					return found;
+				});
+	}
+
+	public void testOpenCharArrayIntMap() throws Exception {
+		measure(k -> {
+					OpenCharArrayIntMap map= new OpenCharArrayIntMap(k.length, -1);
+					for (int j = 0; j < k.length; j++)
+						map.put(k[j], j);
+					return map;
+				},
+				(m, b, o, l) -> {
+					OpenCharArrayIntMap map= (OpenCharArrayIntMap) m;
+					int found= 0;
+					for (int j = 0; j < o.length; j++) {
+						if (map.get(b, o[j], l[j]) != map.undefined)
+							found++;
+					}
+					return found;
+				});
+	}
+
+	private void measure(MapFactory factory, Lookup lookup) {
+		char[][] keys= createKeys(SIZE);
+		// Half of the lookups hit.
+		char[][] probes= createKeys(SIZE * 2);
+		StringBuilder buf= new StringBuilder();
+		int[] offsets= new int[probes.length];
+		int[] lengths= new int[probes.length];
+		for (int i = 0; i < probes.length; i++) {
+			buf.append(' ');
+			offsets[i]= buf.length();
+			lengths[i]= probes[i].length;
+			buf.append(probes[i]);
+		}
+		char[] buffer= buf.toString().toCharArray();
+		int rounds= Math.max(1, LOOKUPS / offsets.length);
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			startMeasuring();
+			Object[] maps= new Object[MAPS];
+			for (int j = 0; j < maps.length; j++) {
+				maps[j]= factory.create(keys);
+			}
+			int found= 0;
+			for (int j = 0; j < rounds; j++) {
+				found += lookup.run(maps[j % maps.length], buffer, offsets, lengths);
+			}
+			stopMeasuring();
+			assertEquals(rounds * SIZE, found);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Creates identifier-like keys, the first ones are the same for all sizes.
+	 */
+	private static char[][] createKeys(int count) {
+		Random random= new Random(17);
+		char[][] keys= new char[count][];
+		for (int i = 0; i < count; i++) {
+			String prefix= random.nextBoolean() ? "m_" : "";
+			keys[i]= (prefix + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36) + "_" + i).toCharArray();
+		}
+		return keys;
+	}
+}
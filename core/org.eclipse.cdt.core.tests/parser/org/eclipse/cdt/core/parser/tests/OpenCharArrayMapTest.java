@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.cdt.core.parser.util.CharArrayIntMap;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayIntMap;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link OpenCharArrayMap} and {@link OpenCharArrayIntMap}.
+ */
+public class OpenCharArrayMapTest extends TestCase {
+
+	public void testPutGet() {
+		OpenCharArrayMap<Integer> map = new OpenCharArrayMap<>(1);
+		assertTrue(map.isEmpty());
+		assertNull(map.put("key1".toCharArray(), 1));
+		assertEquals(Integer.valueOf(1), map.put("key1".toCharArray(), 2));
+		assertEquals(1, map.size());
+		for (int i = 0; i < 100; i++) {
+			map.put(("ikey" + i).toCharArray(), i);
+		}
+		assertEquals(101, map.size());
+		assertEquals(Integer.valueOf(2), map.get("key1".toCharArray()));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i), map.get(("ikey" + i).toCharArray()));
+		}
+		assertNull(map.get("ikey100".toCharArray()));
+		assertEquals(101, map.keys().length);
+		assertEquals(101, map.values().size());
+		assertTrue(map.capacity() * 2 >= map.size() * 3);
+	}
+
+	public void testSlices() {
+		OpenCharArrayMap<String> map = new OpenCharArrayMap<>(4);
+		char[] buffer = "one two three".toCharArray();
+		map.put(buffer, 4, 3, "two");
+		assertEquals("two", map.get("two".toCharArray()));
+		assertEquals("two", map.get(buffer, 4, 3));
+		assertNull(map.get(buffer, 4, 2));
+		assertTrue(map.containsKey(buffer, 4, 3));
+		assertFalse(map.containsKey(buffer, 0, 3));
+		// The key is copied.
+		buffer[4] = 'x';
+		assertEquals("two", map.get("two".toCharArray()));
+		assertEquals("two", map.remove("xtwo".toCharArray(), 1, 3));
+		assertTrue(map.isEmpty());
+	}
+
+	public void testRemove() {
+		// Compare against a HashMap, with removals moving entries within probe sequences.
+		OpenCharArrayMap<Integer> map = new OpenCharArrayMap<>(4);
+		Map<String, Integer> reference = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			String key = "k" + random.nextInt(500);
+			if (random.nextInt(3) == 0) {
+				assertEquals(reference.remove(key), map.remove(key.toCharArray()));
+			} else {
+				assertEquals(reference.put(key, i), map.put(key.toCharArray(), i));
+			}
+			assertEquals(reference.size(), map.size());
+		}
+		for (int i = 0; i < 500; i++) {
+			String key = "k" + i;
+			assertEquals(reference.get(key), map.get(key.toCharArray()));
+		}
+		for (char[] key : map.keys()) {
+			assertTrue(reference.containsKey(String.valueOf(key)));
+		}
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get("k1".toCharArray()));
+	}
+
+	public void testIntMap() {
+		OpenCharArrayIntMap map = new OpenCharArrayIntMap(2, -1);
+		assertEquals(-1, map.put("a".toCharArray(), 0));
+		assertEquals(0, map.put("a".toCharArray(), 1));
+		assertEquals(1, map.get("a".toCharArray()));
+		assertEquals(-1, map.get("b".toCharArray()));
+
+		CharArrayIntMap other = new CharArrayIntMap(4, -1);
+		for (int i = 0; i < 50; i++) {
+			other.put(("key" + i).toCharArray(), i);
+		}
+		map.putAll(other);
+		assertEquals(51, map.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals(i, map.get(("key" + i).toCharArray()));
+		}
+		assertEquals(7, map.remove("key7".toCharArray(), 0, 4));
+		assertEquals(-1, map.get("key7".toCharArray()));
+		assertEquals(50, map.size());
+	}
+}
@@ -102,6 +102,7 @@ import org.eclipse.cdt.internal.core.dom.parser.cpp.ClassTypeHelper;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPDeferredClassInstance;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPInternalUnknownScope;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPUnknownBinding;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.InstantiationMemo;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.SemanticUtil;
 import org.eclipse.cdt.internal.core.parser.ParserException;
 
@@ -10123,4 +10124,54 @@ public class AST2TemplateTests extends AST2TestBase {
 	public void testNoexceptSpecifierInTypeTemplateArgument_511186() throws Exception {
 		parseAndCheckBindings();
 	}
+
+	//	template <typename T> struct A { typedef T type; };
+	//	template <typename T> typename A<T>::type f(T t);
+	//	template <typename T> struct B {
+	//		typename A<T>::type m();
+	//		typename A<T>::type n();
+	//	};
+	//	void test() {
+	//		f(1);
+	//		f(2);
+	//		f('a');
+	//		B<int> b;
+	//		b.m();
+	//		b.n();
+	//	}
+	//	void test2() {
+	//		f(3);
+	//	}
+	public void testInstantiationMemo() throws Exception {
+		BindingAssertionHelper helper = getAssertionHelper();
+		long performed = InstantiationMemo.getDeductionsPerformed();
+		long reused = InstantiationMemo.getDeductionsReused();
+		helper.assertNonProblem("f(1)", 1);
+		assertTrue(InstantiationMemo.getDeductionsPerformed() > performed);
+		assertEquals(reused, InstantiationMemo.getDeductionsReused());
+
+		// Same arguments in the same function, the deduction is reused.
+		performed = InstantiationMemo.getDeductionsPerformed();
+		helper.assertNonProblem("f(2)", 1);
+		assertEquals(performed, InstantiationMemo.getDeductionsPerformed());
+		assertTrue(InstantiationMemo.getDeductionsReused() > reused);
+
+		// Different arguments.
+		reused = InstantiationMemo.getDeductionsReused();
+		helper.assertNonProblem("f('a')", 1);
+		assertTrue(InstantiationMemo.getDeductionsPerformed() > performed);
+		assertEquals(reused, InstantiationMemo.getDeductionsReused());
+
+		// Same arguments in another function, which may see other declarations.
+		performed = InstantiationMemo.getDeductionsPerformed();
+		helper.assertNonProblem("f(3)", 1);
+		assertTrue(InstantiationMemo.getDeductionsPerformed() > performed);
+		assertEquals(reused, InstantiationMemo.getDeductionsReused());
+
+		// The return types of m and n are the same dependent type.
+		long typesReused = InstantiationMemo.getTypesReused();
+		helper.assertNonProblem("b.m()", "m");
+		helper.assertNonProblem("b.n()", "n");
+		assertTrue(InstantiationMemo.getTypesReused() > typesReused);
+	}
 }
@@ -58,6 +58,7 @@ public class DOMParserTestSuite extends TestCase {
 		suite.addTest(VariableReadWriteFlagsTest.suite());
 		suite.addTest(AST2CPPAttributeTests.suite());
 		suite.addTest(AST2VariableTemplateTests.suite());
+		suite.addTest(FunctionBodyReparserTests.suite());
 		return suite;
 	}
 }
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests.ast2;
+
+import org.eclipse.cdt.core.dom.ast.ASTGenericVisitor;
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.IProblemBinding;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPFunction;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPVariable;
+import org.eclipse.cdt.core.dom.ast.gnu.cpp.GPPLanguage;
+import org.eclipse.cdt.core.parser.FileContent;
+import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
+import org.eclipse.cdt.core.parser.NullLogService;
+import org.eclipse.cdt.core.parser.ScannerInfo;
+import org.eclipse.cdt.internal.core.dom.parser.ASTTranslationUnit;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTTranslationUnit;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.InstantiationMemo;
+
+import junit.framework.TestSuite;
+
+/**
+ * Tests for updating an AST by reparsing a single function body.
+ */
+public class FunctionBodyReparserTests extends AST2TestBase {
+	private static final String FILE_NAME = "test.cpp";
+
+	public static TestSuite suite() {
+		return suite(FunctionBodyReparserTests.class);
+	}
+
+	private static IASTTranslationUnit parse(String code) throws Exception {
+		return GPPLanguage.getDefault().getASTTranslationUnit(FileContent.create(FILE_NAME, code.toCharArray()),
+				new ScannerInfo(), IncludeFileContentProvider.getEmptyFilesProvider(), null, 0, new NullLogService());
+	}
+
+	private static boolean reparse(IASTTranslationUnit ast, String code) throws Exception {
+		return GPPLanguage.getDefault().reparseFunctionBody(ast, FileContent.create(FILE_NAME, code.toCharArray()),
+				new ScannerInfo(), IncludeFileContentProvider.getEmptyFilesProvider(), 0, new NullLogService());
+	}
+
+	/**
+	 * Returns the kinds and the file locations of all nodes of the given AST.
+	 */
+	private static String describe(IASTTranslationUnit ast) {
+		final StringBuilder buf = new StringBuilder();
+		ast.accept(new ASTGenericVisitor(true) {
+			{
+				includeInactiveNodes = true;
+			}
+
+			@Override
+			protected int genericVisit(IASTNode node) {
+				IASTFileLocation loc = node.getFileLocation();
+				buf.append(node.getClass().getSimpleName()).append(' ');
+				if (loc != null)
+					buf.append(loc.getNodeOffset()).append(',').append(loc.getNodeLength());
+				buf.append(' ').append(node.getRawSignature()).append('\n');
+				return PROCESS_CONTINUE;
+			}
+		});
+		buf.append("length ").append(ast.getFileLocation().getNodeLength()).append('\n');
+		return buf.toString();
+	}
+
+	private void assertReparsed(String oldCode, String newCode) throws Exception {
+		IASTTranslationUnit ast = parse(oldCode);
+		assertTrue(reparse(ast, newCode));
+		assertEquals(describe(parse(newCode)), describe(ast));
+		assertTrue(ast.isFrozen());
+	}
+
+	private void assertNotReparsed(String oldCode, String newCode) throws Exception {
+		IASTTranslationUnit ast = parse(oldCode);
+		String before = describe(ast);
+		assertFalse(reparse(ast, newCode));
+		assertEquals(before, describe(ast));
+	}
+
+	private static void assertResolved(IASTTranslationUnit ast) {
+		ast.accept(new ASTGenericVisitor(true) {
+			@Override
+			protected int genericVisit(IASTNode node) {
+				if (node instanceof IASTName && ((IASTName) node).getSimpleID().length > 0) {
+					assertFalse(node.getRawSignature(), ((IASTName) node).resolveBinding() instanceof IProblemBinding);
+				}
+				return PROCESS_CONTINUE;
+			}
+		});
+	}
+
+	//	int g;
+	//	void f(int p) {
+	//		int x = p;
+	//	}
+	//	int h() { return g; }
+
+	//	int g;
+	//	void f(int p) {
+	//		int x = p;
+	//		int longerName = x + g;
+	//	}
+	//	int h() { return g; }
+	public void testStatementAdded() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	void f() {
+	//		int x = 1;
+	//		x++;
+	//	}
+	//	int h() { return 0; }
+
+	//	void f() {
+	//		int x = 1;
+	//	}
+	//	int h() { return 0; }
+	public void testStatementRemoved() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	#define ONE 1
+	//	struct A {
+	//		int m;
+	//		void f() {
+	//			m = ONE;
+	//		}
+	//		int g() { return m; }
+	//	};
+	//	int A_m = ONE;
+
+	//	#define ONE 1
+	//	struct A {
+	//		int m;
+	//		void f() {
+	//			int local = m * ONE;
+	//			m = local + ONE;
+	//		}
+	//		int g() { return m; }
+	//	};
+	//	int A_m = ONE;
+	public void testMemberFunctionWithMacros() throws Exception {
+		CharSequence[] contents = getContents(2);
+		String newCode = contents[1].toString();
+		assertReparsed(contents[0].toString(), newCode);
+
+		IASTTranslationUnit ast = parse(contents[0].toString());
+		assertTrue(reparse(ast, newCode));
+		assertResolved(ast);
+		assertEquals(3, ast.getMacroExpansions().length);
+		IASTName local = ast.getNodeSelector(null).findName(newCode.indexOf("local +"), 5);
+		assertInstance(local.resolveBinding(), ICPPVariable.class);
+		IASTName g = ast.getNodeSelector(null).findName(newCode.indexOf("g()"), 1);
+		assertInstance(g.resolveBinding(), ICPPFunction.class);
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+
+	//	void f() {
+	//		int x;
+	//	}
+	//	void g() {}
+	public void testChangeOutsideOfBody() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	template<typename T> void f() {
+	//		int x;
+	//	}
+
+	//	template<typename T> void f() {
+	//		T x;
+	//	}
+	public void testTemplate() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	auto f() {
+	//		return 1;
+	//	}
+
+	//	auto f() {
+	//		return 1.0;
+	//	}
+	public void testDeducedReturnType() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+	//	int y;
+
+	//	void f() {
+	//		int x;
+	//	#define y z
+	//	}
+	//	int y;
+	public void testDirectiveInBody() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+	//	int y = __LINE__;
+
+	//	void f() {
+	//		int x;
+	//		int z;
+	//	}
+	//	int y = __LINE__;
+	public void testLineMacroAfterBody() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+
+	//	void f() {
+	//		struct S* s;
+	//	}
+	public void testElaboratedTypeSpecifier() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	int g;
+	//	void h();
+	//	void f() {
+	//		extern int g;
+	//		void h();
+	//		h();
+	//	}
+
+	//	int g;
+	//	void h();
+	//	void f() {
+	//		extern int g;
+	//		void h();
+	//		h();
+	//		g++;
+	//	}
+	public void testBlockScopeRedeclarations() throws Exception {
+		CharSequence[] contents = getContents(2);
+		IASTTranslationUnit ast = parse(contents[0].toString());
+		// The redeclarations in the body are added to the bindings of the namespace scope.
+		assertResolved(ast);
+		String before = describe(ast);
+		assertFalse(reparse(ast, contents[1].toString()));
+		assertEquals(before, describe(ast));
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+
+	//	void f() {
+	//		int x;
+	//		extern int g;
+	//	}
+
+	//	void f() {
+	//		int x;
+	//		int h(int);
+	//	}
+	public void testBlockScopeRedeclarationAdded() throws Exception {
+		CharSequence[] contents = getContents(3);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+		assertNotReparsed(contents[0].toString(), contents[2].toString());
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+
+	//	void f() {
+	//		int x;
+	//		typedef void F(int);
+	//		void (*p)(int y) = 0;
+	//		struct L { int m(); };
+	//	}
+	public void testBlockScopeDeclarationsOfLocalEntities() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+	//	int y;
+
+	//	void f() {
+	//		int x; /*
+	//	}
+	//	int y;
+	public void testUnterminatedComment() throws Exception {
+		CharSequence[] contents = getContents(2);
+		assertNotReparsed(contents[0].toString(), contents[1].toString());
+	}
+
+	//	template<typename T> T id(T t) { return t; }
+	//	void f() {
+	//		int x = id(1);
+	//	}
+	//	int y = id(2);
+
+	//	template<typename T> T id(T t) { return t; }
+	//	void f() {
+	//		int x = id(1);
+	//		int z = id(x);
+	//	}
+	//	int y = id(2);
+	public void testMemoizedInstantiationsDiscarded() throws Exception {
+		CharSequence[] contents = getContents(2);
+		IASTTranslationUnit ast = parse(contents[0].toString());
+		assertResolved(ast);
+		InstantiationMemo memo = ((CPPASTTranslationUnit) ast).getInstantiationMemo();
+		assertTrue(memo.size() > 0);
+		assertTrue(reparse(ast, contents[1].toString()));
+		// The memo is keyed by the positions of declarations, which have been shifted.
+		assertEquals(0, memo.size());
+		assertResolved(ast);
+	}
+
+	//	void f() {
+	//		int x;
+	//	}
+
+	//	void f() {
+	//		int x;
+	//		int z;
+	//	}
+	public void testCachedASTNotModified() throws Exception {
+		CharSequence[] contents = getContents(2);
+		IASTTranslationUnit ast = parse(contents[0].toString());
+		String before = describe(ast);
+		((ASTTranslationUnit) ast).addCacheReference();
+		assertFalse(reparse(ast, contents[1].toString()));
+		assertEquals(before, describe(ast));
+		((ASTTranslationUnit) ast).removeCacheReference();
+		assertTrue(reparse(ast, contents[1].toString()));
+	}
+}
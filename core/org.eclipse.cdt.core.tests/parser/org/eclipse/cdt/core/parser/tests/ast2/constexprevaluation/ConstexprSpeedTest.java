@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests.ast2.constexprevaluation;
+
+import org.eclipse.cdt.core.dom.ast.IASTDeclaration;
+import org.eclipse.cdt.core.dom.ast.IASTDeclarator;
+import org.eclipse.cdt.core.dom.ast.IASTEqualsInitializer;
+import org.eclipse.cdt.core.dom.ast.IASTInitializer;
+import org.eclipse.cdt.core.dom.ast.IASTSimpleDeclaration;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTInitializerClause;
+import org.eclipse.cdt.core.dom.parser.cpp.ANSICPPParserExtensionConfiguration;
+import org.eclipse.cdt.core.dom.parser.cpp.GPPScannerExtensionConfiguration;
+import org.eclipse.cdt.core.parser.FileContent;
+import org.eclipse.cdt.core.parser.IScanner;
+import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
+import org.eclipse.cdt.core.parser.NullLogService;
+import org.eclipse.cdt.core.parser.ParserLanguage;
+import org.eclipse.cdt.core.parser.ParserMode;
+import org.eclipse.cdt.core.parser.ScannerInfo;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTTranslationUnit;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.GNUCPPSourceParser;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.ConstexprCache;
+import org.eclipse.cdt.internal.core.parser.scanner.CPreprocessor;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures the evaluation of constexpr variables without and with {@link ConstexprCache}.
+ * Every iteration parses the code anew, such that no results are carried over, only the
+ * evaluation of the initializers is measured.
+ */
+public class ConstexprSpeedTest extends PerformanceTestCase {
+	private static final int ITERATIONS = 10;
+	private static final int DECLARATIONS = 500;
+
+	private static final String RECURSION =
+			"constexpr int fib(int n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n";
+	private static final String LOOP =
+			"constexpr int sum(int n) { int s = 0; for (int i = 0; i < n; i++) s += i; return s; }\n";
+	private static final String FUNCTION_TEMPLATE =
+			"template<typename T> constexpr T power(T b, int e) { return e == 0 ? 1 : b * power(b, e - 1); }\n";
+	private static final String TABLE_LOOKUP =
+			"struct Table { int v[8]; };\n"
+			+ "constexpr Table make(int n) { Table t{}; for (int i = 0; i < 8; i++) t.v[i] = n * i; return t; }\n"
+			+ "constexpr int lookup(int n, int i) { return make(n).v[i]; }\n";
+
+	public void testRecursion() throws Exception {
+		measure(RECURSION, "fib(%d %% 12)", false);
+	}
+
+	public void testRecursionCached() throws Exception {
+		measure(RECURSION, "fib(%d %% 12)", true);
+	}
+
+	public void testLoop() throws Exception {
+		measure(LOOP, "sum(%d %% 50)", false);
+	}
+
+	public void testLoopCached() throws Exception {
+		measure(LOOP, "sum(%d %% 50)", true);
+	}
+
+	public void testFunctionTemplate() throws Exception {
+		measure(FUNCTION_TEMPLATE, "power(%d %% 7, 9)", false);
+	}
+
+	public void testFunctionTemplateCached() throws Exception {
+		measure(FUNCTION_TEMPLATE, "power(%d %% 7, 9)", true);
+	}
+
+	public void testTableLookup() throws Exception {
+		measure(TABLE_LOOKUP, "lookup(%d %% 5, 7)", false);
+	}
+
+	public void testTableLookupCached() throws Exception {
+		measure(TABLE_LOOKUP, "lookup(%d %% 5, 7)", true);
+	}
+
+	private void measure(String definitions, String callFormat, boolean cached) throws Exception {
+		StringBuilder code = new StringBuilder(definitions);
+		for (int i = 0; i < DECLARATIONS; i++) {
+			code.append("constexpr int v").append(i).append(" = ")
+					.append(String.format(callFormat, i)).append(";\n");
+		}
+		String source = code.toString();
+		for (int i = 0; i < ITERATIONS; i++) {
+			evaluate(source, cached);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Parses the given code and measures evaluating the initializers of its variables.
+	 */
+	private void evaluate(String code, boolean cached) throws Exception {
+		IASTTranslationUnit tu = parse(code);
+		((CPPASTTranslationUnit) tu).getConstexprCache().setEnabled(cached);
+		startMeasuring();
+		for (IASTDeclaration declaration : tu.getDeclarations()) {
+			if (!(declaration instanceof IASTSimpleDeclaration))
+				continue;
+			for (IASTDeclarator declarator : ((IASTSimpleDeclaration) declaration).getDeclarators()) {
+				IASTInitializer initializer = declarator.getInitializer();
+				if (initializer instanceof IASTEqualsInitializer) {
+					ICPPASTInitializerClause clause =
+							(ICPPASTInitializerClause) ((IASTEqualsInitializer) initializer).getInitializerClause();
+					clause.getEvaluation().getValue(clause);
+				}
+			}
+		}
+		stopMeasuring();
+	}
+
+	private static IASTTranslationUnit parse(String code) throws Exception {
+		ScannerInfo scannerInfo = new ScannerInfo();
+		IScanner scanner = new CPreprocessor(FileContent.create("<speedtest>", code.toCharArray()), scannerInfo,
+				ParserLanguage.CPP, new NullLogService(), GPPScannerExtensionConfiguration.getInstance(scannerInfo),
+				IncludeFileContentProvider.getSavedFilesProvider());
+		GNUCPPSourceParser parser = new GNUCPPSourceParser(scanner, ParserMode.COMPLETE_PARSE,
+				new NullLogService(), new ANSICPPParserExtensionConfiguration(), null);
+		return parser.parse();
+	}
+}
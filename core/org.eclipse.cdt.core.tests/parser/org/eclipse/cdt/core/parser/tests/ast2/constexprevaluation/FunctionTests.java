@@ -224,6 +224,33 @@ public class FunctionTests extends TestBase {
 		assertEvaluationEquals(10);
 	}
 	
+	//	constexpr int fib(int n) {
+	//		return n < 2 ? n : fib(n - 1) + fib(n - 2);
+	//	}
+	
+	//	constexpr int x = fib(25);
+	public void testMemoizedRecursion() throws Exception {
+		// Exceeds the step limit unless the calls are memoized, a memoized call costs a single step.
+		assertEvaluationEquals(75025);
+	}
+	
+	//	struct A {
+	//		int x;
+	//	};
+	//	constexpr A make(int x) {
+	//		return A{x};
+	//	}
+	//	constexpr int f() {
+	//		A a = make(1);
+	//		a.x = 2;
+	//		return make(1).x;
+	//	}
+	
+	//	constexpr int x = f();
+	public void testMemoizedResultIsCopied() throws Exception {
+		assertEvaluationEquals(1);
+	}
+	
 	//	char foo();
 	//	constexpr int almost = sizeof(foo());
 	
@@ -13,6 +13,10 @@
  *******************************************************************************/
 package org.eclipse.cdt.core.parser.tests.prefix;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.eclipse.cdt.core.dom.ast.IASTCompletionNode;
 import org.eclipse.cdt.core.dom.ast.IASTName;
 import org.eclipse.cdt.core.dom.ast.IBinding;
@@ -388,4 +392,32 @@ public class BasicCompletionTest extends CompletionTestBase {
 		String[] expected= {"axx"};
 		checkCompletion(code, false, expected);
 	}
+
+	//	namespace ns {
+	//	  int pz, pb, py, pc, px, pd, pw, pe, pv, pf;
+	//	}
+	//	struct S {
+	//	  int mz, mb, my, mc, mx, md, mw, me, mv, mf;
+	//	};
+	//	void func(S s) {
+	//	  ns::p
+	public void testPrefixLookupKeepsDeclarationOrder() throws Exception {
+		String code = getAboveComment();
+		String[] expected= {"pz", "pb", "py", "pc", "px", "pd", "pw", "pe", "pv", "pf"};
+		List<IBinding> bindings= proposeBindings(getGPPCompletionNode(code), true);
+		assertEquals(Arrays.asList(expected), getNames(bindings));
+
+		code= code.substring(0, code.lastIndexOf("ns::p")) + "s.m";
+		expected= new String[] {"mz", "mb", "my", "mc", "mx", "md", "mw", "me", "mv", "mf"};
+		bindings= proposeBindings(getGPPCompletionNode(code), true);
+		assertEquals(Arrays.asList(expected), getNames(bindings));
+	}
+
+	private static List<String> getNames(List<IBinding> bindings) {
+		List<String> names= new ArrayList<>();
+		for (IBinding binding : bindings) {
+			names.add(binding.getName());
+		}
+		return names;
+	}
 }
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests.scanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import junit.framework.TestSuite;
+
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.ByteBufferCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.CharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.LazyCharArray;
+
+public class ByteBufferCharArrayTests extends BaseTestCase {
+
+	public static TestSuite suite() {
+		return suite(ByteBufferCharArrayTests.class);
+	}
+
+	private File fFile;
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (fFile != null) {
+			fFile.delete();
+		}
+	}
+
+	private static ByteBufferCharArray create(String content, String charSet) {
+		return ByteBufferCharArray.create(ByteBuffer.wrap(content.getBytes(Charset.forName(charSet))), charSet);
+	}
+
+	private static void checkContent(String expected, AbstractCharArray charArray) {
+		assertEquals(expected.length(), charArray.tryGetLength());
+		assertEquals(expected.length(), charArray.getLength());
+		assertFalse(charArray.isValidOffset(expected.length()));
+		for (int i = 0; i < expected.length(); i++) {
+			assertTrue(charArray.isValidOffset(i));
+			assertEquals(expected.charAt(i), charArray.get(i));
+		}
+		// Access in reverse order.
+		for (int i = expected.length(); --i >= 0;) {
+			assertEquals(expected.charAt(i), charArray.get(i));
+		}
+		char[] dest= new char[expected.length()];
+		charArray.arraycopy(0, dest, 0, dest.length);
+		assertEquals(expected, new String(dest));
+		for (int i = 0; i + 3 <= expected.length(); i++) {
+			charArray.arraycopy(i, dest, 0, 3);
+			assertEquals(expected.substring(i, i + 3), new String(dest, 0, 3));
+		}
+		assertEquals(new CharArray(expected).getContentsHash(), charArray.getContentsHash());
+	}
+
+	public void testAscii() throws Exception {
+		String content= "int main() {\n\treturn 0;\n}\n";
+		checkContent(content, create(content, "US-ASCII"));
+		checkContent(content, create(content, "UTF-8"));
+		assertNull(ByteBufferCharArray.create(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xE4 }), "US-ASCII"));
+	}
+
+	public void testLatin1() throws Exception {
+		String content= "// K\u00e4se\nint x; /* \u00df */";
+		checkContent(content, create(content, "ISO-8859-1"));
+	}
+
+	public void testUTF8() throws Exception {
+		String content= "// K\u00e4se\u20ac\nint x;\n/* \ud83d\ude00 */\nchar* s= \"\u00f6\";\u00fc";
+		checkContent(content, create(content, "UTF-8"));
+		content= "\u00e4\u00f6\u00fc" + content;
+		checkContent(content, create(content, "UTF-8"));
+	}
+
+	public void testByteOrderMark() throws Exception {
+		byte[] bytes= { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a', 'b' };
+		checkContent("ab", ByteBufferCharArray.create(ByteBuffer.wrap(bytes), "UTF-8"));
+	}
+
+	public void testMalformedInput() throws Exception {
+		// Malformed input is left to the decoder.
+		assertNull(ByteBufferCharArray.create(ByteBuffer.wrap(new byte[] { 'a', (byte) 0x80, 'b' }), "UTF-8"));
+		assertNull(ByteBufferCharArray.create(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xC3 }), "UTF-8"));
+		assertNull(ByteBufferCharArray.create(ByteBuffer.wrap(new byte[] { (byte) 0xC0, (byte) 0x80 }), "UTF-8"));
+		assertNull(ByteBufferCharArray.create(ByteBuffer.wrap(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }), "UTF-8"));
+		assertNull(create("abc", "UTF-16"));
+	}
+
+	public void testFile() throws Exception {
+		StringBuilder buf= new StringBuilder();
+		for (int i = 0; buf.length() < LazyCharArray.CHUNK_SIZE * 2; i++) {
+			buf.append("int variable").append(i).append(i % 100 == 0 ? "; // \u00e4\n" : ";\n");
+		}
+		String content= buf.toString();
+		fFile= File.createTempFile("data", ".h");
+		writeFile(content.getBytes("UTF-8"));
+
+		AbstractCharArray charArray;
+		FileInputStream in= new FileInputStream(fFile);
+		try {
+			charArray= ByteBufferCharArray.create("UTF-8", in);
+		} finally {
+			in.close();
+		}
+		checkContent(content, charArray);
+
+		// The contents are not affected by changes to the file.
+		writeFile("int x;".getBytes("UTF-8"));
+		checkContent(content, charArray);
+	}
+
+	private void writeFile(byte[] bytes) throws IOException {
+		FileOutputStream out= new FileOutputStream(fFile);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+}
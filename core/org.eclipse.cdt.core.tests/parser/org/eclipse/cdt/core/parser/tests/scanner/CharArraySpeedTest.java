@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests.scanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.core.parser.IToken;
+import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.ByteBufferCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.FileCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.ILexerLog;
+import org.eclipse.cdt.internal.core.parser.scanner.LazyCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures lexing large headers read via {@link FileCharArray} and lexing them directly from
+ * the bytes via {@link ByteBufferCharArray}.
+ * <p>
+ * The corpus consists of the headers of at least 64K found in the directory given by the system
+ * property <code>charArraySpeedTest.corpus</code>, by default <code>/usr/include</code>.
+ */
+public class CharArraySpeedTest extends PerformanceTestCase {
+	private static final String CHARSET= "UTF-8";
+	private static final int ITERATIONS= 5;
+
+	private List<File> fFiles;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fFiles= new ArrayList<>();
+		collectFiles(new File(System.getProperty("charArraySpeedTest.corpus", "/usr/include")), fFiles);
+	}
+
+	public void testFileCharArray() throws Exception {
+		measureLexing(false);
+	}
+
+	public void testByteBufferCharArray() throws Exception {
+		measureLexing(true);
+	}
+
+	private void measureLexing(boolean byteLevel) throws IOException {
+		if (fFiles.isEmpty())
+			return;
+
+		// Warm up the file system cache.
+		lexFiles(byteLevel);
+		for (int i = 0; i < ITERATIONS; i++) {
+			startMeasuring();
+			lexFiles(byteLevel);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private void collectFiles(File dir, List<File> result) {
+		File[] children= dir.listFiles();
+		if (children == null)
+			return;
+		for (File child : children) {
+			if (child.isDirectory()) {
+				collectFiles(child, result);
+			} else if (child.length() >= LazyCharArray.CHUNK_SIZE) {
+				result.add(child);
+			}
+		}
+	}
+
+	private void lexFiles(boolean byteLevel) throws IOException {
+		for (File file : fFiles) {
+			AbstractCharArray input= null;
+			FileInputStream in= new FileInputStream(file);
+			try {
+				if (byteLevel) {
+					input= ByteBufferCharArray.create(CHARSET, in);
+				}
+				if (input == null)
+					input= FileCharArray.create(file.getPath(), CHARSET, in);
+			} finally {
+				in.close();
+			}
+			lex(input);
+		}
+	}
+
+	private void lex(AbstractCharArray input) {
+		Lexer lexer= new Lexer(input, new LexerOptions(), ILexerLog.NULL, null);
+		try {
+			while (lexer.nextToken().getType() != IToken.tEND_OF_INPUT) {
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.core.parser.tests.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestSuite;
+
+import org.eclipse.cdt.core.parser.IToken;
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.ILexerLog;
+import org.eclipse.cdt.internal.core.parser.scanner.LexedTokenCache;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer;
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+
+/**
+ * Checks that tokens replayed from the {@link LexedTokenCache} match the ones found by lexing.
+ */
+public class LexedTokenCacheTests extends BaseTestCase {
+	private static final String CHUNK=
+			"#include <stdio.h>\n" +
+			"#include \"local.h\"\n" +
+			"/* block\n comment */ int a<:1:> = { 0 }; // line comment\n" +
+			"#define M(x) x ## x\n" +
+			"char* s= \"string\" L\"wide\"; char c= 'c';\n" +
+			"a\\\n" +
+			"b @ 1.5e10 0x1f\n";
+
+	public static TestSuite suite() {
+		return suite(LexedTokenCacheTests.class);
+	}
+
+	public LexedTokenCacheTests() {
+		super();
+	}
+
+	public LexedTokenCacheTests(String name) {
+		super(name);
+	}
+
+	private static String createInput(int minLength) {
+		StringBuilder buf= new StringBuilder();
+		while (buf.length() < minLength) {
+			buf.append(CHUNK);
+		}
+		return buf.toString();
+	}
+
+	private static List<String> lex(String input, LexerOptions options, LexedTokenCache cache) throws Exception {
+		final List<String> result= new ArrayList<>();
+		ILexerLog log= new ILexerLog() {
+			@Override
+			public void handleProblem(int problemID, char[] arg, int offset, int endOffset) {
+				result.add("problem " + problemID + " " + new String(arg) + " " + offset + "-" + endOffset);
+			}
+
+			@Override
+			public void handleComment(boolean isBlockComment, int offset, int endOffset, AbstractCharArray in) {
+				result.add("comment " + isBlockComment + " " + offset + "-" + endOffset);
+			}
+		};
+		Lexer lexer= new Lexer(input.toCharArray(), options, log, null);
+		if (cache != null)
+			lexer.setTokenCache(cache);
+
+		IToken t= lexer.nextToken();
+		boolean afterPound= false;
+		while (t.getType() != IToken.tEND_OF_INPUT) {
+			result.add(t.getType() + " " + t.getOffset() + "-" + t.getEndOffset() + " " + t.getImage());
+			// Emulate the preprocessor to obtain header-name tokens.
+			if (afterPound && "include".equals(t.getImage()))
+				lexer.setInsideIncludeDirective(true);
+			afterPound= t.getType() == IToken.tPOUND && lexer.currentTokenIsFirstOnLine();
+			t= lexer.nextToken();
+			if (t.getType() == Lexer.tNEWLINE)
+				lexer.setInsideIncludeDirective(false);
+		}
+		return result;
+	}
+
+	public void testReplay() throws Exception {
+		String input= createInput(4096);
+		LexerOptions options= new LexerOptions();
+		List<String> expected= lex(input, options, null);
+
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		assertEquals(expected, lex(input, options, cache));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getStreamCount());
+
+		assertEquals(expected, lex(input, options, cache));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testDirectives() throws Exception {
+		String input= createInput(4096);
+		LexerOptions options= new LexerOptions();
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		lex(input, options, cache);
+
+		Lexer lexer= new Lexer(input.toCharArray(), options, ILexerLog.NULL, null);
+		Lexer replay= new Lexer(input.toCharArray(), options, ILexerLog.NULL, null);
+		replay.setTokenCache(cache);
+		assertEquals(1, cache.getHitCount());
+		lexer.nextToken();
+		replay.nextToken();
+		while (true) {
+			IToken t1= lexer.nextDirective();
+			IToken t2= replay.nextDirective();
+			assertEquals(t1.getType(), t2.getType());
+			assertEquals(t1.getOffset(), t2.getOffset());
+			if (t1.getType() == IToken.tEND_OF_INPUT)
+				break;
+			t1= lexer.nextToken();
+			t2= replay.nextToken();
+			assertEquals(t1.getType(), t2.getType());
+			assertEquals(t1.getOffset(), t2.getOffset());
+		}
+	}
+
+	public void testRestoreState() throws Exception {
+		String input= createInput(4096);
+		LexerOptions options= new LexerOptions();
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		List<String> expected= lex(input, options, cache);
+
+		Lexer lexer= new Lexer(input.toCharArray(), options, ILexerLog.NULL, null);
+		lexer.setTokenCache(cache);
+		assertEquals(1, cache.getHitCount());
+		IToken t= lexer.nextToken();
+		for (int i= 0; i < 10; i++) {
+			t= lexer.nextToken();
+		}
+		lexer.saveState();
+		IToken t1= lexer.nextToken();
+		lexer.nextToken();
+		lexer.restoreState();
+		IToken t2= lexer.nextToken();
+		assertEquals(t1.getType(), t2.getType());
+		assertEquals(t1.getOffset(), t2.getOffset());
+		assertEquals(t1.getEndOffset(), t2.getEndOffset());
+		assertTrue(t != t2);
+		assertEquals(expected.size(), lex(input, options, cache).size());
+	}
+
+	public void testOptionsArePartOfKey() throws Exception {
+		String input= createInput(4096);
+		LexerOptions options= new LexerOptions();
+		LexerOptions noDollar= new LexerOptions();
+		noDollar.fSupportDollarInIdentifiers= false;
+
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		lex(input, options, cache);
+		assertEquals(lex(input, noDollar, null), lex(input, noDollar, cache));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getStreamCount());
+	}
+
+	public void testSmallFilesAreNotCached() throws Exception {
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		lex(CHUNK, new LexerOptions(), cache);
+		lex(CHUNK, new LexerOptions(), cache);
+		assertEquals(0, cache.getHitCount() + cache.getMissCount());
+		assertEquals(0, cache.getStreamCount());
+	}
+
+	public void testEviction() throws Exception {
+		LexerOptions options= new LexerOptions();
+		String input1= createInput(4096);
+		String input2= input1 + "int x;\n";
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		lex(input1, options, cache);
+		final long size= cache.getSize();
+		assertTrue(size > 0);
+
+		cache.setMaxSize(size + size / 2);
+		lex(input2, options, cache);
+		assertEquals(1, cache.getStreamCount());
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.getSize() <= cache.getMaxSize());
+
+		// The most recently used stream is kept.
+		lex(input2, options, cache);
+		assertEquals(1, cache.getHitCount());
+	}
+
+	public void testClear() throws Exception {
+		LexerOptions options= new LexerOptions();
+		String input= createInput(4096);
+		LexedTokenCache cache= new LexedTokenCache(1024 * 1024);
+		lex(input, options, cache);
+		lex(input, options, cache);
+		assertEquals(1, cache.getHitCount());
+
+		cache.clear();
+		assertEquals(0, cache.getStreamCount());
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getHitCount());
+		lex(input, options, cache);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertTrue(cache.getSize() > 0);
+	}
+
+	public void testZeroSizeDisablesCache() throws Exception {
+		LexerOptions options= new LexerOptions();
+		String input= createInput(4096);
+		LexedTokenCache cache= new LexedTokenCache(0);
+		assertEquals(lex(input, options, null), lex(input, options, cache));
+		lex(input, options, cache);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getStreamCount());
+	}
+}
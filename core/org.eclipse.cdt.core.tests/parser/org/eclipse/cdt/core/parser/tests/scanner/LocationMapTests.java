@@ -11,6 +11,8 @@
 package org.eclipse.cdt.core.parser.tests.scanner;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import junit.framework.TestSuite;
 
@@ -337,6 +339,33 @@ public class LocationMapTests extends BaseTestCase {
 		checkComment(comments[2], "56789abcdef", true, FN, 5,11,1,1);
 	}
 
+	public void testCommentsOfFiles() {
+		init(DIGITS);
+		fLocationMap.encounteredComment(1, 3, true, fContent);
+		ILocationCtx i1= fLocationMap.pushInclusion(0, 2, 4, 6, new CharArray("b1b2b3b4b5"), "pre1", "pre1".toCharArray(), false, false, false);
+		fLocationMap.encounteredComment(2, 4, true, fContent);
+		ILocationCtx i2= fLocationMap.pushInclusion(6, 7, 8, 9, new CharArray("c1c2c3c4c5"), "pre11", "pre11".toCharArray(), false, false, false);
+		fLocationMap.encounteredComment(2, 6, true, fContent);
+		fLocationMap.popContext(i2);
+		fLocationMap.encounteredComment(4, 6, false, fContent);
+		fLocationMap.popContext(i1);
+
+		IASTComment[] comments= fLocationMap.getComments(new HashSet<>(Arrays.asList("pre1")));
+		assertEquals(2, comments.length);
+		checkComment(comments[0], "b2", true, "pre1", 2, 2, 1, 1);
+		checkComment(comments[1], "b3", false, "pre1", 4, 2, 1, 1);
+		assertEquals(0, fLocationMap.getComments(new HashSet<>(Arrays.asList("other"))).length);
+
+		// The nodes created for the comments of a file are reused.
+		IASTComment[] all= fLocationMap.getComments();
+		assertEquals(4, all.length);
+		checkComment(all[0], "12", true, FN, 1, 2, 1, 1);
+		assertSame(comments[0], all[1]);
+		checkComment(all[2], "c2c3", true, "pre11", 2, 4, 1, 1);
+		assertSame(comments[1], all[3]);
+		assertSame(all[0], fLocationMap.getComments(new HashSet<>(Arrays.asList(FN)))[0]);
+	}
+
 	public void testProblems() {
 		init(DIGITS);
 		fLocationMap.encounterProblem(0, null, 0, 0);
@@ -27,6 +27,8 @@ public class ScannerTestSuite extends TestSuite {
 		suite.addTest(InactiveCodeTests.suite());
 		suite.addTest(StreamHasherTests.suite());
 		suite.addTest(FileCharArrayTests.suite());
+		suite.addTest(ByteBufferCharArrayTests.suite());
+		suite.addTest(LexedTokenCacheTests.suite());
 		return suite;
 	}	
 }
@@ -217,4 +217,9 @@ public class EmptyIndexFragment implements IIndexFragment {
 	public boolean isFullyInitialized() {
 		return true;
 	}
+
+	@Override
+	public IIndexFragment createSnapshot() {
+		return this;
+	}
 }
@@ -17,7 +17,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -2615,4 +2618,161 @@ public class IndexBugsTests extends BaseTestCase {
 		}
 	}
 
+	//	// common.h
+	//	#pragma once
+	//	struct Common { int field; };
+
+	//	// a.cpp
+	//	#include "common.h"
+	//	void a(Common* c) { c->field= 1; }
+
+	//	// b.cpp
+	//	#include "common.h"
+	//	void b(Common* c) { c->field= 2; }
+
+	//	// c.cpp
+	//	#include "common.h"
+	//	void c(Common* c) { c->field= 3; }
+	public void testParallelParsing() throws Exception {
+		IndexerPreferences.set(fCProject.getProject(), IndexerPreferences.KEY_PARSER_THREADS, "4");
+		try {
+			String[] contents= getContentsForTest(4);
+			IFile header= TestSourceReader.createFile(fCProject.getProject(), "common.h", contents[0]);
+			TestSourceReader.createFile(fCProject.getProject(), "a.cpp", contents[1]);
+			TestSourceReader.createFile(fCProject.getProject(), "b.cpp", contents[2]);
+			TestSourceReader.createFile(fCProject.getProject(), "c.cpp", contents[3]);
+			CCorePlugin.getIndexManager().reindex(fCProject);
+			waitForIndexer();
+
+			fIndex.acquireReadLock();
+			try {
+				IIndexFile[] files= fIndex.getFiles(IndexLocationFactory.getWorkspaceIFL(header));
+				assertEquals(1, files.length);
+				IIndexBinding[] bindings= fIndex.findBindings("Common".toCharArray(), IndexFilter.ALL_DECLARED, npm());
+				assertEquals(1, bindings.length);
+				IIndexBinding field= fIndex.findBindings(new char[][] {"Common".toCharArray(), "field".toCharArray()},
+						IndexFilter.ALL_DECLARED, npm())[0];
+				assertEquals(3, fIndex.findReferences(field).length);
+				for (String function : new String[] { "a", "b", "c" }) {
+					bindings= fIndex.findBindings(function.toCharArray(), IndexFilter.ALL_DECLARED, npm());
+					assertEquals(1, bindings.length);
+				}
+			} finally {
+				fIndex.releaseReadLock();
+			}
+		} finally {
+			Properties defaults = IndexerPreferences.getDefaultIndexerProperties();
+			IndexerPreferences.set(fCProject.getProject(), IndexerPreferences.KEY_PARSER_THREADS,
+					defaults.getProperty(IndexerPreferences.KEY_PARSER_THREADS));
+		}
+	}
+
+	//	namespace ns {
+	//	template<typename T> struct Vec {
+	//		T get(int i) const;
+	//		void push(const T& t);
+	//	};
+	//	int g(int);
+	//	int g(double);
+	//	struct Base { virtual int h(int) const; };
+	//	struct Derived : Base { int h(int) const override; };
+	//	}
+	//	int helper(int, int);
+	public void testParallelNameResolution() throws Exception {
+		// Enough names for PDOMWriter to resolve the bodies in parallel, some of the bodies
+		// declare names outside of themselves and have to be resolved sequentially.
+		StringBuilder source= new StringBuilder();
+		source.append("#include \"parallel.h\"\n");
+		// Out-of-line definitions of the members of one class, which call each other. Their
+		// declarators add definitions to the members of the class, while the bodies refer to them.
+		source.append("struct Many {\n");
+		for (int i = 0; i < 200; i++) {
+			source.append("  int m").append(i).append("(int a);\n");
+		}
+		source.append("  int ov(int); int ov(double);\n};\n");
+		for (int i = 0; i < 200; i++) {
+			source.append("int Many::m").append(i).append("(int a) {\n");
+			source.append("  return ov(a) + ov(1.0 * a) + m").append((i + 1) % 200).append("(a) + m").append((i + 7) % 200).append("(a);\n}\n");
+		}
+		for (int i = 0; i < 1000; i++) {
+			source.append("int f").append(i).append("(int a) {\n");
+			source.append("  ns::Vec<int> v; v.push(a); ns::Derived d; const ns::Base& b= d;\n");
+			source.append("  int s= 0;\n");
+			source.append("  for (int k= 0; k < a; ++k) { s+= ns::g(k) + ns::g(1.0 * k) + v.get(k) + helper(s, k) + b.h(k); }\n");
+			if (i % 10 == 0)
+				source.append("  struct Fwd").append(i).append("* p= 0; (void) p;\n");
+			if (i % 7 == 0)
+				source.append("  extern int ext").append(i).append("; void decl").append(i).append("(int); decl").append(i).append("(ext").append(i).append(");\n");
+			if (i % 5 == 0)
+				source.append("  struct Local { int m; } l; l.m= s; s+= l.m;\n");
+			source.append("  return s + f").append(i > 0 ? i - 1 : 0).append("(s);\n}\n");
+		}
+		String header= getContentsForTest(1)[0];
+		TestSourceReader.createFile(fCProject.getProject(), "parallel.h", header);
+		TestSourceReader.createFile(fCProject.getProject(), "parallel.cpp", source.toString());
+		CCorePlugin.getIndexManager().reindex(fCProject);
+		waitForIndexer();
+		String sequential= getIndexContent();
+
+		IndexerPreferences.set(fCProject.getProject(), IndexerPreferences.KEY_PARALLEL_NAME_RESOLUTION, "true");
+		try {
+			CCorePlugin.getIndexManager().reindex(fCProject);
+			waitForIndexer();
+			assertEquals(sequential, getIndexContent());
+		} finally {
+			Properties defaults = IndexerPreferences.getDefaultIndexerProperties();
+			IndexerPreferences.set(fCProject.getProject(), IndexerPreferences.KEY_PARALLEL_NAME_RESOLUTION,
+					defaults.getProperty(IndexerPreferences.KEY_PARALLEL_NAME_RESOLUTION));
+		}
+	}
+
+	/**
+	 * Returns the bindings of the index, with the kind and number of their names, in a
+	 * stable order.
+	 */
+	private String getIndexContent() throws Exception {
+		List<String> lines= new ArrayList<>();
+		fIndex.acquireReadLock();
+		try {
+			IIndexBinding[] bindings= fIndex.findBindings(Pattern.compile(".*"), false, IndexFilter.ALL, npm());
+			for (IIndexBinding binding : bindings) {
+				IIndexName[] names= fIndex.findNames(binding, IIndex.FIND_ALL_OCCURRENCES);
+				lines.add(String.join("::", binding.getQualifiedName()) + " " +
+						binding.getClass().getSimpleName() + " " + names.length);
+			}
+		} finally {
+			fIndex.releaseReadLock();
+		}
+		assertTrue(lines.size() > 1000);
+		Collections.sort(lines);
+		return String.join("\n", lines);
+	}
+
+	//	void before();
+
+	//	void after();
+	public void testIndexSnapshot() throws Exception {
+		String[] contents= getContentsForTest(2);
+		IFile file= TestSourceReader.createFile(fCProject.getProject(), "snapshot.cpp", contents[0]);
+		waitUntilFileIsIndexed(file, INDEXER_TIMEOUT_SEC * 1000);
+
+		IIndex snapshot= fIndex.openSnapshot();
+		try {
+			// The indexer must not be blocked by the snapshot.
+			file= TestSourceReader.createFile(fCProject.getProject(), "snapshot.cpp", contents[1]);
+			waitUntilFileIsIndexed(file, INDEXER_TIMEOUT_SEC * 1000);
+
+			assertEquals(1, snapshot.findBindings("before".toCharArray(), IndexFilter.ALL_DECLARED, npm()).length);
+			assertEquals(0, snapshot.findBindings("after".toCharArray(), IndexFilter.ALL_DECLARED, npm()).length);
+			fIndex.acquireReadLock();
+			try {
+				assertEquals(0, fIndex.findBindings("before".toCharArray(), IndexFilter.ALL_DECLARED, npm()).length);
+				assertEquals(1, fIndex.findBindings("after".toCharArray(), IndexFilter.ALL_DECLARED, npm()).length);
+			} finally {
+				fIndex.releaseReadLock();
+			}
+		} finally {
+			snapshot.releaseReadLock();
+		}
+	}
 }
@@ -22,6 +22,7 @@ import org.eclipse.cdt.core.dom.ast.IVariable;
 import org.eclipse.cdt.core.index.IIndex;
 import org.eclipse.cdt.core.index.IIndexBinding;
 import org.eclipse.cdt.core.index.IIndexFile;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
 import org.eclipse.cdt.core.index.IIndexInclude;
 import org.eclipse.cdt.core.index.IndexFilter;
 import org.eclipse.cdt.core.index.IndexLocationFactory;
@@ -31,6 +32,8 @@ import org.eclipse.cdt.core.model.IPathEntry;
 import org.eclipse.cdt.core.testplugin.CProjectHelper;
 import org.eclipse.cdt.core.testplugin.TestScannerProvider;
 import org.eclipse.cdt.core.testplugin.util.TestSourceReader;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
+import org.eclipse.cdt.internal.core.pdom.ReindexCostEstimator;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IWorkspaceRunnable;
@@ -233,6 +236,41 @@ public class IndexIncludeTest extends IndexTestBase {
 		}
 	}
 
+	public void testParseCost() throws Exception {
+		TestScannerProvider.sIncludes= new String[] { fProject.getProject().getLocation().toOSString() };
+		IFile header= TestSourceReader.createFile(fProject.getProject(), "header20171018.h", "int header20171018;\n");
+		String content = "#include \"header20171018.h\"\n";
+		IFile source1= TestSourceReader.createFile(fProject.getProject(), "source20171018_1.cpp", content);
+		IFile source2= TestSourceReader.createFile(fProject.getProject(), "source20171018_2.cpp", content);
+		CCorePlugin.getIndexManager().reindex(fProject);
+		waitForIndexer();
+
+		fIndex.acquireReadLock();
+		try {
+			IIndexFragmentFile ifile1= (IIndexFragmentFile) getIndexFile(source1);
+			IIndexFragmentFile ifile2= (IIndexFragmentFile) getIndexFile(source2);
+			IIndexFragmentFile iheader= (IIndexFragmentFile) getIndexFile(header);
+			assertTrue(ifile1.getParseCost() > 0);
+			assertTrue(ifile2.getParseCost() > 0);
+			assertEquals(0, iheader.getParseCost());
+
+			// The header is parsed in its context, only.
+			ReindexCostEstimator.Estimate estimate=
+					ReindexCostEstimator.estimate(fIndex, new IIndexFileLocation[] { iheader.getLocation() });
+			IIndexFragmentFile context= (IIndexFragmentFile) iheader.getParsedInContext().getIncludedBy();
+			assertEquals(1, estimate.getParseCount());
+			assertEquals(0, estimate.getUnknownCount());
+			assertEquals(context.getParseCost(), estimate.getTime());
+
+			estimate= ReindexCostEstimator.estimate(fIndex,
+					new IIndexFileLocation[] { ifile1.getLocation(), ifile2.getLocation(), iheader.getLocation() });
+			assertEquals(2, estimate.getParseCount());
+			assertEquals(ifile1.getParseCost() + ifile2.getParseCost(), estimate.getTime());
+		} finally {
+			fIndex.releaseReadLock();
+		}
+	}
+
 	private void checkInclude(IIndexInclude include, String content, String includeName, boolean isSystem) throws CoreException {
 		int offset= content.indexOf(includeName);
 		assertEquals(offset, include.getNameOffset());
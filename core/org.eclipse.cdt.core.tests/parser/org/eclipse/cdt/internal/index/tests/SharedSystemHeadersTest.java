@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.index.tests;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.dom.ILinkage;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.index.IIndexBinding;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IndexFilter;
+import org.eclipse.cdt.core.index.IndexLocationFactory;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.cdt.core.model.IPDOMManager;
+import org.eclipse.cdt.core.testplugin.CProjectHelper;
+import org.eclipse.cdt.core.testplugin.TestScannerProvider;
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.core.testplugin.util.TestSourceReader;
+import org.eclipse.cdt.internal.core.CCoreInternals;
+import org.eclipse.cdt.internal.core.index.IIndexFragment;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
+import org.eclipse.cdt.internal.core.index.provider.SystemHeaderFragments;
+import org.eclipse.cdt.internal.core.pdom.PDOM;
+import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
+import org.eclipse.core.runtime.jobs.Job;
+
+import junit.framework.TestSuite;
+
+/**
+ * Tests for the index fragments of system headers that are shared between projects.
+ */
+public class SharedSystemHeadersTest extends BaseTestCase {
+	private ICProject fProject;
+	private File fHeader;
+	private IIndexFileLocation fHeaderLocation;
+
+	public static TestSuite suite() {
+		return suite(SharedSystemHeadersTest.class);
+	}
+
+	public SharedSystemHeadersTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		File includeDir= CProjectHelper.freshDir();
+		fHeader= new File(includeDir, "system_20171018.h");
+		writeHeader("int system_20171018(int);\n");
+		fHeaderLocation= IndexLocationFactory.getExternalIFL(fHeader.getAbsolutePath());
+		TestScannerProvider.sIncludes= new String[] { includeDir.getAbsolutePath() };
+
+		fProject= CProjectHelper.createCCProject("__sharedHeaders__", "bin", IPDOMManager.ID_FAST_INDEXER);
+		IndexerPreferences.set(fProject.getProject(), IndexerPreferences.KEY_SHARE_SYSTEM_HEADERS, "true");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Job.getJobManager().join(SystemHeaderFragments.class, npm());
+		if (fProject != null) {
+			CProjectHelper.delete(fProject);
+		}
+		// No project uses the fragments built for the include directory of the test.
+		SystemHeaderFragments.getInstance().deleteUnusedFragments();
+		TestScannerProvider.clear();
+		super.tearDown();
+	}
+
+	private void writeHeader(String content) throws Exception {
+		long previous= fHeader.lastModified();
+		FileWriter writer= new FileWriter(fHeader);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		// Make sure the modification is noticed on file systems with a coarse resolution.
+		if (previous != 0) {
+			fHeader.setLastModified(previous + 2000);
+		}
+	}
+
+	private void reindex() throws Exception {
+		CCorePlugin.getIndexManager().reindex(fProject);
+		waitForIndexer(fProject);
+	}
+
+	private boolean isHeaderInProjectPDOM() throws Exception {
+		PDOM pdom= (PDOM) CCoreInternals.getPDOMManager().getPDOM(fProject);
+		pdom.acquireReadLock();
+		try {
+			for (IIndexFragmentFile file : pdom.getFiles(ILinkage.CPP_LINKAGE_ID, fHeaderLocation)) {
+				if (file.hasContent())
+					return true;
+			}
+			return false;
+		} finally {
+			pdom.releaseReadLock();
+		}
+	}
+
+	private int countReferences(String name) throws Exception {
+		IIndex index= CCorePlugin.getIndexManager().getIndex(fProject);
+		index.acquireReadLock();
+		try {
+			IIndexBinding[] bindings= index.findBindings(name.toCharArray(), IndexFilter.ALL_DECLARED, npm());
+			assertEquals(1, bindings.length);
+			assertEquals(1, index.findDeclarations(bindings[0]).length);
+			return index.findReferences(bindings[0]).length;
+		} finally {
+			index.releaseReadLock();
+		}
+	}
+
+	public void testFragmentReused() throws Exception {
+		TestSourceReader.createFile(fProject.getProject(), "source.cpp",
+				"#include <system_20171018.h>\nint user() { return system_20171018(1); }\n");
+		reindex();
+		assertTrue(isHeaderInProjectPDOM());
+
+		// The fragment is built from the headers of the project once the indexer is idle.
+		Job.getJobManager().join(SystemHeaderFragments.class, npm());
+		assertEquals(1, SystemHeaderFragments.getInstance().getFragmentsForIndexer(fProject).length);
+
+		// The project takes the header from the fragment now.
+		reindex();
+		assertFalse(isHeaderInProjectPDOM());
+		assertEquals(1, countReferences("system_20171018"));
+	}
+
+	public void testModifiedHeaderNotTakenFromFragment() throws Exception {
+		TestSourceReader.createFile(fProject.getProject(), "source.cpp",
+				"#include <system_20171018.h>\nint user() { return system_20171018(1); }\n");
+		reindex();
+		Job.getJobManager().join(SystemHeaderFragments.class, npm());
+		reindex();
+		assertFalse(isHeaderInProjectPDOM());
+
+		// The copy of the header in the fragment is outdated, the indexer parses the header.
+		writeHeader("int modified_20171018(int);\n");
+		TestSourceReader.createFile(fProject.getProject(), "source.cpp",
+				"#include <system_20171018.h>\nint user() { return modified_20171018(1); }\n");
+		reindex();
+		assertTrue(isHeaderInProjectPDOM());
+		assertEquals(1, countReferences("modified_20171018"));
+	}
+
+	public void testUnusedFragmentDeleted() throws Exception {
+		TestSourceReader.createFile(fProject.getProject(), "source.cpp",
+				"#include <system_20171018.h>\nint user() { return system_20171018(1); }\n");
+		reindex();
+		Job.getJobManager().join(SystemHeaderFragments.class, npm());
+		IIndexFragment[] fragments= SystemHeaderFragments.getInstance().getFragmentsForIndexer(fProject);
+		assertEquals(1, fragments.length);
+		File previous= ((PDOM) fragments[0]).getPath();
+		reindex();
+		assertFalse(isHeaderInProjectPDOM());
+
+		// Upgrading the toolchain modifies the include directory, a new fragment replaces the previous one.
+		File includeDir= fHeader.getParentFile();
+		includeDir.setLastModified(includeDir.lastModified() + 2000);
+		reindex();
+		Job.getJobManager().join(SystemHeaderFragments.class, npm());
+		assertFalse(previous.exists());
+		fragments= SystemHeaderFragments.getInstance().getFragmentsForIndexer(fProject);
+		assertEquals(1, fragments.length);
+		assertTrue(((PDOM) fragments[0]).getPath().exists());
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.pdom.tests;
+
+import java.io.File;
+import java.util.Random;
+
+import org.eclipse.cdt.internal.core.pdom.db.BTree;
+import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
+import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures building a {@link BTree} by inserting random keys one by one and building it via
+ * {@link BTree#bulkLoad(long[], int)}, including the time needed to flush the database.
+ */
+public class BTreeBulkLoadSpeedTest extends PerformanceTestCase {
+	private static final int KEY_COUNT= 500000;
+	private static final int DEGREE= 8;
+	private static final int ROOT= Database.DATA_AREA;
+	// Smaller than the database, such that chunks get written back while the tree is built.
+	private static final long CACHE_SIZE= 4 * 1024 * 1024;
+
+	public void testInsert() throws Exception {
+		measureBuild(false);
+	}
+
+	public void testBulkLoad() throws Exception {
+		measureBuild(true);
+	}
+
+	private void measureBuild(boolean bulkLoad) throws Exception {
+		for (int i = 0; i < 5; i++) {
+			build(bulkLoad);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private void build(boolean bulkLoad) throws Exception {
+		File file= File.createTempFile("btreespeed", "db");
+		try {
+			Database db= new Database(file, new ChunkCache(CACHE_SIZE), 0, false);
+			db.setExclusiveLock();
+			Random random= new Random(4711);
+			long[] records= new long[KEY_COUNT];
+			for (int i = 0; i < KEY_COUNT; i++) {
+				records[i]= db.malloc(Database.INT_SIZE);
+				db.putInt(records[i], random.nextInt());
+			}
+			db.flush();
+
+			startMeasuring();
+			BTree btree= new BTree(db, ROOT, DEGREE, new IntComparator(db));
+			if (bulkLoad) {
+				btree.bulkLoad(records, records.length);
+			} else {
+				for (long record : records) {
+					btree.insert(record);
+				}
+			}
+			db.flush();
+			stopMeasuring();
+			db.close();
+		} finally {
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private static class IntComparator implements IBTreeComparator {
+		private final Database fDB;
+
+		IntComparator(Database db) {
+			fDB= db;
+		}
+
+		@Override
+		public int compare(long record1, long record2) throws CoreException {
+			return Integer.compare(fDB.getInt(record1), fDB.getInt(record2));
+		}
+	}
+}
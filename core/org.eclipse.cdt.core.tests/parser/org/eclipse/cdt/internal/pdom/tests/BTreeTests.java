@@ -117,6 +117,46 @@ public class BTreeTests extends BaseTestCase {
 		}
 	}
 
+	/**
+	 * Bulk load random records, including duplicates, then continue with insertions and
+	 * deletions on the resulting B-tree.
+	 */
+	public void testBulkLoad() throws Exception {
+		Random random = new Random(4711);
+		int[] sizes = { 0, 1, 2, 3, 7, 15, 16, 17, 31, 32, 33, 1000, 20000 };
+		for (int degree = 2; degree <= 12; degree += 5) {
+			for (int size : sizes) {
+				init(degree);
+				try {
+					SortedSet expected = new TreeSet();
+					long[] records = new long[size];
+					for (int i = 0; i < size; i++) {
+						Integer value = random.nextInt(size * 2 + 1);
+						expected.add(value);
+						records[i] = new BTMockRecord(db, value.intValue()).getRecord();
+					}
+					btree.bulkLoad(records, size);
+					String msg = "[degree " + degree + ", size " + size + "] ";
+					assertEquals(msg, expected.size(), countRecords());
+					assertBTreeMatchesSortedSet(msg, btree, expected);
+					assertBTreeInvariantsHold(msg);
+
+					for (int i = 0; i < 200; i++) {
+						Integer value = random.nextInt(size * 2 + 1);
+						if (expected.add(value)) {
+							btree.insert(new BTMockRecord(db, value.intValue()).getRecord());
+						}
+					}
+					assertEquals(msg, expected.size(), countRecords());
+					assertBTreeMatchesSortedSet(msg, btree, expected);
+					assertBTreeInvariantsHold(msg);
+				} finally {
+					finish();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Insert/Delete a random number of records into/from the B-tree
 	 * @param seed the seed for obtaining the deterministic random testing
@@ -183,6 +223,23 @@ public class BTreeTests extends BaseTestCase {
 		finish();
 	}
 
+	private int countRecords() throws CoreException {
+		final int[] count = { 0 };
+		btree.accept(new IBTreeVisitor() {
+			@Override
+			public int compare(long record) throws CoreException {
+				return 0;
+			}
+
+			@Override
+			public boolean visit(long record) throws CoreException {
+				count[0]++;
+				return true;
+			}
+		});
+		return count[0];
+	}
+
 	public void assertBTreeInvariantsHold(String msg) throws CoreException {
 		String errorReport = btree.getInvariantsErrorReport();
 		if (!errorReport.isEmpty()) {
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.pdom.tests;
+
+import java.io.File;
+import java.util.Random;
+
+import org.eclipse.cdt.internal.core.pdom.db.BTree;
+import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
+import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
+import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures random {@link BTree} lookups on a database that reads its chunks via system calls
+ * and on one that reads them from a memory mapping of the file.
+ */
+public class DatabaseBackendSpeedTest extends PerformanceTestCase {
+	private static final int KEY_COUNT= 1000000;
+	private static final int LOOKUP_COUNT= 200000;
+	private static final int DEGREE= 8;
+	private static final int ROOT= Database.DATA_AREA;
+	// A small cache, such that most lookups have to read chunks from the file.
+	private static final long CACHE_SIZE= 1024 * 1024;
+
+	private File fDBFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDBFile= File.createTempFile("pdomspeed", "db");
+		Database db= new Database(fDBFile, new ChunkCache(), 0, false, false);
+		db.setExclusiveLock();
+		BTree btree= new BTree(db, ROOT, DEGREE, new IntComparator(db));
+		for (int i = 0; i < KEY_COUNT; i++) {
+			long record= db.malloc(Database.INT_SIZE);
+			db.putInt(record, i);
+			btree.insert(record);
+		}
+		db.close();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (!fDBFile.delete()) {
+			fDBFile.deleteOnExit();
+		}
+		super.tearDown();
+	}
+
+	public void testRandomLookupsViaRandomAccessFile() throws Exception {
+		measureLookups(false);
+	}
+
+	public void testRandomLookupsViaMemoryMapping() throws Exception {
+		measureLookups(true);
+	}
+
+	private void measureLookups(boolean memoryMapped) throws CoreException {
+		// Warm up the file system cache.
+		lookup(memoryMapped);
+		for (int i = 0; i < 10; i++) {
+			startMeasuring();
+			lookup(memoryMapped);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private void lookup(boolean memoryMapped) throws CoreException {
+		Database db= new Database(fDBFile, new ChunkCache(CACHE_SIZE), 0, true, memoryMapped);
+		db.setLocked(true);
+		try {
+			BTree btree= new BTree(db, ROOT, DEGREE, new IntComparator(db));
+			Random random= new Random(4711);
+			for (int i = 0; i < LOOKUP_COUNT; i++) {
+				final int key= random.nextInt(KEY_COUNT);
+				final Database fdb= db;
+				final long[] found= {0};
+				btree.accept(new IBTreeVisitor() {
+					@Override
+					public int compare(long record) throws CoreException {
+						return Integer.compare(fdb.getInt(record), key);
+					}
+
+					@Override
+					public boolean visit(long record) throws CoreException {
+						found[0]= record;
+						return false;
+					}
+				});
+				assertTrue(found[0] != 0);
+			}
+		} finally {
+			db.setLocked(false);
+		}
+	}
+
+	private static class IntComparator implements IBTreeComparator {
+		private final Database fDB;
+
+		IntComparator(Database db) {
+			fDB= db;
+		}
+
+		@Override
+		public int compare(long record1, long record2) throws CoreException {
+			return Integer.compare(fDB.getInt(record1), fDB.getInt(record2));
+		}
+	}
+}
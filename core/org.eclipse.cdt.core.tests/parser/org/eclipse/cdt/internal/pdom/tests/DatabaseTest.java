@@ -13,6 +13,12 @@
 package org.eclipse.cdt.internal.pdom.tests;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Random;
 
 import junit.framework.Test;
@@ -21,6 +27,7 @@ import org.eclipse.cdt.core.testplugin.CTestPlugin;
 import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
 import org.eclipse.cdt.internal.core.pdom.db.BTree;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
@@ -168,6 +175,395 @@ public class DatabaseTest extends BaseTestCase {
 		}
 	}
 
+	public void testMemoryMappedReads() throws Exception {
+		final int count= 3 * Database.CHUNK_SIZE;
+		long[] records= new long[count];
+		for (int i = 0; i < count; i++) {
+			records[i]= db.malloc(Database.INT_SIZE);
+			db.putInt(records[i], i);
+		}
+		db.flush();
+
+		Database mapped= new Database(db.getLocation(), new ChunkCache(Database.CHUNK_SIZE), 0, true, true);
+		mapped.setLocked(true);
+		try {
+			assertTrue(mapped.isMemoryMapped());
+			for (int i = 0; i < count; i++) {
+				assertEquals(i, mapped.getInt(records[i]));
+			}
+			assertTrue(mapped.getMappedSizeBytes() > 0);
+		} finally {
+			mapped.setLocked(false);
+		}
+
+		// Closing the database unmaps the file, such that it can be truncated.
+		mapped.setExclusiveLock();
+		mapped.close();
+		assertEquals(0, mapped.getMappedSizeBytes());
+		db.clear(0);
+		assertEquals(Database.CHUNK_SIZE, db.getLocation().length());
+	}
+
+	public void testMemoryMappedReadsAfterTruncation() throws Exception {
+		File file= getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		// A small cache, such that the chunks are read from the file again.
+		Database mapped= new Database(file, new ChunkCache(2 * Database.CHUNK_SIZE), 0, false, true);
+		mapped.setExclusiveLock();
+		try {
+			final int count= 3 * Database.CHUNK_SIZE;
+			long[] records= new long[count];
+			for (int i = 0; i < count; i++) {
+				records[i]= mapped.malloc(Database.INT_SIZE);
+				mapped.putInt(records[i], i);
+			}
+			mapped.flush();
+			// A growing file is mapped in complete regions of 64MB only.
+			RandomAccessFile raf= new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(65L * 1024 * 1024);
+			} finally {
+				raf.close();
+			}
+			for (int i = 0; i < count; i++) {
+				assertEquals(i, mapped.getInt(records[i]));
+			}
+			assertTrue(mapped.getMappedSizeBytes() > 0);
+
+			// The mapping is dropped when the file is truncated, chunks beyond the new end
+			// of the file are read from their new content.
+			mapped.clear(0);
+			assertEquals(0, mapped.getMappedSizeBytes());
+			assertEquals(Database.CHUNK_SIZE, file.length());
+			for (int i = 0; i < count; i++) {
+				records[i]= mapped.malloc(Database.INT_SIZE);
+				mapped.putInt(records[i], -i);
+			}
+			mapped.flush();
+			for (int i = 0; i < count; i++) {
+				assertEquals(-i, mapped.getInt(records[i]));
+			}
+			assertEquals(0, mapped.getMappedSizeBytes());
+		} finally {
+			mapped.close();
+			file.delete();
+		}
+	}
+
+	public void testConcurrentReaders() throws Exception {
+		final int count= 3 * Database.CHUNK_SIZE;
+		final long[] records= new long[count];
+		for (int i = 0; i < count; i++) {
+			records[i]= db.malloc(Database.INT_SIZE);
+			db.putInt(records[i], i);
+		}
+		db.flush();
+
+		// A cache that is much smaller than the database, such that chunks are evicted while
+		// they are being read by other threads.
+		final ChunkCache cache= new ChunkCache(2 * Database.CHUNK_SIZE);
+		final Database reader= new Database(db.getLocation(), cache, 0, true);
+		reader.setLocked(true);
+		try {
+			final Throwable[] failure= {null};
+			Thread[] threads= new Thread[8];
+			for (int t = 0; t < threads.length; t++) {
+				final int seed= t;
+				threads[t]= new Thread() {
+					@Override
+					public void run() {
+						try {
+							Random random= new Random(seed);
+							for (int i = 0; i < 20000; i++) {
+								int idx= random.nextInt(count);
+								assertEquals(idx, reader.getInt(records[idx]));
+							}
+						} catch (Throwable e) {
+							synchronized (failure) {
+								failure[0]= e;
+							}
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			synchronized (failure) {
+				if (failure[0] != null) {
+					throw new Exception(failure[0]);
+				}
+			}
+			assertEquals(threads.length * 20000, cache.getHitCount() + cache.getMissCount());
+			assertTrue(cache.getEvictionCount() > 0);
+			assertTrue(cache.getUsedSize() <= cache.getMaxSize());
+		} finally {
+			reader.setLocked(false);
+		}
+	}
+
+	public void testPartitionedCache() throws Exception {
+		final int count= 3 * Database.CHUNK_SIZE;
+		final long[] records= new long[count];
+		for (int i = 0; i < count; i++) {
+			records[i]= db.malloc(Database.INT_SIZE);
+			db.putInt(records[i], i);
+		}
+		db.flush();
+
+		final ChunkCache cache= new ChunkCache(8 * Database.CHUNK_SIZE, true);
+		Database reader1= new Database(db.getLocation(), cache, 0, true);
+		Database reader2= new Database(db.getLocation(), cache, 0, true);
+		assertEquals(2, cache.getPartitionCount());
+		assertSame(cache, reader1.getChunkCache());
+		reader1.setLocked(true);
+		reader2.setLocked(true);
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, reader1.getInt(records[i]));
+		}
+		assertEquals(cache.getMaxSize(), cache.getUsedSize());
+		// The second reader takes slots from the first one.
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, reader2.getInt(records[i]));
+			assertEquals(i, reader1.getInt(records[i]));
+		}
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.getUsedSize() <= cache.getMaxSize());
+		assertEquals(3 * count, cache.getHitCount() + cache.getMissCount());
+
+		reader1.setExclusiveLock();
+		reader1.close();
+		assertEquals(1, cache.getPartitionCount());
+		assertTrue(cache.getUsedSize() <= cache.getMaxSize() / 2);
+		// The remaining reader may use the entire cache.
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, reader2.getInt(records[i]));
+		}
+		assertEquals(cache.getMaxSize(), cache.getUsedSize());
+		reader2.setExclusiveLock();
+		reader2.close();
+		assertEquals(0, cache.getPartitionCount());
+		assertEquals(0, cache.getUsedSize());
+	}
+
+	public void testSnapshot() throws Exception {
+		final int count= 3 * Database.CHUNK_SIZE;
+		long[] records= new long[count];
+		for (int i = 0; i < count; i++) {
+			records[i]= db.malloc(Database.INT_SIZE);
+			db.putInt(records[i], i);
+		}
+		db.giveUpExclusiveLock(true);
+		db.setLocked(true);
+
+		Database snapshot= db.createSnapshot();
+		assertTrue(snapshot.isSnapshot());
+		// Modify all records and flush them, such that the file no longer contains the
+		// content of the snapshot.
+		db.setExclusiveLock();
+		for (int i = 0; i < count; i++) {
+			db.putInt(records[i], -i);
+		}
+		db.flush();
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, snapshot.getInt(records[i]));
+			assertEquals(-i, db.getInt(records[i]));
+		}
+
+		snapshot.close();
+		snapshot= db.createSnapshot();
+		db.clear(0);
+		try {
+			snapshot.getInt(records[0]);
+			fail("Snapshot should have been invalidated");
+		} catch (CoreException e) {
+		}
+	}
+
+	public void testSnapshotLimitedToCacheSize() throws Exception {
+		File file= getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database small= new Database(file, new ChunkCache(2 * Database.CHUNK_SIZE), 0, false);
+		try {
+			small.setExclusiveLock();
+			// Each record occupies a chunk of its own.
+			long[] records= new long[4];
+			for (int i = 0; i < records.length; i++) {
+				records[i]= small.malloc(Database.MAX_MALLOC_SIZE);
+				small.putInt(records[i], i);
+			}
+			small.giveUpExclusiveLock(true);
+			small.setLocked(true);
+
+			// Reading more chunks than fit into the cache does not invalidate the snapshot.
+			Database snapshot= small.createSnapshot();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, snapshot.getInt(records[i]));
+			}
+			snapshot.close();
+
+			// The third chunk the writer has to preserve exceeds the size of the cache, the
+			// snapshot gives up its chunks.
+			snapshot= small.createSnapshot();
+			assertEquals(0, snapshot.getInt(records[0]));
+			small.setExclusiveLock();
+			for (int i = 0; i < records.length; i++) {
+				small.putInt(records[i], -i);
+			}
+			for (long record : new long[] { records[0], records[3] }) {
+				try {
+					snapshot.getInt(record);
+					fail("Snapshot should have been invalidated");
+				} catch (CoreException e) {
+					assertTrue(DBStatus.isSnapshotInvalidated(e));
+				}
+			}
+			snapshot.close();
+		} finally {
+			small.close();
+			file.delete();
+		}
+	}
+
+	public void testSnapshotWithWriterOnPartitionedCache() throws Exception {
+		File file= getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		final ChunkCache cache= new ChunkCache(4 * Database.CHUNK_SIZE, true);
+		Database partitioned= new Database(file, cache, 0, false);
+		try {
+			partitioned.setExclusiveLock();
+			long[] records= new long[8];
+			for (int i = 0; i < records.length; i++) {
+				records[i]= partitioned.malloc(Database.MAX_MALLOC_SIZE);
+				partitioned.putInt(records[i], i);
+			}
+			partitioned.flush();
+			partitioned.giveUpExclusiveLock(true);
+			partitioned.setLocked(true);
+
+			// A snapshot that has read all chunks needs no preserved copies.
+			Database reading= partitioned.createSnapshot();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, reading.getInt(records[i]));
+			}
+			Database idle= partitioned.createSnapshot();
+			partitioned.setExclusiveLock();
+			for (int i = 0; i < records.length; i++) {
+				partitioned.putInt(records[i], -i);
+			}
+			partitioned.flush();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, reading.getInt(records[i]));
+				assertEquals(-i, partitioned.getInt(records[i]));
+			}
+			// The idle snapshot needed more preserved chunks than fit into the entire cache.
+			try {
+				idle.getInt(records[0]);
+				fail("Snapshot should have been invalidated");
+			} catch (CoreException e) {
+				assertTrue(DBStatus.isSnapshotInvalidated(e));
+			}
+			reading.close();
+			idle.close();
+		} finally {
+			partitioned.close();
+			file.delete();
+		}
+	}
+
+	public void testSnapshotOfPartitionedCache() throws Exception {
+		// Each record occupies a chunk of its own.
+		long[] records= new long[4];
+		for (int i = 0; i < records.length; i++) {
+			records[i]= db.malloc(Database.MAX_MALLOC_SIZE);
+			db.putInt(records[i], i);
+		}
+		db.flush();
+
+		// A new partition starts without slots, a snapshot is still limited by the size of
+		// the entire cache.
+		final ChunkCache cache= new ChunkCache(8 * Database.CHUNK_SIZE, true);
+		Database reader= new Database(db.getLocation(), cache, 0, true);
+		reader.setLocked(true);
+		try {
+			assertEquals(8 * Database.CHUNK_SIZE, cache.getMaxSize());
+			Database snapshot= reader.createSnapshot();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, snapshot.getInt(records[i]));
+			}
+			snapshot.close();
+		} finally {
+			reader.setExclusiveLock();
+			reader.close();
+		}
+	}
+
+	public void testCompressedDatabase() throws Exception {
+		final int count= 3 * Database.CHUNK_SIZE;
+		long[] records= new long[count];
+		for (int i = 0; i < count; i++) {
+			records[i]= db.malloc(Database.INT_SIZE);
+			db.putInt(records[i], i);
+		}
+		db.flush();
+
+		File compressedFile= getTestDir().append(getName() + System.currentTimeMillis() + ".zdat").toFile();
+		File plainFile= getTestDir().append(getName() + System.currentTimeMillis() + ".dat").toFile();
+		Database reader= null;
+		Database compressed= null;
+		try {
+			reader= new Database(db.getLocation(), new ChunkCache(), 0, true);
+			reader.setLocked(true);
+			FileOutputStream out= new FileOutputStream(compressedFile);
+			try {
+				long size= reader.transferCompressedTo(out);
+				assertEquals(compressedFile.length(), size);
+				assertTrue(size < db.getSizeBytes());
+			} finally {
+				out.close();
+			}
+
+			// The compressed file can be read directly, but not be written to.
+			compressed= new Database(compressedFile, new ChunkCache(Database.CHUNK_SIZE), 0, true);
+			compressed.setLocked(true);
+			assertTrue(compressed.isCompressed());
+			assertEquals(db.getSizeBytes(), compressed.getSizeBytes());
+			for (int i = 0; i < count; i++) {
+				assertEquals(i, compressed.getInt(records[i]));
+			}
+			try {
+				new Database(compressedFile, new ChunkCache(), 0, false);
+				fail("Compressed database must not be opened for writing");
+			} catch (CoreException e) {
+			}
+
+			// Streaming the compressed file yields the plain database.
+			InputStream in= Database.decompress(new FileInputStream(compressedFile));
+			out= new FileOutputStream(plainFile);
+			try {
+				byte[] buffer= new byte[4096];
+				int read;
+				while ((read= in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+				out.close();
+			}
+			assertTrue(Arrays.equals(Files.readAllBytes(db.getLocation().toPath()),
+					Files.readAllBytes(plainFile.toPath())));
+		} finally {
+			if (reader != null) {
+				reader.setExclusiveLock();
+				reader.close();
+			}
+			if (compressed != null) {
+				compressed.setExclusiveLock();
+				compressed.close();
+			}
+			compressedFile.delete();
+			plainFile.delete();
+		}
+	}
+
 	public void testStringsInBTree() throws Exception {
 		String[] names = {
 				"ARLENE",
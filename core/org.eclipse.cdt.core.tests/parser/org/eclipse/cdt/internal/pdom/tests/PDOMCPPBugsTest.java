@@ -209,6 +209,36 @@ public class PDOMCPPBugsTest extends BaseTestCase {
 		pdom.releaseWriteLock();
 	}
 
+	public void testLockWaitStatistics() throws Exception {
+		final PDOM pdom= (PDOM) CCoreInternals.getPDOMManager().getPDOM(cproject);
+		final int blockedReaders= pdom.getBlockedReadLockCount();
+		final long readWaitTime= pdom.getReadLockWaitTime();
+		Thread other;
+		pdom.acquireWriteLock(null);
+		try {
+			other= new Thread() {
+				@Override
+				public void run() {
+					try {
+						pdom.acquireReadLock();
+						pdom.releaseReadLock();
+					} catch (InterruptedException e) {
+					}
+				}
+			};
+			other.start();
+			while (!pdom.hasWaitingReaders()) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(50);
+		} finally {
+			pdom.releaseWriteLock();
+		}
+		other.join();
+		assertTrue(pdom.getBlockedReadLockCount() > blockedReaders);
+		assertTrue(pdom.getReadLockWaitTime() >= readWaitTime + 50);
+	}
+
 	public void test191679() throws Exception {
 		IProject project= cproject.getProject();
 		IFolder cHeaders= cproject.getProject().getFolder("cHeaders");
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.pdom.tests;
+
+import java.io.File;
+
+import org.eclipse.cdt.core.testplugin.util.BaseTestCase;
+import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
+
+import junit.framework.Test;
+
+public class PDOMStringTableTests extends BaseTestCase {
+	protected File dbFile;
+	protected Database db;
+	protected PDOMStringTable stringTable;
+
+	public static Test suite() {
+		return suite(PDOMStringTableTests.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		dbFile = File.createTempFile("pdomstringtabletest", "db");
+		db = new Database(dbFile, new ChunkCache(), 0, false);
+		db.setExclusiveLock();
+		stringTable = new PDOMStringTable(db, Database.DATA_AREA);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		db.close();
+		dbFile.deleteOnExit();
+
+		super.tearDown();
+	}
+
+	public void testInternAndRelease() throws Exception {
+		long val1_rec_a = stringTable.intern("val1".toCharArray());
+		long val2_rec = stringTable.intern("val2".toCharArray());
+		long val1_rec_b = stringTable.intern("val1".toCharArray());
+		assertTrue(val1_rec_a != 0);
+		assertTrue(val2_rec != 0);
+		assertEquals(val1_rec_a, val1_rec_b);
+		assertEquals(2, stringTable.size());
+		assertEquals("val1", db.getString(val1_rec_a).getString());
+
+		assertEquals(val1_rec_a, stringTable.find("val1".toCharArray()));
+		assertEquals(val2_rec, stringTable.find("val2".toCharArray()));
+		assertEquals(0, stringTable.find("val3".toCharArray()));
+
+		// The string remains until the last reference is released.
+		stringTable.release(val1_rec_a);
+		assertEquals(val1_rec_a, stringTable.find("val1".toCharArray()));
+		stringTable.release(val1_rec_b);
+		assertEquals(0, stringTable.find("val1".toCharArray()));
+		assertEquals(val2_rec, stringTable.find("val2".toCharArray()));
+		assertEquals(1, stringTable.size());
+	}
+
+	public void testGrowth() throws Exception {
+		// Enough strings for the table to rehash several times, including long strings.
+		final int count = 20000;
+		long[] records = new long[count];
+		for (int i = 0; i < count; i++) {
+			records[i] = stringTable.intern(name(i).toCharArray());
+		}
+		assertEquals(count, stringTable.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(records[i], stringTable.find(name(i).toCharArray()));
+			assertEquals(records[i], stringTable.intern(name(i).toCharArray()));
+			stringTable.release(records[i]);
+		}
+		for (int i = 0; i < count; i += 2) {
+			stringTable.release(records[i]);
+		}
+		assertEquals(count / 2, stringTable.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i % 2 == 0 ? 0 : records[i], stringTable.find(name(i).toCharArray()));
+		}
+	}
+
+	private static String name(int i) {
+		StringBuilder buf = new StringBuilder("name").append(i);
+		if (i % 100 == 0) {
+			while (buf.length() < Database.MAX_MALLOC_SIZE) {
+				buf.append(buf.length());
+			}
+		}
+		return buf.toString();
+	}
+}
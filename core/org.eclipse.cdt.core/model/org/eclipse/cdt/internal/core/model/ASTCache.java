@@ -11,6 +11,9 @@
  ******************************************************************************/
 package org.eclipse.cdt.internal.core.model;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
 import org.eclipse.cdt.core.index.IIndex;
@@ -18,6 +21,7 @@ import org.eclipse.cdt.core.index.IIndexManager;
 import org.eclipse.cdt.core.model.ILanguage;
 import org.eclipse.cdt.core.model.ITranslationUnit;
 import org.eclipse.cdt.internal.core.dom.parser.ASTTranslationUnit;
+import org.eclipse.cdt.internal.core.parser.scanner.StreamHasher;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
@@ -28,7 +32,9 @@ import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 
 /**
- * Provides a shared AST of a single translation unit at a time.
+ * Provides a shared AST of the active translation unit. In addition the ASTs of recently used
+ * translation units are retained up to a memory budget, such that switching between editors
+ * or analyzing a file that is not active does not require parsing it again.
  *
  * @since 4.0
  */
@@ -61,6 +67,30 @@ public class ASTCache {
 		IStatus runOnAST(ILanguage lang, IASTTranslationUnit ast) throws CoreException;
 	}
 
+	/**
+	 * Rough estimate of the number of bytes retained by an AST per character of the source
+	 * of the translation unit.
+	 */
+	private static final int AST_BYTES_PER_CHAR= 64;
+	private static final long DEFAULT_MAX_RETAINED_SIZE= 64 * 1024 * 1024;
+
+	/**
+	 * An AST retained for a translation unit that is not the active one.
+	 */
+	private static class RetainedAST {
+		final IASTTranslationUnit fAST;
+		final long fLastWriteOnIndex;
+		final long fContentHash;
+		final long fSize;
+
+		RetainedAST(IASTTranslationUnit ast, long lastWriteOnIndex, long contentHash, long size) {
+			fAST= ast;
+			fLastWriteOnIndex= lastWriteOnIndex;
+			fContentHash= contentHash;
+			fSize= size;
+		}
+	}
+
 	private final int fParseMode;
 	private final Object fCacheMutex= new Object();
 
@@ -76,6 +106,15 @@ public class ASTCache {
 	private long fLastWriteOnIndex;
 	/** Indicates whether the AST is currently being computed */
 	private boolean fIsReconciling;
+	/** Hash of the contents of the active translation unit the cached AST was created for */
+	private long fContentHash;
+
+	/** ASTs of translation units other than the active one, in least recently used order */
+	private final LinkedHashMap<ITranslationUnit, RetainedAST> fRetained= new LinkedHashMap<>(16, 0.75f, true);
+	private long fMaxRetainedSize= DEFAULT_MAX_RETAINED_SIZE;
+	private long fRetainedSize;
+	private long fHits;
+	private long fMisses;
 
 	/**
 	 * Create a new AST cache.
@@ -120,6 +159,7 @@ public class ASTCache {
 							// cached AST is valid
 							if (DEBUG)
 								System.out.println(DEBUG_PREFIX + getThreadName() + "returning cached AST:" + toString(fAST) + " for: " + tUnit.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
+							fHits++;
 							return fAST;
 						}
 					}
@@ -149,9 +189,16 @@ public class ASTCache {
 					} catch (InterruptedException e) {
 						return null; // thread has been interrupted don't compute AST
 					}
-				} else if (!wait) {
-					return null;
+				} else if (!isActiveElement) {
+					IASTTranslationUnit ast= getRetainedAST(tUnit, index);
+					if (ast != null) {
+						fHits++;
+						return ast;
+					}
+					if (!wait)
+						return null;
 				}
+				fMisses++;
 			}
 
 			if (isActiveElement)
@@ -161,6 +208,9 @@ public class ASTCache {
 				System.err.println(DEBUG_PREFIX + getThreadName() + "creating AST for " + tUnit.getElementName()); //$NON-NLS-1$
 
 			IASTTranslationUnit ast= null;
+			// Compute the hash before parsing, a concurrent change to the contents makes the AST
+			// look outdated rather than up-to-date.
+			final char[] contents= isActiveElement ? null : tUnit.getContents();
 			try {
 				ast= createAST(tUnit, index, progressMonitor);
 				if (progressMonitor != null && progressMonitor.isCanceled())
@@ -176,6 +226,11 @@ public class ASTCache {
 						reconciled(fAST, tUnit);
 					} else
 						reconciled(ast, tUnit);
+				} else if (ast != null && contents != null) {
+					synchronized (fCacheMutex) {
+						if (!tUnit.equals(fActiveTU))
+							retain(tUnit, ast, ast.getIndex().getLastWriteAccess(), hash(contents), contents.length);
+					}
 				}
 			}
 			return ast;
@@ -298,8 +353,9 @@ public class ASTCache {
 		if (fAST != null)
 			disposeAST();
 
-		fAST= ast;
+		setCachedAST(ast);
 		fLastWriteOnIndex= fAST == null ? 0 : fAST.getIndex().getLastWriteAccess();
+		fContentHash= fAST == null ? 0 : hash(tUnit.getContents());
 
 		// Signal AST change
 		fCacheMutex.notifyAll();
@@ -316,11 +372,33 @@ public class ASTCache {
 			if (DEBUG)
 				System.out.println(DEBUG_PREFIX + getThreadName() + "disposing AST: " + toString(fAST) + " for: " + toString(fActiveTU)); //$NON-NLS-1$ //$NON-NLS-2$
 
-			fAST= null;
+			setCachedAST(null);
 			cache(null, null);
 		}
 	}
 
+	/**
+	 * Replaces the cached AST. ASTs held by this cache are marked, such that they are not
+	 * modified while clients may obtain them.
+	 */
+	private void setCachedAST(IASTTranslationUnit ast) {
+		assert Thread.holdsLock(fCacheMutex);
+		final IASTTranslationUnit old= fAST;
+		addReference(ast);
+		fAST= ast;
+		removeReference(old);
+	}
+
+	private static void addReference(IASTTranslationUnit ast) {
+		if (ast instanceof ASTTranslationUnit)
+			((ASTTranslationUnit) ast).addCacheReference();
+	}
+
+	private static void removeReference(IASTTranslationUnit ast) {
+		if (ast instanceof ASTTranslationUnit)
+			((ASTTranslationUnit) ast).removeCacheReference();
+	}
+
 	/**
 	 * Creates a new translation unit AST.
 	 *
@@ -368,14 +446,146 @@ public class ASTCache {
 			return;
 		}
 		synchronized (fCacheMutex) {
+			if (fAST != null && !fIsReconciling) {
+				char[] contents= fActiveTU.getContents();
+				if (contents != null && hash(contents) == fContentHash)
+					retain(fActiveTU, fAST, fLastWriteOnIndex, fContentHash, contents.length);
+			}
+			RetainedAST retained= tUnit == null ? null : fRetained.remove(tUnit);
+			if (retained != null)
+				fRetainedSize -= retained.fSize;
 			fIsReconciling= false;
 			fActiveTU= tUnit;
 			cache(null, tUnit);
+			if (retained != null && retained.fContentHash == hash(tUnit.getContents())) {
+				if (DEBUG)
+					System.out.println(DEBUG_PREFIX + getThreadName() + "activating retained AST for: " + toString(tUnit)); //$NON-NLS-1$
+				setCachedAST(retained.fAST);
+				fLastWriteOnIndex= retained.fLastWriteOnIndex;
+				fContentHash= retained.fContentHash;
+			}
+			if (retained != null)
+				removeReference(retained.fAST);
 		}
 		if (DEBUG)
 			System.out.println(DEBUG_PREFIX + getThreadName() + "active element is: " + toString(tUnit)); //$NON-NLS-1$
 	}
 
+	/**
+	 * Returns the retained AST of the given translation unit if it is still valid.
+	 */
+	private IASTTranslationUnit getRetainedAST(ITranslationUnit tUnit, IIndex index) {
+		assert Thread.holdsLock(fCacheMutex);
+		RetainedAST retained= fRetained.get(tUnit);
+		if (retained == null)
+			return null;
+		if (retained.fLastWriteOnIndex < index.getLastWriteAccess()
+				|| retained.fContentHash != hash(tUnit.getContents())) {
+			if (DEBUG)
+				System.out.println(DEBUG_PREFIX + getThreadName() + "disposing outdated AST for: " + toString(tUnit)); //$NON-NLS-1$
+			fRetained.remove(tUnit);
+			fRetainedSize -= retained.fSize;
+			removeReference(retained.fAST);
+			return null;
+		}
+		if (DEBUG)
+			System.out.println(DEBUG_PREFIX + getThreadName() + "returning retained AST for: " + toString(tUnit)); //$NON-NLS-1$
+		return retained.fAST;
+	}
+
+	/**
+	 * Retains the AST of a translation unit other than the active one, the least recently
+	 * used ASTs are disposed to stay within the memory budget.
+	 */
+	private void retain(ITranslationUnit tUnit, IASTTranslationUnit ast, long lastWriteOnIndex,
+			long contentHash, int contentLength) {
+		assert Thread.holdsLock(fCacheMutex);
+		final long size= (long) contentLength * AST_BYTES_PER_CHAR;
+		addReference(ast);
+		RetainedAST old= fRetained.remove(tUnit);
+		if (old != null) {
+			fRetainedSize -= old.fSize;
+			removeReference(old.fAST);
+		}
+		if (size > fMaxRetainedSize) {
+			removeReference(ast);
+			return;
+		}
+		fRetained.put(tUnit, new RetainedAST(ast, lastWriteOnIndex, contentHash, size));
+		fRetainedSize += size;
+		trimRetainedASTs();
+	}
+
+	private void trimRetainedASTs() {
+		for (Iterator<RetainedAST> it= fRetained.values().iterator(); fRetainedSize > fMaxRetainedSize && it.hasNext();) {
+			RetainedAST retained= it.next();
+			fRetainedSize -= retained.fSize;
+			removeReference(retained.fAST);
+			it.remove();
+		}
+	}
+
+	/**
+	 * Disposes the ASTs retained for translation units other than the active one.
+	 */
+	public void disposeRetainedASTs() {
+		synchronized (fCacheMutex) {
+			for (RetainedAST retained : fRetained.values()) {
+				removeReference(retained.fAST);
+			}
+			fRetained.clear();
+			fRetainedSize= 0;
+		}
+	}
+
+	/**
+	 * Sets the estimated number of bytes the ASTs of translation units other than the active
+	 * one may occupy.
+	 */
+	public void setMaxRetainedSize(long maxSize) {
+		synchronized (fCacheMutex) {
+			fMaxRetainedSize= maxSize;
+			trimRetainedASTs();
+		}
+	}
+
+	/**
+	 * Returns the estimated number of bytes occupied by the ASTs of translation units other
+	 * than the active one.
+	 */
+	public long getRetainedSize() {
+		synchronized (fCacheMutex) {
+			return fRetainedSize;
+		}
+	}
+
+	/**
+	 * Returns the number of ASTs retained for translation units other than the active one.
+	 */
+	public int getRetainedCount() {
+		synchronized (fCacheMutex) {
+			return fRetained.size();
+		}
+	}
+
+	/**
+	 * Returns the number of requests that were served with a cached AST.
+	 */
+	public long getHitCount() {
+		synchronized (fCacheMutex) {
+			return fHits;
+		}
+	}
+
+	/**
+	 * Returns the number of requests for which an AST had to be created.
+	 */
+	public long getMissCount() {
+		synchronized (fCacheMutex) {
+			return fMisses;
+		}
+	}
+
 	/**
 	 * Check whether the given translation unit is the active element of this cache.
 	 *
@@ -448,6 +658,14 @@ public class ASTCache {
 		}
 	}
 
+	private static long hash(char[] contents) {
+		if (contents == null)
+			return 0;
+		StreamHasher hasher= new StreamHasher();
+		hasher.addChunk(contents);
+		return hasher.computeHash();
+	}
+
 	private static String getThreadName() {
 		String name= Thread.currentThread().getName();
 		if (name != null)
@@ -144,11 +144,16 @@ public class CModelBuilder2 implements IContributedModelBuilder {
 			parseFlags |= ITranslationUnit.AST_PARSE_INACTIVE_CODE;
 			final IASTTranslationUnit ast;
 			try {
-				ast= fTranslationUnit.getAST(index, parseFlags, fProgressMonitor);
+				if (elementInfo instanceof ASTHolderTUInfo) {
+					ast= fTranslationUnit.getASTForReconcile(index, parseFlags, fProgressMonitor);
+				} else {
+					ast= fTranslationUnit.getAST(index, parseFlags, fProgressMonitor);
+				}
 				if (DEBUG) {
 					Util.debugLog("CModelBuilder2: parsing " //$NON-NLS-1$
 							+ fTranslationUnit.getElementName()
 							+ " mode="+ (quickParseMode ? "skip all " : "skip indexed ") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+							+ (ast != null && ast.getIndex() != index ? "function body " : "") //$NON-NLS-1$ //$NON-NLS-2$
 							+ " time="+ ( System.currentTimeMillis() - startTime ) + "ms", //$NON-NLS-1$ //$NON-NLS-2$
 							DebugLogConstants.MODEL, false);
 				}
@@ -172,9 +177,16 @@ public class CModelBuilder2 implements IContributedModelBuilder {
 			}
 
 			if (elementInfo instanceof ASTHolderTUInfo) {
+				final IIndex astIndex= ast.getIndex();
+				if (astIndex != index) {
+					// The AST of the previous reconcile has been updated and keeps its index, which
+					// has the same fragments. Hence the lock does not block.
+					astIndex.acquireReadLock();
+				} else {
+					// preserve index lock for AST receiver
+					index= null;
+				}
 				((ASTHolderTUInfo) elementInfo).fAST= ast;
-				// preserve index lock for AST receiver
-				index= null;
 			}
 		} finally {
 			if (index != null) {
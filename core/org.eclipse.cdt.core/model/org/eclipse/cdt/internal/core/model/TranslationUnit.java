@@ -19,6 +19,7 @@ package org.eclipse.cdt.internal.core.model;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,11 +27,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.ILinkage;
 import org.eclipse.cdt.core.dom.ast.IASTCompletionNode;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.parser.AbstractCLikeLanguage;
 import org.eclipse.cdt.core.index.IIndex;
 import org.eclipse.cdt.core.index.IIndexFile;
 import org.eclipse.cdt.core.index.IIndexFileLocation;
@@ -70,6 +73,7 @@ import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICProjectDescription;
 import org.eclipse.cdt.internal.core.dom.parser.ASTTranslationUnit;
 import org.eclipse.cdt.internal.core.dom.parser.CompositeValue;
+import org.eclipse.cdt.internal.core.index.CIndex;
 import org.eclipse.cdt.internal.core.index.IndexBasedFileContentProvider;
 import org.eclipse.cdt.internal.core.parser.InternalParserUtil;
 import org.eclipse.cdt.internal.core.parser.ParserLogService;
@@ -116,6 +120,23 @@ public class TranslationUnit extends Openable implements ITranslationUnit {
 	SourceManipulationInfo sourceManipulationInfo;
 	private ILanguage fLanguageOfContext;
 
+	/** The AST of the last reconcile, which is updated when only a function body is edited. */
+	private volatile ReconciledAST fReconciledAST;
+	private static final AtomicLong sFunctionBodyReparses= new AtomicLong();
+	private static final AtomicLong sFullReparses= new AtomicLong();
+
+	private static final class ReconciledAST {
+		final WeakReference<IASTTranslationUnit> fAST;
+		final int fStyle;
+		final long fLastWriteAccess;
+
+		ReconciledAST(IASTTranslationUnit ast, int style, long lastWriteAccess) {
+			fAST= new WeakReference<>(ast);
+			fStyle= style;
+			fLastWriteAccess= lastWriteAccess;
+		}
+	}
+
 	public TranslationUnit(ICElement parent, IFile file, String idType) {
 		super(parent, file, ICElement.C_UNIT);
 		setContentTypeID(idType);
@@ -861,6 +882,83 @@ public class TranslationUnit extends Openable implements ITranslationUnit {
 		}
 
 		IncludeFileContentProvider crf= getIncludeFileContentProvider(style, index, language.getLinkageID(), contextToHeader);
+		ASTTranslationUnit ast = (ASTTranslationUnit) ((AbstractLanguage) language).getASTTranslationUnit(
+				fileContent, scanInfo, crf, index, getParserOptions(style), createParserLogService(monitor));
+		if (ast == null)
+			return null;
+		ast.setOriginatingTranslationUnit(this);
+		ast.setBasedOnIncompleteIndex(incompleteIndex);
+		return ast;
+	}
+
+	/**
+	 * Returns the AST for reconciling this translation unit. When a single function body has been
+	 * edited since the last reconcile, the AST of the last reconcile is updated rather than parsing
+	 * the translation unit again. Such an AST keeps the index it was created with, which has the
+	 * same fragments as the given one. The caller needs to hold the read lock on the given index.
+	 */
+	IASTTranslationUnit getASTForReconcile(IIndex index, int style, IProgressMonitor monitor)
+			throws CoreException {
+		final ReconciledAST previous= fReconciledAST;
+		fReconciledAST= null;
+		IASTTranslationUnit ast= previous == null ? null : previous.fAST.get();
+		if (ast != null && index != null && previous.fStyle == style
+				&& previous.fLastWriteAccess == index.getLastWriteAccess()
+				&& hasSameFragments(ast.getIndex(), index)
+				&& !ast.isBasedOnIncompleteIndex()
+				&& reparseFunctionBody(ast, index, style, monitor)) {
+			sFunctionBodyReparses.incrementAndGet();
+		} else {
+			ast= getAST(index, style, monitor);
+			sFullReparses.incrementAndGet();
+		}
+		if (ast != null && index != null) {
+			fReconciledAST= new ReconciledAST(ast, style, index.getLastWriteAccess());
+		}
+		return ast;
+	}
+
+	private static boolean hasSameFragments(IIndex index1, IIndex index2) {
+		return index1 instanceof CIndex && index2 instanceof CIndex
+				&& Arrays.equals(((CIndex) index1).getFragments(), ((CIndex) index2).getFragments());
+	}
+
+	/**
+	 * Updates the given AST of this translation unit for an edit confined to the body of a single
+	 * function, the AST must have been created with the given style and an index with the same
+	 * contents as the given one. The AST is modified in place, which is done only while no client
+	 * uses it and no cache holds it.
+	 */
+	private boolean reparseFunctionBody(IASTTranslationUnit ast, IIndex index, int style,
+			IProgressMonitor monitor) throws CoreException {
+		IIndexFile[] contextToHeader = getContextToHeader(index, style);
+		if (getConfigureWith(contextToHeader) != this)
+			return false;
+		IScannerInfo scanInfo= getScannerInfo((style & AST_SKIP_IF_NO_BUILD_INFO) == 0);
+		FileContent fileContent= FileContent.create(this);
+		ILanguage language= getLanguage();
+		if (scanInfo == null || fileContent == null || language != fLanguageOfContext
+				|| !(language instanceof AbstractCLikeLanguage)) {
+			return false;
+		}
+
+		final ASTTranslationUnit astImpl= (ASTTranslationUnit) ast;
+		try {
+			if (!astImpl.tryBeginExclusiveAccess(0))
+				return false;
+		} catch (InterruptedException e) {
+			return false;
+		}
+		try {
+			IncludeFileContentProvider crf= getIncludeFileContentProvider(style, index, language.getLinkageID(), null);
+			return ((AbstractCLikeLanguage) language).reparseFunctionBody(ast, fileContent, scanInfo, crf,
+					getParserOptions(style), createParserLogService(monitor));
+		} finally {
+			astImpl.endExclusiveAccess();
+		}
+	}
+
+	private static int getParserOptions(int style) {
 		int options= 0;
 		if ((style & AST_SKIP_FUNCTION_BODIES) != 0) {
 			options |= ILanguage.OPTION_SKIP_FUNCTION_BODIES;
@@ -871,19 +969,28 @@ public class TranslationUnit extends Openable implements ITranslationUnit {
 		if ((style & AST_PARSE_INACTIVE_CODE) != 0) {
 			options |= ILanguage.OPTION_PARSE_INACTIVE_CODE;
 		}
-		final IParserLogService log;
+		return options;
+	}
+
+	private static IParserLogService createParserLogService(IProgressMonitor monitor) {
 		if (monitor instanceof ICanceler) {
-			log= new ParserLogService(DebugLogConstants.PARSER, (ICanceler) monitor);
-		} else {
-			log= ParserUtil.getParserLogService();
+			return new ParserLogService(DebugLogConstants.PARSER, (ICanceler) monitor);
 		}
-		ASTTranslationUnit ast = (ASTTranslationUnit) ((AbstractLanguage) language).getASTTranslationUnit(
-				fileContent, scanInfo, crf, index, options, log);
-		if (ast == null)
-			return null;
-		ast.setOriginatingTranslationUnit(this);
-		ast.setBasedOnIncompleteIndex(incompleteIndex);
-		return ast;
+		return ParserUtil.getParserLogService();
+	}
+
+	/**
+	 * Returns the number of reconciles that updated the previous AST for an edit of a function body.
+	 */
+	public static long getFunctionBodyReparseCount() {
+		return sFunctionBodyReparses.get();
+	}
+
+	/**
+	 * Returns the number of reconciles that parsed the translation unit entirely.
+	 */
+	public static long getFullReparseCount() {
+		return sFullReparses.get();
 	}
 
 	private IncludeFileContentProvider getIncludeFileContentProvider(int style, IIndex index, int linkageID, IIndexFile[] contextToHeader) {
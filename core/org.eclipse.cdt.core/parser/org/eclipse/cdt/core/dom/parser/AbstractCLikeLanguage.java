@@ -39,6 +39,7 @@ import org.eclipse.cdt.core.parser.ParseError;
 import org.eclipse.cdt.core.parser.ParseError.ParseErrorKind;
 import org.eclipse.cdt.core.parser.ParserLanguage;
 import org.eclipse.cdt.core.parser.ParserMode;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.FunctionBodyReparser;
 import org.eclipse.cdt.internal.core.parser.scanner.CPreprocessor;
 import org.eclipse.cdt.internal.core.util.ICancelable;
 import org.eclipse.cdt.internal.core.util.ICanceler;
@@ -143,24 +144,9 @@ public abstract class AbstractCLikeLanguage extends AbstractLanguage implements
 		scanner.setComputeImageLocations((options & OPTION_NO_IMAGE_LOCATIONS) == 0);
 		scanner.setProcessInactiveCode((options & OPTION_PARSE_INACTIVE_CODE) != 0);
 
-		IParserSettings parserSettings= null;
-		if (scanInfo instanceof ExtendedScannerInfo) {
-			ExtendedScannerInfo extendedScannerInfo = (ExtendedScannerInfo) scanInfo;
-			parserSettings = extendedScannerInfo.getParserSettings();
-		}
-		final ISourceCodeParser parser= createParser(scanner, log, index, false, options, parserSettings);
-
-		// Make it possible to cancel parser by reconciler - http://bugs.eclipse.org/226682
-		ICanceler canceler= null;
-		if (log instanceof ICanceler) {
-			canceler= (ICanceler) log;
-			canceler.setCancelable(new ICancelable() {
-				@Override
-				public void cancel() {
-					scanner.cancel();
-					parser.cancel();
-				}});
-		}
+		final ISourceCodeParser parser= createParser(scanner, log, index, false, options,
+				getParserSettings(scanInfo));
+		final ICanceler canceler= setCancelable(log, scanner, parser);
 
 		try {
 			// Parse
@@ -186,6 +172,65 @@ public abstract class AbstractCLikeLanguage extends AbstractLanguage implements
 		}
 	}
 
+	/**
+	 * Updates the given AST, which has been created by this language, for a change of the source
+	 * that is confined to the body of a single function. The rest of the translation unit is
+	 * preprocessed but not parsed again. The caller needs exclusive access to the AST.
+	 *
+	 * @return whether the AST has been updated. Otherwise it is unchanged and a new AST needs to
+	 *     be created for the changed source.
+	 * @since 6.4
+	 * @noreference This method is not intended to be referenced by clients.
+	 */
+	public boolean reparseFunctionBody(IASTTranslationUnit ast, FileContent reader, IScannerInfo scanInfo,
+			IncludeFileContentProvider fileCreator, int options, IParserLogService log) throws CoreException {
+		final FunctionBodyReparser reparser= FunctionBodyReparser.create(ast, reader);
+		if (reparser == null)
+			return false;
+		final IScanner scanner= createScanner(reader, scanInfo, fileCreator, log);
+		scanner.setComputeImageLocations((options & OPTION_NO_IMAGE_LOCATIONS) == 0);
+		scanner.setProcessInactiveCode((options & OPTION_PARSE_INACTIVE_CODE) != 0);
+
+		final ISourceCodeParser parser= createParser(scanner, log, ast.getIndex(), false, options,
+				getParserSettings(scanInfo));
+		final ICanceler canceler= setCancelable(log, scanner, parser);
+		try {
+			return reparser.reparse(scanner, parser);
+		} catch (ParseError e) {
+			if (e.getErrorKind() != ParseErrorKind.TOO_MANY_TOKENS)
+				throw e;
+			return false;
+		} finally {
+			if (canceler != null) {
+				canceler.setCancelable(null);
+			}
+		}
+	}
+
+	private static IParserSettings getParserSettings(IScannerInfo scanInfo) {
+		if (scanInfo instanceof ExtendedScannerInfo) {
+			return ((ExtendedScannerInfo) scanInfo).getParserSettings();
+		}
+		return null;
+	}
+
+	/**
+	 * Makes it possible to cancel parser by reconciler - http://bugs.eclipse.org/226682
+	 */
+	private static ICanceler setCancelable(IParserLogService log, final IScanner scanner,
+			final ISourceCodeParser parser) {
+		if (!(log instanceof ICanceler))
+			return null;
+		ICanceler canceler= (ICanceler) log;
+		canceler.setCancelable(new ICancelable() {
+			@Override
+			public void cancel() {
+				scanner.cancel();
+				parser.cancel();
+			}});
+		return canceler;
+	}
+
 	@Deprecated
 	@Override
 	public IASTCompletionNode getCompletionNode(org.eclipse.cdt.core.parser.CodeReader reader,
@@ -101,6 +101,26 @@ public interface IIndex {
 	 */
 	public boolean hasWaitingReaders();
 
+	/**
+	 * Opens a read-only snapshot of the current state of the index. Queries on the snapshot
+	 * see the index as it was when the snapshot was opened, they do not block the indexer and
+	 * are not blocked by it. This is useful for long-running queries.
+	 * <p>
+	 * The snapshot is returned with a read lock that must be released. Nested read locks may
+	 * be obtained, the snapshot is closed when the last read lock is released and must not be
+	 * used afterwards.
+	 * <pre>
+	 * IIndex snapshot= index.openSnapshot();
+	 * try {
+	 *    ....
+	 * } finally {
+	 *    snapshot.releaseReadLock();
+	 * }
+	 * </pre>
+	 * @since 6.4
+	 */
+	public IIndex openSnapshot() throws InterruptedException, CoreException;
+
 	/**
 	 * Returns a timestamp of when the index was last written to. This can
 	 * be used to figure out whether information read from the index is
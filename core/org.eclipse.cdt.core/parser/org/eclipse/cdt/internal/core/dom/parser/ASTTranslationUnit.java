@@ -16,6 +16,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.IName;
@@ -84,6 +85,8 @@ public abstract class ASTTranslationUnit extends ASTNode implements IASTTranslat
 	private SizeofCalculator fSizeofCalculator;
 	/** The semaphore controlling exclusive access to the AST. */
 	private final Semaphore fSemaphore= new Semaphore(1);
+	/** The number of references from caches that hand out the AST to other clients. */
+	private final AtomicInteger fCacheReferences= new AtomicInteger();
 	private boolean fBasedOnIncompleteIndex;
 	private boolean fNodesOmitted;
 
@@ -453,13 +456,7 @@ public abstract class ASTTranslationUnit extends ASTNode implements IASTTranslat
 
 	@Override
 	public final void freeze() {
-		accept(new ASTGenericVisitor(true) {
-			@Override
-			protected int genericVisit(IASTNode node) {
-				((ASTNode) node).setIsFrozen();
-				return PROCESS_CONTINUE;
-			}
-		});
+		freeze(this);
 
 		if (IndexFileSet.sDEBUG && fIndexFileSet != null && fASTFileSet != null) {
 			long t = ((IndexFileSet) fIndexFileSet).getTimingContainsDeclarationNanos() +
@@ -470,6 +467,20 @@ public abstract class ASTTranslationUnit extends ASTNode implements IASTTranslat
 		}
 	}
 
+	/**
+	 * Makes the given node and its descendants immutable, used for nodes that are added to
+	 * the translation unit after it has been frozen.
+	 */
+	public final void freeze(IASTNode node) {
+		node.accept(new ASTGenericVisitor(true) {
+			@Override
+			protected int genericVisit(IASTNode n) {
+				((ASTNode) n).setIsFrozen();
+				return PROCESS_CONTINUE;
+			}
+		});
+	}
+
 	@Override
 	public ITranslationUnit getOriginatingTranslationUnit() {
 		return fOriginatingTranslationUnit;
@@ -527,6 +538,28 @@ public abstract class ASTTranslationUnit extends ASTNode implements IASTTranslat
 		fSemaphore.release();
 	}
 
+	/**
+	 * Records that a cache starts to hand out this AST to clients. While an AST is held by a
+	 * cache, clients may obtain it at any time and it must not be modified.
+	 */
+	public final void addCacheReference() {
+		fCacheReferences.incrementAndGet();
+	}
+
+	/**
+	 * Records that a cache no longer holds this AST.
+	 */
+	public final void removeCacheReference() {
+		fCacheReferences.decrementAndGet();
+	}
+
+	/**
+	 * Returns whether a cache holds this AST, such that it may be shared with other clients.
+	 */
+	public final boolean isCached() {
+		return fCacheReferences.get() > 0;
+	}
+
 	public SizeofCalculator getSizeofCalculator() {
 		if (fSizeofCalculator == null) {
 			fSizeofCalculator = new SizeofCalculator(this);
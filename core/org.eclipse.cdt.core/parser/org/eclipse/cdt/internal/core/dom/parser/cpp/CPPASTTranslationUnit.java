@@ -12,8 +12,8 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.dom.parser.cpp;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.cdt.core.dom.ILinkage;
 import org.eclipse.cdt.core.dom.ast.IASTName;
@@ -38,7 +38,9 @@ import org.eclipse.cdt.internal.core.dom.Linkage;
 import org.eclipse.cdt.internal.core.dom.parser.ASTTranslationUnit;
 import org.eclipse.cdt.internal.core.dom.parser.IASTAmbiguityParent;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.CPPInheritance.FinalOverriderMap;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.ConstexprCache;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.CPPVisitor;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.InstantiationMemo;
 import org.eclipse.cdt.internal.core.index.IIndexScope;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent;
 
@@ -52,7 +54,9 @@ public class CPPASTTranslationUnit extends ASTTranslationUnit implements ICPPAST
 	private CPPASTAmbiguityResolver fAmbiguityResolver;
 
 	// Caches.
-	private final Map<ICPPClassType, FinalOverriderMap> fFinalOverriderMapCache = new HashMap<>();
+	private final Map<ICPPClassType, FinalOverriderMap> fFinalOverriderMapCache = new ConcurrentHashMap<>();
+	private final InstantiationMemo fInstantiationMemo = new InstantiationMemo();
+	private final ConstexprCache fConstexprCache = new ConstexprCache();
 
 	public CPPASTTranslationUnit() {
 		fScopeMapper= new CPPScopeMapper(this);
@@ -206,8 +210,16 @@ public class CPPASTTranslationUnit extends ASTTranslationUnit implements ICPPAST
 
 	@Override
 	public void resolveAmbiguities() {
+		resolveAmbiguities(this);
+	}
+
+	/**
+	 * Resolves the ambiguities in the given node, which may be a subtree that replaced a part
+	 * of the translation unit after it was parsed.
+	 */
+	public void resolveAmbiguities(IASTNode node) {
 		fAmbiguityResolver = new CPPASTAmbiguityResolver();
-		accept(fAmbiguityResolver);
+		node.accept(fAmbiguityResolver);
 		fAmbiguityResolver = null;
 	}
 
@@ -227,6 +239,14 @@ public class CPPASTTranslationUnit extends ASTTranslationUnit implements ICPPAST
 		return fFinalOverriderMapCache;
 	}
 
+	public InstantiationMemo getInstantiationMemo() {
+		return fInstantiationMemo;
+	}
+
+	public ConstexprCache getConstexprCache() {
+		return fConstexprCache;
+	}
+
 	public void recordPartialSpecialization(ICPPClassTemplatePartialSpecialization indexSpec,
 			ICPPClassTemplatePartialSpecialization astSpec) {
 		fScopeMapper.recordPartialSpecialization(indexSpec, astSpec);
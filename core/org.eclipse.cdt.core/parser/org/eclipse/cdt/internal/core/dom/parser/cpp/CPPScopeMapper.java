@@ -12,10 +12,10 @@
 package org.eclipse.cdt.internal.core.dom.parser.cpp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.cdt.core.dom.IName;
 import org.eclipse.cdt.core.dom.ast.ASTVisitor;
@@ -50,6 +50,10 @@ import org.eclipse.cdt.internal.core.index.IIndexScope;
 /**
  * Utility to map index-scopes to scopes from the AST. This is important for
  * scopes that can be reopened, i.e. namespaces.
+ * <p>
+ * The mappings are computed lazily while names are resolved, possibly on multiple
+ * threads (see {@link org.eclipse.cdt.internal.core.pdom.PDOMWriter#setParallelNameResolution(boolean)}).
+ * They are kept in concurrent maps, a mapping computed twice is the same either way.
  */
 public class CPPScopeMapper {
 	/**
@@ -245,7 +249,9 @@ public class CPPScopeMapper {
 	/**
 	 * Collector for class definitions.
 	 */
-	private class Visitor extends ASTVisitor {
+	private static class Visitor extends ASTVisitor {
+		final CharArrayMap<IASTName[]> fClassNames= new CharArrayMap<>();
+
 		Visitor() {
 			shouldVisitDeclarations = true;
 		}
@@ -259,9 +265,9 @@ public class CPPScopeMapper {
 					final IASTName name = cts.getName();
 					final char[] nameChars = name.getLookupKey();
 					if (nameChars.length > 0) {
-						IASTName[] names= fClasses.get(nameChars);
+						IASTName[] names= fClassNames.get(nameChars);
 						names= ArrayUtil.append(IASTName.class, names, name);
-						fClasses.put(nameChars, names);
+						fClassNames.put(nameChars, names);
 					}
 					return PROCESS_CONTINUE;
 				}
@@ -274,14 +280,15 @@ public class CPPScopeMapper {
 		}
 	}
 
-	private final HashMap<IIndexScope, IScope> fMappedScopes= new HashMap<>();
-	private final HashMap<String, NamespaceScopeWrapper> fNamespaceWrappers= new HashMap<>();
-	private final Map<String, List<UsingDirectiveWrapper>> fPerName= new HashMap<>();
+	private final Map<IIndexScope, IScope> fMappedScopes= new ConcurrentHashMap<>();
+	private final Map<String, NamespaceScopeWrapper> fNamespaceWrappers= new ConcurrentHashMap<>();
+	// Filled before the names are resolved, the lists are not modified afterwards.
+	private final Map<String, List<UsingDirectiveWrapper>> fPerName= new ConcurrentHashMap<>();
 	private final CPPASTTranslationUnit fTu;
-	protected CharArrayMap<IASTName[]> fClasses;
+	private volatile CharArrayMap<IASTName[]> fClasses;
 	
 	private final Map<ICPPClassTemplatePartialSpecialization, ICPPClassTemplatePartialSpecialization> 
-			fPartialSpecs = new HashMap<>();
+			fPartialSpecs = new ConcurrentHashMap<>();
 
 	public CPPScopeMapper(CPPASTTranslationUnit tu) {
 		fTu= tu;
@@ -366,7 +373,11 @@ public class CPPScopeMapper {
 				if (result == null) {
 					result= wrapNamespaceScope((ICPPNamespaceScope) scope);
 				}
-				fMappedScopes.put(scope, result);
+				if (result != null) {
+					IScope other= fMappedScopes.putIfAbsent(scope, result);
+					if (other != null)
+						result= other;
+				}
 			}
 			return result;
 		}
@@ -379,7 +390,9 @@ public class CPPScopeMapper {
 			NamespaceScopeWrapper result= fNamespaceWrappers.get(rqname);
 			if (result == null) {
 				result= new NamespaceScopeWrapper(getCompositeNamespaceScope(scope));
-				fNamespaceWrappers.put(rqname, result);
+				NamespaceScopeWrapper other= fNamespaceWrappers.putIfAbsent(rqname, result);
+				if (other != null)
+					result= other;
 			}
 			return result;
 		} catch (DOMException e) {
@@ -413,11 +426,13 @@ public class CPPScopeMapper {
 			return type;
 		}
 
-		if (fClasses == null) {
-			fClasses= new CharArrayMap<>();
-			fTu.accept(new Visitor());
+		CharArrayMap<IASTName[]> classes= fClasses;
+		if (classes == null) {
+			Visitor visitor= new Visitor();
+			fTu.accept(visitor);
+			fClasses= classes= visitor.fClassNames;
 		}
-		IASTName[] names= fClasses.get(type.getNameCharArray());
+		IASTName[] names= classes.get(type.getNameCharArray());
 		if (names != null) {
 			for (IASTName name : names) {
 				if (name == null)
@@ -91,7 +91,7 @@ public abstract class CPPTemplateDefinition extends PlatformObject implements IC
 	}
 
 	@Override
-	public final void addInstance(ICPPTemplateArgument[] arguments, ICPPTemplateInstance instance) {
+	public synchronized final void addInstance(ICPPTemplateArgument[] arguments, ICPPTemplateInstance instance) {
 		if (instances == null)
 			instances = new ObjectMap(2);
 		String key= ASTTypeUtil.getArgumentListString(arguments, true);
@@ -100,11 +100,13 @@ public abstract class CPPTemplateDefinition extends PlatformObject implements IC
 
 	@Override
 	public final ICPPTemplateInstance getInstance(ICPPTemplateArgument[] arguments) {
-		if (instances != null) {
-			String key= ASTTypeUtil.getArgumentListString(arguments, true);
-			ICPPTemplateInstance cand = (ICPPTemplateInstance) instances.get(key);
-			if (cand != null)
-				return cand;
+		synchronized (this) {
+			if (instances != null) {
+				String key= ASTTypeUtil.getArgumentListString(arguments, true);
+				ICPPTemplateInstance cand = (ICPPTemplateInstance) instances.get(key);
+				if (cand != null)
+					return cand;
+			}
 		}
 
 		final ICPPClassTemplate ib = getIndexBinding();
@@ -141,7 +143,7 @@ public abstract class CPPTemplateDefinition extends PlatformObject implements IC
 	}
 
 	@Override
-	public ICPPTemplateInstance[] getAllInstances() {
+	public synchronized ICPPTemplateInstance[] getAllInstances() {
 		if (instances != null) {
 			ICPPTemplateInstance[] result= new ICPPTemplateInstance[instances.size()];
 			for (int i= 0; i < instances.size(); i++) {
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.dom.parser.cpp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.core.dom.ast.ASTGenericVisitor;
+import org.eclipse.cdt.core.dom.ast.ASTVisitor;
+import org.eclipse.cdt.core.dom.ast.IASTCompositeTypeSpecifier;
+import org.eclipse.cdt.core.dom.ast.IASTCompoundStatement;
+import org.eclipse.cdt.core.dom.ast.IASTDeclSpecifier;
+import org.eclipse.cdt.core.dom.ast.IASTDeclarator;
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTFunctionDeclarator;
+import org.eclipse.cdt.core.dom.ast.IASTFunctionDefinition;
+import org.eclipse.cdt.core.dom.ast.IASTLabelStatement;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTSimpleDeclSpecifier;
+import org.eclipse.cdt.core.dom.ast.IASTSimpleDeclaration;
+import org.eclipse.cdt.core.dom.ast.IASTStatement;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTDeclSpecifier;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTElaboratedTypeSpecifier;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTFunctionDeclarator;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTFunctionWithTryBlock;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTTemplateDeclaration;
+import org.eclipse.cdt.core.dom.parser.ISourceCodeParser;
+import org.eclipse.cdt.core.parser.EndOfFileException;
+import org.eclipse.cdt.core.parser.FileContent;
+import org.eclipse.cdt.core.parser.IScanner;
+import org.eclipse.cdt.internal.core.dom.parser.ASTAmbiguousNode;
+import org.eclipse.cdt.internal.core.dom.parser.ASTNode;
+import org.eclipse.cdt.internal.core.dom.parser.ASTQueries;
+import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent;
+import org.eclipse.cdt.internal.core.parser.scanner.LocationMap;
+
+/**
+ * Updates the AST of a translation unit for an edit that is confined to the body of a single
+ * function, such that the rest of the translation unit is not parsed again. The new source is
+ * preprocessed entirely, which tells whether the edit affects the rest of the translation unit,
+ * but only the tokens of the body are parsed. The new body replaces the old one and the nodes
+ * behind it are shifted.
+ * <p>
+ * Edits that may change bindings outside of the body are not handled. The function must not be
+ * a template, a member of a template, constexpr, have a deduced return type or a function try
+ * block, and the bodies must contain neither labels nor elaborated type specifiers. Neither may
+ * they contain extern, friend or function declarations that are not members of local classes, these
+ * add declarations to bindings of the enclosing namespace, which would keep the nodes of the old body.
+ */
+public final class FunctionBodyReparser {
+	private final CPPASTTranslationUnit fAST;
+	private final LocationMap fOldMap;
+	private final CPPASTFunctionDefinition fFunction;
+	private final IASTCompoundStatement fOldBody;
+	private final int fChangeOffset;
+	private final int fOldChangeEndOffset;
+	private final int fNewChangeEndOffset;
+	private final int fBodyFileOffset;
+	private final int fOldBodyFileEndOffset;
+
+	/**
+	 * Checks whether the source of the given translation unit was changed to the new source within
+	 * the body of a function that can be reparsed on its own. An AST held by a cache is not
+	 * updated, a new one has to be created instead.
+	 *
+	 * @return the reparser for the function body, or <code>null</code> if the translation unit
+	 *     needs to be parsed again.
+	 */
+	public static FunctionBodyReparser create(IASTTranslationUnit ast, FileContent newContent) {
+		if (!(ast instanceof CPPASTTranslationUnit) || !(newContent instanceof InternalFileContent))
+			return null;
+		// Clients may obtain an AST from a cache at any time, it must not change under them.
+		if (((CPPASTTranslationUnit) ast).isCached())
+			return null;
+		final LocationMap oldMap = ast.getAdapter(LocationMap.class);
+		final AbstractCharArray newSource = ((InternalFileContent) newContent).getSource();
+		if (oldMap == null || newSource == null)
+			return null;
+
+		// Compute the changed region from the common prefix and suffix.
+		final AbstractCharArray oldSource = oldMap.getTranslationUnitSource();
+		int oldEnd = oldSource.getLength();
+		int newEnd = newSource.getLength();
+		final int minLength = Math.min(oldEnd, newEnd);
+		int start = 0;
+		while (start < minLength && oldSource.get(start) == newSource.get(start)) {
+			start++;
+		}
+		if (start == oldEnd && start == newEnd)
+			return null;
+		while (oldEnd > start && newEnd > start && oldSource.get(oldEnd - 1) == newSource.get(newEnd - 1)) {
+			oldEnd--;
+			newEnd--;
+		}
+
+		IASTNode node = ast.getNodeSelector(null).findEnclosingNode(start, oldEnd - start);
+		while (node != null && !(node instanceof IASTFunctionDefinition)) {
+			node = node.getParent();
+		}
+		if (!(node instanceof CPPASTFunctionDefinition))
+			return null;
+		final CPPASTFunctionDefinition fdef = (CPPASTFunctionDefinition) node;
+		final IASTStatement body = fdef.getBody();
+		if (!(body instanceof IASTCompoundStatement) || !canReparseBody(fdef) || !canReplace(body))
+			return null;
+
+		// The change has to be between the braces of the body, which must not stem from macros.
+		final String path = oldMap.getTranslationUnitPath();
+		final IASTFileLocation loc = body.getFileLocation();
+		if (loc == null || !path.equals(loc.getFileName()))
+			return null;
+		final int bodyOffset = loc.getNodeOffset();
+		final int bodyEndOffset = bodyOffset + loc.getNodeLength();
+		if (start <= bodyOffset || oldEnd >= bodyEndOffset)
+			return null;
+		final ASTNode astBody = (ASTNode) body;
+		if (oldSource.get(bodyOffset) != '{' || oldSource.get(bodyEndOffset - 1) != '}'
+				|| oldMap.getSequenceNumberForFileOffset(path, bodyOffset) != astBody.getOffset()
+				|| oldMap.getSequenceNumberForFileOffset(path, bodyEndOffset)
+						!= astBody.getOffset() + astBody.getLength()) {
+			return null;
+		}
+		return new FunctionBodyReparser((CPPASTTranslationUnit) ast, oldMap, fdef,
+				(IASTCompoundStatement) body, start, oldEnd, newEnd, bodyOffset, bodyEndOffset);
+	}
+
+	private FunctionBodyReparser(CPPASTTranslationUnit ast, LocationMap oldMap, CPPASTFunctionDefinition fdef,
+			IASTCompoundStatement oldBody, int changeOffset, int oldChangeEndOffset, int newChangeEndOffset,
+			int bodyFileOffset, int oldBodyFileEndOffset) {
+		fAST = ast;
+		fOldMap = oldMap;
+		fFunction = fdef;
+		fOldBody = oldBody;
+		fChangeOffset = changeOffset;
+		fOldChangeEndOffset = oldChangeEndOffset;
+		fNewChangeEndOffset = newChangeEndOffset;
+		fBodyFileOffset = bodyFileOffset;
+		fOldBodyFileEndOffset = oldBodyFileEndOffset;
+	}
+
+	/**
+	 * Checks whether the body of the given function can be replaced without affecting anything
+	 * outside of the body.
+	 */
+	private static boolean canReparseBody(IASTFunctionDefinition fdef) {
+		if (fdef instanceof ICPPASTFunctionWithTryBlock)
+			return false;
+		for (IASTNode node = fdef.getParent(); node != null; node = node.getParent()) {
+			if (node instanceof ICPPASTTemplateDeclaration)
+				return false;
+		}
+		final IASTDeclSpecifier declSpec = fdef.getDeclSpecifier();
+		if (declSpec instanceof ICPPASTDeclSpecifier && ((ICPPASTDeclSpecifier) declSpec).isConstexpr())
+			return false;
+		if (declSpec instanceof IASTSimpleDeclSpecifier) {
+			// The return type is deduced from the body, unless there is a trailing return type.
+			final int type = ((IASTSimpleDeclSpecifier) declSpec).getType();
+			if (type == IASTSimpleDeclSpecifier.t_auto || type == IASTSimpleDeclSpecifier.t_decltype_auto) {
+				final IASTDeclarator dtor = ASTQueries.findTypeRelevantDeclarator(fdef.getDeclarator());
+				if (!(dtor instanceof ICPPASTFunctionDeclarator)
+						|| ((ICPPASTFunctionDeclarator) dtor).getTrailingReturnType() == null) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the given body lacks labels, which are kept in the scope of the function,
+	 * elaborated type specifiers, which may declare types in enclosing scopes, and declarations
+	 * that redeclare entities of enclosing namespaces. All alternatives of ambiguous nodes are
+	 * checked, such that the body can be checked before its ambiguities are resolved.
+	 */
+	private static boolean canReplace(IASTNode body) {
+		final boolean[] result = { true };
+		body.accept(new ASTVisitor() {
+			{
+				includeInactiveNodes = true;
+				shouldVisitAmbiguousNodes = true;
+				shouldVisitDeclSpecifiers = true;
+				shouldVisitDeclarators = true;
+				shouldVisitStatements = true;
+			}
+
+			@Override
+			public int visit(ASTAmbiguousNode node) {
+				for (IASTNode alternative : node.getNodes()) {
+					if (!alternative.accept(this))
+						return PROCESS_ABORT;
+				}
+				return PROCESS_SKIP;
+			}
+
+			@Override
+			public int visit(IASTDeclSpecifier declSpec) {
+				if (declSpec instanceof ICPPASTElaboratedTypeSpecifier
+						|| declSpec.getStorageClass() == IASTDeclSpecifier.sc_extern
+						|| (declSpec instanceof ICPPASTDeclSpecifier && ((ICPPASTDeclSpecifier) declSpec).isFriend())) {
+					result[0] = false;
+					return PROCESS_ABORT;
+				}
+				return PROCESS_CONTINUE;
+			}
+
+			@Override
+			public int visit(IASTDeclarator declarator) {
+				if (declarator instanceof IASTFunctionDeclarator && isFunctionDeclaration(declarator)) {
+					result[0] = false;
+					return PROCESS_ABORT;
+				}
+				return PROCESS_CONTINUE;
+			}
+
+			@Override
+			public int visit(IASTStatement statement) {
+				if (statement instanceof IASTLabelStatement) {
+					result[0] = false;
+					return PROCESS_ABORT;
+				}
+				return PROCESS_CONTINUE;
+			}
+		});
+		return result[0];
+	}
+
+	/**
+	 * Checks whether the given function declarator declares a function at block scope, rather
+	 * than a pointer to a function, a parameter, a type or a member of a local class.
+	 */
+	private static boolean isFunctionDeclaration(IASTDeclarator declarator) {
+		if (ASTQueries.findTypeRelevantDeclarator(declarator) != declarator)
+			return false;
+		final IASTNode declaration = ASTQueries.findOutermostDeclarator(declarator).getParent();
+		if (!(declaration instanceof IASTSimpleDeclaration))
+			return false;
+		final IASTDeclSpecifier declSpec = ((IASTSimpleDeclaration) declaration).getDeclSpecifier();
+		return (declSpec == null || declSpec.getStorageClass() != IASTDeclSpecifier.sc_typedef)
+				&& !(declaration.getParent() instanceof IASTCompositeTypeSpecifier);
+	}
+
+	/**
+	 * Parses the new body and replaces the old one with it, provided the preprocessed translation
+	 * unit shows that the change is confined to the body. The AST is modified in place, the caller
+	 * needs exclusive access to it and must make sure that no other client holds it.
+	 *
+	 * @param scanner the scanner for the new source of the translation unit, not yet used.
+	 * @param parser the parser using the scanner.
+	 * @return whether the body has been replaced, otherwise the AST is unchanged.
+	 */
+	public boolean reparse(IScanner scanner, ISourceCodeParser parser) {
+		if (!(parser instanceof GNUCPPSourceParser) || !(scanner.getLocationResolver() instanceof LocationMap))
+			return false;
+		final LocationMap newMap = (LocationMap) scanner.getLocationResolver();
+		// The preprocessor nodes are created for the translation unit they will belong to.
+		newMap.setRootNode(fAST);
+		final int oldLength = fAST.getLength();
+		final int newLength;
+		final IASTCompoundStatement newBody;
+		try {
+			newBody = ((GNUCPPSourceParser) parser).functionBody(fAST, ((ASTNode) fOldBody).getOffset());
+			if (newBody == null)
+				return false;
+			try {
+				// Preprocess the rest of the translation unit.
+				while (true) {
+					scanner.nextToken();
+				}
+			} catch (EndOfFileException e) {
+			}
+			newLength = fAST.getLength();
+		} finally {
+			// The preprocessor has set the length of the translation unit.
+			fAST.setLength(oldLength);
+		}
+
+		final ASTNode oldBodyNode = (ASTNode) fOldBody;
+		final ASTNode newBodyNode = (ASTNode) newBody;
+		final int oldBodyEnd = oldBodyNode.getOffset() + oldBodyNode.getLength();
+		final int sequenceShift = newBodyNode.getOffset() + newBodyNode.getLength() - oldBodyEnd;
+		final IASTFileLocation loc = newMap.getMappedFileLocation(newBodyNode.getOffset(), newBodyNode.getLength());
+		if (loc == null || !newMap.getTranslationUnitPath().equals(loc.getFileName())
+				|| loc.getNodeOffset() != fBodyFileOffset
+				|| loc.getNodeOffset() + loc.getNodeLength()
+						!= fOldBodyFileEndOffset + fNewChangeEndOffset - fOldChangeEndOffset
+				|| newLength != oldLength + sequenceShift
+				|| !newMap.isConfinedChangeOf(fOldMap, fChangeOffset, fOldChangeEndOffset, fNewChangeEndOffset,
+						sequenceShift)
+				|| !canReplace(newBody)) {
+			return false;
+		}
+
+		// Collect the nodes first, the ones that are created lazily while visiting are based on
+		// the current offsets.
+		final List<ASTNode> nodes = new ArrayList<>();
+		fAST.accept(new ASTGenericVisitor(true) {
+			{
+				includeInactiveNodes = true;
+				shouldVisitImplicitNames = true;
+				shouldVisitImplicitNameAlternates = true;
+				shouldVisitImplicitDestructorNames = true;
+			}
+
+			@Override
+			protected int genericVisit(IASTNode node) {
+				if (node == fOldBody)
+					return PROCESS_SKIP;
+				nodes.add((ASTNode) node);
+				return PROCESS_CONTINUE;
+			}
+		});
+		for (ASTNode node : nodes) {
+			final int offset = node.getOffset();
+			if (offset >= oldBodyEnd) {
+				node.setOffset(offset + sequenceShift);
+			} else if (offset + node.getLength() >= oldBodyEnd) {
+				// The node encloses the body.
+				node.setLength(node.getLength() + sequenceShift);
+			} else {
+				// Discard the locations computed with the old location map.
+				node.setOffset(offset);
+			}
+		}
+
+		fFunction.replace(fOldBody, newBody);
+		fAST.setLocationResolver(newMap);
+		// The memoized instantiations are keyed by the positions of declarations, which have
+		// been shifted, and the constant values may depend on the old body.
+		fAST.getInstantiationMemo().clear();
+		fAST.getConstexprCache().clear();
+		fAST.resolveAmbiguities(newBody);
+		fAST.freeze(newBody);
+		return true;
+	}
+}
@@ -5288,6 +5288,34 @@ public class GNUCPPSourceParser extends AbstractGNUSourceCodeParser {
 		}
 	}
 
+	/**
+	 * Parses the body of a function definition of an existing translation unit, used to reparse
+	 * a single function body after it has been edited. The tokens before the body are skipped.
+	 * Ambiguities in the body are not resolved.
+	 *
+	 * @param tu the translation unit the new body is created for.
+	 * @param offset the sequence number of the opening brace of the body.
+	 * @return the new body, or <code>null</code> if there is no body at the given offset or it
+	 *     cannot be parsed.
+	 */
+	public IASTCompoundStatement functionBody(ICPPASTTranslationUnit tu, int offset) {
+		translationUnit = tu;
+		try {
+			while (LA(1).getOffset() < offset) {
+				consume();
+			}
+			if (LA(1).getOffset() != offset || LT(1) != IToken.tLBRACE)
+				return null;
+			return functionBody();
+		} catch (EndOfFileException e) {
+			return null;
+		} catch (BacktrackException e) {
+			return null;
+		} finally {
+			translationUnit = null;
+		}
+	}
+
 	protected IASTStatement parseSwitchStatement() throws EndOfFileException, BacktrackException {
 		int startOffset;
 		startOffset = consume().getOffset();
@@ -2022,6 +2022,24 @@ public class CPPSemantics {
 		}
 		return pointOfDecl < pointOfRef;
 	}
+
+	/**
+	 * Returns the offset of the namespace-scope declaration containing the given point, or -1.
+	 * Name lookups from points within the same such declaration find the same declarations,
+	 * such that results depending on name lookup can be memoized per declaration.
+	 */
+	static int getLookupPosition(IASTNode point) {
+		IASTNode node = point;
+		while (node != null) {
+			IASTNode parent = node.getParent();
+			if (parent instanceof IASTTranslationUnit || parent instanceof ICPPASTNamespaceDefinition
+					|| parent instanceof ICPPASTLinkageSpecification) {
+				return node instanceof ASTNode ? ((ASTNode) node).getOffset() : -1;
+			}
+			node = parent;
+		}
+		return -1;
+	}
 	
 	/**
 	 * Returns the point of declaration for the given AST node. The point of declaration is a node offset
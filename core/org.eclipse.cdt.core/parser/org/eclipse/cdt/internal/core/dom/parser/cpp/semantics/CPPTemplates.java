@@ -236,6 +236,14 @@ public class CPPTemplates {
 			return new HashSet<>();
 		}
 	};
+	// Counts how often the guards above have cut off an instantiation. Results computed while that
+	// happened depend on the enclosing instantiations and are not memoized.
+	private static final ThreadLocal<int[]> fRecursionCutoffs = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
 
 	/**
 	 * Instantiates a class template with the given arguments. May return {@code null}.
@@ -417,10 +425,12 @@ public class CPPTemplates {
 			ICPPTemplateArgument[] arguments, CPPTemplateParameterMap tpMap, IASTNode point) throws DOMException {
 		ICPPTemplateInstance instance= getInstance(template, arguments, false);
 		if (instance != null) {
+			InstantiationMemo.instanceReused();
 			return instance;
 		}
 
 		IBinding owner= template.getOwner();
+		InstantiationMemo.instanceCreated();
 		instance = createInstance(owner, template, tpMap, arguments, point);
 		if (instance instanceof ICPPFunction && SemanticUtil.isValidType(((ICPPFunction) instance).getType())) {
 			addInstance(template, arguments, instance);
@@ -435,8 +445,10 @@ public class CPPTemplates {
 			ICPPTemplateArgument[] args, boolean isDef, CPPTemplateParameterMap tpMap, IASTNode point)
 			throws DOMException {
 		ICPPTemplateInstance instance= getInstance(partialSpec, args, isDef);
-		if (instance != null)
+		if (instance != null) {
+			InstantiationMemo.instanceReused();
 			return instance;
+		}
 
 		if (tpMap == null) {
 			tpMap = new CPPTemplateParameterMap(args.length);
@@ -446,6 +458,7 @@ public class CPPTemplates {
 			}
 		}
 
+		InstantiationMemo.instanceCreated();
 		instance= createInstance(partialSpec.getOwner(), partialSpec, tpMap, args, point);
 		addInstance(partialSpec, args, instance);
 		return instance;
@@ -460,10 +473,12 @@ public class CPPTemplates {
 		assert !(template instanceof ICPPClassTemplatePartialSpecialization);
 		ICPPTemplateInstance instance= getInstance(template, arguments, isDef);
 		if (instance != null) {
+			InstantiationMemo.instanceReused();
 			return instance;
 		}
 
 		IBinding owner= template.getOwner();
+		InstantiationMemo.instanceCreated();
 		instance = createInstance(owner, template, context.getParameterMap(), arguments, context.getPoint());
 		addInstance(template, arguments, instance);
 		return instance;
@@ -1023,6 +1038,7 @@ public class CPPTemplates {
 		// Guard against infinite recursion during template instantiation with a depth limit.
 		int instantiationDepth = fTemplateInstantiationDepth.get();
 		if (instantiationDepth > TEMPLATE_INSTANTIATION_DEPTH_LIMIT) {
+			fRecursionCutoffs.get()[0]++;
 			return RecursionResolvingBinding.createFor(decl, point);
 		}
 		// Increment the instantiation depth for the duration of this call.
@@ -1489,11 +1505,37 @@ public class CPPTemplates {
 			return type;
 
 		TypeInstantiationRequest instantiationRequest = new TypeInstantiationRequest(type, context);
+		// Only the resolution of dependent names is worth memoizing.
+		InstantiationMemo memo = null;
+		if (type instanceof ICPPUnknownBinding || type instanceof TypeOfUnknownMember) {
+			memo = InstantiationMemo.get(context.getPoint());
+			if (memo != null) {
+				IType result = memo.getInstantiatedType(instantiationRequest);
+				if (result != null)
+					return result;
+			}
+		}
 		if (!instantiationsInProgress.get().add(instantiationRequest)) {
+			fRecursionCutoffs.get()[0]++;
 			return type instanceof ICPPFunctionType ?
 					ProblemFunctionType.RECURSION_IN_LOOKUP : ProblemType.RECURSION_IN_LOOKUP;
 		}
 
+		final int[] cutoffs = memo != null ? fRecursionCutoffs.get() : null;
+		final int cutoffCount = cutoffs != null ? cutoffs[0] : 0;
+		try {
+			IType result = instantiateTypeImpl(type, context);
+			if (memo != null && result != null && cutoffs[0] == cutoffCount
+					&& SemanticUtil.isValidType(result)) {
+				memo.putInstantiatedType(instantiationRequest, result);
+			}
+			return result;
+		} finally {
+			instantiationsInProgress.get().remove(instantiationRequest);
+		}
+	}
+
+	private static IType instantiateTypeImpl(final IType type, InstantiationContext context) {
 		try {
 			if (type instanceof ICPPFunctionType) {
 				final ICPPFunctionType ft = (ICPPFunctionType) type;
@@ -1636,8 +1678,6 @@ public class CPPTemplates {
 			return type;
 		} catch (DOMException e) {
 			return e.getProblem();
-		} finally {
-			instantiationsInProgress.get().remove(instantiationRequest);
 		}
 	}
 
@@ -2267,6 +2307,27 @@ public class CPPTemplates {
 			argCats= argCats.subList(1, argCats.size());
 		}
 
+		InstantiationMemo memo = InstantiationMemo.get(point);
+		Object key = null;
+		if (memo != null) {
+			key = InstantiationMemo.createFunctionCallKey(template, tmplArgs, fnArgs, argCats, point);
+			if (key != null) {
+				ICPPFunction[] result = memo.getFunctionForCall(key);
+				if (result != null)
+					return result[0];
+			}
+		}
+		final int[] cutoffs = key != null ? fRecursionCutoffs.get() : null;
+		final int cutoffCount = cutoffs != null ? cutoffs[0] : 0;
+		ICPPFunction result = deduceAndInstantiateForFunctionCall(template, tmplArgs, fnArgs, argCats, point);
+		if (key != null && cutoffs[0] == cutoffCount) {
+			memo.putFunctionForCall(key, result);
+		}
+		return result;
+	}
+
+	private static ICPPFunction deduceAndInstantiateForFunctionCall(ICPPFunctionTemplate template,
+			ICPPTemplateArgument[] tmplArgs, List<IType> fnArgs, List<ValueCategory> argCats, IASTNode point) {
 		CPPTemplateParameterMap map= new CPPTemplateParameterMap(fnArgs.size());
 		try {
 			ICPPTemplateArgument[] args=
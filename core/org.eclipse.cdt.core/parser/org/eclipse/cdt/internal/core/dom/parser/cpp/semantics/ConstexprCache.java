@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.dom.parser.cpp.semantics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.IValue;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPFunction;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPSpecialization;
+import org.eclipse.cdt.internal.core.dom.parser.CStringValue;
+import org.eclipse.cdt.internal.core.dom.parser.CompositeValue;
+import org.eclipse.cdt.internal.core.dom.parser.FloatingPointValue;
+import org.eclipse.cdt.internal.core.dom.parser.IntegralValue;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTTranslationUnit;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPFunction;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPEvaluation;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPExecution;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Speeds up constant evaluation within a translation unit.
+ * <p>
+ * The execution of the body of a constexpr function is the plan for evaluating calls of the
+ * function. It is computed once per function rather than for every call, which saves converting
+ * the statements of the AST, loading them from the index, or instantiating them for a
+ * specialization. Calls of functions that take all of their arguments by value and have no
+ * implied object are memoized by the values of the arguments.
+ * <p>
+ * A call served from the memo costs only the step of the call expression, like any other
+ * expression that is evaluated without executing a function body. The step limit guards against
+ * evaluations that do not terminate or take too long to compute, the memo does not repeat the
+ * work it saves. Recursions that call the same function with the same arguments many times, like
+ * a naive Fibonacci function, can therefore be evaluated even if they would exceed the limit
+ * without the cache.
+ * <p>
+ * Name lookups depend on the point of instantiation, the executions of specializations and the
+ * memoized calls are therefore kept per namespace-scope declaration containing the point.
+ * <p>
+ * The cache is kept in the AST. It can be disabled to compare against plain evaluation.
+ */
+public final class ConstexprCache {
+	private static final int MAX_MEMOIZED_CALLS = 10000;
+	/** Stands for a function without an execution. */
+	private static final Object NO_EXECUTION = new Object();
+
+	/**
+	 * Returns the cache of the translation unit containing the given point, or <code>null</code>
+	 * if there is none or caching is disabled for the translation unit.
+	 */
+	public static ConstexprCache get(IASTNode point) {
+		if (point == null)
+			return null;
+		IASTTranslationUnit tu = point.getTranslationUnit();
+		if (tu instanceof CPPASTTranslationUnit) {
+			ConstexprCache cache = ((CPPASTTranslationUnit) tu).getConstexprCache();
+			if (cache.isEnabled())
+				return cache;
+		}
+		return null;
+	}
+
+	private final Map<CallKey, Object> fExecutions = new HashMap<>();
+	private final Map<Object, ICPPEvaluation> fCalls =
+			new LinkedHashMap<Object, ICPPEvaluation>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, ICPPEvaluation> eldest) {
+			return size() > MAX_MEMOIZED_CALLS;
+		}
+	};
+	private volatile boolean fEnabled = true;
+	private long fHits;
+	private long fMisses;
+
+	/**
+	 * Enables or disables the cache, intended for comparing against plain evaluation.
+	 */
+	public void setEnabled(boolean enabled) {
+		if (!enabled)
+			clear();
+		fEnabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return fEnabled;
+	}
+
+	/**
+	 * Returns the execution of the body of the given function, computing it on first use.
+	 */
+	public ICPPExecution getFunctionBodyExecution(ICPPFunction function, IASTNode point) {
+		// The body of a specialization is instantiated at the point of instantiation.
+		final int position = function instanceof ICPPSpecialization ? CPPSemantics.getLookupPosition(point) : -1;
+		final CallKey key = new CallKey(function, position, ""); //$NON-NLS-1$
+		Object exec;
+		synchronized (this) {
+			exec = fExecutions.get(key);
+		}
+		if (exec == null) {
+			exec = CPPFunction.getFunctionBodyExecution(function, point);
+			if (exec == null)
+				exec = NO_EXECUTION;
+			synchronized (this) {
+				fExecutions.put(key, exec);
+			}
+		}
+		return exec == NO_EXECUTION ? null : (ICPPExecution) exec;
+	}
+
+	/**
+	 * Returns a copy of the memoized result of a call, or <code>null</code>.
+	 */
+	ICPPEvaluation getCallResult(Object key, IASTNode point) {
+		ICPPEvaluation result;
+		synchronized (this) {
+			result = fCalls.get(key);
+			if (result == null) {
+				fMisses++;
+				return null;
+			}
+			fHits++;
+		}
+		return copy(result, point);
+	}
+
+	/**
+	 * Memoizes the result of a call, if it is a constant that can be copied.
+	 */
+	void putCallResult(Object key, ICPPEvaluation result, IASTNode point) {
+		if (!(result instanceof EvalFixed) || result == EvalFixed.INCOMPLETE
+				|| !isPlainValue(result.getValue(point))) {
+			return;
+		}
+		result = copy(result, point);
+		synchronized (this) {
+			fCalls.put(key, result);
+		}
+	}
+
+	private static ICPPEvaluation copy(ICPPEvaluation eval, IASTNode point) {
+		return new EvalFixed(eval.getType(point), eval.getValueCategory(point), eval.getValue(point).clone());
+	}
+
+	/**
+	 * Creates the key for memoizing a call of the given function, or returns <code>null</code>
+	 * if the arguments are not all constants that can be compared by their signatures.
+	 *
+	 * @param arguments the evaluation of the function followed by the evaluations of the arguments
+	 */
+	static Object createCallKey(ICPPFunction function, ICPPEvaluation[] arguments, IASTNode point) {
+		SignatureBuilder builder = new SignatureBuilder();
+		try {
+			for (int i = 1; i < arguments.length; i++) {
+				ICPPEvaluation arg = arguments[i];
+				if (!(arg instanceof EvalFixed))
+					return null;
+				IValue value = arg.getValue(point);
+				if (!isPlainValue(value))
+					return null;
+				builder.marshalType(arg.getType(point));
+				builder.marshalValue(value);
+			}
+		} catch (CoreException e) {
+			return null;
+		}
+		return new CallKey(function, CPPSemantics.getLookupPosition(point), builder.toString());
+	}
+
+	/**
+	 * Checks whether the given value is a constant that does not refer to any object.
+	 */
+	private static boolean isPlainValue(IValue value) {
+		if (value instanceof IntegralValue)
+			return value.numberValue() != null;
+		if (value instanceof FloatingPointValue || value instanceof CStringValue)
+			return true;
+		if (value instanceof CompositeValue) {
+			for (int i = 0; i < value.numberOfSubValues(); i++) {
+				ICPPEvaluation subValue = value.getSubValue(i);
+				if (!(subValue instanceof EvalFixed) || subValue == EvalFixed.INCOMPLETE
+						|| !isPlainValue(subValue.getValue(null))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Discards the executions and memoized calls, needed when the AST is modified.
+	 */
+	public synchronized void clear() {
+		fExecutions.clear();
+		fCalls.clear();
+	}
+
+	public synchronized long getHitCount() {
+		return fHits;
+	}
+
+	public synchronized long getMissCount() {
+		return fMisses;
+	}
+
+	private static final class CallKey {
+		private final ICPPFunction fFunction;
+		private final int fPosition;
+		private final String fArguments;
+
+		CallKey(ICPPFunction function, int position, String arguments) {
+			fFunction = function;
+			fPosition = position;
+			fArguments = arguments;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * fFunction.hashCode() + fPosition) + fArguments.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CallKey))
+				return false;
+			CallKey other = (CallKey) obj;
+			return fPosition == other.fPosition && fFunction.equals(other.fFunction)
+					&& fArguments.equals(other.fArguments);
+		}
+	}
+}
@@ -300,9 +300,41 @@ public final class EvalFunctionCall extends CPPDependentEvaluation {
 		if (!function.isConstexpr())
 			return EvalFixed.INCOMPLETE;
 
+		ConstexprCache cache = ConstexprCache.get(context.getPoint());
+		Object key = null;
+		if (cache != null && isMemoizable(function)) {
+			key = ConstexprCache.createCallKey(function, fArguments, context.getPoint());
+			if (key != null) {
+				ICPPEvaluation result = cache.getCallResult(key, context.getPoint());
+				if (result != null)
+					return result;
+			}
+		}
+		ICPPEvaluation result = executeFunctionBody(function, cache, context);
+		if (key != null)
+			cache.putCallResult(key, result, context.getPoint());
+		return result;
+	}
+
+	/**
+	 * Checks whether the result of calling the given function depends on nothing but the values
+	 * of the arguments.
+	 */
+	private boolean isMemoizable(ICPPFunction function) {
+		if (function instanceof ICPPMethod || getImplicitThis() != null)
+			return false;
+		for (ICPPParameter param : function.getParameters()) {
+			if (isReference(param) || param.isParameterPack() || isSpecializedParameterPack(param))
+				return false;
+		}
+		return true;
+	}
+
+	private ICPPEvaluation executeFunctionBody(ICPPFunction function, ConstexprCache cache,
+			ConstexprEvaluationContext context) {
 		ActivationRecord record = createActivationRecord(function.getParameters(), fArguments, 
 				getImplicitThis(), context.getPoint());
-		ICPPExecution bodyExec = CPPFunction.getFunctionBodyExecution(function, context.getPoint());
+		ICPPExecution bodyExec = getFunctionBodyExecution(function, cache, context.getPoint());
 		if (bodyExec == null) {
 			if (!(function instanceof ICPPTemplateInstance)
 					|| ((ICPPTemplateInstance) function).isExplicitSpecialization()) {
@@ -312,7 +344,7 @@ public final class EvalFunctionCall extends CPPDependentEvaluation {
 			IBinding specialized = functionInstance.getSpecializedBinding();
 			if (!(specialized instanceof ICPPFunction))
 				return this;
-			bodyExec = CPPFunction.getFunctionBodyExecution((ICPPFunction) specialized, context.getPoint());
+			bodyExec = getFunctionBodyExecution((ICPPFunction) specialized, cache, context.getPoint());
 		}
 		if (bodyExec != null) {
 			bodyExec = bodyExec.executeForFunctionCall(record, context.recordStep());
@@ -340,6 +372,13 @@ public final class EvalFunctionCall extends CPPDependentEvaluation {
 		return EvalFixed.INCOMPLETE;
 	}
 
+	private static ICPPExecution getFunctionBodyExecution(ICPPFunction function, ConstexprCache cache,
+			IASTNode point) {
+		if (cache != null)
+			return cache.getFunctionBodyExecution(function, point);
+		return CPPFunction.getFunctionBodyExecution(function, point);
+	}
+
 	private ICPPFunction resolveFunctionBinding(IASTNode point) {
 		ICPPFunction function = getOverload(point);
 		if (function == null) {
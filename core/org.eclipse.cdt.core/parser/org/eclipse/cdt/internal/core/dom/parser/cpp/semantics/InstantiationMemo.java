@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.dom.parser.cpp.semantics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.cdt.core.dom.ast.IASTExpression.ValueCategory;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+import org.eclipse.cdt.core.dom.ast.IType;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPFunction;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPFunctionTemplate;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPTemplateArgument;
+import org.eclipse.cdt.core.parser.util.CharArrayUtils;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTTranslationUnit;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Memoizes the results of template argument deduction for function calls and of the
+ * instantiation of dependent types, such that identical requests made from different places of
+ * a translation unit are computed once. The memo is kept in the AST, bindings of the AST must not
+ * outlive it and bindings of the index are valid only until the index is modified. The number of
+ * entries is bounded, the least recently used ones are discarded first.
+ * <p>
+ * The results depend on the point of instantiation, lookups performed on behalf of a request
+ * find only the declarations that precede it. The keys therefore include the position of the
+ * declaration at namespace scope that contains the point, requests made within one such
+ * declaration share their results.
+ * <p>
+ * The counters of instantiations performed and reused are global, the indexer reports them
+ * with its statistics.
+ */
+public final class InstantiationMemo {
+	private static final int DEFAULT_MAX_ENTRIES = 50000;
+	/** Stands for a deduction that failed. */
+	private static final Object NO_FUNCTION = new Object();
+
+	private static final AtomicLong sInstancesCreated = new AtomicLong();
+	private static final AtomicLong sInstancesReused = new AtomicLong();
+	private static final AtomicLong sDeductionsPerformed = new AtomicLong();
+	private static final AtomicLong sDeductionsReused = new AtomicLong();
+	private static final AtomicLong sTypesInstantiated = new AtomicLong();
+	private static final AtomicLong sTypesReused = new AtomicLong();
+
+	/**
+	 * Returns the memo of the translation unit containing the given point of instantiation,
+	 * or <code>null</code>.
+	 */
+	public static InstantiationMemo get(IASTNode point) {
+		if (point == null)
+			return null;
+		IASTTranslationUnit tu = point.getTranslationUnit();
+		if (tu instanceof CPPASTTranslationUnit)
+			return ((CPPASTTranslationUnit) tu).getInstantiationMemo();
+		return null;
+	}
+
+	private final Map<Object, Object> fEntries;
+	private final int fMaxEntries;
+
+	public InstantiationMemo() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public InstantiationMemo(int maxEntries) {
+		fMaxEntries = maxEntries;
+		fEntries = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+				return size() > fMaxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the memoized result of deducing the arguments of the given function template
+	 * for a call and instantiating it. Returns <code>null</code> if the result is not known,
+	 * <code>result[0]</code> is <code>null</code> if the deduction failed.
+	 */
+	ICPPFunction[] getFunctionForCall(Object key) {
+		Object result;
+		synchronized (this) {
+			result = fEntries.get(key);
+		}
+		if (result == null) {
+			sDeductionsPerformed.incrementAndGet();
+			return null;
+		}
+		sDeductionsReused.incrementAndGet();
+		return new ICPPFunction[] { result == NO_FUNCTION ? null : (ICPPFunction) result };
+	}
+
+	void putFunctionForCall(Object key, ICPPFunction function) {
+		synchronized (this) {
+			fEntries.put(key, function == null ? NO_FUNCTION : function);
+		}
+	}
+
+	/**
+	 * Returns the memoized result of instantiating a type, or <code>null</code>.
+	 */
+	IType getInstantiatedType(TypeInstantiationRequest request) {
+		Object key = new TypeKey(request, CPPSemantics.getLookupPosition(request.getPoint()));
+		IType result;
+		synchronized (this) {
+			result = (IType) fEntries.get(key);
+		}
+		if (result == null) {
+			sTypesInstantiated.incrementAndGet();
+		} else {
+			sTypesReused.incrementAndGet();
+		}
+		return result;
+	}
+
+	void putInstantiatedType(TypeInstantiationRequest request, IType type) {
+		Object key = new TypeKey(request.createMemoKey(), CPPSemantics.getLookupPosition(request.getPoint()));
+		synchronized (this) {
+			fEntries.put(key, type);
+		}
+	}
+
+	public synchronized int size() {
+		return fEntries.size();
+	}
+
+	/**
+	 * Discards all entries, needed when the positions of the declarations in the AST change.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+	}
+
+	/**
+	 * Creates the key for memoizing the deduction for a call of the given function template
+	 * at the given point, or returns <code>null</code> if the arguments have no signature.
+	 */
+	static Object createFunctionCallKey(ICPPFunctionTemplate template, ICPPTemplateArgument[] tmplArgs,
+			List<IType> fnArgs, List<ValueCategory> argCats, IASTNode point) {
+		SignatureBuilder builder = new SignatureBuilder();
+		try {
+			if (tmplArgs != null) {
+				builder.putInt(tmplArgs.length);
+				for (ICPPTemplateArgument arg : tmplArgs) {
+					builder.marshalTemplateArgument(arg);
+				}
+			}
+			for (IType type : fnArgs) {
+				builder.marshalType(type);
+			}
+		} catch (CoreException e) {
+			return null;
+		}
+		int position = CPPSemantics.getLookupPosition(point);
+		return new FunctionCallKey(template, tmplArgs == null ? null : tmplArgs.clone(),
+				fnArgs.toArray(new IType[fnArgs.size()]), argCats.toArray(new ValueCategory[argCats.size()]),
+				position, 31 * (31 * template.hashCode() + CharArrayUtils.hash(builder.getSignature())) + position);
+	}
+
+	private static final class FunctionCallKey {
+		private final ICPPFunctionTemplate fTemplate;
+		private final ICPPTemplateArgument[] fTemplateArguments;
+		private final IType[] fArgumentTypes;
+		private final ValueCategory[] fValueCategories;
+		private final int fPosition;
+		private final int fHashCode;
+
+		FunctionCallKey(ICPPFunctionTemplate template, ICPPTemplateArgument[] tmplArgs, IType[] fnArgs,
+				ValueCategory[] argCats, int position, int hashCode) {
+			fTemplate = template;
+			fTemplateArguments = tmplArgs;
+			fArgumentTypes = fnArgs;
+			fValueCategories = argCats;
+			fPosition = position;
+			fHashCode = hashCode;
+		}
+
+		@Override
+		public int hashCode() {
+			return fHashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof FunctionCallKey))
+				return false;
+			FunctionCallKey other = (FunctionCallKey) obj;
+			if (fHashCode != other.fHashCode || fPosition != other.fPosition || !fTemplate.equals(other.fTemplate))
+				return false;
+			if (fArgumentTypes.length != other.fArgumentTypes.length)
+				return false;
+			for (int i = 0; i < fArgumentTypes.length; i++) {
+				if (fValueCategories[i] != other.fValueCategories[i])
+					return false;
+				IType t1 = fArgumentTypes[i];
+				IType t2 = other.fArgumentTypes[i];
+				if (t1 != t2 && (t1 == null || t2 == null || !t1.isSameType(t2)))
+					return false;
+			}
+			if (fTemplateArguments == other.fTemplateArguments)
+				return true;
+			if (fTemplateArguments == null || other.fTemplateArguments == null
+					|| fTemplateArguments.length != other.fTemplateArguments.length) {
+				return false;
+			}
+			for (int i = 0; i < fTemplateArguments.length; i++) {
+				if (!fTemplateArguments[i].isSameValue(other.fTemplateArguments[i]))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Key for the instantiation of a type, which ignores the point of instantiation except for
+	 * its lookup position.
+	 */
+	private static final class TypeKey {
+		private final TypeInstantiationRequest fRequest;
+		private final int fPosition;
+
+		TypeKey(TypeInstantiationRequest request, int position) {
+			fRequest = request;
+			fPosition = position;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * fRequest.hashCode() + fPosition;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof TypeKey))
+				return false;
+			TypeKey other = (TypeKey) obj;
+			return fPosition == other.fPosition && fRequest.isSameInstantiation(other.fRequest);
+		}
+	}
+
+	static void instanceCreated() {
+		sInstancesCreated.incrementAndGet();
+	}
+
+	static void instanceReused() {
+		sInstancesReused.incrementAndGet();
+	}
+
+	public static long getInstancesCreated() {
+		return sInstancesCreated.get();
+	}
+
+	public static long getInstancesReused() {
+		return sInstancesReused.get();
+	}
+
+	public static long getDeductionsPerformed() {
+		return sDeductionsPerformed.get();
+	}
+
+	public static long getDeductionsReused() {
+		return sDeductionsReused.get();
+	}
+
+	public static long getTypesInstantiated() {
+		return sTypesInstantiated.get();
+	}
+
+	public static long getTypesReused() {
+		return sTypesReused.get();
+	}
+
+	/**
+	 * Returns a summary of the global counters.
+	 */
+	public static String getStatistics() {
+		return sInstancesCreated.get() + " instances created, " + sInstancesReused.get() + " reused, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ sDeductionsPerformed.get() + " deductions performed, " + sDeductionsReused.get() + " reused, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ sTypesInstantiated.get() + " types instantiated, " + sTypesReused.get() + " reused"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Resets the global counters.
+	 */
+	public static void resetStatistics() {
+		sInstancesCreated.set(0);
+		sInstancesReused.set(0);
+		sDeductionsPerformed.set(0);
+		sDeductionsReused.set(0);
+		sTypesInstantiated.set(0);
+		sTypesReused.set(0);
+	}
+}
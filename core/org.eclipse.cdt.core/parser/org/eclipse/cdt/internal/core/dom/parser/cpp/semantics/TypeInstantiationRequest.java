@@ -19,11 +19,13 @@ import org.eclipse.cdt.core.dom.ast.cpp.ICPPTemplateArgument;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPTemplateParameterMap;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPTypeSpecialization;
 import org.eclipse.cdt.core.parser.util.CharArrayUtils;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPTemplateParameterMap;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.InstantiationContext;
 import org.eclipse.core.runtime.CoreException;
 
 /**
- * Used to track ongoing instantiations as a safeguard against infinite recursion.
+ * Used to track ongoing instantiations as a safeguard against infinite recursion, and to look up
+ * the results of instantiations memoized in {@link InstantiationMemo}.
  */
 public class TypeInstantiationRequest {
 	private final IType type;
@@ -41,12 +43,54 @@ public class TypeInstantiationRequest {
 		this.point = context.getPoint();
 	}
 
+	private TypeInstantiationRequest(IType type, ICPPTemplateParameterMap parameterMap, int packOffset,
+			ICPPTypeSpecialization contextTypeSpecialization, IASTNode point, int hashCode) {
+		this.type = type;
+		this.parameterMap = parameterMap;
+		this.packOffset = packOffset;
+		this.contextTypeSpecialization = contextTypeSpecialization;
+		this.point = point;
+		this.hashCode = hashCode;
+	}
+
+	IASTNode getPoint() {
+		return point;
+	}
+
+	/**
+	 * Returns a copy of this request that is independent of the point of instantiation and of
+	 * later modifications of the parameter map. The copy is only meant to be compared with
+	 * {@link #isSameInstantiation(TypeInstantiationRequest)}.
+	 */
+	TypeInstantiationRequest createMemoKey() {
+		ICPPTemplateParameterMap map = parameterMap;
+		if (map instanceof CPPTemplateParameterMap)
+			map = new CPPTemplateParameterMap((CPPTemplateParameterMap) map);
+		return new TypeInstantiationRequest(type, map, packOffset, contextTypeSpecialization, null,
+				hashCode());
+	}
+
 	@Override
 	public int hashCode() {
 		if (hashCode == 0) {
 			SignatureBuilder builder = new SignatureBuilder();
 			try {
 				builder.marshalType(type);
+				if (parameterMap != null) {
+					for (Integer paramId : parameterMap.getAllParameterPositions()) {
+						builder.putInt(paramId);
+						ICPPTemplateArgument[] packExpansion = parameterMap.getPackExpansion(paramId);
+						if (packExpansion != null) {
+							builder.putInt(packExpansion.length);
+							for (ICPPTemplateArgument arg : packExpansion) {
+								builder.marshalTemplateArgument(arg);
+							}
+						} else {
+							builder.marshalTemplateArgument(parameterMap.getArgument(paramId));
+						}
+					}
+				}
+				builder.putInt(packOffset);
 				char[] signature = builder.getSignature();
 				hashCode = CharArrayUtils.hash(signature);
 			} catch (CoreException e) {
@@ -64,6 +108,16 @@ public class TypeInstantiationRequest {
 		if (!getClass().equals(obj.getClass()))
 			return false;
 		TypeInstantiationRequest other = (TypeInstantiationRequest) obj;
+		return point == other.point && isSameInstantiation(other);
+	}
+
+	/**
+	 * Checks whether the given request instantiates the same type with the same arguments,
+	 * regardless of the point of instantiation.
+	 */
+	boolean isSameInstantiation(TypeInstantiationRequest other) {
+		if (this == other)
+			return true;
 		if (!type.isSameType(other.type))
 			return false;
 		if (!equals(contextTypeSpecialization, other.contextTypeSpecialization))
@@ -72,8 +126,6 @@ public class TypeInstantiationRequest {
 			return false;
 		if (packOffset != other.packOffset)
 			return false;
-		if (point != other.point)
-			return false;
 		return true;
 	}
 
@@ -82,7 +134,7 @@ public class TypeInstantiationRequest {
 			return true;
 		if (type1 == null || type2 == null)
 			return false;
-		return type1.isSameType(type1);
+		return type1.isSameType(type2);
 	}
 
 	private boolean equals(ICPPTemplateParameterMap map1, ICPPTemplateParameterMap map2) {
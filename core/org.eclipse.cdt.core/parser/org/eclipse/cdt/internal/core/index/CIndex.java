@@ -74,6 +74,14 @@ public class CIndex implements IIndex {
 		fFragments= fragments;
 	}
 
+	/**
+	 * Creates an index for fragments the caller already holds a read lock on.
+	 */
+	private CIndex(IIndexFragment[] fragments, int readLocks) {
+		fFragments= fragments;
+		fReadLock= readLocks;
+	}
+
 	@Override
 	public IIndexBinding findBinding(IName name) throws CoreException {
 		if (name instanceof IIndexFragmentName) {
@@ -415,6 +423,30 @@ public class CIndex implements IIndex {
 		}
 	}
 
+	@Override
+	public IIndex openSnapshot() throws InterruptedException, CoreException {
+		IIndexFragment[] snapshots= new IIndexFragment[fFragments.length];
+		acquireReadLock();
+		try {
+			int i= 0;
+			try {
+				for (i = 0; i < fFragments.length; i++) {
+					snapshots[i]= fFragments[i].createSnapshot();
+				}
+			} finally {
+				if (i < fFragments.length) {
+					// Rollback, releasing the last lock closes a snapshot.
+					while (--i >= 0) {
+						snapshots[i].releaseReadLock();
+					}
+				}
+			}
+		} finally {
+			releaseReadLock();
+		}
+		return new CIndex(snapshots, 1);
+	}
+
 	protected synchronized int getReadLockCount() {
 		return fReadLock;
 	}
@@ -118,6 +118,11 @@ final public class EmptyCIndex implements IIndex {
 		return false;
 	}
 
+	@Override
+	public IIndex openSnapshot() {
+		return this;
+	}
+
 	@Override
 	public long getLastWriteAccess() {
 		return 0;
@@ -89,6 +89,12 @@ public interface IIndexFragment {
 	 */
 	public static final String PROPERTY_RESUME_INDEXER= "org.eclipse.cdt.internal.core.index.resume"; //$NON-NLS-1$
 
+	/**
+	 * Property key for the comma separated fragment IDs of the shared read-only fragments that
+	 * were part of the index when the fragment was written.
+	 */
+	public static final String PROPERTY_SHARED_FRAGMENTS= "org.eclipse.cdt.internal.core.index.shared.fragments"; //$NON-NLS-1$
+
 	/**
 	 * @deprecated Use {@link #getFile(int, IIndexFileLocation, ISignificantMacros)} or
 	 *     {@link #getFiles(int, IIndexFileLocation)}.
@@ -350,4 +356,13 @@ public interface IIndexFragment {
 	 * initialized during Eclipse startup, or soon after adding a new project to the workspace.
 	 */
 	boolean isFullyInitialized();
+
+	/**
+	 * Creates a read-only view of the current state of this fragment, which is not affected by
+	 * subsequent changes and can be read without blocking writers of the fragment. The caller
+	 * must hold a read lock on this fragment and obtains a read lock on the returned fragment.
+	 * A snapshot is closed when its last read lock is released. Fragments that are never written
+	 * to may return themselves.
+	 */
+	IIndexFragment createSnapshot() throws CoreException, InterruptedException;
 }
@@ -38,6 +38,19 @@ public interface IIndexFragmentFile extends IIndexFile {
 	 */
 	void setContentsHash(long hash) throws CoreException;
 
+	/**
+	 * Returns the time in milliseconds it took to parse the file and to resolve its names, the
+	 * last time it was indexed as the top-level file of a translation unit.
+	 * @return the parse cost or {@code 0} if it is unknown, e.g. for a header that has only been
+	 *     indexed while parsing the files including it.
+	 */
+	int getParseCost() throws CoreException;
+
+	/**
+	 * Sets the time it took to parse the file, see {@link #getParseCost()}.
+	 */
+	void setParseCost(int cost) throws CoreException;
+
 	/**
 	 * Returns the hash-code computed by combining the file size and the file encoding.
 	 * @return a hash-code or {@code 0} if it is unknown.
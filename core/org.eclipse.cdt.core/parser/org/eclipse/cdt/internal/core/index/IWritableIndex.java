@@ -66,6 +66,18 @@ public interface IWritableIndex extends IIndex {
 	 */
 	IIndexFragmentFile[] getWritableFiles(IIndexFileLocation location) throws CoreException;
 
+	/**
+	 * Returns the read-only fragments of the index, that are consulted for files that do not
+	 * have content in the writable fragment.
+	 */
+	IIndexFragment[] getReadOnlyFragments();
+
+	/**
+	 * Returns the files with content for the given location and linkage from the read-only
+	 * fragments of the index.
+	 */
+	IIndexFragmentFile[] getReadOnlyFiles(int linkageID, IIndexFileLocation location) throws CoreException;
+
 	/**
 	 * Clears the given file in the index.
 	 * @param file a file to clear.
@@ -34,6 +34,7 @@ import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICProjectDescription;
 import org.eclipse.cdt.internal.core.CCoreInternals;
 import org.eclipse.cdt.internal.core.index.provider.IndexProviderManager;
+import org.eclipse.cdt.internal.core.index.provider.SystemHeaderFragments;
 import org.eclipse.cdt.internal.core.pdom.PDOMManager;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
@@ -71,6 +72,7 @@ public class IndexFactory {
 			IIndexFragment pdom= fPDOMManager.getPDOM(cproject);
 			if (pdom != null) {
 				safeAddFragment(fragments, pdom);
+				safeAddSharedFragments(pdom, fragments);
 				if (fragmentUsage != 0) {
 					safeAddProvidedFragments(cproject, fragments, fragmentUsage);
 				}
@@ -90,7 +92,7 @@ public class IndexFactory {
 			throw new CoreException(CCorePlugin.createStatus(
 					NLS.bind(Messages.IndexFactory_errorNoSuchPDOM0, project.getElementName())));
 		}
-		return new WritableCIndex(pdom);
+		return new WritableCIndex(pdom, SystemHeaderFragments.getInstance().getFragmentsForIndexer(project));
 	}
 
 	private Collection<ICProject> getProjects(ICProject[] projects, boolean addDependencies,
@@ -158,6 +160,31 @@ public class IndexFactory {
 		}
 	}
 
+	/**
+	 * Adds the shared fragments the files of the given fragment depend on, as recorded by
+	 * the indexer.
+	 */
+	private void safeAddSharedFragments(IIndexFragment fragment, Map<String, IIndexFragment> id2fragment) {
+		String ids= null;
+		try {
+			fragment.acquireReadLock();
+			try {
+				ids= fragment.getProperty(IIndexFragment.PROPERTY_SHARED_FRAGMENTS);
+			} finally {
+				fragment.releaseReadLock();
+			}
+		} catch (CoreException e) {
+			CCorePlugin.log(e);
+		} catch (InterruptedException e) {
+			CCorePlugin.log(e);
+		}
+		if (ids != null && !ids.isEmpty()) {
+			for (String id : ids.split(",")) { //$NON-NLS-1$
+				safeAddFragment(id2fragment, SystemHeaderFragments.getInstance().getFragment(id));
+			}
+		}
+	}
+
 	/**
 	 * Adds ID -> IIndexFragment entries to the specified Map, for fragments provided under
 	 * the CIndex extension point for the specified ICProject.
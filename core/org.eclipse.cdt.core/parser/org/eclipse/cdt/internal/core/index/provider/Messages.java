@@ -15,6 +15,9 @@ import org.eclipse.osgi.util.NLS;
 public class Messages extends NLS {
 	public static String IndexProviderManager_InvalidIndexProvider;
 	public static String IndexProviderManager_NoCompatibleFragmentsAvailable;
+	public static String SystemHeaderFragments_BuildJob;
+	public static String SystemHeaderFragments_CannotCreateFragment;
+	public static String SystemHeaderFragments_CannotDeleteFragment;
 
 	static {
 		// Initialize resource bundle.
@@ -78,4 +78,23 @@ class PDOMCache {
 
 		return result;
 	}
+
+	/**
+	 * Removes the PDOM for the path specified from the cache and closes it. The caller is
+	 * responsible for making sure that the PDOM is no longer used.
+	 * @param path
+	 */
+	public void remove(IPath path) {
+		PDOM pdom;
+		synchronized (path2pdom) {
+			pdom= path2pdom.remove(path.toFile());
+		}
+		if (pdom != null) {
+			try {
+				pdom.close();
+			} catch (CoreException e) {
+				CCorePlugin.log(e);
+			}
+		}
+	}
 }
\ No newline at end of file
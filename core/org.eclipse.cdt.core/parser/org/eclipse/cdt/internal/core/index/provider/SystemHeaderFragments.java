@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.index.provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.dom.ILinkage;
+import org.eclipse.cdt.core.dom.ast.gnu.c.GCCLanguage;
+import org.eclipse.cdt.core.dom.ast.gnu.cpp.GPPLanguage;
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.index.IIndexFile;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexInclude;
+import org.eclipse.cdt.core.index.IIndexLocationConverter;
+import org.eclipse.cdt.core.index.IIndexManager;
+import org.eclipse.cdt.core.index.IndexLocationFactory;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.cdt.core.model.ILanguage;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.core.parser.IExtendedScannerInfo;
+import org.eclipse.cdt.core.parser.IScannerInfo;
+import org.eclipse.cdt.core.parser.IScannerInfoProvider;
+import org.eclipse.cdt.core.parser.ParserUtil;
+import org.eclipse.cdt.internal.core.CCoreInternals;
+import org.eclipse.cdt.internal.core.index.IIndexFragment;
+import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.cdt.internal.core.index.IndexFileLocation;
+import org.eclipse.cdt.internal.core.indexer.ILanguageMapper;
+import org.eclipse.cdt.internal.core.indexer.IStandaloneScannerInfoProvider;
+import org.eclipse.cdt.internal.core.indexer.StandaloneFastIndexer;
+import org.eclipse.cdt.internal.core.pdom.IPDOM;
+import org.eclipse.cdt.internal.core.pdom.PDOM;
+import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Maintains read-only index fragments for the system headers of a toolchain, that are shared
+ * between all projects using the same toolchain setup.
+ * <p>
+ * A fragment is identified by a key computed from the system include paths, the predefined
+ * macros and the macro and include files of a project. When a project with the
+ * {@link IndexerPreferences#KEY_SHARE_SYSTEM_HEADERS} option finishes indexing and there is
+ * no fragment for its key, yet, the system headers included by the project are indexed into
+ * a new fragment in the state location of the plug-in. The indexer of every project with the
+ * same key then takes the system headers from the fragment rather than parsing them again,
+ * unless the significant macros of a header differ or the header was modified after the
+ * fragment was built.
+ * <p>
+ * The key includes the modification times of the include directories, such that installing
+ * or upgrading the toolchain, which replaces headers, leads to a new fragment. Fragments that
+ * are no longer used by any project are deleted after a new fragment was built. Jobs that build
+ * fragments belong to the family {@code SystemHeaderFragments.class}.
+ */
+public class SystemHeaderFragments {
+	private static final String FRAGMENT_ID_PREFIX = "org.eclipse.cdt.systemHeaders."; //$NON-NLS-1$
+	private static final String FRAGMENT_DIRECTORY = "sharedIndexes"; //$NON-NLS-1$
+	private static final String FRAGMENT_EXTENSION = ".pdom"; //$NON-NLS-1$
+	private static final String[] SOURCE_EXTENSIONS = { "c", "cc", "cpp", "cxx", "c++", "C" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+
+	private static SystemHeaderFragments singleton;
+	private static Object singletonMutex = new Object();
+
+	private final Set<String> fPendingKeys = new HashSet<>();
+	private final IIndexLocationConverter fConverter = new ExternalLocationConverter();
+
+	private SystemHeaderFragments() {
+	}
+
+	/**
+	 * Returns the instance of the manager.
+	 */
+	public static SystemHeaderFragments getInstance() {
+		synchronized (singletonMutex) {
+			if (singleton == null) {
+				singleton = new SystemHeaderFragments();
+			}
+			return singleton;
+		}
+	}
+
+	/**
+	 * Returns the shared fragments the indexer of the given project shall use, or an empty
+	 * array if the project does not use shared fragments. When there is no fragment for the
+	 * toolchain setup of the project, yet, a job is scheduled that creates it as soon as the
+	 * indexer is idle.
+	 */
+	public IIndexFragment[] getFragmentsForIndexer(ICProject project) {
+		if (!Boolean.parseBoolean(IndexerPreferences.get(project.getProject(),
+				IndexerPreferences.KEY_SHARE_SYSTEM_HEADERS, null))) {
+			return new IIndexFragment[0];
+		}
+		IScannerInfo info = getScannerInfo(project);
+		if (info == null || info.getIncludePaths().length == 0)
+			return new IIndexFragment[0];
+
+		String key = computeKey(info);
+		IIndexFragment fragment = getFragment(FRAGMENT_ID_PREFIX + key);
+		if (fragment != null)
+			return new IIndexFragment[] { fragment };
+
+		synchronized (fPendingKeys) {
+			if (fPendingKeys.add(key)) {
+				new BuildJob(project, info, key).schedule();
+			}
+		}
+		return new IIndexFragment[0];
+	}
+
+	/**
+	 * Returns the shared fragment for the given fragment ID, or <code>null</code> if the ID
+	 * does not denote a shared fragment or the fragment does not exist.
+	 */
+	public IIndexFragment getFragment(String fragmentID) {
+		if (fragmentID == null || !fragmentID.startsWith(FRAGMENT_ID_PREFIX))
+			return null;
+		IPath path = getFragmentLocation(fragmentID.substring(FRAGMENT_ID_PREFIX.length()));
+		if (!path.toFile().isFile())
+			return null;
+		PDOM pdom = PDOMCache.getInstance().getPDOM(path, fConverter);
+		try {
+			if (pdom == null || !pdom.isSupportedVersion())
+				return null;
+		} catch (CoreException e) {
+			CCorePlugin.log(e);
+			return null;
+		}
+		return pdom;
+	}
+
+	/**
+	 * Computes the key of the shared fragment for the given scanner info.
+	 */
+	static String computeKey(IScannerInfo info) {
+		StringBuilder buf = new StringBuilder();
+		buf.append(PDOM.getDefaultVersion()).append('\n');
+		for (String path : info.getIncludePaths()) {
+			buf.append("-I").append(path).append('@').append(new File(path).lastModified()).append('\n'); //$NON-NLS-1$
+		}
+		for (Map.Entry<String, String> entry : new TreeMap<>(info.getDefinedSymbols()).entrySet()) {
+			buf.append("-D").append(entry.getKey()).append('=').append(entry.getValue()).append('\n'); //$NON-NLS-1$
+		}
+		if (info instanceof IExtendedScannerInfo) {
+			IExtendedScannerInfo extendedInfo = (IExtendedScannerInfo) info;
+			if (extendedInfo.getMacroFiles() != null) {
+				for (String file : extendedInfo.getMacroFiles()) {
+					buf.append("-imacros").append(file).append('\n'); //$NON-NLS-1$
+				}
+			}
+			if (extendedInfo.getIncludeFiles() != null) {
+				for (String file : extendedInfo.getIncludeFiles()) {
+					buf.append("-include").append(file).append('\n'); //$NON-NLS-1$
+				}
+			}
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			StringBuilder key = new StringBuilder();
+			for (byte b : digest.digest(buf.toString().getBytes(StandardCharsets.UTF_8))) {
+				key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is supported by every Java platform.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static IScannerInfo getScannerInfo(ICProject project) {
+		IScannerInfoProvider provider = CCorePlugin.getDefault().getScannerInfoProvider(project.getProject());
+		return provider != null ? provider.getScannerInformation(project.getProject()) : null;
+	}
+
+	private static IPath getFragmentLocation(String key) {
+		return CCorePlugin.getDefault().getStateLocation().append(FRAGMENT_DIRECTORY)
+				.append(key + FRAGMENT_EXTENSION);
+	}
+
+	/**
+	 * Collects the system headers that are included by the files of the project, together with
+	 * the language they are included from.
+	 */
+	private static Map<String, ILanguage> collectSystemHeaders(ICProject project, IScannerInfo info)
+			throws CoreException, InterruptedException {
+		IPath[] includePaths = new IPath[info.getIncludePaths().length];
+		for (int i = 0; i < includePaths.length; i++) {
+			includePaths[i] = new Path(info.getIncludePaths()[i]);
+		}
+
+		Map<String, ILanguage> headers = new LinkedHashMap<>();
+		IIndex index = CCorePlugin.getIndexManager().getIndex(project);
+		index.acquireReadLock();
+		try {
+			for (IIndexFile file : index.getAllFiles()) {
+				if (file.getLocation().getFullPath() == null)
+					continue; // Only includes from files of the workspace.
+				ILanguage language = file.getLinkageID() == ILinkage.C_LINKAGE_ID ?
+						GCCLanguage.getDefault() : GPPLanguage.getDefault();
+				for (IIndexInclude include : file.getIncludes()) {
+					IIndexFileLocation location = include.getIncludesLocation();
+					if (location == null || location.getFullPath() != null)
+						continue;
+					IPath path = IndexLocationFactory.getAbsolutePath(location);
+					if (path != null && isOnIncludePath(path, includePaths)) {
+						String key = path.toOSString();
+						if (!headers.containsKey(key) || language instanceof GPPLanguage) {
+							headers.put(key, language);
+						}
+					}
+				}
+			}
+		} finally {
+			index.releaseReadLock();
+		}
+		return headers;
+	}
+
+	private static boolean isOnIncludePath(IPath path, IPath[] includePaths) {
+		for (IPath includePath : includePaths) {
+			if (includePath.isPrefixOf(path))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Indexes the given headers into a new shared fragment.
+	 */
+	private void createFragment(String key, final Map<String, ILanguage> headers, final IScannerInfo info,
+			IProgressMonitor monitor) throws CoreException, InterruptedException {
+		File target = getFragmentLocation(key).toFile();
+		File directory = target.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new CoreException(CCorePlugin.createStatus(
+					NLS.bind(Messages.SystemHeaderFragments_CannotCreateFragment, target)));
+		}
+		File tmp = new File(directory, key + ".tmp"); //$NON-NLS-1$
+		try {
+			StandaloneFastIndexer indexer = new StandaloneFastIndexer(tmp, fConverter,
+					LanguageManager.getInstance().getPDOMLinkageFactoryMappings(),
+					new IStandaloneScannerInfoProvider() {
+						@Override
+						public IScannerInfo getScannerInformation(String path) {
+							return info;
+						}
+
+						@Override
+						public IScannerInfo getDefaultScannerInformation(int linkageID) {
+							return info;
+						}
+					},
+					null,
+					new ILanguageMapper() {
+						@Override
+						public ILanguage getLanguage(String file) {
+							ILanguage language = headers.get(file);
+							return language != null ? language : GPPLanguage.getDefault();
+						}
+					},
+					ParserUtil.getParserLogService());
+			IWritableIndex index = indexer.getIndex();
+			try {
+				indexer.setIndexAllFiles(true);
+				Set<String> sourceExtensions = new HashSet<>();
+				for (String extension : SOURCE_EXTENSIONS) {
+					sourceExtensions.add(extension);
+				}
+				indexer.setValidSourceUnitNames(sourceExtensions);
+				indexer.rebuild(new ArrayList<>(headers.keySet()), monitor);
+				if (monitor.isCanceled())
+					return;
+
+				index.acquireWriteLock(monitor);
+				try {
+					index.getWritableFragment().setProperty(IIndexFragment.PROPERTY_FRAGMENT_ID,
+							FRAGMENT_ID_PREFIX + key);
+				} finally {
+					index.releaseWriteLock();
+				}
+			} finally {
+				// The file is renamed or deleted below, it must not remain open.
+				((PDOM) index.getWritableFragment()).close();
+			}
+			if (!tmp.renameTo(target)) {
+				throw new CoreException(CCorePlugin.createStatus(
+						NLS.bind(Messages.SystemHeaderFragments_CannotCreateFragment, target)));
+			}
+		} catch (IOException e) {
+			throw new CoreException(CCorePlugin.createStatus(
+					NLS.bind(Messages.SystemHeaderFragments_CannotCreateFragment, target), e));
+		} finally {
+			if (tmp.exists()) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the shared fragments that are no longer used. A fragment is in use when it is
+	 * recorded in the index of a project, or when its key matches the toolchain setup of a
+	 * project with the {@link IndexerPreferences#KEY_SHARE_SYSTEM_HEADERS} option. Nothing is
+	 * deleted while the index of a project is not known, e.g. because the project is closed.
+	 */
+	public void deleteUnusedFragments() throws CoreException, InterruptedException {
+		File[] files = CCorePlugin.getDefault().getStateLocation().append(FRAGMENT_DIRECTORY).toFile().listFiles();
+		if (files == null)
+			return;
+		Set<String> usedKeys = getUsedKeys();
+		if (usedKeys == null)
+			return;
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(FRAGMENT_EXTENSION))
+				continue;
+			String key = name.substring(0, name.length() - FRAGMENT_EXTENSION.length());
+			if (usedKeys.contains(key))
+				continue;
+			synchronized (fPendingKeys) {
+				if (fPendingKeys.contains(key))
+					continue;
+			}
+			IPath path = getFragmentLocation(key);
+			PDOMCache.getInstance().remove(path);
+			if (!path.toFile().delete()) {
+				CCorePlugin.log(NLS.bind(Messages.SystemHeaderFragments_CannotDeleteFragment, path));
+			}
+		}
+	}
+
+	/**
+	 * Returns the keys of the fragments used by the projects of the workspace, or
+	 * <code>null</code> if they cannot be determined.
+	 */
+	private Set<String> getUsedKeys() throws CoreException, InterruptedException {
+		Set<String> keys = new HashSet<>();
+		for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+			if (!project.isOpen())
+				return null;
+			if (!CoreModel.hasCNature(project))
+				continue;
+			ICProject cproject = CoreModel.getDefault().create(project);
+			IPDOM pdom = CCoreInternals.getPDOMManager().getPDOM(cproject);
+			if (!(pdom instanceof PDOM))
+				return null;
+			String ids;
+			pdom.acquireReadLock();
+			try {
+				ids = pdom.getProperty(IIndexFragment.PROPERTY_SHARED_FRAGMENTS);
+			} finally {
+				pdom.releaseReadLock();
+			}
+			if (ids != null) {
+				for (String id : ids.split(",")) { //$NON-NLS-1$
+					if (id.startsWith(FRAGMENT_ID_PREFIX)) {
+						keys.add(id.substring(FRAGMENT_ID_PREFIX.length()));
+					}
+				}
+			}
+			if (Boolean.parseBoolean(IndexerPreferences.get(project,
+					IndexerPreferences.KEY_SHARE_SYSTEM_HEADERS, null))) {
+				IScannerInfo info = getScannerInfo(cproject);
+				if (info != null && info.getIncludePaths().length != 0) {
+					keys.add(computeKey(info));
+				}
+			}
+		}
+		return keys;
+	}
+
+	private class BuildJob extends Job {
+		private final ICProject fProject;
+		private final IScannerInfo fInfo;
+		private final String fKey;
+
+		BuildJob(ICProject project, IScannerInfo info, String key) {
+			super(Messages.SystemHeaderFragments_BuildJob);
+			fProject = project;
+			fInfo = info;
+			fKey = key;
+			setSystem(true);
+			setPriority(Job.BUILD);
+		}
+
+		@Override
+		public boolean belongsTo(Object family) {
+			return family == SystemHeaderFragments.class;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				// The headers are taken from the index of the project, wait until it is complete.
+				if (!CCorePlugin.getIndexManager().joinIndexer(IIndexManager.FOREVER, monitor))
+					return Status.CANCEL_STATUS;
+				Map<String, ILanguage> headers = collectSystemHeaders(fProject, fInfo);
+				if (!headers.isEmpty()) {
+					createFragment(fKey, headers, fInfo, monitor);
+				}
+			} catch (CoreException e) {
+				return e.getStatus();
+			} catch (InterruptedException e) {
+				return Status.CANCEL_STATUS;
+			} finally {
+				synchronized (fPendingKeys) {
+					fPendingKeys.remove(fKey);
+				}
+			}
+			if (monitor.isCanceled())
+				return Status.CANCEL_STATUS;
+			// A new fragment typically replaces the one of a previous toolchain setup.
+			try {
+				deleteUnusedFragments();
+				return Status.OK_STATUS;
+			} catch (CoreException e) {
+				return e.getStatus();
+			} catch (InterruptedException e) {
+				return Status.CANCEL_STATUS;
+			}
+		}
+	}
+
+	/**
+	 * Stores the URIs of files outside of the workspace, the shared fragments do not contain
+	 * files of the workspace.
+	 */
+	private static class ExternalLocationConverter implements IIndexLocationConverter {
+		@Override
+		public IIndexFileLocation fromInternalFormat(String raw) {
+			try {
+				return new IndexFileLocation(new URI(raw), null);
+			} catch (URISyntaxException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public String toInternalFormat(IIndexFileLocation location) {
+			return location.getFullPath() == null ? location.getURI().toString() : null;
+		}
+	}
+}
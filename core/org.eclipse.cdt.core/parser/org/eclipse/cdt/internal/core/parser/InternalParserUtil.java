@@ -21,6 +21,7 @@ import org.eclipse.cdt.core.index.IIndexFileLocation;
 import org.eclipse.cdt.core.parser.FileContent;
 import org.eclipse.cdt.core.parser.ParserFactory;
 import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray;
+import org.eclipse.cdt.internal.core.parser.scanner.ByteBufferCharArray;
 import org.eclipse.cdt.internal.core.parser.scanner.FileCharArray;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent;
 import org.eclipse.cdt.internal.core.resources.PathCanonicalizationStrategy;
@@ -238,7 +239,9 @@ public class InternalParserUtil extends ParserFactory {
 			localPath = path;
 		}
 		try {
-			AbstractCharArray chars= FileCharArray.create(localPath, charset, in);
+			AbstractCharArray chars= ByteBufferCharArray.create(charset, in);
+			if (chars == null)
+				chars= FileCharArray.create(localPath, charset, in);
 			if (chars == null)
 				return null;
 			
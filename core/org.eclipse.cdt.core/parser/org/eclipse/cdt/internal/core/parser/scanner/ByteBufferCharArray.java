@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Char array over the bytes of a file encoded in ASCII, ISO-8859-1 or UTF-8. The characters are
+ * taken from the bytes directly, only sequences of non-ASCII characters in UTF-8 encoded files
+ * are decoded, and that is done when they are accessed for the first time.
+ * <p>
+ * The bytes of a file are read into a heap buffer, which takes half of the space of the decoded
+ * characters. The file is not memory-mapped, the contents are cached beyond the time the file is
+ * open and the file may be truncated or modified meanwhile.
+ */
+public final class ByteBufferCharArray extends AbstractCharArray {
+	private static final String UTF8_CHARSET_NAME = "UTF-8"; //$NON-NLS-1$
+	private static final String ASCII_CHARSET_NAME = "US-ASCII"; //$NON-NLS-1$
+	private static final String LATIN1_CHARSET_NAME = "ISO-8859-1"; //$NON-NLS-1$
+
+	/** Files below this size fit into a single chunk of a {@link FileCharArray}. */
+	private static final int MIN_SIZE = LazyCharArray.CHUNK_SIZE;
+
+	/**
+	 * Returns a char array for the file read from the given stream, or <code>null</code> if the
+	 * file is not suitable for being accessed at the byte level. In that case {@link FileCharArray}
+	 * needs to be used.
+	 */
+	public static AbstractCharArray create(String charSet, InputStream in) throws IOException {
+		if (!(in instanceof FileInputStream) || !isSupported(charSet))
+			return null;
+		FileChannel channel = ((FileInputStream) in).getChannel();
+		final long size = channel.size();
+		if (size < MIN_SIZE || size > Integer.MAX_VALUE)
+			return null;
+		// Positional reads leave the position of the stream alone for FileCharArray.
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, buffer.position()) < 0)
+				break;  // The file has been truncated meanwhile.
+		}
+		buffer.flip();
+		return create(buffer, charSet);
+	}
+
+	/**
+	 * Returns a char array for the bytes between the position and the limit of the given buffer,
+	 * or <code>null</code> if the bytes are not valid in the given character set or the character
+	 * set is not supported.
+	 */
+	public static ByteBufferCharArray create(ByteBuffer buffer, String charSet) {
+		if (!isSupported(charSet))
+			return null;
+		final String name = Charset.forName(charSet).name();
+		if (name.equals(LATIN1_CHARSET_NAME))
+			return new ByteBufferCharArray(buffer, buffer.position(), buffer.limit() - buffer.position(), null);
+
+		int start = buffer.position();
+		final int end = buffer.limit();
+		final boolean isUTF8 = name.equals(UTF8_CHARSET_NAME);
+		if (isUTF8 && end - start >= 3 && buffer.get(start) == (byte) 0xEF
+				&& buffer.get(start + 1) == (byte) 0xBB && buffer.get(start + 2) == (byte) 0xBF) {
+			start += 3;
+		}
+		Runs runs = null;
+		int charOffset = 0;
+		for (int i = start; i < end;) {
+			if (buffer.get(i) >= 0) {
+				i++;
+				charOffset++;
+				continue;
+			}
+			if (!isUTF8)
+				return null;
+			// A run of non-ASCII characters.
+			final int runStart = i;
+			final int runCharStart = charOffset;
+			do {
+				final int length = getSequenceLength(buffer, i, end);
+				if (length == 0)
+					return null;  // Malformed input, leave the replacement to the decoder.
+				i += length;
+				charOffset += length == 4 ? 2 : 1;
+			} while (i < end && buffer.get(i) < 0);
+			if (runs == null)
+				runs = new Runs();
+			runs.add(runStart - start, i - start, runCharStart, charOffset);
+		}
+		return new ByteBufferCharArray(buffer, start, charOffset, runs);
+	}
+
+	private static boolean isSupported(String charSet) {
+		try {
+			final String name = Charset.forName(charSet).name();
+			return name.equals(UTF8_CHARSET_NAME) || name.equals(ASCII_CHARSET_NAME)
+					|| name.equals(LATIN1_CHARSET_NAME);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the length of the well-formed UTF-8 sequence starting at the given offset,
+	 * or 0 if the sequence is malformed.
+	 */
+	private static int getSequenceLength(ByteBuffer buffer, int offset, int end) {
+		final int b0 = buffer.get(offset) & 0xff;
+		int length;
+		int min = 0x80;
+		int max = 0xbf;
+		if (b0 >= 0xc2 && b0 <= 0xdf) {
+			length = 2;
+		} else if (b0 >= 0xe0 && b0 <= 0xef) {
+			length = 3;
+			if (b0 == 0xe0) {
+				min = 0xa0;  // Overlong
+			} else if (b0 == 0xed) {
+				max = 0x9f;  // Surrogates
+			}
+		} else if (b0 >= 0xf0 && b0 <= 0xf4) {
+			length = 4;
+			if (b0 == 0xf0) {
+				min = 0x90;  // Overlong
+			} else if (b0 == 0xf4) {
+				max = 0x8f;  // Beyond U+10FFFF
+			}
+		} else {
+			return 0;
+		}
+		if (offset + length > end)
+			return 0;
+		final int b1 = buffer.get(offset + 1) & 0xff;
+		if (b1 < min || b1 > max)
+			return 0;
+		for (int i = 2; i < length; i++) {
+			if ((buffer.get(offset + i) & 0xc0) != 0x80)
+				return 0;
+		}
+		return length;
+	}
+
+	/**
+	 * The runs of non-ASCII characters in a UTF-8 encoded file, in ascending order.
+	 */
+	private static final class Runs {
+		int fCount;
+		int[] fByteOffsets = new int[8];
+		int[] fByteEndOffsets = new int[8];
+		int[] fCharOffsets = new int[8];
+		int[] fCharEndOffsets = new int[8];
+		char[][] fChars = new char[8][];
+
+		void add(int byteOffset, int byteEndOffset, int charOffset, int charEndOffset) {
+			if (fCount == fByteOffsets.length) {
+				final int n = fCount * 2;
+				fByteOffsets = Arrays.copyOf(fByteOffsets, n);
+				fByteEndOffsets = Arrays.copyOf(fByteEndOffsets, n);
+				fCharOffsets = Arrays.copyOf(fCharOffsets, n);
+				fCharEndOffsets = Arrays.copyOf(fCharEndOffsets, n);
+				fChars = Arrays.copyOf(fChars, n);
+			}
+			fByteOffsets[fCount] = byteOffset;
+			fByteEndOffsets[fCount] = byteEndOffset;
+			fCharOffsets[fCount] = charOffset;
+			fCharEndOffsets[fCount] = charEndOffset;
+			fCount++;
+		}
+
+		/**
+		 * Returns the index of the last run starting at or before the given char offset,
+		 * or -1.
+		 */
+		int find(int charOffset) {
+			int low = 0;
+			int high = fCount - 1;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				if (fCharOffsets[mid] <= charOffset) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return high;
+		}
+	}
+
+	private final ByteBuffer fBuffer;
+	private final int fStart;
+	private final int fLength;
+	private final Runs fRuns;
+	// The run found by the last lookup, the lexer accesses the characters in sequence.
+	private int fLastRun = -1;
+	private long fHash64;
+	private boolean fHashComputed;
+
+	private ByteBufferCharArray(ByteBuffer buffer, int start, int length, Runs runs) {
+		fBuffer = buffer;
+		fStart = start;
+		fLength = length;
+		fRuns = runs;
+	}
+
+	@Override
+	public int tryGetLength() {
+		return fLength;
+	}
+
+	@Override
+	public int getLength() {
+		return fLength;
+	}
+
+	@Override
+	public boolean isValidOffset(int offset) {
+		return offset < fLength;
+	}
+
+	@Override
+	public long getContentsHash() {
+		if (!fHashComputed) {
+			StreamHasher hasher = new StreamHasher();
+			char[] chunk = new char[4096];
+			for (int offset = 0; offset < fLength; offset += chunk.length) {
+				final int length = Math.min(chunk.length, fLength - offset);
+				if (length < chunk.length)
+					chunk = new char[length];
+				arraycopy(offset, chunk, 0, length);
+				hasher.addChunk(chunk);
+			}
+			fHash64 = hasher.computeHash();
+			fHashComputed = true;
+		}
+		return fHash64;
+	}
+
+	@Override
+	public char get(int offset) {
+		final Runs runs = fRuns;
+		if (runs == null)
+			return (char) (fBuffer.get(fStart + offset) & 0xff);
+
+		int run = fLastRun;
+		if (run < 0 || offset < runs.fCharOffsets[run]
+				|| (run + 1 < runs.fCount && offset >= runs.fCharOffsets[run + 1])) {
+			run = runs.find(offset);
+			fLastRun = run;
+		}
+		if (run < 0)
+			return (char) fBuffer.get(fStart + offset);
+		if (offset < runs.fCharEndOffsets[run])
+			return getRunChars(run)[offset - runs.fCharOffsets[run]];
+		return (char) fBuffer.get(fStart + runs.fByteEndOffsets[run] + offset - runs.fCharEndOffsets[run]);
+	}
+
+	@Override
+	public void arraycopy(int offset, char[] destination, int destinationPos, int length) {
+		if (fRuns == null) {
+			final int start = fStart + offset;
+			for (int i = 0; i < length; i++) {
+				destination[destinationPos + i] = (char) (fBuffer.get(start + i) & 0xff);
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				destination[destinationPos + i] = get(offset + i);
+			}
+		}
+	}
+
+	private char[] getRunChars(int run) {
+		char[] chars = fRuns.fChars[run];
+		if (chars == null) {
+			final ByteBuffer bytes = fBuffer.duplicate();
+			bytes.limit(fStart + fRuns.fByteEndOffsets[run]);
+			bytes.position(fStart + fRuns.fByteOffsets[run]);
+			final CharBuffer decoded = Charset.forName(UTF8_CHARSET_NAME).decode(bytes);
+			chars = new char[decoded.remaining()];
+			decoded.get(chars);
+			fRuns.fChars[run] = chars;
+		}
+		return chars;
+	}
+
+	@Override
+	public boolean hasError() {
+		return false;
+	}
+}
@@ -54,7 +54,6 @@ import org.eclipse.cdt.core.parser.OffsetLimitReachedException;
 import org.eclipse.cdt.core.parser.ParseError;
 import org.eclipse.cdt.core.parser.ParserLanguage;
 import org.eclipse.cdt.core.parser.util.CharArrayIntMap;
-import org.eclipse.cdt.core.parser.util.CharArrayMap;
 import org.eclipse.cdt.core.parser.util.CharArrayObjectMap;
 import org.eclipse.cdt.core.parser.util.CharArraySet;
 import org.eclipse.cdt.core.parser.util.CharArrayUtils;
@@ -70,6 +69,8 @@ import org.eclipse.cdt.internal.core.parser.scanner.MacroDefinitionParser.Invali
 import org.eclipse.cdt.internal.core.parser.scanner.ScannerContext.BranchKind;
 import org.eclipse.cdt.internal.core.parser.scanner.ScannerContext.CodeState;
 import org.eclipse.cdt.internal.core.parser.scanner.ScannerContext.Conditional;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayIntMap;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayMap;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IAdaptable;
 
@@ -245,7 +246,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
     // configuration
     final private LexerOptions fLexOptions= new LexerOptions();
     final private char[] fAdditionalNumericLiteralSuffixes;
-    final private CharArrayIntMap fKeywords;
+    final private OpenCharArrayIntMap fKeywords;
     final private CharArrayIntMap fPPKeywords;
     private final IncludeSearchPath fIncludeSearchPath;
     private String[][] fPreIncludedFiles= null;
@@ -255,7 +256,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 	private boolean fSplitShiftRightOperator= false;
 
     // State information
-    private final CharArrayMap<PreprocessorMacro> fMacroDictionary = new CharArrayMap<>(512);
+    private final OpenCharArrayMap<PreprocessorMacro> fMacroDictionary = new OpenCharArrayMap<>(512);
 	private final IMacroDictionary fMacroDictionaryFacade = new MacroDictionary();
     private final LocationMap fLocationMap;
 	private CharArraySet fPreventInclusion;
@@ -306,7 +307,7 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
         if (info instanceof ExtendedScannerInfo)
         	fLexOptions.fIncludeExportPatterns = ((ExtendedScannerInfo) info).getIncludeExportPatterns();
         fLocationMap= new LocationMap(fLexOptions);
-        fKeywords= new CharArrayIntMap(40, -1);
+        fKeywords= new OpenCharArrayIntMap(128, -1);
         fPPKeywords= new CharArrayIntMap(40, -1);
         configureKeywords(language, configuration);
 
@@ -411,11 +412,13 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 	
 	private void configureKeywords(ParserLanguage language, IScannerExtensionConfiguration configuration) {
 		Keywords.addKeywordsPreprocessor(fPPKeywords);
+		CharArrayIntMap keywords= new CharArrayIntMap(40, -1);
 		if (language == ParserLanguage.C) {
-        	Keywords.addKeywordsC(fKeywords);
+        	Keywords.addKeywordsC(keywords);
         } else {
-        	Keywords.addKeywordsCpp(fKeywords);
+        	Keywords.addKeywordsCpp(keywords);
         }
+		fKeywords.putAll(keywords);
         CharArrayIntMap additionalKeywords= configuration.getAdditionalKeywords();
         if (additionalKeywords != null) {
         	fKeywords.putAll(additionalKeywords);
@@ -1626,8 +1629,9 @@ public class CPreprocessor implements ILexerLog, IScanner, IAdaptable {
 			if (source != null) {
 				ILocationCtx ctx= fLocationMap.pushInclusion(poundOffset, nameOffsets[0], nameOffsets[1],
 						condEndOffset, source, path, headerName, userInclude, isHeuristic, fi.isSource());
-				ScannerContext fctx= new ScannerContext(ctx, fCurrentContext,
-						new Lexer(source, fLexOptions, this, this));
+				Lexer includedLexer= new Lexer(source, fLexOptions, this, this);
+				includedLexer.setTokenCache(LexedTokenCache.getSharedInstance());
+				ScannerContext fctx= new ScannerContext(ctx, fCurrentContext, includedLexer);
 				fctx.setFoundOnPath(fi.getFoundOnPath(), includeDirective);
 				detectIncludeGuard(path, source, fctx);
 				fCurrentContext= fctx;
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.cdt.core.dom.ast.IASTComment;
+import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
+
+/**
+ * The comments encountered by the preprocessor, kept in parallel arrays rather than as nodes.
+ * The nodes are created when the comments are requested, a node is created once and returned
+ * on subsequent requests. The indexer requests only the comments of the files it stores, the
+ * comments of the other headers never become nodes.
+ */
+final class CommentTable {
+	private static final int BLOCK_COMMENT = 1;
+
+	private int fSize;
+	private int[] fOffsets = new int[64];
+	private int[] fEndOffsets = new int[64];
+	/** The index of the file path shifted left by one, or'ed with {@link #BLOCK_COMMENT}. */
+	private int[] fFlags = new int[64];
+	private final List<String> fFilePaths = new ArrayList<>();
+	private String fLastFilePath;
+	private ASTComment[] fNodes = new ASTComment[64];
+
+	public void add(String filePath, int offset, int endOffset, boolean isBlockComment) {
+		if (fSize == fOffsets.length) {
+			final int n = fSize * 2;
+			fOffsets = Arrays.copyOf(fOffsets, n);
+			fEndOffsets = Arrays.copyOf(fEndOffsets, n);
+			fFlags = Arrays.copyOf(fFlags, n);
+			fNodes = Arrays.copyOf(fNodes, n);
+		}
+		// Comments of a file are encountered in sequence, typically with the identical path.
+		if (fFilePaths.isEmpty() || filePath != fLastFilePath) {
+			fFilePaths.add(filePath);
+			fLastFilePath = filePath;
+		}
+		fOffsets[fSize] = offset;
+		fEndOffsets[fSize] = endOffset;
+		fFlags[fSize] = (fFilePaths.size() - 1) << 1 | (isBlockComment ? BLOCK_COMMENT : 0);
+		fSize++;
+	}
+
+	public int size() {
+		return fSize;
+	}
+
+	/**
+	 * Returns the nodes for all comments.
+	 */
+	public IASTComment[] getComments(IASTTranslationUnit tu) {
+		IASTComment[] result = new IASTComment[fSize];
+		for (int i = 0; i < fSize; i++) {
+			result[i] = getNode(tu, i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the nodes for the comments in the files with the given paths.
+	 */
+	public IASTComment[] getComments(IASTTranslationUnit tu, Set<String> filePaths) {
+		// Decide once per run of comments from the same file.
+		boolean[] included = new boolean[fFilePaths.size()];
+		for (int i = 0; i < included.length; i++) {
+			included[i] = filePaths.contains(fFilePaths.get(i));
+		}
+		List<IASTComment> result = new ArrayList<>();
+		for (int i = 0; i < fSize; i++) {
+			if (included[fFlags[i] >>> 1])
+				result.add(getNode(tu, i));
+		}
+		return result.toArray(new IASTComment[result.size()]);
+	}
+
+	private ASTComment getNode(IASTTranslationUnit tu, int i) {
+		ASTComment node = fNodes[i];
+		if (node == null) {
+			final int flags = fFlags[i];
+			node = new ASTComment(tu, fFilePaths.get(flags >>> 1), fOffsets[i], fEndOffsets[i],
+					(flags & BLOCK_COMMENT) != 0);
+			fNodes[i] = node;
+		}
+		return node;
+	}
+}
@@ -19,8 +19,8 @@ import java.util.ArrayList;
 import org.eclipse.cdt.core.dom.ast.IASTName;
 import org.eclipse.cdt.core.parser.IProblem;
 import org.eclipse.cdt.core.parser.IToken;
-import org.eclipse.cdt.core.parser.util.CharArrayMap;
 import org.eclipse.cdt.core.parser.util.CharArrayUtils;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayMap;
 
 /**
  * Used to evaluate expressions in preprocessor directives.
@@ -45,7 +45,7 @@ public class ExpressionEvaluator {
     }
 
 	private Token fTokens;
-	private CharArrayMap<PreprocessorMacro> fDictionary;
+	private OpenCharArrayMap<PreprocessorMacro> fDictionary;
 	private ArrayList<IASTName> fMacrosInDefinedExpressions= new ArrayList<>();
 	private LocationMap fLocationMap;
 	private CPreprocessor fPreprocessor;
@@ -54,7 +54,7 @@ public class ExpressionEvaluator {
 		fPreprocessor = preprocessor;
 	}
 
-	public boolean evaluate(TokenList condition, CharArrayMap<PreprocessorMacro> macroDictionary,
+	public boolean evaluate(TokenList condition, OpenCharArrayMap<PreprocessorMacro> macroDictionary,
 			LocationMap map) throws EvalException {
 		fTokens= condition.first();
 		fDictionary= macroDictionary;
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.cdt.internal.core.parser.scanner;
 
+import java.util.Set;
+
 import org.eclipse.cdt.core.dom.ast.IASTComment;
 import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
 import org.eclipse.cdt.core.dom.ast.IASTImageLocation;
@@ -74,6 +76,12 @@ public interface ILocationResolver {
      */
 	IASTComment[] getComments();
 
+	/**
+	 * Returns the comments encountered in the files with the given paths. Nodes are created
+	 * only for these comments.
+	 */
+	IASTComment[] getComments(Set<String> filePaths);
+
 	/**
      * @see IASTTranslationUnit#getFilePath()
      */
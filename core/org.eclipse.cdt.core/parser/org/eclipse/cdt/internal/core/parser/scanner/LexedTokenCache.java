@@ -0,0 +1,458 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.scanner;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+
+/**
+ * Caches the preprocessor tokens produced by the {@link Lexer} for the contents of a file,
+ * such that a file that is lexed again, in the same or in another translation unit, can be
+ * served from the cache rather than by scanning its characters.
+ * <p>
+ * The tokens of a file depend only on its contents and on the lexer options, the key of a cached
+ * stream is therefore the contents hash computed by {@link StreamHasher}, the length of the file
+ * and the options. The comments and the problems reported by the lexer are recorded with the
+ * tokens and are reported again when the tokens are replayed.
+ * <p>
+ * The cache holds the streams that were used most recently up to a maximum estimated memory size,
+ * the size of the shared instance is adjusted to the preferences by the PDOMManager. Before running
+ * out of memory all streams are thrown away. The class is thread-safe, the cached streams are
+ * immutable.
+ */
+public final class LexedTokenCache {
+	/** Files smaller than that are lexed faster than the tokens can be looked up. */
+	private static final int MIN_FILE_LENGTH = 2048;
+	private static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+	private static final LexedTokenCache sSharedInstance = new LexedTokenCache(DEFAULT_MAX_SIZE);
+
+	/**
+	 * Returns the cache shared by all preprocessors.
+	 */
+	public static LexedTokenCache getSharedInstance() {
+		return sSharedInstance;
+	}
+
+	private Reference<LinkedHashMap<Key, TokenStream>> fStreams = new SoftReference<>(null);
+	private long fMaxSize;
+	private long fSize;
+	private long fHits;
+	private long fMisses;
+	private long fEvictions;
+
+	public LexedTokenCache(long maxSize) {
+		fMaxSize = maxSize;
+	}
+
+	/**
+	 * Returns the key for caching the tokens of the given input, or <code>null</code> if the input
+	 * is not worth caching.
+	 */
+	Key createKey(AbstractCharArray input, LexerOptions options) {
+		int length = input.tryGetLength();
+		if (length >= 0 && length < MIN_FILE_LENGTH)
+			return null;
+		long hash = input.getContentsHash();
+		if (input.hasError())
+			return null;
+		length = input.getLength();
+		if (length < MIN_FILE_LENGTH)
+			return null;
+		return new Key(hash, length, options);
+	}
+
+	/**
+	 * Returns the cached token stream for the given key, or <code>null</code>.
+	 */
+	synchronized TokenStream get(Key key) {
+		TokenStream stream = getStreams().get(key);
+		if (stream != null) {
+			fHits++;
+		} else {
+			fMisses++;
+		}
+		return stream;
+	}
+
+	/**
+	 * Adds a completely recorded token stream to the cache.
+	 */
+	synchronized void put(Key key, TokenStream stream) {
+		final long size = stream.getMemorySize();
+		if (size > fMaxSize)
+			return;
+		TokenStream old = getStreams().put(key, stream);
+		if (old != null) {
+			fSize -= old.getMemorySize();
+		}
+		fSize += size;
+		evict();
+	}
+
+	private LinkedHashMap<Key, TokenStream> getStreams() {
+		LinkedHashMap<Key, TokenStream> streams = fStreams.get();
+		if (streams == null) {
+			// The streams have been collected or were never created.
+			streams = new LinkedHashMap<>(16, 0.75f, true);
+			fStreams = new SoftReference<>(streams);
+			fSize = 0;
+		}
+		return streams;
+	}
+
+	private void evict() {
+		for (Iterator<TokenStream> it = getStreams().values().iterator(); fSize > fMaxSize && it.hasNext();) {
+			fSize -= it.next().getMemorySize();
+			it.remove();
+			fEvictions++;
+		}
+	}
+
+	/**
+	 * Changes the maximum memory size of the cached streams, in bytes.
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		fMaxSize = maxSize;
+		evict();
+	}
+
+	public synchronized long getMaxSize() {
+		return fMaxSize;
+	}
+
+	/**
+	 * Returns the estimated memory size of the cached streams, in bytes.
+	 */
+	public synchronized long getSize() {
+		getStreams();
+		return fSize;
+	}
+
+	public synchronized int getStreamCount() {
+		return getStreams().size();
+	}
+
+	/**
+	 * Returns the number of files that have been served from the cache.
+	 */
+	public synchronized long getHitCount() {
+		return fHits;
+	}
+
+	/**
+	 * Returns the number of files that were not found in the cache.
+	 */
+	public synchronized long getMissCount() {
+		return fMisses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return fEvictions;
+	}
+
+	/**
+	 * Returns the ratio of hits to lookups, or 0 if there were no lookups.
+	 */
+	public synchronized double getHitRate() {
+		final long lookups = fHits + fMisses;
+		return lookups == 0 ? 0 : (double) fHits / lookups;
+	}
+
+	/**
+	 * Removes all streams from the cache and resets the counters.
+	 */
+	public synchronized void clear() {
+		fStreams.clear();
+		fSize = 0;
+		fHits = fMisses = fEvictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getStreams().size() + " files, " + fSize / 1024 + " KB, " + fHits + " hits, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ fMisses + " misses, " + fEvictions + " evictions"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	static final class Key {
+		private final long fHash;
+		private final int fLength;
+		private final int fOptions;
+
+		Key(long hash, int length, LexerOptions options) {
+			fHash = hash;
+			fLength = length;
+			int bits = 0;
+			if (options.fSupportDollarInIdentifiers)
+				bits |= 0x1;
+			if (options.fSupportAtSignInIdentifiers)
+				bits |= 0x2;
+			if (options.fSupportMinAndMax)
+				bits |= 0x4;
+			if (options.fSupportSlashPercentComments)
+				bits |= 0x8;
+			if (options.fSupportUTFLiterals)
+				bits |= 0x10;
+			if (options.fSupportRawStringLiterals)
+				bits |= 0x20;
+			if (options.fSupportUserDefinedLiterals)
+				bits |= 0x40;
+			fOptions = bits;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (fHash ^ (fHash >>> 32)) * 31 + fOptions;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return fHash == other.fHash && fLength == other.fLength && fOptions == other.fOptions;
+		}
+	}
+
+	/**
+	 * The tokens of one file. A token is found by the state the lexer is in when it starts to
+	 * look for the token, that is the offset and whether it is inside of an include directive.
+	 * For every token the state of the lexer after the token and the comments and problems
+	 * encountered while lexing the token are stored.
+	 */
+	static final class TokenStream {
+		static final int FLAG_DIGRAPH = 0x1;
+		static final int FLAG_INSIDE_INCLUDE = 0x2;
+
+		static final int EVENT_BLOCK_COMMENT = 0;
+		static final int EVENT_LINE_COMMENT = 1;
+		static final int EVENT_PROBLEM = 2;
+
+		final int fCount;
+		final int[] fStates;
+		final int[] fTypes;
+		final byte[] fFlags;
+		final int[] fOffsets;
+		final int[] fEndOffsets;
+		final char[][] fImages;
+		final int[] fNextOffsets;
+		final int[] fNextEndOffsets;
+		final int[] fNextChars;
+		final int[] fFirstEvents;
+
+		final byte[] fEventKinds;
+		final int[] fEventIDs;
+		final int[] fEventOffsets;
+		final int[] fEventEndOffsets;
+		final char[][] fEventInfos;
+
+		private final int[] fTable;
+
+		TokenStream(Recorder recorder) {
+			final int n = recorder.fCount;
+			fCount = n;
+			fStates = Arrays.copyOf(recorder.fStates, n);
+			fTypes = Arrays.copyOf(recorder.fTypes, n);
+			fFlags = Arrays.copyOf(recorder.fFlags, n);
+			fOffsets = Arrays.copyOf(recorder.fOffsets, n);
+			fEndOffsets = Arrays.copyOf(recorder.fEndOffsets, n);
+			fImages = Arrays.copyOf(recorder.fImages, n);
+			fNextOffsets = Arrays.copyOf(recorder.fNextOffsets, n);
+			fNextEndOffsets = Arrays.copyOf(recorder.fNextEndOffsets, n);
+			fNextChars = Arrays.copyOf(recorder.fNextChars, n);
+			fFirstEvents = Arrays.copyOf(recorder.fFirstEvents, n + 1);
+			fFirstEvents[n] = recorder.fEventCount;
+
+			final int e = recorder.fEventCount;
+			fEventKinds = Arrays.copyOf(recorder.fEventKinds, e);
+			fEventIDs = Arrays.copyOf(recorder.fEventIDs, e);
+			fEventOffsets = Arrays.copyOf(recorder.fEventOffsets, e);
+			fEventEndOffsets = Arrays.copyOf(recorder.fEventEndOffsets, e);
+			fEventInfos = Arrays.copyOf(recorder.fEventInfos, e);
+
+			fTable = recorder.fTable;
+		}
+
+		/**
+		 * Returns the index of the token the lexer finds in the given state, or -1. The
+		 * tokens are replayed in order most of the time, so the expected index is checked first.
+		 */
+		int find(int state, int expectedIndex) {
+			if (expectedIndex < fCount && fStates[expectedIndex] == state)
+				return expectedIndex;
+			return lookup(fTable, fStates, state);
+		}
+
+		long getMemorySize() {
+			// Arrays with 4 bytes per entry, the images are shared with the tokens.
+			long size = fCount * (9L * 4 + 1 + 8) + fTable.length * 4L;
+			size += fEventKinds.length * (4L * 3 + 1 + 8);
+			for (char[] image : fImages) {
+				if (image != null)
+					size += 16 + image.length * 2;
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Collects the tokens of a file while it is lexed.
+	 */
+	static final class Recorder {
+		private final Key fKey;
+		int fCount;
+		int[] fStates = new int[1024];
+		int[] fTypes = new int[1024];
+		byte[] fFlags = new byte[1024];
+		int[] fOffsets = new int[1024];
+		int[] fEndOffsets = new int[1024];
+		char[][] fImages = new char[1024][];
+		int[] fNextOffsets = new int[1024];
+		int[] fNextEndOffsets = new int[1024];
+		int[] fNextChars = new int[1024];
+		int[] fFirstEvents = new int[1025];
+		int[] fTable = new int[2048];
+
+		int fEventCount;
+		byte[] fEventKinds = new byte[256];
+		int[] fEventIDs = new int[256];
+		int[] fEventOffsets = new int[256];
+		int[] fEventEndOffsets = new int[256];
+		char[][] fEventInfos = new char[256][];
+
+		private boolean fInToken;
+
+		Recorder(Key key) {
+			fKey = key;
+		}
+
+		Key getKey() {
+			return fKey;
+		}
+
+		/**
+		 * Starts recording a token for the given lexer state. Returns <code>false</code> if
+		 * the token for the state has been recorded, already.
+		 */
+		boolean startToken(int state) {
+			if (lookup(fTable, fStates, state) >= 0)
+				return false;
+			if (fCount == fStates.length) {
+				grow(fCount * 2);
+			}
+			fStates[fCount] = state;
+			fFirstEvents[fCount] = fEventCount;
+			fInToken = true;
+			return true;
+		}
+
+		void addEvent(int kind, int id, int offset, int endOffset, char[] info) {
+			if (!fInToken)
+				return;
+			if (fEventCount == fEventKinds.length) {
+				final int n = fEventCount * 2;
+				fEventKinds = Arrays.copyOf(fEventKinds, n);
+				fEventIDs = Arrays.copyOf(fEventIDs, n);
+				fEventOffsets = Arrays.copyOf(fEventOffsets, n);
+				fEventEndOffsets = Arrays.copyOf(fEventEndOffsets, n);
+				fEventInfos = Arrays.copyOf(fEventInfos, n);
+			}
+			fEventKinds[fEventCount] = (byte) kind;
+			fEventIDs[fEventCount] = id;
+			fEventOffsets[fEventCount] = offset;
+			fEventEndOffsets[fEventCount] = endOffset;
+			fEventInfos[fEventCount] = info;
+			fEventCount++;
+		}
+
+		void endToken(Token token, int nextOffset, int nextEndOffset, int nextChar, boolean insideInclude) {
+			final int i = fCount;
+			fTypes[i] = token.getType();
+			int flags = insideInclude ? TokenStream.FLAG_INSIDE_INCLUDE : 0;
+			if (token instanceof TokenForDigraph) {
+				flags |= TokenStream.FLAG_DIGRAPH;
+			} else if (token instanceof TokenWithImage) {
+				fImages[i] = token.getCharImage();
+			}
+			fFlags[i] = (byte) flags;
+			fOffsets[i] = token.getOffset();
+			fEndOffsets[i] = token.getEndOffset();
+			fNextOffsets[i] = nextOffset;
+			fNextEndOffsets[i] = nextEndOffset;
+			fNextChars[i] = nextChar;
+			fCount++;
+			fInToken = false;
+			if (fCount * 2 > fTable.length) {
+				fTable = new int[fTable.length * 2];
+				for (int j = 0; j < fCount; j++) {
+					insert(fTable, fStates[j], j);
+				}
+			} else {
+				insert(fTable, fStates[i], i);
+			}
+		}
+
+		private void grow(int n) {
+			fStates = Arrays.copyOf(fStates, n);
+			fTypes = Arrays.copyOf(fTypes, n);
+			fFlags = Arrays.copyOf(fFlags, n);
+			fOffsets = Arrays.copyOf(fOffsets, n);
+			fEndOffsets = Arrays.copyOf(fEndOffsets, n);
+			fImages = Arrays.copyOf(fImages, n);
+			fNextOffsets = Arrays.copyOf(fNextOffsets, n);
+			fNextEndOffsets = Arrays.copyOf(fNextEndOffsets, n);
+			fNextChars = Arrays.copyOf(fNextChars, n);
+			fFirstEvents = Arrays.copyOf(fFirstEvents, n + 1);
+		}
+
+		TokenStream finish() {
+			return new TokenStream(this);
+		}
+	}
+
+	/**
+	 * Open addressing table mapping lexer states to token indices, stored as index + 1.
+	 */
+	private static void insert(int[] table, int state, int index) {
+		final int mask = table.length - 1;
+		int slot = mix(state) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = index + 1;
+	}
+
+	private static int lookup(int[] table, int[] states, int state) {
+		final int mask = table.length - 1;
+		int slot = mix(state) & mask;
+		int entry;
+		while ((entry = table[slot]) != 0) {
+			if (states[entry - 1] == state)
+				return entry - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Combines the offset and the include directive flag of the lexer into a state.
+	 */
+	static int state(int offset, boolean insideIncludeDirective) {
+		return insideIncludeDirective ? (offset << 1) | 1 : offset << 1;
+	}
+}
@@ -106,6 +106,12 @@ final public class Lexer implements ITokenSequence {
 	private boolean fMarkInsideIncludeDirective;
 	private Token fMarkToken;
 	private Token fMarkLastToken;
+
+	// Replaying or recording the tokens of the input, see LexedTokenCache.
+	private LexedTokenCache fTokenCache;
+	private LexedTokenCache.TokenStream fReplay;
+	private int fReplayIndex;
+	private LexedTokenCache.Recorder fRecorder;
 	
 	public Lexer(char[] input, LexerOptions options, ILexerLog log, Object source) {
 		this(new CharArray(input), 0, input.length, options, log, source);
@@ -145,6 +151,8 @@ final public class Lexer implements ITokenSequence {
 	 */
 	public void setContentAssistMode(int offset) {
 		fSupportContentAssist= true;
+		fReplay= null;
+		fRecorder= null;
 		if (isValidOffset(offset)) {
 			fLimit= offset;
 		}
@@ -157,6 +165,25 @@ final public class Lexer implements ITokenSequence {
 		return fSupportContentAssist;
 	}
 
+	/**
+	 * Makes the lexer take the tokens from the given cache if the input has been lexed before,
+	 * or record the tokens for the cache otherwise. Must be called before the first token is
+	 * requested.
+	 */
+	public void setTokenCache(LexedTokenCache cache) {
+		if (fSupportContentAssist || fStart != 0 || fToken.getType() != tBEFORE_INPUT)
+			return;
+		LexedTokenCache.Key key= cache.createKey(fInput, fOptions);
+		if (key == null)
+			return;
+		fReplay= cache.get(key);
+		fReplayIndex= 0;
+		if (fReplay == null) {
+			fTokenCache= cache;
+			fRecorder= new LexedTokenCache.Recorder(key);
+		}
+	}
+
 	/**
 	 * Call this before consuming the name-token in the include directive. It causes the header-file 
 	 * tokens to be created. 
@@ -257,9 +284,70 @@ final public class Lexer implements ITokenSequence {
 	}
 	
 	/**
-	 * Computes the next token.
+	 * Returns the next token, either from the token cache or by lexing the input.
 	 */
 	private Token fetchToken() throws OffsetLimitReachedException {
+		if (fReplay != null) {
+			final int index= fReplay.find(LexedTokenCache.state(fOffset, fInsideIncludeDirective), fReplayIndex);
+			if (index >= 0) {
+				fReplayIndex= index + 1;
+				return replayToken(index);
+			}
+		} else if (fRecorder != null) {
+			if (fRecorder.startToken(LexedTokenCache.state(fOffset, fInsideIncludeDirective))) {
+				final Token t;
+				try {
+					t= lexToken();
+				} catch (OffsetLimitReachedException e) {
+					fRecorder= null;
+					throw e;
+				}
+				fRecorder.endToken(t, fOffset, fEndOffset, fCharPhase3, fInsideIncludeDirective);
+				if (t.getType() == IToken.tEND_OF_INPUT) {
+					fTokenCache.put(fRecorder.getKey(), fRecorder.finish());
+					fRecorder= null;
+				}
+				return t;
+			}
+		}
+		return lexToken();
+	}
+
+	private Token replayToken(int index) {
+		final LexedTokenCache.TokenStream stream= fReplay;
+		for (int i= stream.fFirstEvents[index]; i < stream.fFirstEvents[index + 1]; i++) {
+			switch (stream.fEventKinds[i]) {
+			case LexedTokenCache.TokenStream.EVENT_PROBLEM:
+				fLog.handleProblem(stream.fEventIDs[i], stream.fEventInfos[i], stream.fEventOffsets[i],
+						stream.fEventEndOffsets[i]);
+				break;
+			default:
+				fLog.handleComment(stream.fEventKinds[i] == LexedTokenCache.TokenStream.EVENT_BLOCK_COMMENT,
+						stream.fEventOffsets[i], stream.fEventEndOffsets[i], fInput);
+				break;
+			}
+		}
+		fOffset= stream.fNextOffsets[index];
+		fEndOffset= stream.fNextEndOffsets[index];
+		fCharPhase3= stream.fNextChars[index];
+		final int flags= stream.fFlags[index];
+		fInsideIncludeDirective= (flags & LexedTokenCache.TokenStream.FLAG_INSIDE_INCLUDE) != 0;
+
+		final int type= stream.fTypes[index];
+		final int offset= stream.fOffsets[index];
+		final int endOffset= stream.fEndOffsets[index];
+		if ((flags & LexedTokenCache.TokenStream.FLAG_DIGRAPH) != 0)
+			return new TokenForDigraph(type, fSource, offset, endOffset);
+		final char[] image= stream.fImages[index];
+		if (image != null)
+			return new TokenWithImage(type, fSource, offset, endOffset, image);
+		return new Token(type, fSource, offset, endOffset);
+	}
+
+	/**
+	 * Computes the next token.
+	 */
+	private Token lexToken() throws OffsetLimitReachedException {
 		while (true) {
 			final int start= fOffset;
 			final int c= fCharPhase3;
@@ -672,9 +760,20 @@ final public class Lexer implements ITokenSequence {
     }
 
     private void handleProblem(int problemID, char[] arg, int offset) {
+    	if (fRecorder != null)
+    		fRecorder.addEvent(LexedTokenCache.TokenStream.EVENT_PROBLEM, problemID, offset, fOffset, arg);
     	fLog.handleProblem(problemID, arg, offset, fOffset);
     }
 
+	private void handleComment(boolean isBlockComment, int offset, int endOffset) {
+		if (fRecorder != null) {
+			fRecorder.addEvent(isBlockComment ?
+					LexedTokenCache.TokenStream.EVENT_BLOCK_COMMENT : LexedTokenCache.TokenStream.EVENT_LINE_COMMENT,
+					0, offset, endOffset, null);
+		}
+		fLog.handleComment(isBlockComment, offset, endOffset, fInput);
+	}
+
 	private Token headerName(final int start, final boolean expectQuotes) throws OffsetLimitReachedException {
     	int length= 1;
 		boolean done = false;
@@ -712,14 +811,14 @@ final public class Lexer implements ITokenSequence {
 				fEndOffset= pos;
 				if (nextCharPhase3() == '/') {
 					nextCharPhase3();
-					fLog.handleComment(true, start, fOffset, fInput);
+					handleComment(true, start, fOffset);
 					return;
 				}
 			}
 		}
 		fCharPhase3= END_OF_INPUT;
 		fOffset= fEndOffset= pos;
-		fLog.handleComment(true, start, pos, fInput);
+		handleComment(true, start, pos);
 	}
 
 	private void lineComment(final int start) {
@@ -728,7 +827,7 @@ final public class Lexer implements ITokenSequence {
 			switch (c) {
 			case END_OF_INPUT:
 			case '\n':
-				fLog.handleComment(false, start, fOffset, fInput);
+				handleComment(false, start, fOffset);
 				return;
 			}
 			c= nextCharPhase3();
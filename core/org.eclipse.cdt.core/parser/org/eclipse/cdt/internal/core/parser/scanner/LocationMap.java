@@ -13,10 +13,13 @@ package org.eclipse.cdt.internal.core.parser.scanner;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.cdt.core.dom.IName;
 import org.eclipse.cdt.core.dom.ast.IASTComment;
@@ -56,7 +59,7 @@ public class LocationMap implements ILocationResolver {
 
     private ArrayList<ASTPreprocessorNode> fDirectives= new ArrayList<>();
     private ArrayList<ASTProblem> fProblems= new ArrayList<>();
-    private ArrayList<ASTComment> fComments= new ArrayList<>();
+    private final CommentTable fComments= new CommentTable();
     private ArrayList<ASTMacroDefinition> fBuiltinMacros= new ArrayList<>();
 	private ArrayList<ASTPreprocessorName> fMacroReferences= new ArrayList<>();
 	
@@ -273,7 +276,6 @@ public class LocationMap implements ILocationResolver {
 	}
 
 	public void encounteredComment(int offset, int endOffset, boolean isBlockComment, AbstractCharArray input) {
-		ASTComment comment = new ASTComment(fTranslationUnit, getCurrentFilePath(), offset, endOffset, isBlockComment);
 		if (fLexerOptions.fIncludeExportPatterns != null && fCurrentContext instanceof LocationCtxFile) {
 			CharSequence text = getTrimmedCommentText(input.subSequence(offset, endOffset), isBlockComment);
 			IncludeExportPatterns patterns = fLexerOptions.fIncludeExportPatterns;
@@ -288,7 +290,7 @@ public class LocationMap implements ILocationResolver {
 				((LocationCtxFile) fCurrentContext).setInsideIncludeExportBlock(false);
 			}
 		}
-		fComments.add(comment);
+		fComments.add(getCurrentFilePath(), offset, endOffset, isBlockComment);
 	}
 
 	private CharSequence getTrimmedCommentText(CharSequence comment, boolean isBlockComment) {
@@ -762,7 +764,12 @@ public class LocationMap implements ILocationResolver {
 
 	@Override
 	public IASTComment[] getComments() {
-    	return fComments.toArray(new IASTComment[fComments.size()]);
+    	return fComments.getComments(fTranslationUnit);
+	}
+
+	@Override
+	public IASTComment[] getComments(Set<String> filePaths) {
+		return fComments.getComments(fTranslationUnit, filePaths);
 	}
 
     @Override
@@ -838,6 +845,179 @@ public class LocationMap implements ILocationResolver {
 		return result.toArray(new ASTPreprocessorName[result.size()]);
 	}
 
+	/**
+	 * Returns the source of the translation unit.
+	 */
+	public AbstractCharArray getTranslationUnitSource() {
+		return fRootContext.getSource();
+	}
+
+	/**
+	 * Checks whether this location map results from preprocessing the translation unit of the
+	 * given one after a region of its source was replaced, and whether the change is confined
+	 * to that region. This is the case when the preprocessor is configured the same way, the change
+	 * contains no directives, the contexts before the change are identical and the ones behind it
+	 * are shifted by the change.
+	 * Expansions of macros whose value depends on where they are expanded must not follow the
+	 * change.
+	 *
+	 * @param old the location map of the translation unit before the change.
+	 * @param offset the file offset where the change starts.
+	 * @param oldEndOffset the file offset where the change ends in the old source.
+	 * @param newEndOffset the file offset where the change ends in the new source.
+	 * @param sequenceShift the difference of the sequence numbers behind the change.
+	 */
+	public boolean isConfinedChangeOf(LocationMap old, int offset, int oldEndOffset, int newEndOffset,
+			int sequenceShift) {
+		if (!fTranslationUnitPath.equals(old.fTranslationUnitPath))
+			return false;
+		// The configuration of the preprocessor must not have changed.
+		if (fBuiltinMacros.size() != old.fBuiltinMacros.size())
+			return false;
+		for (int i= 0; i < fBuiltinMacros.size(); i++) {
+			final ASTMacroDefinition macro= fBuiltinMacros.get(i);
+			final ASTMacroDefinition oldMacro= old.fBuiltinMacros.get(i);
+			if (!CharArrayUtils.equals(macro.getName().toCharArray(), oldMacro.getName().toCharArray()))
+				return false;
+			// The expansion of __DATE__ or __TIME__ depends on when it is computed.
+			if (!(macro.getMacro() instanceof DynamicMacro) && !macro.getExpansion().equals(oldMacro.getExpansion()))
+				return false;
+		}
+		if (!isShiftedVersionOf(fRootContext.getChildren(), old.fRootContext.getChildren(), offset,
+				oldEndOffset, newEndOffset, sequenceShift)) {
+			return false;
+		}
+
+		final int oldStart= old.fRootContext.getSequenceNumberForOffset(offset, true);
+		final int oldEnd= old.fRootContext.getSequenceNumberForOffset(oldEndOffset, true);
+		final int newStart= fRootContext.getSequenceNumberForOffset(offset, true);
+		final int newEnd= fRootContext.getSequenceNumberForOffset(newEndOffset, true);
+		if (containsNode(old.fDirectives, oldStart, oldEnd) || containsNode(fDirectives, newStart, newEnd)
+				|| containsNode(old.fProblems, oldStart, oldEnd) || containsNode(fProblems, newStart, newEnd)) {
+			return false;
+		}
+
+		// Without directives in the change the directives correspond to each other.
+		if (fDirectives.size() != old.fDirectives.size())
+			return false;
+		for (int i= 0; i < fDirectives.size(); i++) {
+			final ASTPreprocessorNode directive= fDirectives.get(i);
+			final ASTPreprocessorNode oldDirective= old.fDirectives.get(i);
+			if (directive.getClass() != oldDirective.getClass())
+				return false;
+			if (directive instanceof ASTInclusionStatement) {
+				final ASTInclusionStatement include= (ASTInclusionStatement) directive;
+				final ASTInclusionStatement oldInclude= (ASTInclusionStatement) oldDirective;
+				if (include.isResolved() != oldInclude.isResolved() || !include.getPath().equals(oldInclude.getPath()))
+					return false;
+			}
+		}
+
+		final boolean linesChanged= countLines(old.getTranslationUnitSource(), offset, oldEndOffset)
+				!= countLines(getTranslationUnitSource(), offset, newEndOffset);
+		for (ASTPreprocessorName ref : fMacroReferences) {
+			if (ref.getOffset() >= newStart && isPositionDependentMacro(ref.getBinding(), linesChanged))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isShiftedVersionOf(Collection<LocationCtx> children, Collection<LocationCtx> oldChildren,
+			int offset, int oldEndOffset, int newEndOffset, int sequenceShift) {
+		final int offsetShift= newEndOffset - oldEndOffset;
+		Iterator<LocationCtx> it= children.iterator();
+		LocationCtx child= it.hasNext() ? it.next() : null;
+		for (LocationCtx oldChild : oldChildren) {
+			if (oldChild.fEndOffsetInParent <= offset) {
+				if (child == null || !isShiftedVersionOf(child, oldChild, 0, 0))
+					return false;
+				child= it.hasNext() ? it.next() : null;
+			} else if (oldChild.fOffsetInParent >= oldEndOffset) {
+				// Skip the contexts within the new version of the change.
+				while (child != null && child.fOffsetInParent < newEndOffset) {
+					if (child.fOffsetInParent < offset || child.fEndOffsetInParent > newEndOffset)
+						return false;
+					child= it.hasNext() ? it.next() : null;
+				}
+				if (child == null || !isShiftedVersionOf(child, oldChild, offsetShift, sequenceShift))
+					return false;
+				child= it.hasNext() ? it.next() : null;
+			} else if (oldChild.fOffsetInParent < offset || oldChild.fEndOffsetInParent > oldEndOffset) {
+				// The context overlaps the boundary of the change.
+				return false;
+			}
+		}
+		while (child != null) {
+			if (child.fOffsetInParent < offset || child.fEndOffsetInParent > newEndOffset)
+				return false;
+			child= it.hasNext() ? it.next() : null;
+		}
+		return true;
+	}
+
+	private static boolean isShiftedVersionOf(LocationCtx ctx, LocationCtx old, int offsetShift, int sequenceShift) {
+		if (ctx.getClass() != old.getClass()
+				|| ctx.fOffsetInParent != old.fOffsetInParent + offsetShift
+				|| ctx.fEndOffsetInParent != old.fEndOffsetInParent + offsetShift
+				|| ctx.fSequenceNumber != old.fSequenceNumber + sequenceShift
+				|| ctx.getSequenceLength() != old.getSequenceLength()) {
+			return false;
+		}
+		if (ctx instanceof LocationCtxContainer) {
+			if (ctx instanceof LocationCtxFile && !ctx.getFilePath().equals(old.getFilePath()))
+				return false;
+			final AbstractCharArray source= ((LocationCtxContainer) ctx).getSource();
+			final AbstractCharArray oldSource= ((LocationCtxContainer) old).getSource();
+			if (source != oldSource) {
+				final int length= source.getLength();
+				if (length != oldSource.getLength())
+					return false;
+				for (int i= 0; i < length; i++) {
+					if (source.get(i) != oldSource.get(i))
+						return false;
+				}
+			}
+		}
+		// The nested contexts are not affected by the change.
+		Collection<LocationCtx> children= ctx.getChildren();
+		Collection<LocationCtx> oldChildren= old.getChildren();
+		if (children.size() != oldChildren.size())
+			return false;
+		Iterator<LocationCtx> it= children.iterator();
+		for (LocationCtx oldChild : oldChildren) {
+			if (!isShiftedVersionOf(it.next(), oldChild, 0, sequenceShift))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean containsNode(List<? extends ASTNode> nodes, int sequenceStart, int sequenceEnd) {
+		for (ASTNode node : nodes) {
+			final int nodeOffset= node.getOffset();
+			if (nodeOffset < sequenceEnd && nodeOffset + node.getLength() > sequenceStart)
+				return true;
+		}
+		return false;
+	}
+
+	private static int countLines(AbstractCharArray source, int offset, int endOffset) {
+		int lines= 0;
+		for (int i= offset; i < endOffset; i++) {
+			if (source.get(i) == '\n')
+				lines++;
+		}
+		return lines;
+	}
+
+	/**
+	 * Checks whether the value of the given macro depends on where or when it is expanded.
+	 */
+	private static boolean isPositionDependentMacro(IBinding macro, boolean linesChanged) {
+		if (macro instanceof LineMacro)
+			return linesChanged;
+		return macro instanceof DynamicMacro && !(macro instanceof FileMacro);
+	}
+
 	@Override
 	public IDependencyTree getDependencyTree() {
         return new DependencyTree(fRootContext);
@@ -20,12 +20,12 @@ import org.eclipse.cdt.core.parser.IProblem;
 import org.eclipse.cdt.core.parser.IToken;
 import org.eclipse.cdt.core.parser.Keywords;
 import org.eclipse.cdt.core.parser.OffsetLimitReachedException;
-import org.eclipse.cdt.core.parser.util.CharArrayMap;
 import org.eclipse.cdt.core.parser.util.CharArrayUtils;
 import org.eclipse.cdt.internal.core.parser.scanner.ImageLocationInfo.MacroImageLocationInfo;
 import org.eclipse.cdt.internal.core.parser.scanner.ImageLocationInfo.ParameterImageLocationInfo;
 import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
 import org.eclipse.cdt.internal.core.parser.scanner.MacroDefinitionParser.TokenParameterReference;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayMap;
 
 /**
  * Utility class to perform macro expansion.
@@ -123,7 +123,7 @@ public class MacroExpander {
 
 	private final ILexerLog fLog;
 	private final MacroDefinitionParser fDefinitionParser;
-	private final CharArrayMap<PreprocessorMacro> fDictionary;
+	private final OpenCharArrayMap<PreprocessorMacro> fDictionary;
 	private final LocationMap fLocationMap;
 	private final LexerOptions fLexOptions;
 	private ArrayList<IASTName> fImplicitMacroExpansions= new ArrayList<IASTName>();
@@ -139,7 +139,7 @@ public class MacroExpander {
 	private ScannerContext fReportMacros;
 	private boolean fReportUndefined;
 
-	public MacroExpander(ILexerLog log, CharArrayMap<PreprocessorMacro> macroDictionary,
+	public MacroExpander(ILexerLog log, OpenCharArrayMap<PreprocessorMacro> macroDictionary,
 			LocationMap locationMap, LexerOptions lexOptions) {
 		fDictionary= macroDictionary;
 		fLocationMap= locationMap;
@@ -17,8 +17,8 @@ import org.eclipse.cdt.core.dom.ast.IASTName;
 import org.eclipse.cdt.core.dom.ast.IBinding;
 import org.eclipse.cdt.core.dom.ast.IMacroBinding;
 import org.eclipse.cdt.core.dom.rewrite.MacroExpansionExplorer;
-import org.eclipse.cdt.core.parser.util.CharArrayMap;
 import org.eclipse.cdt.internal.core.parser.scanner.Lexer.LexerOptions;
+import org.eclipse.cdt.internal.core.parser.util.OpenCharArrayMap;
 import org.eclipse.text.edits.ReplaceEdit;
 
 /**
@@ -27,7 +27,7 @@ import org.eclipse.text.edits.ReplaceEdit;
  */
 public class SingleMacroExpansionExplorer extends MacroExpansionExplorer {
 	private final String fInput;
-	private final CharArrayMap<PreprocessorMacro> fDictionary;
+	private final OpenCharArrayMap<PreprocessorMacro> fDictionary;
 	private MacroExpansionStep fFullExpansion;
 	private int fExpansionCount;
 	private final String fFilePath;
@@ -49,15 +49,15 @@ public class SingleMacroExpansionExplorer extends MacroExpansionExplorer {
 		fLexerOptions.fCreateImageLocations= false;
 	}
 
-	private CharArrayMap<PreprocessorMacro> createDictionary(IASTName[] refs) {
-		CharArrayMap<PreprocessorMacro> map= new CharArrayMap<PreprocessorMacro>(refs.length);
+	private OpenCharArrayMap<PreprocessorMacro> createDictionary(IASTName[] refs) {
+		OpenCharArrayMap<PreprocessorMacro> map= new OpenCharArrayMap<PreprocessorMacro>(refs.length);
 		for (IASTName name : refs) {
 			addMacroDefinition(map, name);
 		}
 		return map;
 	}
 
-	private void addMacroDefinition(CharArrayMap<PreprocessorMacro> map, IASTName name) {
+	private void addMacroDefinition(OpenCharArrayMap<PreprocessorMacro> map, IASTName name) {
 		IBinding binding= name.getBinding();
 		if (binding instanceof PreprocessorMacro) {
 			map.put(name.getSimpleID(), (PreprocessorMacro) binding);
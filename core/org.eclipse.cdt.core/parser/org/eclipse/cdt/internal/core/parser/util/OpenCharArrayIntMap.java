@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.util;
+
+import java.util.Arrays;
+
+import org.eclipse.cdt.core.parser.util.CharArrayIntMap;
+
+/**
+ * Map from char arrays to ints using open addressing, see {@link OpenCharArrayTable}.
+ * Neither looking up nor storing a value boxes it.
+ */
+public final class OpenCharArrayIntMap extends OpenCharArrayTable {
+	private int[] fValues;
+	public final int undefined;
+
+	public OpenCharArrayIntMap(int expectedSize, int undefined) {
+		super(expectedSize);
+		fValues = new int[capacity()];
+		this.undefined = undefined;
+	}
+
+	/**
+	 * Returns the value associated with the given key, or {@link #undefined}.
+	 */
+	public int get(char[] buffer, int start, int length) {
+		final int slot = findSlot(buffer, start, length);
+		return slot < 0 ? undefined : fValues[slot];
+	}
+
+	public int get(char[] key) {
+		return get(key, 0, key.length);
+	}
+
+	/**
+	 * Associates the value with the given key and returns the value previously associated
+	 * with it, or {@link #undefined}.
+	 */
+	public int put(char[] buffer, int start, int length, int value) {
+		final int size = size();
+		final int slot = addSlot(buffer, start, length);
+		final int oldValue = size() > size ? undefined : fValues[slot];
+		fValues[slot] = value;
+		return oldValue;
+	}
+
+	public int put(char[] key, int value) {
+		return put(key, 0, key.length, value);
+	}
+
+	/**
+	 * Removes the given key and returns the value associated with it, or {@link #undefined}.
+	 */
+	public int remove(char[] buffer, int start, int length) {
+		final int slot = findSlot(buffer, start, length);
+		if (slot < 0)
+			return undefined;
+		final int value = fValues[slot];
+		removeSlot(slot);
+		return value;
+	}
+
+	/**
+	 * Puts all mappings of the given map into this map. The keys are not copied.
+	 */
+	public void putAll(CharArrayIntMap map) {
+		for (int i = 0; i < map.size(); i++) {
+			put(map.keyAt(i), map.get(i));
+		}
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		Arrays.fill(fValues, 0);
+	}
+
+	@Override
+	protected void rehashValues(int capacity, int[] newSlots) {
+		final int[] oldValues = fValues;
+		fValues = new int[capacity];
+		for (int i = 0; i < newSlots.length; i++) {
+			if (newSlots[i] >= 0)
+				fValues[newSlots[i]] = oldValues[i];
+		}
+	}
+
+	@Override
+	protected void moveValue(int fromSlot, int toSlot) {
+		fValues[toSlot] = fValues[fromSlot];
+	}
+
+	@Override
+	protected void clearValue(int slot) {
+		fValues[slot] = 0;
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Map from char arrays to objects using open addressing, see {@link OpenCharArrayTable}.
+ * Looking up a key does not allocate. <code>null</code> values are not supported, they cannot
+ * be told apart from missing keys.
+ */
+public final class OpenCharArrayMap<V> extends OpenCharArrayTable {
+	private Object[] fValues;
+
+	public OpenCharArrayMap(int expectedSize) {
+		super(expectedSize);
+		fValues = new Object[capacity()];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(char[] buffer, int start, int length) {
+		final int slot = findSlot(buffer, start, length);
+		return slot < 0 ? null : (V) fValues[slot];
+	}
+
+	public V get(char[] key) {
+		return get(key, 0, key.length);
+	}
+
+	/**
+	 * Associates the value with the given key and returns the value previously associated
+	 * with it, or <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(char[] buffer, int start, int length, V value) {
+		final int slot = addSlot(buffer, start, length);
+		final V oldValue = (V) fValues[slot];
+		fValues[slot] = value;
+		return oldValue;
+	}
+
+	public V put(char[] key, V value) {
+		return put(key, 0, key.length, value);
+	}
+
+	/**
+	 * Removes the given key and returns the value associated with it, or <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(char[] buffer, int start, int length) {
+		final int slot = findSlot(buffer, start, length);
+		if (slot < 0)
+			return null;
+		final V value = (V) fValues[slot];
+		removeSlot(slot);
+		return value;
+	}
+
+	public V remove(char[] key) {
+		return remove(key, 0, key.length);
+	}
+
+	/**
+	 * Returns the values of the map in no particular order.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<>(size());
+		for (int slot = 0; slot < fValues.length; slot++) {
+			if (keyAtSlot(slot) != null)
+				result.add((V) fValues[slot]);
+		}
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		Arrays.fill(fValues, null);
+	}
+
+	@Override
+	protected void rehashValues(int capacity, int[] newSlots) {
+		final Object[] oldValues = fValues;
+		fValues = new Object[capacity];
+		for (int i = 0; i < newSlots.length; i++) {
+			if (newSlots[i] >= 0)
+				fValues[newSlots[i]] = oldValues[i];
+		}
+	}
+
+	@Override
+	protected void moveValue(int fromSlot, int toSlot) {
+		fValues[toSlot] = fValues[fromSlot];
+	}
+
+	@Override
+	protected void clearValue(int slot) {
+		fValues[slot] = null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append('{');
+		for (int slot = 0; slot < fValues.length; slot++) {
+			final char[] key = keyAtSlot(slot);
+			if (key != null) {
+				if (buf.length() > 1)
+					buf.append(", "); //$NON-NLS-1$
+				buf.append(key).append('=').append(fValues[slot]);
+			}
+		}
+		buf.append('}');
+		return buf.toString();
+	}
+}
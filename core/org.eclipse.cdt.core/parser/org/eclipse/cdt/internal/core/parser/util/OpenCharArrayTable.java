@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.parser.util;
+
+import java.util.Arrays;
+
+import org.eclipse.cdt.core.parser.util.CharArrayUtils;
+
+/**
+ * Base class for hash tables keyed by char arrays, using open addressing with linear probing.
+ * Compared to {@link org.eclipse.cdt.core.parser.util.CharArrayObjectMap} and
+ * {@link org.eclipse.cdt.core.parser.util.CharArrayMap} there are no chains or entry objects,
+ * the keys, their hash codes and the values are kept in parallel arrays. The hash codes are
+ * kept such that most mismatching slots are skipped without comparing characters and growing
+ * the table does not compute them again.
+ * <p>
+ * Keys can be looked up by a section of a larger buffer without creating an array for it.
+ * The order of the keys is unspecified. Instances are not thread-safe.
+ */
+public abstract class OpenCharArrayTable {
+	private static final int MIN_CAPACITY = 4;
+
+	private char[][] fKeys;
+	private int[] fHashes;
+	private int fMask;
+	private int fSize;
+
+	protected OpenCharArrayTable(int expectedSize) {
+		final int capacity = capacityFor(expectedSize);
+		fKeys = new char[capacity][];
+		fHashes = new int[capacity];
+		fMask = capacity - 1;
+	}
+
+	/**
+	 * Returns the smallest power of two that holds the given number of entries with a load
+	 * factor of at most 2/3.
+	 */
+	private static int capacityFor(int size) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 2 < size * 3) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(char[] buffer, int start, int length) {
+		final int h = CharArrayUtils.hash(buffer, start, length);
+		// The hash of short identifiers is poorly distributed in the low bits.
+		return h ^ (h >>> 16);
+	}
+
+	public final int size() {
+		return fSize;
+	}
+
+	public final boolean isEmpty() {
+		return fSize == 0;
+	}
+
+	/**
+	 * Returns the number of slots of the table, intended for testing.
+	 */
+	public final int capacity() {
+		return fKeys.length;
+	}
+
+	public final boolean containsKey(char[] key) {
+		return findSlot(key, 0, key.length) >= 0;
+	}
+
+	public final boolean containsKey(char[] buffer, int start, int length) {
+		return findSlot(buffer, start, length) >= 0;
+	}
+
+	/**
+	 * Returns the keys of the table in no particular order.
+	 */
+	public final char[][] keys() {
+		final char[][] result = new char[fSize][];
+		int j = 0;
+		for (char[] key : fKeys) {
+			if (key != null)
+				result[j++] = key;
+		}
+		return result;
+	}
+
+	public void clear() {
+		Arrays.fill(fKeys, null);
+		Arrays.fill(fHashes, 0);
+		fSize = 0;
+	}
+
+	/**
+	 * Returns the slot holding the given key, or -1 if the key is not in the table.
+	 */
+	protected final int findSlot(char[] buffer, int start, int length) {
+		final int hash = hash(buffer, start, length);
+		final char[][] keys = fKeys;
+		final int[] hashes = fHashes;
+		final int mask = fMask;
+		// There is always an empty slot, the search terminates.
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			final char[] key = keys[slot];
+			if (key == null)
+				return -1;
+			if (hashes[slot] == hash && CharArrayUtils.equals(buffer, start, length, key))
+				return slot;
+		}
+	}
+
+	/**
+	 * Returns the slot holding the given key, adding the key if it is not yet in the table.
+	 * Whether the key has been added can be told from the size of the table. The key is copied
+	 * unless it spans the entire buffer.
+	 */
+	protected final int addSlot(char[] buffer, int start, int length) {
+		final int hash = hash(buffer, start, length);
+		int slot = hash & fMask;
+		for (char[] key; (key = fKeys[slot]) != null; slot = (slot + 1) & fMask) {
+			if (fHashes[slot] == hash && CharArrayUtils.equals(buffer, start, length, key))
+				return slot;
+		}
+		if ((fSize + 1) * 3 > fKeys.length * 2) {
+			grow();
+			slot = hash & fMask;
+			while (fKeys[slot] != null) {
+				slot = (slot + 1) & fMask;
+			}
+		}
+		fKeys[slot] = CharArrayUtils.extract(buffer, start, length);
+		fHashes[slot] = hash;
+		fSize++;
+		return slot;
+	}
+
+	/**
+	 * Removes the entry at the given slot. Entries further down the probe sequence are moved
+	 * into the gap, such that no markers for deleted entries are needed.
+	 */
+	protected final void removeSlot(int slot) {
+		final char[][] keys = fKeys;
+		final int mask = fMask;
+		int gap = slot;
+		for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+			final int home = fHashes[i] & mask;
+			// The entry may move to the gap if the gap lies between its home slot and its slot.
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				fHashes[gap] = fHashes[i];
+				moveValue(i, gap);
+				gap = i;
+			}
+		}
+		keys[gap] = null;
+		fHashes[gap] = 0;
+		clearValue(gap);
+		fSize--;
+	}
+
+	private void grow() {
+		final char[][] oldKeys = fKeys;
+		final int[] oldHashes = fHashes;
+		final int capacity = oldKeys.length * 2;
+		final int mask = capacity - 1;
+		final char[][] keys = new char[capacity][];
+		final int[] hashes = new int[capacity];
+		final int[] newSlots = new int[oldKeys.length];
+		Arrays.fill(newSlots, -1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = oldHashes[i] & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				hashes[slot] = oldHashes[i];
+				newSlots[i] = slot;
+			}
+		}
+		fKeys = keys;
+		fHashes = hashes;
+		fMask = mask;
+		rehashValues(capacity, newSlots);
+	}
+
+	/**
+	 * Returns the key at the given slot, or <code>null</code> if the slot is empty.
+	 */
+	protected final char[] keyAtSlot(int slot) {
+		return fKeys[slot];
+	}
+
+	/**
+	 * Replaces the values by ones of the given capacity. The value at slot <code>i</code>
+	 * goes to slot <code>newSlots[i]</code>, which is -1 for slots that were empty.
+	 */
+	protected abstract void rehashValues(int capacity, int[] newSlots);
+
+	protected abstract void moveValue(int fromSlot, int toSlot);
+
+	protected abstract void clearValue(int slot);
+}
@@ -21,6 +21,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,6 +31,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,13 +44,16 @@ import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.ILinkage;
 import org.eclipse.cdt.core.dom.IPDOMIndexerTask;
 import org.eclipse.cdt.core.dom.ast.ASTTypeUtil;
+import org.eclipse.cdt.core.dom.ast.ASTVisitor;
 import org.eclipse.cdt.core.dom.ast.IASTComment;
 import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTName;
 import org.eclipse.cdt.core.dom.ast.IASTPreprocessorIncludeStatement;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit.IDependencyTree;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit.IDependencyTree.IASTInclusionNode;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPUsingDirective;
+import org.eclipse.cdt.core.index.IIndex;
 import org.eclipse.cdt.core.index.IIndexFile;
 import org.eclipse.cdt.core.index.IIndexFileLocation;
 import org.eclipse.cdt.core.index.IIndexInclude;
@@ -62,15 +72,18 @@ import org.eclipse.cdt.core.parser.ISignificantMacros;
 import org.eclipse.cdt.core.parser.IncludeExportPatterns;
 import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
 import org.eclipse.cdt.internal.core.dom.IIncludeFileResolutionHeuristics;
+import org.eclipse.cdt.internal.core.index.CIndex;
 import org.eclipse.cdt.internal.core.index.FileContentKey;
 import org.eclipse.cdt.internal.core.index.IIndexFragment;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
+import org.eclipse.cdt.internal.core.index.IWritableIndexFragment;
 import org.eclipse.cdt.internal.core.index.IndexBasedFileContentProvider;
 import org.eclipse.cdt.internal.core.model.DebugLogConstants;
 import org.eclipse.cdt.internal.core.parser.IMacroDictionary;
 import org.eclipse.cdt.internal.core.parser.ParserLogService;
 import org.eclipse.cdt.internal.core.parser.ParserSettings2;
+import org.eclipse.cdt.internal.core.parser.scanner.ILocationResolver;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContentProvider;
 import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContentProvider.DependsOnOutdatedFileException;
 import org.eclipse.cdt.internal.core.parser.util.LRUCache;
@@ -79,6 +92,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
@@ -126,6 +140,19 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		LocationTask find(IIndexFileLocation ifl) {
 			return fLocationTasks.get(ifl);
 		}
+
+		/**
+		 * Returns whether an outdated version of a file in this linkage still needs to be replaced.
+		 */
+		boolean hasOutdatedVersions() {
+			for (LocationTask locTask : fLocationTasks.values()) {
+				for (FileVersionTask fc : locTask.fVersionTasks) {
+					if (fc.fOutdated)
+						return true;
+				}
+			}
+			return false;
+		}
 	}
 
 	private static class LocationTask {
@@ -244,6 +271,218 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		}
 	}
 
+	/**
+	 * The outcome of parsing a source file on a worker thread.
+	 */
+	private static class ParseResult {
+		final IIndexFileLocation fLocation;
+		final Object fTu;
+		final AbstractLanguage fLanguage;
+		final FileContent fCodeReader;
+		IASTTranslationUnit fAST;
+		Throwable fError;
+		boolean fCanceled;
+		long fParsingTime;
+		// Names that could not be resolved, reported once per file like in PDOMWriter.
+		final List<IStatus> fResolutionErrors= new ArrayList<>();
+		final Set<String> fFilesWithResolutionErrors= new HashSet<>();
+
+		ParseResult(IIndexFileLocation ifl, Object tu, AbstractLanguage language, FileContent codeReader) {
+			fLocation= ifl;
+			fTu= tu;
+			fLanguage= language;
+			fCodeReader= codeReader;
+		}
+	}
+
+	/**
+	 * The index and file content provider of a parser thread.
+	 */
+	private static class WorkerState {
+		final IIndex fIndex;
+		int fLinkageID;
+		InternalFileContentProvider fCodeReaderFactory;
+
+		WorkerState(IIndex index) {
+			fIndex= index;
+		}
+	}
+
+	/**
+	 * Resolves all names of an AST, such that the bindings are cached when the AST is
+	 * written to the index. Names that cannot be resolved are recorded in the result.
+	 */
+	private static class NameResolver extends ASTVisitor {
+		private final ParseResult fResult;
+
+		NameResolver(ParseResult result) {
+			shouldVisitNames= true;
+			fResult= result;
+		}
+
+		@Override
+		public int visit(IASTName name) {
+			try {
+				name.resolveBinding();
+			} catch (RuntimeException e) {
+				String file= name.getContainingFilename();
+				if (fResult.fFilesWithResolutionErrors.add(file)) {
+					fResult.fResolutionErrors.add(CCorePlugin.createStatus(
+							NLS.bind(Messages.PDOMWriter_errorResolvingName, name.toString(), file), e));
+				}
+			}
+			return PROCESS_CONTINUE;
+		}
+	}
+
+	/**
+	 * Parses source files on a pool of worker threads. Each worker uses its own file content
+	 * provider and a read-only view of the writable fragment. The results are written to the
+	 * index by the indexer thread, one after the other in the order of the files, such that
+	 * the content of the index does not depend on the number of threads.
+	 * <p>
+	 * While the indexer thread is waiting for the write lock, workers do not start to parse
+	 * new files. Otherwise the readers would keep the writer from ever getting the lock.
+	 * <p>
+	 * A worker takes no file from the index that was written after the parsing of the current
+	 * list of sources started, see {@link #selectIndexFile(int, IIndexFileLocation, IMacroDictionary)}.
+	 * Whether it parses a header or takes it from the index is therefore decided by the content
+	 * of the index at the start, and the ASTs do not depend on the timing of the threads.
+	 * <p>
+	 * A worker holds one of the {@link PDOMWriter#WORKER_PERMITS} while it parses a file, such
+	 * that the parsers of all indexer tasks and the parallel name resolution together do not use
+	 * more threads than there are processors.
+	 * <p>
+	 * One parser is created per task and shut down when the task ends.
+	 */
+	private class ParallelParser {
+		private final ExecutorService fExecutor;
+		private final ThreadLocal<WorkerState> fWorkerState= new ThreadLocal<>();
+		private boolean fWriterWaiting;
+		private int fActiveWorkers;
+
+		ParallelParser(int threadCount) {
+			fExecutor= Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				private int fCount;
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread= new Thread(r, "CDT Indexer Parser " + (++fCount)); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		Future<ParseResult> submit(final ParseResult request, final IScannerInfo scanInfo,
+				final IProgressMonitor monitor) {
+			return fExecutor.submit(() -> parse(request, scanInfo, monitor));
+		}
+
+		/**
+		 * Runs on a worker thread.
+		 */
+		private ParseResult parse(ParseResult result, IScannerInfo scanInfo, IProgressMonitor monitor)
+				throws InterruptedException {
+			startWork();
+			try {
+				WORKER_PERMITS.acquire();
+				try {
+					parse(getWorkerState(result.fLanguage.getLinkageID()), result, scanInfo, monitor);
+				} finally {
+					WORKER_PERMITS.release();
+				}
+			} finally {
+				endWork();
+			}
+			return result;
+		}
+
+		private WorkerState getWorkerState(int linkageID) {
+			WorkerState state= fWorkerState.get();
+			if (state == null) {
+				IIndexFragment[] readOnly= fIndex.getReadOnlyFragments();
+				IIndexFragment[] fragments= new IIndexFragment[readOnly.length + 1];
+				fragments[0]= fIndex.getWritableFragment();
+				System.arraycopy(readOnly, 0, fragments, 1, readOnly.length);
+				state= new WorkerState(new CIndex(fragments));
+				fWorkerState.set(state);
+			}
+			if (state.fCodeReaderFactory == null || state.fLinkageID != linkageID) {
+				state.fLinkageID= linkageID;
+				state.fCodeReaderFactory= createCodeReaderFactory(state.fIndex, linkageID);
+			}
+			return state;
+		}
+
+		private void parse(WorkerState state, ParseResult result, IScannerInfo scanInfo,
+				IProgressMonitor monitor) throws InterruptedException {
+			IIndex index= state.fIndex;
+			index.acquireReadLock();
+			try {
+				long start= System.currentTimeMillis();
+				ASTTypeUtil.startTranslationUnit();
+				result.fAST= createAST(result.fLanguage, result.fCodeReader, scanInfo, fASTOptions, null,
+						index, state.fCodeReaderFactory, monitor);
+				if (result.fAST != null) {
+					result.fAST.accept(new NameResolver(result));
+				}
+				result.fParsingTime= System.currentTimeMillis() - start;
+			} catch (OperationCanceledException e) {
+				result.fCanceled= true;
+			} catch (RuntimeException | StackOverflowError | CoreException | AssertionError | OutOfMemoryError e) {
+				result.fAST= null;
+				result.fError= e;
+			} finally {
+				ASTTypeUtil.finishTranslationUnit();
+				index.releaseReadLock();
+			}
+		}
+
+		private synchronized void startWork() throws InterruptedException {
+			while (fWriterWaiting) {
+				wait();
+			}
+			fActiveWorkers++;
+		}
+
+		private synchronized void endWork() {
+			fActiveWorkers--;
+			notifyAll();
+		}
+
+		/**
+		 * Waits until no worker is parsing a file anymore. Must be called after the pending
+		 * requests have been canceled.
+		 */
+		synchronized void awaitIdle() throws InterruptedException {
+			fWriterWaiting= false;
+			notifyAll();
+			while (fActiveWorkers > 0) {
+				wait();
+			}
+		}
+
+		/**
+		 * Checks whether the current thread is one of the workers.
+		 */
+		boolean isWorkerThread() {
+			return fWorkerState.get() != null;
+		}
+
+		synchronized void setWriterWaiting(boolean value) {
+			fWriterWaiting= value;
+			notifyAll();
+		}
+
+		void shutdown() throws InterruptedException {
+			setWriterWaiting(false);
+			fExecutor.shutdownNow();
+			// Workers release their read locks before they terminate.
+			fExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+	}
+
 	public static class IndexFileContent {
 		private Object[] fPreprocessingDirectives;
 		private ICPPUsingDirective[] fDirectives;
@@ -310,15 +549,33 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private boolean fIndexAllHeaderVersions = false;
 	private Set<String> fHeadersToIndexAllVersions = Collections.emptySet();
 	private Pattern fPragmaPrivatePattern;
+	/**
+	 * Guards the update requests, i.e. the {@link LinkageTask}s and {@link LocationTask}s and
+	 * {@link #fOneLinkageTasks}. The parser threads read the requests via
+	 * {@link #selectIndexFile(int, IIndexFileLocation, IMacroDictionary)} while this task
+	 * updates them after writing files to the index.
+	 */
+	private final Object fRequestLock= new Object();
+	/**
+	 * The files written to the index while the parser threads parse a list of sources, guarded
+	 * by {@link #fRequestLock}. The parser threads do not take these files from the index, such
+	 * that the ASTs they create depend only on the content of the index when the parsing started,
+	 * rather than on how far the indexer thread got with writing.
+	 */
+	private Set<IIndexFile> fFilesWrittenWhileParsing;
 	private List<LinkageTask> fRequestsPerLinkage= new ArrayList<>();
-	private Map<IIndexFile, IndexFileContent> fIndexContentCache= new LRUCache<>(500);
-	private Map<IIndexFileLocation, IIndexFragmentFile[]> fIndexFilesCache= new LRUCache<>(5000);
+	// The caches are synchronized, since they are accessed by the parser threads.
+	private Map<IIndexFile, IndexFileContent> fIndexContentCache=
+			Collections.synchronizedMap(new LRUCache<IIndexFile, IndexFileContent>(500));
+	private Map<IIndexFileLocation, IIndexFragmentFile[]> fIndexFilesCache=
+			Collections.synchronizedMap(new LRUCache<IIndexFileLocation, IIndexFragmentFile[]>(5000));
 	private Map<IIndexFileLocation, LocationTask> fOneLinkageTasks= new HashMap<>();
 
 	private Object[] fFilesToUpdate;
 	private List<Object> fFilesToRemove = new ArrayList<>();
 	private int fASTOptions;
 	private int fForceNumberFiles;
+	private Set<IIndexFileLocation> fForcedFirstFiles= new HashSet<>();
 
 	protected IWritableIndex fIndex;
 	private ITodoTaskUpdater fTodoTaskUpdater;
@@ -327,6 +584,8 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private long fIncludedFileSizeLimit;
 	private InternalFileContentProvider fCodeReaderFactory;
 	private int fSwallowOutOfMemoryError= 5;
+	private int fParserThreadCount= 1;
+	private ParallelParser fParallelParser;
 	/**
 	 * A queue of urgent indexing tasks that contribute additional files to this task.
 	 * The files from the urgent tasks are indexed before all not yet processed files.
@@ -386,6 +645,18 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		fPragmaPrivatePattern = pattern;
 	}
 
+	/**
+	 * Sets the number of threads used to parse source files. With more than one thread the
+	 * sources are parsed concurrently, while the results are still written to the index by
+	 * this task, one after the other and in a deterministic order.
+	 * <p>
+	 * Concurrent parsing is used only when no outdated versions of files have to be replaced
+	 * in the index, i.e. for a rebuild of the index.
+	 */
+	public void setParserThreadCount(int count) {
+		fParserThreadCount= Math.max(1, count);
+	}
+
 	/**
 	 * @see IPDOMIndexerTask#acceptUrgentTask(IPDOMIndexerTask)
 	 */
@@ -556,10 +827,12 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 							final List<IIndexFileLocation> filesForLinkage = files.get(linkageID);
 							if (filesForLinkage != null) {
 								parseLinkage(linkageID, filesForLinkage, progress.split(1));
-								for (Iterator<LocationTask> it = fOneLinkageTasks.values().iterator(); it.hasNext();) {
-									LocationTask task = it.next();
-									if (task.isCompleted())
-										it.remove();
+								synchronized (fRequestLock) {
+									for (Iterator<LocationTask> it = fOneLinkageTasks.values().iterator(); it.hasNext();) {
+										LocationTask task = it.next();
+										if (task.isCompleted())
+											it.remove();
+									}
 								}
 								fIndexContentCache.clear();
 								fIndexFilesCache.clear();
@@ -614,6 +887,10 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 				fIndex.releaseReadLock();
 			}
 		} finally {
+			if (fParallelParser != null) {
+				fParallelParser.shutdown();
+				fParallelParser= null;
+			}
 			synchronized (this) {
 				fTaskCompleted = true;
 			}
@@ -623,12 +900,34 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private void setResume(boolean value, IProgressMonitor monitor) throws InterruptedException, CoreException {
 		fIndex.acquireWriteLock(monitor);
 		try {
-			fIndex.getWritableFragment().setProperty(IIndexFragment.PROPERTY_RESUME_INDEXER, String.valueOf(value));
+			final IWritableIndexFragment fragment= fIndex.getWritableFragment();
+			fragment.setProperty(IIndexFragment.PROPERTY_RESUME_INDEXER, String.valueOf(value));
+			if (value) {
+				// Record the shared fragments the stored files may depend on.
+				String sharedFragments= getSharedFragmentIDs();
+				String previous= fragment.getProperty(IIndexFragment.PROPERTY_SHARED_FRAGMENTS);
+				if (!sharedFragments.equals(previous == null ? "" : previous)) { //$NON-NLS-1$
+					fragment.setProperty(IIndexFragment.PROPERTY_SHARED_FRAGMENTS, sharedFragments);
+				}
+			}
 		} finally {
 			fIndex.releaseWriteLock();
 		}
 	}
 
+	private String getSharedFragmentIDs() throws CoreException {
+		StringBuilder ids= new StringBuilder();
+		for (IIndexFragment fragment : fIndex.getReadOnlyFragments()) {
+			String id= fragment.getProperty(IIndexFragment.PROPERTY_FRAGMENT_ID);
+			if (id != null) {
+				if (ids.length() > 0)
+					ids.append(',');
+				ids.append(id);
+			}
+		}
+		return ids.toString();
+	}
+
 	private void extractFiles(HashMap<Integer, List<IIndexFileLocation>> files, List<IIndexFragmentFile> filesToRemove,
 			IProgressMonitor monitor) throws CoreException {
 		final boolean forceAll= (fUpdateFlags & IIndexManager.UPDATE_ALL) != 0;
@@ -642,10 +941,13 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		SubMonitor progress = SubMonitor.convert(monitor, fFilesToUpdate.length);
 		for (final Object tu : fFilesToUpdate) {
 			progress.split(1);
-			final boolean force= forceAll || --forceFirst >= 0;
+			final boolean forcedFirst= --forceFirst >= 0;
+			final boolean force= forceAll || forcedFirst;
 			final IIndexFileLocation ifl= fResolver.resolveFile(tu);
 			if (ifl == null)
 				continue;
+			if (forcedFirst)
+				fForcedFirstFiles.add(ifl);
 
 			final IIndexFragmentFile[] indexFiles= fIndex.getWritableFiles(ifl);
 			final boolean isSourceUnit= fResolver.isSourceUnit(tu);
@@ -758,29 +1060,41 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	}
 
 	private boolean requestUpdate(int linkageID, IIndexFileLocation ifl, IIndexFragmentFile ifile, Object tu, UpdateKind kind) {
-		LinkageTask fileMap= createRequestMap(linkageID);
-		return fileMap.requestUpdate(ifl, ifile, tu, kind, fOneLinkageTasks);
+		synchronized (fRequestLock) {
+			LinkageTask fileMap= createRequestMap(linkageID);
+			return fileMap.requestUpdate(ifl, ifile, tu, kind, fOneLinkageTasks);
+		}
 	}
 
 	private LinkageTask createRequestMap(int linkageID) {
-		LinkageTask map= findRequestMap(linkageID);
-		if (map == null) {
-			map= new LinkageTask(linkageID);
-			fRequestsPerLinkage.add(map);
+		synchronized (fRequestLock) {
+			LinkageTask map= findRequestMap(linkageID);
+			if (map == null) {
+				map= new LinkageTask(linkageID);
+				fRequestsPerLinkage.add(map);
+			}
+			return map;
 		}
-		return map;
 	}
 
 	private LinkageTask findRequestMap(int linkageID) {
-		for (LinkageTask map : fRequestsPerLinkage) {
-			if (map.fLinkageID == linkageID)
-				return map;
+		synchronized (fRequestLock) {
+			for (LinkageTask map : fRequestsPerLinkage) {
+				if (map.fLinkageID == linkageID)
+					return map;
+			}
+			return null;
 		}
-		return null;
 	}
 
 	@Override
 	protected void reportFileWrittenToIndex(FileInAST file, IIndexFragmentFile ifile) throws CoreException {
+		synchronized (fRequestLock) {
+			reportFileWrittenToIndexLocked(file, ifile);
+		}
+	}
+
+	private void reportFileWrittenToIndexLocked(FileInAST file, IIndexFragmentFile ifile) {
 		final FileContentKey fck = file.fileContentKey;
 		final IIndexFileLocation location = fck.getLocation();
 		boolean wasCounted= false;
@@ -805,6 +1119,9 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		}
 		fIndexContentCache.remove(ifile);
 		fIndexFilesCache.remove(file.fileContentKey.getLocation());
+		if (fFilesWrittenWhileParsing != null) {
+			fFilesWrittenWhileParsing.add(ifile);
+		}
 
 		LocationTask task= fOneLinkageTasks.remove(location);
 		if (task != null && task != locTask) {
@@ -882,19 +1199,25 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			List<IIndexFileLocation> filesAtPriority = filesByPriority.get(priority);
 			if (filesAtPriority == null)
 				continue;
+			sortByParseCost(map, filesAtPriority);
 
 			// First parse the required sources.
-			for (Iterator<IIndexFileLocation> it= filesAtPriority.iterator(); it.hasNext();) {
-				IIndexFileLocation ifl= it.next();
-				LocationTask locTask = map.find(ifl);
-				if (locTask == null || locTask.isCompleted()) {
-					it.remove();
-				} else if (locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
-					if (hasUrgentTasks())
-						return;
-					final Object tu = locTask.fTu;
-					final IScannerInfo scannerInfo = getScannerInfo(linkageID, tu);
-					parseFile(tu, getLanguage(tu, linkageID), ifl, scannerInfo, null, progress.split(1));
+			if (fParserThreadCount > 1 && !map.hasOutdatedVersions()) {
+				if (!parseSourcesInParallel(linkageID, map, filesAtPriority, progress))
+					return;
+			} else {
+				for (Iterator<IIndexFileLocation> it= filesAtPriority.iterator(); it.hasNext();) {
+					IIndexFileLocation ifl= it.next();
+					LocationTask locTask = map.find(ifl);
+					if (locTask == null || locTask.isCompleted()) {
+						it.remove();
+					} else if (locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
+						if (hasUrgentTasks())
+							return;
+						final Object tu = locTask.fTu;
+						final IScannerInfo scannerInfo = getScannerInfo(linkageID, tu);
+						parseFile(tu, getLanguage(tu, linkageID), ifl, scannerInfo, null, progress.split(1));
+					}
 				}
 			}
 	
@@ -952,7 +1275,9 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 								if (v.fOutdated) {
 									fIndex.clearFile(v.fIndexFile);
 									reportFile(true, locTask.fKind);
-									locTask.removeVersionTask(it);
+									synchronized (fRequestLock) {
+										locTask.removeVersionTask(it);
+									}
 									fIndexContentCache.remove(v.fIndexFile);
 									fIndexFilesCache.remove(ifl);
 								}
@@ -966,6 +1291,185 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		}
 	}
 
+	/**
+	 * Orders the files by the predicted cost of parsing them, such that the cheap updates are
+	 * completed first. Files that are requested to be parsed first stay in front, the order of
+	 * files with equal cost is preserved.
+	 */
+	private void sortByParseCost(LinkageTask map, List<IIndexFileLocation> files) throws CoreException {
+		final Map<IIndexFileLocation, Integer> costs= new HashMap<>();
+		for (IIndexFileLocation ifl : files) {
+			costs.put(ifl, fForcedFirstFiles.contains(ifl) ? -1 : getParseCost(map.find(ifl)));
+		}
+		files.sort(Comparator.comparing(costs::get));
+	}
+
+	/**
+	 * Returns the predicted cost of parsing the versions of a file, using the costs recorded
+	 * in the index.
+	 */
+	private int getParseCost(LocationTask locTask) throws CoreException {
+		if (locTask == null || locTask.fVersionTasks.isEmpty())
+			return ReindexCostEstimator.DEFAULT_PARSE_COST;
+		int cost= 0;
+		for (FileVersionTask versionTask : locTask.fVersionTasks) {
+			cost= Math.max(cost, ReindexCostEstimator.getParseCost(versionTask.fIndexFile));
+		}
+		return cost;
+	}
+
+	/**
+	 * Parses the required sources among the given files using the parser threads and writes the
+	 * results to the index in the order of the files.
+	 * @return {@code false} if parsing was interrupted because of urgent tasks.
+	 */
+	private boolean parseSourcesInParallel(int linkageID, LinkageTask map, List<IIndexFileLocation> files,
+			SubMonitor progress) throws CoreException, InterruptedException {
+		List<IIndexFileLocation> sources= new ArrayList<>();
+		for (Iterator<IIndexFileLocation> it= files.iterator(); it.hasNext();) {
+			IIndexFileLocation ifl= it.next();
+			LocationTask locTask = map.find(ifl);
+			if (locTask == null || locTask.isCompleted()) {
+				it.remove();
+			} else if (locTask.fKind == UpdateKind.REQUIRED_SOURCE) {
+				sources.add(ifl);
+			}
+		}
+		if (sources.isEmpty())
+			return true;
+
+		// Limit the number of ASTs that are kept in memory.
+		final int window= 2 * fParserThreadCount;
+		if (fParallelParser == null) {
+			fParallelParser= new ParallelParser(fParserThreadCount);
+		}
+		final ParallelParser parser= fParallelParser;
+		final Deque<Future<ParseResult>> pending= new ArrayDeque<>();
+		int next= 0;
+		synchronized (fRequestLock) {
+			fFilesWrittenWhileParsing= new HashSet<>();
+		}
+		try {
+			while (next < sources.size() || !pending.isEmpty()) {
+				while (next < sources.size() && pending.size() < window) {
+					final IIndexFileLocation ifl= sources.get(next++);
+					final Object tu= map.find(ifl).fTu;
+					final ParseResult request= new ParseResult(ifl, tu, getLanguage(tu, linkageID),
+							fResolver.getCodeReader(tu));
+					pending.add(parser.submit(request, getScannerInfo(linkageID, tu), progress));
+				}
+				if (hasUrgentTasks())
+					return false;
+
+				ParseResult result= getResult(pending.getFirst());
+				// Write all results that are available, while the writer waits for the lock,
+				// workers do not start parsing further files.
+				parser.setWriterWaiting(true);
+				try {
+					do {
+						pending.removeFirst();
+						writeParsedFile(linkageID, map, result, progress.split(1));
+						result= null;
+						if (!pending.isEmpty() && pending.getFirst().isDone() && !hasUrgentTasks()) {
+							result= getResult(pending.getFirst());
+						}
+					} while (result != null);
+				} finally {
+					parser.setWriterWaiting(false);
+				}
+			}
+		} finally {
+			for (Future<ParseResult> future : pending) {
+				future.cancel(true);
+			}
+			// No worker may still hold a read lock on the index, when files are removed or updated.
+			parser.awaitIdle();
+			synchronized (fRequestLock) {
+				fFilesWrittenWhileParsing= null;
+			}
+		}
+		return true;
+	}
+
+	private ParseResult getResult(Future<ParseResult> future) throws InterruptedException, CoreException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof InterruptedException)
+				throw (InterruptedException) cause;
+			throw new CoreException(createStatus(cause.getMessage(), cause));
+		}
+	}
+
+	/**
+	 * Writes a file parsed by one of the parser threads to the index, handles errors the same
+	 * way as {@link #parseFile(Object, AbstractLanguage, IIndexFileLocation, IScannerInfo, FileContext, IProgressMonitor)}.
+	 */
+	private void writeParsedFile(int linkageID, LinkageTask map, ParseResult result, IProgressMonitor monitor)
+			throws CoreException, InterruptedException {
+		LocationTask locTask = map.find(result.fLocation);
+		if (locTask == null || locTask.isCompleted() || result.fCanceled)
+			return;
+
+		SubMonitor progress = SubMonitor.convert(monitor, 11);
+		boolean resultCacheCleared = false;
+		IPath path= getLabel(result.fLocation);
+		Throwable th= result.fError;
+		if (th instanceof RuntimeException && th.getCause() instanceof DependsOnOutdatedFileException) {
+			// Not expected, since there are no outdated files. Parse the file on this thread.
+			parseFile(result.fTu, result.fLanguage, result.fLocation,
+					getScannerInfo(linkageID, result.fTu), null, progress.split(10));
+			return;
+		}
+		if (th instanceof OutOfMemoryError && --fSwallowOutOfMemoryError < 0)
+			throw (OutOfMemoryError) th;
+
+		if (th == null) {
+			fStatistics.fParsingTime += result.fParsingTime;
+			if (result.fAST == null) {
+				++fStatistics.fTooManyTokensCount;
+			} else {
+				ASTTypeUtil.startTranslationUnit();
+				try {
+					writeToIndex(linkageID, result.fAST, result.fCodeReader, null, result.fParsingTime,
+							progress.split(10));
+					resultCacheCleared = true;  // The cache was cleared while writing to the index.
+				} catch (OperationCanceledException e) {
+				} catch (RuntimeException | StackOverflowError | CoreException | AssertionError e) {
+					th= e;
+				} catch (OutOfMemoryError e) {
+					if (--fSwallowOutOfMemoryError < 0)
+						throw e;
+					th= e;
+				} finally {
+					ASTTypeUtil.finishTranslationUnit();
+				}
+				if (th == null && !result.fResolutionErrors.isEmpty()) {
+					List<IStatus> statuses= result.fResolutionErrors;
+					th= new CoreException(new MultiStatus(CCorePlugin.PLUGIN_ID, 0,
+							statuses.toArray(new IStatus[statuses.size()]),
+							NLS.bind(Messages.PDOMWriter_errorWhileParsing, path.toString()), null));
+				}
+			}
+			if (fShowActivity) {
+				trace("Indexer: processed " + path.toOSString() + " [" + result.fParsingTime + " ms parsing]");  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+		}
+		if (th != null) {
+			swallowError(path, th);
+		}
+
+		if (!resultCacheCleared) {
+			fIndex.acquireWriteLock(progress.split(1));
+			try {
+				fIndex.clearResultCache();
+			} finally {
+				fIndex.releaseWriteLock();
+			}
+		}
+	}
+
 	private void parseVersionInContext(int linkageID, LinkageTask map, IIndexFileLocation ifl,
 			final FileVersionTask versionTask, Object tu, LinkedHashSet<IIndexFile> safeGuard,
 			IProgressMonitor monitor) throws CoreException, InterruptedException {
@@ -1091,11 +1595,12 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			ASTTypeUtil.startTranslationUnit();
 			IASTTranslationUnit ast=
 					createAST(lang, codeReader, scanInfo, fASTOptions, ctx, progress.split(10));
-			fStatistics.fParsingTime += System.currentTimeMillis() - start;
+			final long parsingTime= System.currentTimeMillis() - start;
+			fStatistics.fParsingTime += parsingTime;
 			if (ast == null) {
 				++fStatistics.fTooManyTokensCount;
 			} else {
-				writeToIndex(lang.getLinkageID(), ast, codeReader, ctx, progress.split(10));
+				writeToIndex(lang.getLinkageID(), ast, codeReader, ctx, parsingTime, progress.split(10));
 				resultCacheCleared = true;  // The cache was cleared while writing to the index.
 			}
 			if (fShowActivity) {
@@ -1204,6 +1709,15 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	private final IASTTranslationUnit createAST(AbstractLanguage language, FileContent codeReader,
 			IScannerInfo scanInfo, int options, FileContext ctx, IProgressMonitor monitor)
 			throws CoreException {
+		if (fCodeReaderFactory == null) {
+			fCodeReaderFactory= createCodeReaderFactory(fIndex, language.getLinkageID());
+		}
+		return createAST(language, codeReader, scanInfo, options, ctx, fIndex, fCodeReaderFactory, monitor);
+	}
+
+	private IASTTranslationUnit createAST(AbstractLanguage language, FileContent codeReader,
+			IScannerInfo scanInfo, int options, FileContext ctx, IIndex index,
+			InternalFileContentProvider codeReaderFactory, IProgressMonitor monitor) throws CoreException {
 		if (codeReader == null) {
 			return null;
 		}
@@ -1213,35 +1727,35 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			}
 			return null;
 		}
-		final IIndexFile[] ctx2header = ctx == null ? null : new IIndexFile[] {ctx.fContext, ctx.fOldFile};
-		if (fCodeReaderFactory == null) {
-			InternalFileContentProvider fileContentProvider = createInternalFileContentProvider();
-			if (fIsFastIndexer) {
-				IndexBasedFileContentProvider ibfcp = new IndexBasedFileContentProvider(fIndex, fResolver,
-						language.getLinkageID(), fileContentProvider, this);
-				ibfcp.setContextToHeaderGap(ctx2header);
-				ibfcp.setFileSizeLimit(fIncludedFileSizeLimit);
-				ibfcp.setHeadersToIndexAllVersions(fHeadersToIndexAllVersions);
-				ibfcp.setIndexAllHeaderVersions(fIndexAllHeaderVersions);
-				fCodeReaderFactory= ibfcp;
-			} else {
-				fCodeReaderFactory= fileContentProvider;
-			}
-			fCodeReaderFactory.setIncludeResolutionHeuristics(createIncludeHeuristics());
-		} else if (fIsFastIndexer) {
-			final IndexBasedFileContentProvider ibfcp = (IndexBasedFileContentProvider) fCodeReaderFactory;
+		if (fIsFastIndexer) {
+			final IIndexFile[] ctx2header = ctx == null ? null : new IIndexFile[] {ctx.fContext, ctx.fOldFile};
+			final IndexBasedFileContentProvider ibfcp = (IndexBasedFileContentProvider) codeReaderFactory;
 			ibfcp.setContextToHeaderGap(ctx2header);
 			ibfcp.setLinkage(language.getLinkageID());
 		}
 
-		IASTTranslationUnit ast= language.getASTTranslationUnit(codeReader, scanInfo, fCodeReaderFactory,
-				fIndex, options, getLogService());
+		IASTTranslationUnit ast= language.getASTTranslationUnit(codeReader, scanInfo, codeReaderFactory,
+				index, options, getLogService());
 		if (monitor.isCanceled()) {
 			throw new OperationCanceledException();
 		}
 		return ast;
 	}
 
+	private InternalFileContentProvider createCodeReaderFactory(IIndex index, int linkageID) {
+		InternalFileContentProvider fileContentProvider = createInternalFileContentProvider();
+		if (fIsFastIndexer) {
+			IndexBasedFileContentProvider ibfcp = new IndexBasedFileContentProvider(index, fResolver,
+					linkageID, fileContentProvider, this);
+			ibfcp.setFileSizeLimit(fIncludedFileSizeLimit);
+			ibfcp.setHeadersToIndexAllVersions(fHeadersToIndexAllVersions);
+			ibfcp.setIndexAllHeaderVersions(fIndexAllHeaderVersions);
+			fileContentProvider= ibfcp;
+		}
+		fileContentProvider.setIncludeResolutionHeuristics(createIncludeHeuristics());
+		return fileContentProvider;
+	}
+
 	private InternalFileContentProvider createInternalFileContentProvider() {
 		final IncludeFileContentProvider fileContentProvider = createReaderFactory();
 		if (fileContentProvider instanceof InternalFileContentProvider)
@@ -1251,7 +1765,7 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	}
 
 	private void writeToIndex(final int linkageID, IASTTranslationUnit ast, FileContent codeReader,
-			FileContext ctx, IProgressMonitor monitor) throws CoreException, InterruptedException {
+			FileContext ctx, long parsingTime, IProgressMonitor monitor) throws CoreException, InterruptedException {
 		SubMonitor progress = SubMonitor.convert(monitor, 3);
 		HashSet<FileContentKey> enteredFiles= new HashSet<>();
 		ArrayList<FileInAST> orderedFileKeys= new ArrayList<>();
@@ -1280,9 +1794,10 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		try {
 			// The default processing is handled by the indexer task.
 			PDOMWriter.Data data = new PDOMWriter.Data(ast, fileKeys, fIndex);
+			data.fParseCost= parsingTime;
 			int storageLinkageID = process(ast, data);
 			if (storageLinkageID != ILinkage.NO_LINKAGE_ID) {
-				IASTComment[] comments = ast.getComments();
+				IASTComment[] comments = getCommentsOfSelectedFiles(ast, data.fSelectedFiles);
 				data.fReplacementHeaders = extractReplacementHeaders(comments, progress.split(1));
 
 				addSymbols(data, storageLinkageID, ctx, progress.split(1));
@@ -1313,6 +1828,24 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		}
 	}
 
+	/**
+	 * Returns the comments of the files that are written to the index, the replacement headers
+	 * and the task tags are not stored for the other files. No nodes are created for the comments
+	 * of the other files, which are typically most of the comments in the AST.
+	 */
+	private static IASTComment[] getCommentsOfSelectedFiles(IASTTranslationUnit ast, FileInAST[] selectedFiles) {
+		ILocationResolver resolver= ast.getAdapter(ILocationResolver.class);
+		if (resolver == null)
+			return ast.getComments();
+		Set<String> paths= new HashSet<>();
+		for (FileInAST file : selectedFiles) {
+			IPath path= IndexLocationFactory.getAbsolutePath(file.fileContentKey.getLocation());
+			if (path != null)
+				paths.add(path.toOSString());
+		}
+		return resolver.getComments(paths);
+	}
+
 	private void collectOrderedFileKeys(final int linkageID, IASTInclusionNode inclusion,
 			Set<FileContentKey> enteredFiles, List<FileInAST> orderedFileKeys) throws CoreException {
 		final IASTPreprocessorIncludeStatement include= inclusion.getIncludeDirective();
@@ -1332,7 +1865,9 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 
 	private void withdrawRequests(int linkageID, FileInAST[] fileKeys) {
 		LinkageTask map = findRequestMap(linkageID);
-		if (map != null) {
+		if (map == null)
+			return;
+		synchronized (fRequestLock) {
 			for (FileInAST fileKey : fileKeys) {
 				LocationTask locTask = map.find(fileKey.fileContentKey.getLocation());
 				if (locTask != null) {
@@ -1432,11 +1967,14 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			IIndexFile file) throws CoreException, DependsOnOutdatedFileException {
 		LinkageTask map = findRequestMap(linkageID);
 		if (map != null) {
-			LocationTask request= map.find(ifl);
-			if (request != null) {
-				FileVersionTask task= request.findVersion(file);
-				if (task != null && task.fOutdated)
-					throw new DependsOnOutdatedFileException(request.fTu, task.fIndexFile);
+			// The parser threads look up the requests while they are updated by this task.
+			synchronized (fRequestLock) {
+				LocationTask request= map.find(ifl);
+				if (request != null) {
+					FileVersionTask task= request.findVersion(file);
+					if (task != null && task.fOutdated)
+						throw new DependsOnOutdatedFileException(request.fTu, task.fIndexFile);
+				}
 			}
 		}
 		IndexFileContent fc= fIndexContentCache.get(file);
@@ -1451,11 +1989,13 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 			throws CoreException {
 		LinkageTask map = findRequestMap(linkageID);
 		if (map != null) {
-			LocationTask locTask= map.find(ifl);
-			if (locTask != null) {
-				FileVersionTask task = locTask.findVersion(sigMacros);
-				if (task != null) {
-					return task.fOutdated ? null : task.fIndexFile;
+			synchronized (fRequestLock) {
+				LocationTask locTask= map.find(ifl);
+				if (locTask != null) {
+					FileVersionTask task = locTask.findVersion(sigMacros);
+					if (task != null) {
+						return task.fOutdated ? null : task.fIndexFile;
+					}
 				}
 			}
 		}
@@ -1469,16 +2009,22 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 	}
 
 	public IIndexFile selectIndexFile(int linkageID, IIndexFileLocation ifl, IMacroDictionary md) throws CoreException {
+		final ParallelParser parser= fParallelParser;
+		final boolean isParserThread= parser != null && parser.isWorkerThread();
 		LinkageTask map = findRequestMap(linkageID);
 		if (map != null) {
-			LocationTask request= map.find(ifl);
-			if (request != null) {
-				for (FileVersionTask fileVersion : request.fVersionTasks) {
-					final IIndexFile indexFile = fileVersion.fIndexFile;
-					if (md.satisfies(indexFile.getSignificantMacros())) {
-						if (fileVersion.fOutdated)
-							return null;
-						return indexFile;
+			synchronized (fRequestLock) {
+				LocationTask request= map.find(ifl);
+				if (request != null) {
+					for (FileVersionTask fileVersion : request.fVersionTasks) {
+						final IIndexFile indexFile = fileVersion.fIndexFile;
+						if (md.satisfies(indexFile.getSignificantMacros())) {
+							if (fileVersion.fOutdated)
+								return null;
+							if (isParserThread && isWrittenWhileParsing(indexFile))
+								return null;
+							return indexFile;
+						}
 					}
 				}
 			}
@@ -1487,12 +2033,20 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 		IIndexFile[] files = getAvailableIndexFiles(linkageID, ifl);
 		for (IIndexFile indexFile : files) {
 			if (md.satisfies(indexFile.getSignificantMacros())) {
+				if (isParserThread && isWrittenWhileParsing(indexFile))
+					continue;
 				return indexFile;
 			}
 		}
 		return null;
 	}
 
+	private boolean isWrittenWhileParsing(IIndexFile file) {
+		synchronized (fRequestLock) {
+			return fFilesWrittenWhileParsing != null && fFilesWrittenWhileParsing.contains(file);
+		}
+	}
+
 	public IIndexFragmentFile[] getAvailableIndexFiles(int linkageID, IIndexFileLocation ifl)
 			throws CoreException {
 		IIndexFragmentFile[] files= fIndexFilesCache.get(ifl);
@@ -1506,14 +2060,39 @@ public abstract class AbstractIndexerTask extends PDOMWriter {
 					j++;
 				}
 			}
-			if (j == fragFiles.length) {
+			// Versions of the file that are not stored in the writable fragment can be taken
+			// from the shared read-only fragments, unless the file was modified since.
+			IIndexFragmentFile[] readOnlyFiles= getUnmodifiedFiles(ifl, fIndex.getReadOnlyFiles(linkageID, ifl));
+			if (j == fragFiles.length && readOnlyFiles.length == 0) {
 				files= fragFiles;
 			} else {
-				files= new IIndexFragmentFile[j];
+				files= new IIndexFragmentFile[j + readOnlyFiles.length];
 				System.arraycopy(fragFiles, 0, files, 0, j);
+				System.arraycopy(readOnlyFiles, 0, files, j, readOnlyFiles.length);
 			}
 			fIndexFilesCache.put(ifl, files);
 		}
 		return files;
 	}
+
+	private IIndexFragmentFile[] getUnmodifiedFiles(IIndexFileLocation ifl, IIndexFragmentFile[] files)
+			throws CoreException {
+		if (files.length == 0)
+			return files;
+		Object tu= fResolver.getInputFile(ifl);
+		int j= 0;
+		for (int i = 0; i < files.length; i++) {
+			if (tu != null && !isModified(true, true, ifl, tu, files[i])) {
+				files[j++]= files[i];
+			} else if (fShowActivity) {
+				trace("Indexer: ignoring outdated " + ifl.getURI() + " in " + //$NON-NLS-1$ //$NON-NLS-2$
+						files[i].getIndexFragment().getProperty(IIndexFragment.PROPERTY_FRAGMENT_ID));
+			}
+		}
+		if (j == files.length)
+			return files;
+		IIndexFragmentFile[] result= new IIndexFragmentFile[j];
+		System.arraycopy(files, 0, result, 0, j);
+		return result;
+	}
 }
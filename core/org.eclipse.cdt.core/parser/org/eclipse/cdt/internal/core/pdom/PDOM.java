@@ -76,6 +76,7 @@ import org.eclipse.cdt.internal.core.pdom.db.DBProperties;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
 import org.eclipse.cdt.internal.core.pdom.dom.BindingCollector;
 import org.eclipse.cdt.internal.core.pdom.dom.CompoundRecordIterator;
 import org.eclipse.cdt.internal.core.pdom.dom.FindBinding;
@@ -284,10 +285,14 @@ public class PDOM extends PlatformObject implements IPDOM {
 	 *  CDT 9.3 development (versions not supported on the 9.2.x branch)
 	 *  207.0 - Store a caller record for macro reference names.
 	 *  208.0 - Trigger index rebuild to rebuild corrupted binding reference lists, bug 399147.
+	 *
+	 *  CDT 9.4 development (versions not supported on the 9.3.x branch)
+	 *  209.0 - Names of bindings are interned in a string table, PDOMFile stores the parse cost
+	 *          of translation units.
 	 */
-	private static final int MIN_SUPPORTED_VERSION= version(208, 0);
-	private static final int MAX_SUPPORTED_VERSION= version(208, Short.MAX_VALUE);
-	private static final int DEFAULT_VERSION = version(208, 0);
+	private static final int MIN_SUPPORTED_VERSION= version(209, 0);
+	private static final int MAX_SUPPORTED_VERSION= version(209, Short.MAX_VALUE);
+	private static final int DEFAULT_VERSION = version(209, 0);
 
 	private static int version(int major, int minor) {
 		return (major << 16) + minor;
@@ -324,7 +329,8 @@ public class PDOM extends PlatformObject implements IPDOM {
 	public static final int INDEX_OF_FILES_WITH_UNRESOLVED_INCLUDES = Database.DATA_AREA + 12;
 	public static final int PROPERTIES = Database.DATA_AREA + 16;
 	public static final int TAG_INDEX = Database.DATA_AREA + 20;
-	public static final int END= Database.DATA_AREA + 24;
+	public static final int STRING_TABLE = Database.DATA_AREA + 24;
+	public static final int END= Database.DATA_AREA + 28;
 	static {
 		assert END <= Database.CHUNK_SIZE;
 	}
@@ -387,6 +393,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	protected Database db;
 	private BTree fileIndex;
 	private PDOMTagIndex tagIndex;
+	private PDOMStringTable stringTable;
 	private BTree indexOfDefectiveFiles;
 	private BTree indexOfFiledWithUnresolvedIncludes;
 	private final Map<Integer, PDOMLinkage> fLinkageIDCache = new HashMap<>();
@@ -413,6 +420,20 @@ public class PDOM extends PlatformObject implements IPDOM {
 		}
 	}
 
+	/**
+	 * Creates a PDOM for a snapshot of the database of another PDOM.
+	 */
+	protected PDOM(PDOM base, Database snapshot) throws CoreException {
+		fPDOMLinkageFactoryCache = base.fPDOMLinkageFactoryCache;
+		locationConverter = base.locationConverter;
+		fPath= base.fPath;
+		db= snapshot;
+		if (sDEBUG_LOCKS) {
+			fLockDebugging= new HashMap<>();
+		}
+		readLinkages();
+	}
+
 	/**
 	 * Returns whether this PDOM can never be written to. Writable subclasses should return false.
 	 */
@@ -525,6 +546,16 @@ public class PDOM extends PlatformObject implements IPDOM {
 		return tagIndex;
 	}
 
+	/**
+	 * Returns the table the names of bindings are interned in.
+	 */
+	public PDOMStringTable getStringTable() {
+		if (stringTable == null) {
+			stringTable = new PDOMStringTable(db, STRING_TABLE);
+		}
+		return stringTable;
+	}
+
 	/**
 	 * Returns the index of files that were read with I/O errors.
 	 */
@@ -977,6 +1008,11 @@ public class PDOM extends PlatformObject implements IPDOM {
 	private long lastWriteAccess= 0;
 	private long lastReadAccess= 0;
 	private long timeWriteLockAcquired;
+	// Lock statistics, protected by mutex.
+	private int blockedReadLocks;
+	private long readLockWaitNanos;
+	private int blockedWriteLocks;
+	private long writeLockWaitNanos;
 
 	@Override
 	public void acquireReadLock() throws InterruptedException {
@@ -984,8 +1020,16 @@ public class PDOM extends PlatformObject implements IPDOM {
 		synchronized (mutex) {
 			++waitingReaders;
 			try {
-				while (lockCount < 0)
-					mutex.wait();
+				if (lockCount < 0) {
+					final long waitStart= System.nanoTime();
+					try {
+						while (lockCount < 0)
+							mutex.wait();
+					} finally {
+						blockedReadLocks++;
+						readLockWaitNanos+= System.nanoTime() - waitStart;
+					}
+				}
 			} finally {
 				--waitingReaders;
 			}
@@ -1060,17 +1104,25 @@ public class PDOM extends PlatformObject implements IPDOM {
 			// Let the readers go first
 			long start= sDEBUG_LOCKS ? System.currentTimeMillis() : 0;
 			int count = 0;
-			while (lockCount > giveupReadLocks || waitingReaders > 0) {
-				mutex.wait(CANCELLATION_CHECK_INTERVAL);
-				if (monitor != null && monitor.isCanceled()) {
-					throw new OperationCanceledException();
-				}
-				count++;
-				if (monitor != null && count == LONG_WRITE_LOCK_REPORT_THRESHOLD / CANCELLATION_CHECK_INTERVAL) {
-					monitor.subTask(Messages.PDOM_waitingForWriteLock);
-				}
-				if (sDEBUG_LOCKS) {
-					start = reportBlockedWriteLock(start, giveupReadLocks);
+			if (lockCount > giveupReadLocks || waitingReaders > 0) {
+				final long waitStart= System.nanoTime();
+				try {
+					while (lockCount > giveupReadLocks || waitingReaders > 0) {
+						mutex.wait(CANCELLATION_CHECK_INTERVAL);
+						if (monitor != null && monitor.isCanceled()) {
+							throw new OperationCanceledException();
+						}
+						count++;
+						if (monitor != null && count == LONG_WRITE_LOCK_REPORT_THRESHOLD / CANCELLATION_CHECK_INTERVAL) {
+							monitor.subTask(Messages.PDOM_waitingForWriteLock);
+						}
+						if (sDEBUG_LOCKS) {
+							start = reportBlockedWriteLock(start, giveupReadLocks);
+						}
+					}
+				} finally {
+					blockedWriteLocks++;
+					writeLockWaitNanos+= System.nanoTime() - waitStart;
 				}
 			}
 			lockCount= -1;
@@ -1131,6 +1183,42 @@ public class PDOM extends PlatformObject implements IPDOM {
 		return lastWriteAccess;
 	}
 
+	/**
+	 * Returns the number of read locks that had to wait for a writer.
+	 */
+	public int getBlockedReadLockCount() {
+		synchronized (mutex) {
+			return blockedReadLocks;
+		}
+	}
+
+	/**
+	 * Returns the total time in milliseconds readers have waited for a writer.
+	 */
+	public long getReadLockWaitTime() {
+		synchronized (mutex) {
+			return readLockWaitNanos / 1000000;
+		}
+	}
+
+	/**
+	 * Returns the number of write locks that had to wait for readers.
+	 */
+	public int getBlockedWriteLockCount() {
+		synchronized (mutex) {
+			return blockedWriteLocks;
+		}
+	}
+
+	/**
+	 * Returns the total time in milliseconds writers have waited for readers.
+	 */
+	public long getWriteLockWaitTime() {
+		synchronized (mutex) {
+			return writeLockWaitNanos / 1000000;
+		}
+	}
+
 	public long getLastReadAccess() {
 		return lastReadAccess;
 	}
@@ -1287,6 +1375,25 @@ public class PDOM extends PlatformObject implements IPDOM {
 		return true;
 	}
 
+	/**
+	 * Returns the record of a file that has been added but is not yet committed, or 0.
+	 */
+	protected long getUncommittedFileRecord() {
+		return 0;
+	}
+
+	@Override
+	public IIndexFragment createSnapshot() throws CoreException, InterruptedException {
+		if (isPermanentlyReadOnly()) {
+			acquireReadLock();
+			return this;
+		}
+		assert lockCount > 0;  // needs read-lock.
+		PDOMSnapshot snapshot= new PDOMSnapshot(this, db.createSnapshot(), getUncommittedFileRecord());
+		snapshot.acquireReadLock();
+		return snapshot;
+	}
+
 	protected boolean isCommitted(PDOMMacro name) throws CoreException {
 		return true;
 	}
@@ -1481,6 +1588,7 @@ public class PDOM extends PlatformObject implements IPDOM {
 	private void clearCaches() {
 		fileIndex= null;
 		tagIndex = null;
+		stringTable= null;
 		indexOfDefectiveFiles= null;
 		indexOfFiledWithUnresolvedIncludes= null;
 		fLinkageIDCache.clear();
@@ -72,11 +72,14 @@ import org.eclipse.cdt.internal.core.index.IndexFactory;
 import org.eclipse.cdt.internal.core.index.IndexFileSet;
 import org.eclipse.cdt.internal.core.index.IndexerStateEvent;
 import org.eclipse.cdt.internal.core.index.provider.IndexProviderManager;
+import org.eclipse.cdt.internal.core.parser.scanner.LexedTokenCache;
 import org.eclipse.cdt.internal.core.pdom.PDOM.IListener;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.dom.IPDOMLinkageFactory;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMProjectIndexLocationConverter;
 import org.eclipse.cdt.internal.core.pdom.indexer.AbstractPDOMIndexer;
+import org.eclipse.cdt.internal.core.pdom.indexer.DeltaAnalyzer;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
 import org.eclipse.cdt.internal.core.pdom.indexer.PDOMNullIndexer;
 import org.eclipse.cdt.internal.core.pdom.indexer.PDOMRebuildTask;
@@ -291,7 +294,8 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 	protected void onPreferenceChange(PreferenceChangeEvent event) {
 		String prop = event.getKey();
 		if (prop.equals(CCorePreferenceConstants.INDEX_DB_CACHE_SIZE_PCT)
-				|| prop.equals(CCorePreferenceConstants.MAX_INDEX_DB_CACHE_SIZE_MB)) {
+				|| prop.equals(CCorePreferenceConstants.MAX_INDEX_DB_CACHE_SIZE_MB)
+				|| prop.equals(CCorePreferenceConstants.MAX_LEXED_TOKEN_CACHE_SIZE_MB)) {
 			adjustCacheSize();
 		} else if (prop.equals(CCorePreferenceConstants.TODO_TASK_TAGS) ||
 				prop.equals(CCorePreferenceConstants.TODO_TASK_PRIORITIES) ||
@@ -312,6 +316,12 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		long m1= Runtime.getRuntime().maxMemory() / 100L * cachePct;
 		long m2= Math.min(m1, cacheMax * 1024L * 1024L);
 		ChunkCache.getSharedInstance().setMaxSize(m2);
+
+		int tokenCacheMax= prefs.getInt(CCorePlugin.PLUGIN_ID, CCorePreferenceConstants.MAX_LEXED_TOKEN_CACHE_SIZE_MB, 32, null);
+		tokenCacheMax= Math.max(0, tokenCacheMax);       // 0 disables the cache
+		long t1= Runtime.getRuntime().maxMemory() / 100L * 5;
+		long t2= Math.min(t1, tokenCacheMax * 1024L * 1024L);
+		LexedTokenCache.getSharedInstance().setMaxSize(t2);
 	}
 
 	private void updatePathCanonicalizationStrategy() {
@@ -1299,7 +1309,8 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 	}
 
 	/**
-	 * Resets the pdom for the project with the provided stream.
+	 * Resets the pdom for the project with the provided stream. The stream may provide
+	 * a database with compressed chunks, see {@link Database#transferCompressedTo(OutputStream)}.
 	 * @param monitor 
 	 * @throws CoreException
 	 * @throws OperationCanceledException in case the thread was interrupted
@@ -1307,6 +1318,8 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 	 */
 	public void importProjectPDOM(ICProject project, InputStream stream, IProgressMonitor monitor)
 			throws CoreException, IOException {
+		// The index may have been exported with compressed chunks.
+		stream= Database.decompress(stream);
 		// make a copy of the database
 		String newName= createNewDatabaseName(project);
 		File newFile= fileFromDatabaseName(newName);
@@ -1466,6 +1479,41 @@ public class PDOMManager implements IWritableIndexManager, IListener {
 		}
 	}
 
+	/**
+	 * Predicts the time it takes to update the index of a project after the given files have
+	 * changed, without scheduling the update. The prediction is based on the parse costs that
+	 * were recorded when the files were indexed.
+	 */
+	public ReindexCostEstimator.Estimate estimateReindexCost(ICProject project, ITranslationUnit[] changedTUs)
+			throws CoreException, InterruptedException {
+		List<IIndexFileLocation> locations= new ArrayList<>(changedTUs.length);
+		for (ITranslationUnit tu : changedTUs) {
+			IIndexFileLocation ifl= IndexLocationFactory.getIFL(tu);
+			if (ifl != null)
+				locations.add(ifl);
+		}
+		IIndex index= getIndex(project);
+		index.acquireReadLock();
+		try {
+			return ReindexCostEstimator.estimate(index, locations.toArray(new IIndexFileLocation[locations.size()]));
+		} finally {
+			index.releaseReadLock();
+		}
+	}
+
+	/**
+	 * Predicts the time it takes to update the index of a project for the given delta, see
+	 * {@link #estimateReindexCost(ICProject, ITranslationUnit[])}.
+	 */
+	public ReindexCostEstimator.Estimate estimateReindexCost(ICProject project, ICElementDelta delta)
+			throws CoreException, InterruptedException {
+		DeltaAnalyzer analyzer= new DeltaAnalyzer();
+		analyzer.analyzeDelta(delta);
+		List<ITranslationUnit> tus= new ArrayList<>(analyzer.getForcedList());
+		tus.addAll(analyzer.getChangedList());
+		return estimateReindexCost(project, tus.toArray(new ITranslationUnit[tus.size()]));
+	}
+
 	void handlePostBuildEvent() {
 		assert !Thread.holdsLock(fProjectToPDOM);
 		synchronized (fUpdatePolicies) {
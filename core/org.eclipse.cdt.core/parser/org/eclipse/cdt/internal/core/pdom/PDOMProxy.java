@@ -25,6 +25,7 @@ import org.eclipse.cdt.core.index.IIndexLinkage;
 import org.eclipse.cdt.core.index.IIndexMacro;
 import org.eclipse.cdt.core.index.IndexFilter;
 import org.eclipse.cdt.core.parser.ISignificantMacros;
+import org.eclipse.cdt.internal.core.index.IIndexFragment;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentBinding;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentFileSet;
@@ -370,4 +371,13 @@ public class PDOMProxy implements IPDOM {
 	public synchronized boolean isFullyInitialized() {
 		return fDelegate != null;
 	}
+
+	@Override
+	public synchronized IIndexFragment createSnapshot() throws CoreException, InterruptedException {
+		if (fDelegate != null)
+			return fDelegate.createSnapshot();
+		// The proxy does not have any content, yet.
+		acquireReadLock();
+		return this;
+	}
 }
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
+import org.eclipse.cdt.internal.core.pdom.dom.PDOMMacro;
+import org.eclipse.cdt.internal.core.pdom.dom.PDOMMacroReferenceName;
+import org.eclipse.cdt.internal.core.pdom.dom.PDOMName;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Read-only view of a PDOM at the point in time it was created, see {@link PDOM#createSnapshot()}.
+ * The snapshot does not share the lock of the PDOM it was created from, it is closed when the
+ * last read lock on it is released.
+ */
+final class PDOMSnapshot extends PDOM {
+	private final long fUncommittedFileRecord;
+	private int fReadLockCount;
+	private boolean fClosed;
+
+	PDOMSnapshot(PDOM base, Database snapshot, long uncommittedFileRecord) throws CoreException {
+		super(base, snapshot);
+		fUncommittedFileRecord= uncommittedFileRecord;
+	}
+
+	@Override
+	public void acquireReadLock() throws InterruptedException {
+		synchronized (this) {
+			if (fClosed)
+				throw new IllegalStateException("Snapshot is closed"); //$NON-NLS-1$
+			fReadLockCount++;
+		}
+		super.acquireReadLock();
+	}
+
+	@Override
+	public void releaseReadLock() {
+		super.releaseReadLock();
+		synchronized (this) {
+			if (--fReadLockCount > 0)
+				return;
+			fClosed= true;
+		}
+		try {
+			close();
+		} catch (CoreException e) {
+			CCorePlugin.log(e);
+		}
+	}
+
+	@Override
+	protected boolean isCommitted(PDOMName name) throws CoreException {
+		return fUncommittedFileRecord == 0 || name.getFileRecord() != fUncommittedFileRecord;
+	}
+
+	@Override
+	protected boolean isCommitted(PDOMMacro name) throws CoreException {
+		return fUncommittedFileRecord == 0 || name.getFileRecord() != fUncommittedFileRecord;
+	}
+
+	@Override
+	protected boolean isCommitted(PDOMMacroReferenceName name) throws CoreException {
+		return fUncommittedFileRecord == 0 || name.getFileRecord() != fUncommittedFileRecord;
+	}
+}
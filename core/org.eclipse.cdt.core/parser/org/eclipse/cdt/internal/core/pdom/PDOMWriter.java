@@ -18,14 +18,33 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.dom.ILinkage;
+import org.eclipse.cdt.core.dom.ast.ASTVisitor;
+import org.eclipse.cdt.core.dom.ast.IASTCompositeTypeSpecifier;
+import org.eclipse.cdt.core.dom.ast.IASTCompoundStatement;
 import org.eclipse.cdt.core.dom.ast.IASTDeclSpecifier;
+import org.eclipse.cdt.core.dom.ast.IASTDeclaration;
+import org.eclipse.cdt.core.dom.ast.IASTDeclarator;
+import org.eclipse.cdt.core.dom.ast.IASTElaboratedTypeSpecifier;
 import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTForStatement;
+import org.eclipse.cdt.core.dom.ast.IASTFunctionDeclarator;
+import org.eclipse.cdt.core.dom.ast.IASTFunctionDefinition;
 import org.eclipse.cdt.core.dom.ast.IASTName;
 import org.eclipse.cdt.core.dom.ast.IASTNode;
 import org.eclipse.cdt.core.dom.ast.IASTPreprocessorIncludeStatement;
@@ -33,16 +52,32 @@ import org.eclipse.cdt.core.dom.ast.IASTPreprocessorMacroDefinition;
 import org.eclipse.cdt.core.dom.ast.IASTPreprocessorStatement;
 import org.eclipse.cdt.core.dom.ast.IASTPreprocessorUndefStatement;
 import org.eclipse.cdt.core.dom.ast.IASTProblem;
+import org.eclipse.cdt.core.dom.ast.IASTSimpleDeclSpecifier;
+import org.eclipse.cdt.core.dom.ast.IASTSimpleDeclaration;
+import org.eclipse.cdt.core.dom.ast.IASTStatement;
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
 import org.eclipse.cdt.core.dom.ast.IBinding;
 import org.eclipse.cdt.core.dom.ast.ICompositeType;
 import org.eclipse.cdt.core.dom.ast.IEnumeration;
 import org.eclipse.cdt.core.dom.ast.IProblemBinding;
+import org.eclipse.cdt.core.dom.ast.IScope;
 import org.eclipse.cdt.core.dom.ast.ITypedef;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTCatchHandler;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTCompositeTypeSpecifier;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTCompositeTypeSpecifier.ICPPASTBaseSpecifier;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTDeclSpecifier;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTEnumerationSpecifier;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTFunctionDeclarator;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTIfStatement;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTNamespaceDefinition;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTQualifiedName;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTRangeBasedForStatement;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTSwitchStatement;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTTemplateDeclaration;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTTemplateId;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTTranslationUnit;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTUsingDirective;
+import org.eclipse.cdt.core.dom.ast.cpp.ICPPASTWhileStatement;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPClassTemplate;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPField;
 import org.eclipse.cdt.core.dom.ast.cpp.ICPPFunction;
@@ -62,6 +97,8 @@ import org.eclipse.cdt.core.parser.IProblem;
 import org.eclipse.cdt.core.parser.ISignificantMacros;
 import org.eclipse.cdt.core.parser.util.CharArrayUtils;
 import org.eclipse.cdt.internal.core.dom.parser.ASTInternal;
+import org.eclipse.cdt.internal.core.dom.parser.ASTQueries;
+import org.eclipse.cdt.internal.core.dom.parser.IASTInternalScope;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPInternalDeclaredVariable;
 import org.eclipse.cdt.internal.core.dom.parser.cpp.ICPPUnknownBinding;
 import org.eclipse.cdt.internal.core.index.FileContentKey;
@@ -88,6 +125,28 @@ import org.eclipse.osgi.util.NLS;
  */
 public abstract class PDOMWriter implements IPDOMASTProcessor {
 	private static final boolean REPORT_UNKNOWN_BUILTINS = false;
+	/** Translation units with fewer names are not worth resolving in parallel. */
+	private static final int MIN_NAMES_FOR_PARALLEL_RESOLUTION = 20000;
+
+	/**
+	 * Permits for the threads that parse files or resolve names on behalf of an indexer thread.
+	 * Parallel parsing and parallel name resolution share them, such that together they do not
+	 * use more threads than there are processors.
+	 */
+	static final Semaphore WORKER_PERMITS = new Semaphore(Runtime.getRuntime().availableProcessors());
+
+	private static class ResolutionPool {
+		static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger fCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread= new Thread(r, "CDT Indexer Name Resolver " + fCount.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
 
 	public static class FileInAST {
 		final IASTPreprocessorIncludeStatement includeStatement;
@@ -157,6 +216,7 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		final Set<IASTPreprocessorIncludeStatement> fContextIncludes = new HashSet<>();
 		final List<IStatus> fStatuses = new ArrayList<>();
 		Map<String, String> fReplacementHeaders;  // Replacement headers keyed by file paths. 
+		long fParseCost;  // Time spent on parsing the AST and resolving its names, in milliseconds.
 
 		public Data(IASTTranslationUnit ast, FileInAST[] selectedFiles, IWritableIndex index) {
 			fAST= ast;
@@ -214,6 +274,7 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 	protected final ICanceler fCancelState = new Canceler();
 
 	private int fSkipReferences= SKIP_NO_REFERENCES;
+	private boolean fParallelNameResolution;
 
 	public PDOMWriter(IndexerInputAdapter resolver) {
 		fStatistics= new IndexerStatistics();
@@ -257,6 +318,16 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		return fSkipReferences;
 	}
 
+	/**
+	 * Enables resolving the names of large C++ translation units on multiple threads.
+	 * Only function bodies that do not add declarations to scopes or bindings outside of them
+	 * are resolved in parallel, see {@link #resolveNamesInParallel(Data)}. The mode is disabled
+	 * by default.
+	 */
+	public void setParallelNameResolution(boolean val) {
+		fParallelNameResolution= val;
+	}
+
 	/**
 	 * Extracts symbols from the given AST and adds them to the index.  Ignores Data maps that are
 	 * empty and ones where storageLinkageID == {@link ILinkage#NO_LINKAGE_ID}.
@@ -306,7 +377,12 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 
 	private void storeSymbolsInIndex(final Data data, int storageLinkageID, FileContext ctx,
 			IProgressMonitor monitor) throws InterruptedException, CoreException {
-		final IIndexFragmentFile newFile= ctx == null ? null : ctx.fNewFile;
+		IIndexFragmentFile newFile= ctx == null ? null : ctx.fNewFile;
+		if (newFile != null && newFile.getIndexFragment() != data.fIndex.getWritableFragment()) {
+			// A file of a read-only fragment cannot take over the includers of the old file,
+			// the replacement is stored in the writable fragment.
+			newFile= null;
+		}
 		SubMonitor progress = SubMonitor.convert(monitor, data.fSelectedFiles.length * 10);
 		for (int i= 0; i < data.fSelectedFiles.length; i++) {
 			final FileInAST fileInAST= data.fSelectedFiles[i];
@@ -354,6 +430,8 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 							fileInAST.fileContentKey.getLocation().getURI().getPath()), th));
 				}
 				fStatistics.fAddToIndexTime += lock.getCumulativeLockTime();
+				fStatistics.fWriteLockWaitTime += lock.getCumulativeWaitTime();
+				fStatistics.fLockYieldCount += lock.getYieldCount();
 			}
 		}
 	}
@@ -362,6 +440,9 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 		long start= System.currentTimeMillis();
 		Set<ICPPInternalDeclaredVariable> variables = new HashSet<>();
 		SubMonitor progress = SubMonitor.convert(monitor, data.fSelectedFiles.length);
+		if (fParallelNameResolution && data.fAST instanceof ICPPASTTranslationUnit) {
+			resolveNamesInParallel(data);
+		}
 		for (FileInAST file : data.fSelectedFiles) {
 			Symbols symbols= data.fSymbolMap.get(file.includeStatement);
 
@@ -433,7 +514,313 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 			}
 		}
 
-		fStatistics.fResolutionTime += System.currentTimeMillis() - start;
+		final long time= System.currentTimeMillis() - start;
+		fStatistics.fResolutionTime += time;
+		data.fParseCost += time;
+	}
+
+	/**
+	 * Resolves the names of a large translation unit on multiple threads, such that the sequential
+	 * pass in {@link #resolveNames(Data, IProgressMonitor)} finds their bindings already computed.
+	 * <p>
+	 * Names outside of function bodies are resolved first on the calling thread. So are the names
+	 * of all declarations and definitions, including the declarators of the function definitions
+	 * and the declarations within their bodies, because resolving them adds declarations and
+	 * definitions to bindings, which may be shared by the bodies. Also resolved on the calling
+	 * thread are the bodies of constexpr functions and of functions with a deduced return type,
+	 * these are evaluated when other names are resolved, and bodies with declarations that are
+	 * added to scopes or bindings outside of the body. Then the caches of all scopes except those
+	 * in the remaining bodies are populated, such that no scope is populated while other threads
+	 * use it.
+	 * <p>
+	 * The remaining function bodies contain only references. They do not depend on each other
+	 * and the scopes within a body are used by one thread only. They are resolved by the calling
+	 * thread together with as many helper threads as there are {@link #WORKER_PERMITS} left.
+	 * The caches they share, those of the translation unit and of the template instances, are
+	 * thread-safe. A thread resolves one body after the other, therefore the recursion guards
+	 * kept in thread-local variables by the semantics see one resolution at a time, like on
+	 * a single thread.
+	 * <p>
+	 * A name that cannot be resolved is reported like in the sequential pass, and is not written
+	 * to the index. An error ends the helper thread, the names it did not resolve are left to the
+	 * sequential pass.
+	 */
+	private void resolveNamesInParallel(Data data) {
+		Map<IASTFunctionDefinition, Body> bodies= new LinkedHashMap<>();
+		Set<IASTFunctionDefinition> sequentialBodies= new HashSet<>();
+		List<Body> sequential= new ArrayList<>();
+		int count= 0;
+		for (FileInAST file : data.fSelectedFiles) {
+			Body outside= new Body(file);
+			sequential.add(outside);
+			for (IASTName[] na : data.fSymbolMap.get(file.includeStatement).fNames) {
+				final IASTName name= na[0];
+				if (name == null)
+					continue;
+				count++;
+				IASTFunctionDefinition function= getOutermostFunctionDefinition(name);
+				if (function == null || !name.isReference() || sequentialBodies.contains(function)) {
+					outside.fNames.add(na);
+					continue;
+				}
+				Body body= bodies.get(function);
+				if (body == null) {
+					if (!canResolveBodyInParallel(function)) {
+						sequentialBodies.add(function);
+						outside.fNames.add(na);
+						continue;
+					}
+					body= new Body(file);
+					bodies.put(function, body);
+				}
+				body.fNames.add(na);
+			}
+		}
+		if (count < MIN_NAMES_FOR_PARALLEL_RESOLUTION || bodies.size() < 2)
+			return;
+
+		Queue<IStatus> statuses= new ConcurrentLinkedQueue<>();
+		for (Body body : sequential) {
+			if (!body.resolve(statuses)) {
+				data.fStatuses.addAll(statuses);
+				return;
+			}
+		}
+		try {
+			data.fAST.accept(new ScopeCachePopulator(bodies.keySet()));
+		} catch (RuntimeException e) {
+			// The remaining names are resolved by the sequential pass.
+			data.fStatuses.addAll(statuses);
+			return;
+		}
+
+		final Queue<Body> queue= new ConcurrentLinkedQueue<>(bodies.values());
+		List<Future<?>> helpers= new ArrayList<>();
+		while (helpers.size() < bodies.size() - 1 && WORKER_PERMITS.tryAcquire()) {
+			helpers.add(ResolutionPool.INSTANCE.submit(() -> {
+				try {
+					resolveBodies(queue, statuses);
+				} finally {
+					WORKER_PERMITS.release();
+				}
+			}));
+		}
+		try {
+			resolveBodies(queue, statuses);
+		} finally {
+			// The AST must not be accessed by other threads, once this method returns.
+			boolean interrupted= false;
+			for (Future<?> helper : helpers) {
+				while (true) {
+					try {
+						helper.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted= true;
+					} catch (ExecutionException e) {
+						// The names the helper did not resolve are left to the sequential pass.
+						break;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			data.fStatuses.addAll(statuses);
+		}
+	}
+
+	private void resolveBodies(Queue<Body> bodies, Queue<IStatus> statuses) {
+		for (Body body= bodies.poll(); body != null; body= bodies.poll()) {
+			if (!body.resolve(statuses))
+				return;
+		}
+	}
+
+	/**
+	 * The names of one function body, or of a file outside of the function bodies.
+	 */
+	private class Body {
+		final FileInAST fFile;
+		final List<IASTName[]> fNames= new ArrayList<>();
+
+		Body(FileInAST file) {
+			fFile= file;
+		}
+
+		/**
+		 * Resolves the names, returns <code>false</code> if the indexer was canceled. A name that
+		 * cannot be resolved is reported once per body, and is removed from the names to be
+		 * written to the index.
+		 */
+		boolean resolve(Queue<IStatus> statuses) {
+			boolean reported= false;
+			for (IASTName[] na : fNames) {
+				if (fCancelState.isCanceled())
+					return false;
+				final IASTName name= na[0];
+				try {
+					name.resolveBinding();
+				} catch (RuntimeException e) {
+					if (!reported) {
+						statuses.add(CCorePlugin.createStatus(NLS.bind(Messages.PDOMWriter_errorResolvingName,
+								name.toString(), fFile.fileContentKey.getLocation().getURI().getPath()), e));
+					}
+					reported= true;
+					na[0]= null;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Populates the caches of the scopes, except for the ones in the bodies that are resolved
+	 * in parallel.
+	 */
+	private static class ScopeCachePopulator extends ASTVisitor {
+		private final Set<IASTFunctionDefinition> fParallelBodies;
+
+		ScopeCachePopulator(Set<IASTFunctionDefinition> parallelBodies) {
+			fParallelBodies= parallelBodies;
+			shouldVisitTranslationUnit= true;
+			shouldVisitDeclarations= true;
+			shouldVisitDeclSpecifiers= true;
+			shouldVisitNamespaces= true;
+			shouldVisitStatements= true;
+		}
+
+		@Override
+		public int visit(IASTTranslationUnit tu) {
+			populate(tu.getScope());
+			return PROCESS_CONTINUE;
+		}
+
+		@Override
+		public int visit(ICPPASTNamespaceDefinition namespace) {
+			populate(namespace.getScope());
+			return PROCESS_CONTINUE;
+		}
+
+		@Override
+		public int visit(IASTDeclaration declaration) {
+			if (declaration instanceof IASTFunctionDefinition) {
+				if (fParallelBodies.contains(declaration))
+					return PROCESS_SKIP;
+				IASTDeclarator declarator= ((IASTFunctionDefinition) declaration).getDeclarator();
+				if (declarator instanceof ICPPASTFunctionDeclarator)
+					populate(((ICPPASTFunctionDeclarator) declarator).getFunctionScope());
+			} else if (declaration instanceof ICPPASTTemplateDeclaration)
+				populate(((ICPPASTTemplateDeclaration) declaration).getScope());
+			return PROCESS_CONTINUE;
+		}
+
+		@Override
+		public int visit(IASTDeclSpecifier declSpec) {
+			if (declSpec instanceof ICPPASTCompositeTypeSpecifier) {
+				populate(((ICPPASTCompositeTypeSpecifier) declSpec).getScope());
+			} else if (declSpec instanceof ICPPASTEnumerationSpecifier) {
+				populate(((ICPPASTEnumerationSpecifier) declSpec).getScope());
+			}
+			return PROCESS_CONTINUE;
+		}
+
+		@Override
+		public int visit(IASTStatement statement) {
+			if (statement instanceof IASTCompoundStatement) {
+				populate(((IASTCompoundStatement) statement).getScope());
+			} else if (statement instanceof IASTForStatement) {
+				populate(((IASTForStatement) statement).getScope());
+			} else if (statement instanceof ICPPASTRangeBasedForStatement) {
+				populate(((ICPPASTRangeBasedForStatement) statement).getScope());
+			} else if (statement instanceof ICPPASTIfStatement) {
+				populate(((ICPPASTIfStatement) statement).getScope());
+			} else if (statement instanceof ICPPASTSwitchStatement) {
+				populate(((ICPPASTSwitchStatement) statement).getScope());
+			} else if (statement instanceof ICPPASTWhileStatement) {
+				populate(((ICPPASTWhileStatement) statement).getScope());
+			} else if (statement instanceof ICPPASTCatchHandler) {
+				populate(((ICPPASTCatchHandler) statement).getScope());
+			}
+			return PROCESS_CONTINUE;
+		}
+
+		private static void populate(IScope scope) {
+			if (scope instanceof IASTInternalScope)
+				((IASTInternalScope) scope).populateCache();
+		}
+	}
+
+	private static IASTFunctionDefinition getOutermostFunctionDefinition(IASTNode node) {
+		IASTFunctionDefinition result= null;
+		for (; node != null; node= node.getParent()) {
+			if (node instanceof IASTFunctionDefinition)
+				result= (IASTFunctionDefinition) node;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the body of the given function is resolved only on behalf of the names
+	 * within it, and whether resolving it modifies only the scopes within the body.
+	 */
+	private static boolean canResolveBodyInParallel(IASTFunctionDefinition function) {
+		IASTDeclSpecifier declSpec= function.getDeclSpecifier();
+		if (declSpec instanceof ICPPASTDeclSpecifier && ((ICPPASTDeclSpecifier) declSpec).isConstexpr())
+			return false;
+		if (declSpec instanceof IASTSimpleDeclSpecifier) {
+			int type= ((IASTSimpleDeclSpecifier) declSpec).getType();
+			if (type == IASTSimpleDeclSpecifier.t_auto || type == IASTSimpleDeclSpecifier.t_decltype_auto)
+				return false;
+		}
+		ScopeInjectionFinder finder= new ScopeInjectionFinder();
+		function.getBody().accept(finder);
+		return !finder.fFound;
+	}
+
+	/**
+	 * Looks for declarations in a function body which add names or declarations to a scope
+	 * or binding outside of the body: elaborated type specifiers and friend declarations,
+	 * which may introduce a name into the enclosing namespace, as well as block scope
+	 * function and extern variable declarations, which are added to the bindings declared
+	 * outside of the function.
+	 */
+	private static class ScopeInjectionFinder extends ASTVisitor {
+		boolean fFound;
+
+		ScopeInjectionFinder() {
+			shouldVisitDeclarations= true;
+			shouldVisitDeclSpecifiers= true;
+		}
+
+		@Override
+		public int visit(IASTDeclSpecifier declSpec) {
+			if (declSpec instanceof IASTElaboratedTypeSpecifier
+					|| (declSpec instanceof ICPPASTDeclSpecifier && ((ICPPASTDeclSpecifier) declSpec).isFriend())) {
+				fFound= true;
+				return PROCESS_ABORT;
+			}
+			return PROCESS_CONTINUE;
+		}
+
+		@Override
+		public int visit(IASTDeclaration declaration) {
+			// Member declarations of local classes are added to the class scope.
+			if (declaration instanceof IASTSimpleDeclaration
+					&& !(declaration.getParent() instanceof IASTCompositeTypeSpecifier)) {
+				IASTSimpleDeclaration simpleDecl= (IASTSimpleDeclaration) declaration;
+				boolean found= simpleDecl.getDeclSpecifier().getStorageClass() == IASTDeclSpecifier.sc_extern;
+				for (IASTDeclarator declarator : simpleDecl.getDeclarators()) {
+					if (ASTQueries.findTypeRelevantDeclarator(declarator) instanceof IASTFunctionDeclarator)
+						found= true;
+				}
+				if (found) {
+					fFound= true;
+					return PROCESS_ABORT;
+				}
+			}
+			return PROCESS_CONTINUE;
+		}
 	}
 
 	private boolean isVariableIndexed(ICPPVariable variable) {
@@ -665,6 +1052,8 @@ public abstract class PDOMWriter implements IPDOMASTProcessor {
 			file.setSourceReadTime(astFile.sourceReadTime);
 			file.setSizeAndEncodingHashcode(computeFileSizeAndEncodingHashcode(astFile.fileSize, location));
 			file.setContentsHash(astFile.contentsHash);
+			if (owner == null)
+				file.setParseCost((int) Math.max(1, Math.min(data.fParseCost, Integer.MAX_VALUE)));
 			file = index.commitUncommittedFile();
 		} finally {
 			index.clearUncommittedFile();
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.cdt.core.index.IIndex;
+import org.eclipse.cdt.core.index.IIndexFile;
+import org.eclipse.cdt.core.index.IIndexFileLocation;
+import org.eclipse.cdt.core.index.IIndexInclude;
+import org.eclipse.cdt.internal.core.index.IIndexFragmentFile;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Predicts the cost of updating the index from the parse costs stored with the files.
+ * <p>
+ * A changed source file is parsed by itself, a changed header is parsed in the context it
+ * was indexed in. The cost of updating a file is therefore the parse cost of the top-level
+ * file that is found by following the contexts in the reverse include graph.
+ */
+public class ReindexCostEstimator {
+	/**
+	 * Parse cost in milliseconds assumed for files without a recorded cost.
+	 */
+	public static final int DEFAULT_PARSE_COST= 100;
+
+	/**
+	 * The predicted cost of an index update.
+	 */
+	public static class Estimate {
+		private final long fTime;
+		private final int fParseCount;
+		private final int fUnknownCount;
+
+		Estimate(long time, int parseCount, int unknownCount) {
+			fTime= time;
+			fParseCount= parseCount;
+			fUnknownCount= unknownCount;
+		}
+
+		/**
+		 * Returns the predicted time for parsing the files, in milliseconds.
+		 */
+		public long getTime() {
+			return fTime;
+		}
+
+		/**
+		 * Returns the number of files that need to be parsed.
+		 */
+		public int getParseCount() {
+			return fParseCount;
+		}
+
+		/**
+		 * Returns the number of parsed files for which {@link #DEFAULT_PARSE_COST} was assumed,
+		 * because no cost has been recorded for them.
+		 */
+		public int getUnknownCount() {
+			return fUnknownCount;
+		}
+
+		@Override
+		public String toString() {
+			return fTime + " ms for parsing " + fParseCount + " files (" + fUnknownCount + " unknown)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private ReindexCostEstimator() {
+	}
+
+	/**
+	 * Predicts the cost of updating the index after the files at the given locations have
+	 * changed. The caller needs to hold a read lock on the index.
+	 */
+	public static Estimate estimate(IIndex index, IIndexFileLocation[] locations) throws CoreException {
+		Set<IIndexFile> parsedFiles= new HashSet<>();
+		long time= 0;
+		int parseCount= 0;
+		int unknownCount= 0;
+		for (IIndexFileLocation location : locations) {
+			IIndexFile[] files= index.getFiles(location);
+			if (files.length == 0) {
+				// A new file.
+				parseCount++;
+				unknownCount++;
+				time += DEFAULT_PARSE_COST;
+				continue;
+			}
+			for (IIndexFile file : files) {
+				IIndexFile topLevelFile= getTopLevelFile(file);
+				if (parsedFiles.add(topLevelFile)) {
+					parseCount++;
+					int cost= getRecordedCost(topLevelFile);
+					if (cost == 0) {
+						unknownCount++;
+						cost= DEFAULT_PARSE_COST;
+					}
+					time += cost;
+				}
+			}
+		}
+		return new Estimate(time, parseCount, unknownCount);
+	}
+
+	/**
+	 * Returns the predicted time for parsing the given file again, in milliseconds. The caller
+	 * needs to hold a read lock on the index.
+	 */
+	public static int getParseCost(IIndexFile file) throws CoreException {
+		int cost= getRecordedCost(getTopLevelFile(file));
+		return cost != 0 ? cost : DEFAULT_PARSE_COST;
+	}
+
+	/**
+	 * Follows the contexts of the file up to the file that was parsed as a translation unit.
+	 */
+	private static IIndexFile getTopLevelFile(IIndexFile file) throws CoreException {
+		Set<IIndexFile> visited= null;
+		while (true) {
+			if (file instanceof IIndexFragmentFile && ((IIndexFragmentFile) file).getParseCost() != 0)
+				return file;
+			IIndexInclude context= file.getParsedInContext();
+			if (context == null)
+				return file;
+			IIndexFile includer= context.getIncludedBy();
+			if (includer == null)
+				return file;
+			if (visited == null)
+				visited= new HashSet<>();
+			if (!visited.add(file))
+				return file;  // Guard against cyclic contexts.
+			file= includer;
+		}
+	}
+
+	private static int getRecordedCost(IIndexFile file) throws CoreException {
+		return file instanceof IIndexFragmentFile ? ((IIndexFragmentFile) file).getParseCost() : 0;
+	}
+}
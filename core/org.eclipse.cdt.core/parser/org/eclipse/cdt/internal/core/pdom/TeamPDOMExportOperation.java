@@ -32,6 +32,9 @@ import org.eclipse.cdt.core.index.IIndexLocationConverter;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.core.model.LanguageManager;
 import org.eclipse.cdt.internal.core.CCoreInternals;
+import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
+import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.dom.PDOMProjectIndexLocationConverter;
 import org.eclipse.cdt.internal.core.pdom.indexer.IndexerPreferences;
 import org.eclipse.cdt.internal.core.resources.ResourceLookup;
@@ -44,6 +47,7 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
@@ -57,6 +61,14 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 	 */
 	public static int EXPORT_OPTION_RESOURCE_SNAPSHOT = 1;
 
+	/**
+	 * Option constant (value:2) to indicate that the chunks of the exported PDOM
+	 * should be compressed individually, such that the index can be streamed and
+	 * decompressed chunk by chunk on import.
+	 * @since 6.4
+	 */
+	public static int EXPORT_OPTION_COMPRESSED_INDEX = 2;
+
 	private static final String RESOURCE_PREFIX = "res-"; //$NON-NLS-1$
 	private static final String CDT_PREFIX = "cdt-"; //$NON-NLS-1$
 	private static final String RESOURCE_SNAP_EXTENSION = "snap.zip"; //$NON-NLS-1$
@@ -66,6 +78,7 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 	private File fTargetLocationFile;
 	private MessageDigest fMessageDigest;
 	private int fOptions;
+	private IStatus fCompressionStatistics;
 	
 	public TeamPDOMExportOperation(ICProject project) {
 		fProject= project;
@@ -83,6 +96,16 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 		fMessageDigest= md;
 	}
 
+	/**
+	 * Returns the space saved by compressing the index, or {@code null} if the
+	 * operation did not export a compressed index.
+	 * @see #EXPORT_OPTION_COMPRESSED_INDEX
+	 * @since 6.4
+	 */
+	public IStatus getCompressionStatistics() {
+		return fCompressionStatistics;
+	}
+
 	@Override
 	public void run(IProgressMonitor monitor) throws CoreException {
 		getMessageDigest();
@@ -236,8 +259,15 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 		try {
 			fTargetLocationFile.getParentFile().mkdirs();
 			out= new ZipOutputStream(new FileOutputStream(fTargetLocationFile));
-			out.setLevel(Deflater.BEST_COMPRESSION);
-			writeEntry(out, TeamPDOMImportOperation.INDEX_NAME, tmpPDOM);
+			if ((fOptions & EXPORT_OPTION_COMPRESSED_INDEX) != 0) {
+				// The chunks are compressed already, don't deflate them a second time.
+				out.setLevel(Deflater.NO_COMPRESSION);
+				writeCompressedEntry(out, TeamPDOMImportOperation.INDEX_NAME, tmpPDOM);
+				out.setLevel(Deflater.BEST_COMPRESSION);
+			} else {
+				out.setLevel(Deflater.BEST_COMPRESSION);
+				writeEntry(out, TeamPDOMImportOperation.INDEX_NAME, tmpPDOM);
+			}
 			writeEntry(out, TeamPDOMImportOperation.CHECKSUMS_NAME, tmpChecksums);
 		} catch (IOException e) {
 			throw new CoreException(CCorePlugin.createStatus(Messages.TeamPDOMExportOperation_errorCreateArchive, e));
@@ -266,4 +296,18 @@ public class TeamPDOMExportOperation implements IWorkspaceRunnable {
 			close(in);
 		}
 	}
+
+	private void writeCompressedEntry(ZipOutputStream out, String name, File input) throws IOException, CoreException {
+		ZipEntry e= new ZipEntry(name);
+		out.putNextEntry(e);
+		Database db= new Database(input, new ChunkCache(), 0, true);
+		db.setExclusiveLock();	// The input is all ours.
+		try {
+			long compressedSize= db.transferCompressedTo(out);
+			fCompressionStatistics= DBStatus.createCompressionStatistics(db.getSizeBytes(), compressedSize);
+			out.closeEntry();
+		} finally {
+			db.close();
+		}
+	}
 }
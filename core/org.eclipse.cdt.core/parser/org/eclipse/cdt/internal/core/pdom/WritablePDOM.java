@@ -227,15 +227,18 @@ public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 
 		clearFileIndex();
 		final List<PDOMFile> notConverted = new ArrayList<PDOMFile>();
+		final long[] converted = new long[pdomfiles.size()];
+		int convertedCount = 0;
 		for (PDOMFile file : pdomfiles) {
 			String internalFormat = newConverter.toInternalFormat(file.getLocation());
 			if (internalFormat != null) {
 				file.setInternalLocation(internalFormat);
-				getFileIndex().insert(file.getRecord());
+				converted[convertedCount++] = file.getRecord();
 			} else {
 				notConverted.add(file);
 			}
 		}
+		getFileIndex().bulkLoad(converted, convertedCount);
 
 		// remove content where converter returns null
 		for (PDOMFile file : notConverted) {
@@ -333,6 +336,11 @@ public class WritablePDOM extends PDOM implements IWritableIndexFragment {
 		return false;
 	}
 
+	@Override
+	protected long getUncommittedFileRecord() {
+		return uncommittedFile != null ? uncommittedFile.getRecord() : 0;
+	}
+
 	@Override
 	protected boolean isCommitted(PDOMName name) throws CoreException {
 		return uncommittedFile == null || !uncommittedFile.getPDOM().equals(name.getPDOM()) ||
@@ -19,11 +19,21 @@ import org.eclipse.core.runtime.IProgressMonitor;
  * @since 5.2
  */
 public class YieldableIndexLock {
+	/**
+	 * Minimum time in milliseconds the lock is held before it is yielded to waiting readers.
+	 * Writing names in larger batches keeps the indexer from being throttled by a constant
+	 * stream of readers, while the readers still get the lock within a bounded time.
+	 */
+	private static final long YIELD_INTERVAL=
+			Long.getLong("org.eclipse.cdt.core.parser.pdom.yieldInterval", 50); //$NON-NLS-1$
+
 	private final IWritableIndex index;
 	private final boolean flushIndex;
 	private final IProgressMonitor progressMonitor;
 	private long lastLockTime;
 	private long cumulativeLockTime;
+	private long cumulativeWaitTime;
+	private int yieldCount;
 
 	public YieldableIndexLock(IWritableIndex index, boolean flushIndex, IProgressMonitor monitor) {
 		this.index = index;
@@ -37,8 +47,10 @@ public class YieldableIndexLock {
 	 * @throws InterruptedException
 	 */
 	public void acquire() throws InterruptedException {
+		long start = System.currentTimeMillis();
 		index.acquireWriteLock(progressMonitor);
 		lastLockTime = System.currentTimeMillis();
+		cumulativeWaitTime += lastLockTime - start;
 	}
 
 	/**
@@ -58,10 +70,12 @@ public class YieldableIndexLock {
 	 * @throws InterruptedException
 	 */
 	public void yield() throws InterruptedException {
-		if (index.hasWaitingReaders()) {
+		long timeHeld = System.currentTimeMillis() - lastLockTime;
+		if (timeHeld >= YIELD_INTERVAL && index.hasWaitingReaders()) {
 			index.releaseWriteLock(false);
-			cumulativeLockTime += System.currentTimeMillis() - lastLockTime;
+			cumulativeLockTime += timeHeld;
 			lastLockTime = 0;
+			yieldCount++;
 			acquire();
 		}
 	}
@@ -72,4 +86,18 @@ public class YieldableIndexLock {
 	public long getCumulativeLockTime() {
 		return cumulativeLockTime;
 	}
+
+	/**
+	 * @return Total time spent waiting for the lock in milliseconds.
+	 */
+	public long getCumulativeWaitTime() {
+		return cumulativeWaitTime;
+	}
+
+	/**
+	 * @return Number of times the lock was yielded to readers.
+	 */
+	public int getYieldCount() {
+		return yieldCount;
+	}
 }
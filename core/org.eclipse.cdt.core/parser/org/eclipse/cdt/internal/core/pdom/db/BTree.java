@@ -207,6 +207,120 @@ public class BTree {
 		putRecord(db.getChunk(root), root, 0, record); 
 	}
 
+	/**
+	 * Adds all of the given records to an empty b-tree. The records are sorted in memory and
+	 * the nodes are built bottom-up, such that they are written sequentially and are filled
+	 * completely. This is much faster than inserting the records one by one and results in
+	 * fewer nodes. Of records that compare equal, only the first one is added, just like
+	 * {@link #insert(long)} would do.
+	 * <p>
+	 * If the b-tree is not empty, the records are inserted one by one.
+	 *
+	 * @param records the records to add, the first {@code length} elements of the array are
+	 *     reordered.
+	 * @param length the number of records to add
+	 */
+	public void bulkLoad(long[] records, int length) throws CoreException {
+		if (getRoot() != 0) {
+			for (int i = 0; i < length; i++) {
+				insert(records[i]);
+			}
+			return;
+		}
+		if (length == 0)
+			return;
+
+		// A stable sort keeps the first of equal records in front.
+		sort(records, new long[length], 0, length);
+		int count= 1;
+		for (int i = 1; i < length; i++) {
+			if (cmp.compare(records[count - 1], records[i]) != 0) {
+				records[count++]= records[i];
+			}
+		}
+
+		// Build one level after the other, the separators of a level are the records of the
+		// level above it.
+		long[] keys= records;
+		long[] children= null;
+		while (true) {
+			final int nodeCount= (count + 1 + MAX_RECORDS) / (MAX_RECORDS + 1);
+			if (nodeCount <= 1) {
+				db.putRecPtr(rootPointer, writeNode(keys, 0, count, children, 0));
+				return;
+			}
+			// Distribute the records evenly, every node gets at least MIN_RECORDS of them.
+			final int total= count + 1;
+			final int perNode= total / nodeCount;
+			final int remainder= total % nodeCount;
+			final long[] nextKeys= new long[nodeCount - 1];
+			final long[] nextChildren= new long[nodeCount];
+			int k= 0;
+			int c= 0;
+			for (int i = 0; i < nodeCount; i++) {
+				final int recordCount= perNode - 1 + (i < remainder ? 1 : 0);
+				nextChildren[i]= writeNode(keys, k, recordCount, children, c);
+				k+= recordCount;
+				c+= recordCount + 1;
+				if (i < nodeCount - 1) {
+					nextKeys[i]= keys[k++];
+				}
+			}
+			keys= nextKeys;
+			children= nextChildren;
+			count= nodeCount - 1;
+		}
+	}
+
+	private long writeNode(long[] keys, int keyStart, int recordCount, long[] children, int childStart)
+			throws CoreException {
+		final long node= allocateNode();
+		final Chunk chunk= db.getChunk(node);
+		for (int i = 0; i < recordCount; i++) {
+			putRecord(chunk, node, i, keys[keyStart + i]);
+		}
+		if (children != null) {
+			for (int i = 0; i <= recordCount; i++) {
+				putChild(chunk, node, i, children[childStart + i]);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Merge sort of records using the comparator of the b-tree.
+	 */
+	private void sort(long[] records, long[] tmp, int from, int to) throws CoreException {
+		final int length= to - from;
+		if (length < 8) {
+			for (int i = from + 1; i < to; i++) {
+				long r= records[i];
+				int j= i;
+				for (; j > from && cmp.compare(records[j - 1], r) > 0; j--) {
+					records[j]= records[j - 1];
+				}
+				records[j]= r;
+			}
+			return;
+		}
+		final int middle= (from + to) >>> 1;
+		sort(records, tmp, from, middle);
+		sort(records, tmp, middle, to);
+		if (cmp.compare(records[middle - 1], records[middle]) <= 0)
+			return;
+
+		System.arraycopy(records, from, tmp, from, length);
+		int i= from;
+		int j= middle;
+		for (int k = from; k < to; k++) {
+			if (j >= to || (i < middle && cmp.compare(tmp[i], tmp[j]) <= 0)) {
+				records[k]= tmp[i++];
+			} else {
+				records[k]= tmp[j++];
+			}
+		}
+	}
+
 	private long allocateNode() throws CoreException {
 		return db.malloc((2 * MAX_RECORDS + 1) * Database.INT_SIZE);
 	}
@@ -30,7 +30,9 @@ final class Chunk {
 	boolean fCacheHitFlag;
 	boolean fDirty;
 	boolean fLocked;	// locked chunks must not be released from cache.
-	int fCacheIndex= -1;
+	// Volatile, such that a chunk found without synchronization is seen with its content.
+	volatile int fCacheIndex= -1;
+	int fSnapshotEpoch;	// Epoch of the database's snapshots this chunk has been preserved for.
 		
 	Chunk(Database db, int sequenceNumber) {
 		fDatabase= db;
@@ -46,6 +48,10 @@ final class Chunk {
 		}
 	}
 
+	void copyFrom(Chunk chunk) {
+		System.arraycopy(chunk.fBuffer, 0, fBuffer, 0, fBuffer.length);
+	}
+
 	void flush() throws CoreException {
 		try {
 			final ByteBuffer buf= ByteBuffer.wrap(fBuffer);
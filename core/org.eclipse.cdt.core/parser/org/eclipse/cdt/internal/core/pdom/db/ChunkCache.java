@@ -7,16 +7,55 @@
  *
  * Contributors:
  *     Markus Schorn - initial API and implementation
- *******************************************************************************/ 
+ *******************************************************************************/
 package org.eclipse.cdt.internal.core.pdom.db;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache for the chunks of one or more databases, chunks are evicted using the CLOCK algorithm
+ * once the maximum size of the cache is reached.
+ * <p>
+ * Changes to the cache are synchronized on the cache object. Chunks that are in the cache can be
+ * looked up by {@link Database#getChunk(long)} without synchronization, such that concurrent
+ * readers of a database are not serialized by the cache.
+ * <p>
+ * A partitioned cache, like the shared instance, gives each database a partition of its own.
+ * The partitions have separate page tables and monitors, such that misses in one database do
+ * not contend with the ones in another, and draw their slots from the common maximum size.
+ * A partition grows while the maximum size is not reached. Then it evicts its own chunks, or
+ * takes slots from the largest partition as long as it has less than an equal share. A full
+ * partition looks for slots to take once per {@link #SLOTS_PER_STEP} misses, the budget of the
+ * cache is read without its monitor, such that misses do not contend on the monitor of the cache.
+ */
 public final class ChunkCache {
-	private static ChunkCache sSharedInstance= new ChunkCache();
-	
+	/** Number of slots a partition is extended or reduced by at a time. */
+	private static final int SLOTS_PER_STEP= 16;
+
+	private static ChunkCache sSharedInstance= new ChunkCache(5 * 1024 * 1024, true);
+
+	// Partitioned cache: the partitions and the number of slots they may use in total.
+	private final List<ChunkCache> fPartitions;
+	// Changed while holding the monitor of this cache, read without it.
+	private volatile int fBudget;
+	private volatile int fAllocated;	// Number of slots given to partitions.
+
+	// Partition of another cache, or null.
+	private final ChunkCache fParent;
+
 	private Chunk[] fPageTable;
+	private volatile int fCapacity;	// Number of slots of the page table in use.
 	private boolean fTableIsFull;
 	private int fPointer;
-	
+	private int fMissesSinceRebalance;	// Misses of a partition since it last tried to rebalance.
+
+	private final LongAdder fHits;
+	private final LongAdder fMisses;
+	private final LongAdder fEvictions;
+
 	public static ChunkCache getSharedInstance() {
 		return sSharedInstance;
 	}
@@ -24,19 +63,96 @@ public final class ChunkCache {
 	public ChunkCache() {
 		this(5 * 1024 * 1024);
 	}
-	
+
 	public ChunkCache(long maxSize) {
-		fPageTable= new Chunk[computeLength(maxSize)];
+		this(maxSize, false);
+	}
+
+	/**
+	 * Creates a cache of the given size in bytes.
+	 * @param partitioned whether each database gets a partition with a separate monitor.
+	 */
+	public ChunkCache(long maxSize, boolean partitioned) {
+		fParent= null;
+		fHits= new LongAdder();
+		fMisses= new LongAdder();
+		fEvictions= new LongAdder();
+		if (partitioned) {
+			fPartitions= new CopyOnWriteArrayList<>();
+			fBudget= computeLength(maxSize);
+			fPageTable= new Chunk[0];
+		} else {
+			fPartitions= null;
+			fPageTable= new Chunk[computeLength(maxSize)];
+			fCapacity= fPageTable.length;
+		}
+	}
+
+	private ChunkCache(ChunkCache parent) {
+		fParent= parent;
+		fPartitions= null;
+		fHits= parent.fHits;
+		fMisses= parent.fMisses;
+		fEvictions= parent.fEvictions;
+		fPageTable= new Chunk[0];
+		// The partition receives slots when the first chunk is added.
+		fTableIsFull= true;
+	}
+
+	/**
+	 * Returns the cache to be used by a new database, which is a new partition in case this
+	 * cache is partitioned. The partition has to be released via {@link #release()}.
+	 */
+	ChunkCache createPartition() {
+		if (fPartitions == null)
+			return this;
+
+		ChunkCache partition= new ChunkCache(this);
+		fPartitions.add(partition);
+		return partition;
 	}
-	
+
+	/**
+	 * Returns the cache this cache is a partition of, or the cache itself.
+	 */
+	ChunkCache getRoot() {
+		return fParent != null ? fParent : this;
+	}
+
+	/**
+	 * Returns the slots of a partition to its parent, after the database has removed its
+	 * chunks. Has no effect for caches that are not partitions.
+	 */
+	void release() {
+		final ChunkCache parent= fParent;
+		if (parent != null) {
+			synchronized (this) {
+				parent.fPartitions.remove(this);
+				parent.returnSlots(fCapacity);
+				fPageTable= new Chunk[0];
+				fCapacity= 0;
+				fPointer= 0;
+				fTableIsFull= true;
+			}
+		}
+	}
+
 	public synchronized void add(Chunk chunk, boolean locked) {
 		if (locked) {
 			chunk.fLocked= true;
 		}
 		if (chunk.fCacheIndex >= 0) {
 			chunk.fCacheHitFlag= true;
+			fHits.increment();
 			return;
 		}
+		fMisses.increment();
+		if (fParent != null) {
+			fMissesSinceRebalance++;
+			if (fTableIsFull) {
+				grow();
+			}
+		}
 		if (fTableIsFull) {
 			evictChunk();
 			chunk.fCacheIndex= fPointer;
@@ -46,18 +162,151 @@ public final class ChunkCache {
 			fPageTable[fPointer]= chunk;
 
 			fPointer++;
-			if (fPointer == fPageTable.length) {
+			if (fPointer == fCapacity) {
 				fPointer= 0;
 				fTableIsFull= true;
 			}
 		}
 	}
-	
-	/**                                                                   
-	 * Evicts a chunk from the page table and the chunk table.            
+
+	/**
+	 * Extends a full partition by the slots the parent can spare.
+	 */
+	private void grow() {
+		final int capacity= fCapacity;
+		final int slots= fParent.takeSlots(capacity);
+		if (slots > 0) {
+			if (fPageTable.length < capacity + slots) {
+				fPageTable= Arrays.copyOf(fPageTable, Math.max(capacity + slots, fPageTable.length * 2));
+			}
+			fPointer= capacity;
+			fCapacity= capacity + slots;
+			fTableIsFull= false;
+		}
+	}
+
+	/**
+	 * Returns the number of slots a partition with the given capacity may add. A partition
+	 * gets at least one slot, even if that exceeds the maximum size.
+	 */
+	private int takeSlots(int capacity) {
+		// Once the maximum size is reached, a full partition does not need the monitor.
+		if (capacity > 0 && fAllocated >= fBudget)
+			return 0;
+		synchronized (this) {
+			int slots= Math.min(Math.max(SLOTS_PER_STEP, capacity / 4), fBudget - fAllocated);
+			if (slots <= 0) {
+				if (capacity > 0)
+					return 0;
+				slots= 1;
+			}
+			fAllocated+= slots;
+			return slots;
+		}
+	}
+
+	private synchronized void returnSlots(int slots) {
+		fAllocated-= slots;
+	}
+
+	/**
+	 * Takes slots from the largest partition in case the maximum size of the cache is
+	 * reached, this partition is full and holds less than an equal share of the slots.
+	 * Does nothing until the partition has had {@link #SLOTS_PER_STEP} misses since the
+	 * last attempt. Must be called without holding the monitor of any partition.
+	 */
+	void rebalance() {
+		final ChunkCache parent= fParent;
+		if (parent == null)
+			return;
+
+		assert !Thread.holdsLock(this);
+		final int capacity;
+		synchronized (this) {
+			if (!fTableIsFull || fMissesSinceRebalance < SLOTS_PER_STEP)
+				return;
+			fMissesSinceRebalance= 0;
+			capacity= fCapacity;
+		}
+		final int share= parent.getShare();
+		if (capacity < share) {
+			final ChunkCache victim= parent.findLargestPartition(share);
+			if (victim != null) {
+				victim.shrink(SLOTS_PER_STEP, share);
+			}
+		}
+	}
+
+	/**
+	 * Returns the equal share of the slots of the partitions, or 0 if there are slots left.
+	 * The result may be outdated, it is used as a hint.
+	 */
+	private int getShare() {
+		final int budget= fBudget;
+		final int count= fPartitions.size();
+		if (fAllocated < budget || count < 2)
+			return 0;
+		return budget / count;
+	}
+
+	/**
+	 * Returns the partition with the most slots, in case it has more than the given number.
+	 */
+	private ChunkCache findLargestPartition(int share) {
+		ChunkCache largest= null;
+		int max= share;
+		for (ChunkCache partition : fPartitions) {
+			final int capacity= partition.fCapacity;
+			if (capacity > max) {
+				largest= partition;
+				max= capacity;
+			}
+		}
+		return largest;
+	}
+
+	/**
+	 * Removes up to the given number of slots from this partition, evicting chunks as necessary,
+	 * and returns them to the parent. Keeps at least <code>minCapacity</code> slots.
+	 */
+	private synchronized void shrink(int slots, int minCapacity) {
+		final int oldCapacity= fCapacity;
+		slots= Math.min(slots, oldCapacity - minCapacity);
+		if (slots <= 0)
+			return;
+
+		int capacity= oldCapacity;
+		if (!fTableIsFull) {
+			// Drop empty slots first.
+			capacity-= Math.min(slots, capacity - fPointer);
+			if (fPointer == capacity) {
+				fPointer= 0;
+				fTableIsFull= true;
+			}
+		}
+		while (capacity > oldCapacity - slots) {
+			// Evict a chunk and move the one from the last slot into the gap.
+			fCapacity= capacity;
+			evictChunk();
+			capacity--;
+			final Chunk move= fPageTable[capacity];
+			fPageTable[capacity]= null;
+			if (fPointer != capacity) {
+				fPageTable[fPointer]= move;
+				move.fCacheIndex= fPointer;
+			} else {
+				fPointer= 0;
+			}
+		}
+		fCapacity= capacity;
+		fParent.returnSlots(oldCapacity - capacity);
+	}
+
+	/**
+	 * Evicts a chunk from the page table and the chunk table.
 	 * After this method returns, {@link #fPointer}  will contain
-	 * the index of the evicted chunk within the page table.              
-	 */                                                                   
+	 * the index of the evicted chunk within the page table.
+	 */
 	private void evictChunk() {
 		/*
 		 * Use the CLOCK algorithm to determine which chunk to evict.
@@ -70,11 +319,12 @@ public final class ChunkCache {
 			Chunk chunk = fPageTable[fPointer];
 			if (chunk.fCacheHitFlag) {
 				chunk.fCacheHitFlag= false;
-				fPointer= (fPointer + 1) % fPageTable.length;
+				fPointer= (fPointer + 1) % fCapacity;
 			} else {
 				chunk.fDatabase.releaseChunk(chunk);
 				chunk.fCacheIndex= -1;
 				fPageTable[fPointer] = null;
+				fEvictions.increment();
 				return;
 			}
 		}
@@ -84,7 +334,7 @@ public final class ChunkCache {
 		final int idx= chunk.fCacheIndex;
 		if (idx >= 0) {
 			if (fTableIsFull) {
-				fPointer= fPageTable.length-1;
+				fPointer= fCapacity-1;
 				fTableIsFull= false;
 			} else {
 				fPointer--;
@@ -94,43 +344,126 @@ public final class ChunkCache {
 			fPageTable[idx]= move;
 			move.fCacheIndex= idx;
 			fPageTable[fPointer]= null;
-		}	
+		}
 	}
 
-	/**                                                                           
-	 * Returns the maximum size of the chunk cache in bytes.
-	 */                                                                           
-	public synchronized long getMaxSize() {
-		return (long) fPageTable.length * Database.CHUNK_SIZE;
+	/**
+	 * Returns the maximum size of the chunk cache in bytes. For a partition this is the
+	 * maximum size of the cache it belongs to, rather than the slots it currently holds.
+	 */
+	public long getMaxSize() {
+		if (fParent != null)
+			return fParent.getMaxSize();
+		synchronized (this) {
+			return (long) (fPartitions != null ? fBudget : fCapacity) * Database.CHUNK_SIZE;
+		}
 	}
 
-	/**                                                                           
+	/**
 	 * Clears the page table and changes it to hold chunks with
-	 * maximum total memory of <code>maxSize</code>.       
-	 * @param maxSize the total size of the chunks in bytes.                
-	 */                                                                           
-	public synchronized void setMaxSize(long maxSize) {
-		final int newLength= computeLength(maxSize);
-		final int oldLength= fTableIsFull ? fPageTable.length : fPointer;
-		if (newLength > oldLength) {
-			Chunk[] newTable= new Chunk[newLength];
-			System.arraycopy(fPageTable, 0, newTable, 0, oldLength);
-			fTableIsFull= false;
-			fPointer= oldLength;
-			fPageTable= newTable;
-		} else {
-			for (int i= newLength; i < oldLength; i++) {
-				final Chunk chunk= fPageTable[i];
-				chunk.fDatabase.releaseChunk(chunk);
-				chunk.fCacheIndex= -1;
+	 * maximum total memory of <code>maxSize</code>.
+	 * @param maxSize the total size of the chunks in bytes.
+	 */
+	public void setMaxSize(long maxSize) {
+		if (fPartitions != null) {
+			final int allocated;
+			synchronized (this) {
+				fBudget= computeLength(maxSize);
+				allocated= fAllocated;
+			}
+			// Reduce the partitions proportionally, without holding the monitor of this cache.
+			if (allocated > fBudget) {
+				for (ChunkCache partition : fPartitions) {
+					final int capacity= partition.fCapacity;
+					partition.shrink(capacity - (int) ((long) capacity * fBudget / allocated), 1);
+				}
+			}
+			return;
+		}
+		synchronized (this) {
+			final int newLength= computeLength(maxSize);
+			final int oldLength= fTableIsFull ? fCapacity : fPointer;
+			if (newLength > oldLength) {
+				Chunk[] newTable= new Chunk[newLength];
+				System.arraycopy(fPageTable, 0, newTable, 0, oldLength);
+				fTableIsFull= false;
+				fPointer= oldLength;
+				fPageTable= newTable;
+			} else {
+				for (int i= newLength; i < oldLength; i++) {
+					final Chunk chunk= fPageTable[i];
+					chunk.fDatabase.releaseChunk(chunk);
+					chunk.fCacheIndex= -1;
+					fEvictions.increment();
+				}
+				Chunk[] newTable= new Chunk[newLength];
+				System.arraycopy(fPageTable, 0, newTable, 0, newLength);
+				fTableIsFull= true;
+				fPointer= 0;
+				fPageTable= newTable;
 			}
-			Chunk[] newTable= new Chunk[newLength];
-			System.arraycopy(fPageTable, 0, newTable, 0, newLength);
-			fTableIsFull= true;
-			fPointer= 0;
-			fPageTable= newTable;
-		}       
-	}                                                                             
+			fCapacity= newLength;
+		}
+	}
+
+	/**
+	 * Records a lookup of a chunk that was found in the cache without synchronization.
+	 */
+	void recordHit() {
+		fHits.increment();
+	}
+
+	/**
+	 * Returns the number of lookups of chunks that were in the cache.
+	 */
+	public long getHitCount() {
+		return fHits.sum();
+	}
+
+	/**
+	 * Returns the number of chunks that had to be added to the cache.
+	 */
+	public long getMissCount() {
+		return fMisses.sum();
+	}
+
+	/**
+	 * Returns the number of chunks that were evicted to make room for others.
+	 */
+	public long getEvictionCount() {
+		return fEvictions.sum();
+	}
+
+	/**
+	 * Returns the number of bytes currently used by chunks in the cache.
+	 */
+	public long getUsedSize() {
+		if (fPartitions != null) {
+			long size= 0;
+			for (ChunkCache partition : fPartitions) {
+				size+= partition.getUsedSize();
+			}
+			return size;
+		}
+		synchronized (this) {
+			final int length= fTableIsFull ? fCapacity : fPointer;
+			return (long) length * Database.CHUNK_SIZE;
+		}
+	}
+
+	/**
+	 * Returns the number of partitions of this cache, which is zero for a cache that is not
+	 * partitioned.
+	 */
+	public int getPartitionCount() {
+		return fPartitions != null ? fPartitions.size() : 0;
+	}
+
+	public void resetCounters() {
+		fHits.reset();
+		fMisses.reset();
+		fEvictions.reset();
+	}
 
 	private int computeLength(long maxSize) {
 		long maxLength= Math.min(maxSize / Database.CHUNK_SIZE, Integer.MAX_VALUE);
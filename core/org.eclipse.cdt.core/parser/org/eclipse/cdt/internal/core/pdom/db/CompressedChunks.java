@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.db;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed representation of a database, in which every chunk is stored on its own, such
+ * that it can be decompressed when it is loaded into the chunk cache. The format can be
+ * written and read as a stream:
+ *
+ * <pre>
+ * MAGIC (int) | chunk count (int) | chunk record * chunk count | chunk offset (long) * chunk count
+ * chunk record: kind (byte) | length (int, only for KIND_DEFLATED) | content
+ * </pre>
+ *
+ * The table of chunk offsets at the end of the file allows for random access to the chunks
+ * of a read-only database.
+ */
+final class CompressedChunks {
+	/** Not a valid database version, such that compressed files can be told from plain ones. */
+	static final int MAGIC= 0xCDC0DE7A;
+	private static final int HEADER_SIZE= 2 * Database.INT_SIZE;
+
+	private static final byte KIND_ZERO= 0;
+	private static final byte KIND_STORED= 1;
+	private static final byte KIND_DEFLATED= 2;
+
+	/** Chunks that cannot be compressed to this fraction of their size are stored as is. */
+	private static final int MIN_SAVING_DIVISOR= 8;
+
+	private final long[] fOffsets;
+	private final long fCompressedSize;
+
+	/**
+	 * Reads the table of chunk offsets of a compressed database file.
+	 */
+	CompressedChunks(FileChannel channel) throws IOException {
+		ByteBuffer header= ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC)
+			throw new IOException("Not a compressed database"); //$NON-NLS-1$
+		final int chunkCount= header.getInt();
+		fCompressedSize= channel.size();
+		final long tableOffset= fCompressedSize - (long) chunkCount * 8;
+		if (chunkCount < 0 || tableOffset < HEADER_SIZE)
+			throw new IOException("Invalid chunk count " + chunkCount); //$NON-NLS-1$
+		ByteBuffer table= ByteBuffer.allocate(chunkCount * 8);
+		readFully(channel, table, tableOffset);
+		table.flip();
+		fOffsets= new long[chunkCount];
+		table.asLongBuffer().get(fOffsets);
+	}
+
+	/**
+	 * Returns whether the given channel holds a compressed database.
+	 */
+	static boolean isCompressed(FileChannel channel) throws IOException {
+		if (channel.size() < HEADER_SIZE)
+			return false;
+		ByteBuffer header= ByteBuffer.allocate(Database.INT_SIZE);
+		readFully(channel, header, 0);
+		header.flip();
+		return header.getInt() == MAGIC;
+	}
+
+	int getChunkCount() {
+		return fOffsets.length;
+	}
+
+	long getCompressedSize() {
+		return fCompressedSize;
+	}
+
+	/**
+	 * Decompresses the chunk at the given position of the uncompressed database into the
+	 * remaining space of the buffer, which must be the size of a chunk.
+	 */
+	void read(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		final int index= (int) (position / Database.CHUNK_SIZE);
+		if (position % Database.CHUNK_SIZE != 0 || buf.remaining() != Database.CHUNK_SIZE
+				|| index >= fOffsets.length) {
+			throw new IOException("Invalid read of compressed chunk at " + position); //$NON-NLS-1$
+		}
+		final long offset= fOffsets[index];
+		ByteBuffer kind= ByteBuffer.allocate(1 + Database.INT_SIZE);
+		kind.limit(1);
+		readFully(channel, kind, offset);
+		switch (kind.get(0)) {
+		case KIND_ZERO:
+			buf.put(new byte[Database.CHUNK_SIZE]);
+			return;
+		case KIND_STORED:
+			readFully(channel, buf, offset + 1);
+			return;
+		case KIND_DEFLATED:
+			kind.limit(1 + Database.INT_SIZE);
+			readFully(channel, kind, offset + 1);
+			final int length= kind.getInt(1);
+			ByteBuffer compressed= ByteBuffer.allocate(length);
+			readFully(channel, compressed, offset + 1 + Database.INT_SIZE);
+			inflate(compressed.array(), length, buf);
+			return;
+		}
+		throw new IOException("Invalid compressed chunk " + index); //$NON-NLS-1$
+	}
+
+	private static void inflate(byte[] compressed, int length, ByteBuffer target) throws IOException {
+		byte[] chunk= new byte[Database.CHUNK_SIZE];
+		Inflater inflater= new Inflater();
+		try {
+			inflater.setInput(compressed, 0, length);
+			if (inflater.inflate(chunk) != chunk.length || !inflater.finished())
+				throw new IOException("Invalid compressed chunk"); //$NON-NLS-1$
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		target.put(chunk);
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			int read= channel.read(buf, position);
+			if (read < 0)
+				throw new EOFException();
+			position+= read;
+		}
+	}
+
+	/**
+	 * Writes chunks in the compressed format, see {@link Database#transferCompressedTo(OutputStream)}.
+	 */
+	static final class Writer {
+		private final DataOutputStream fOut;
+		private final long[] fOffsets;
+		private final Deflater fDeflater= new Deflater(Deflater.BEST_COMPRESSION);
+		private final byte[] fBuffer= new byte[Database.CHUNK_SIZE * 2];
+		private long fPosition;
+		private int fChunkCount;
+
+		Writer(OutputStream out, int chunkCount) throws IOException {
+			fOut= new DataOutputStream(out);
+			fOffsets= new long[chunkCount];
+			fOut.writeInt(MAGIC);
+			fOut.writeInt(chunkCount);
+			fPosition= HEADER_SIZE;
+		}
+
+		/**
+		 * Appends the next chunk.
+		 * @param compress whether to attempt to compress the chunk, chunks that are read
+		 *     frequently are better stored as is.
+		 */
+		void writeChunk(byte[] chunk, boolean compress) throws IOException {
+			fOffsets[fChunkCount++]= fPosition;
+			if (isZero(chunk)) {
+				fOut.writeByte(KIND_ZERO);
+				fPosition+= 1;
+				return;
+			}
+			if (compress) {
+				fDeflater.reset();
+				fDeflater.setInput(chunk);
+				fDeflater.finish();
+				int length= fDeflater.deflate(fBuffer);
+				if (fDeflater.finished() && length < chunk.length - chunk.length / MIN_SAVING_DIVISOR) {
+					fOut.writeByte(KIND_DEFLATED);
+					fOut.writeInt(length);
+					fOut.write(fBuffer, 0, length);
+					fPosition+= 1 + Database.INT_SIZE + length;
+					return;
+				}
+			}
+			fOut.writeByte(KIND_STORED);
+			fOut.write(chunk);
+			fPosition+= 1 + chunk.length;
+		}
+
+		/**
+		 * Writes the table of chunk offsets and returns the total number of bytes written.
+		 */
+		long finish() throws IOException {
+			fDeflater.end();
+			if (fChunkCount != fOffsets.length)
+				throw new IOException("Missing chunks"); //$NON-NLS-1$
+			for (long offset : fOffsets) {
+				fOut.writeLong(offset);
+			}
+			fOut.flush();
+			return fPosition + (long) fOffsets.length * 8;
+		}
+
+		private static boolean isZero(byte[] chunk) {
+			for (byte b : chunk) {
+				if (b != 0)
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Returns a stream with the content of the uncompressed database, in case the given stream
+	 * provides a compressed one. Otherwise the content of the given stream is returned as is.
+	 */
+	static InputStream decompress(InputStream in) throws IOException {
+		PushbackInputStream pin= new PushbackInputStream(in, Database.INT_SIZE);
+		byte[] head= new byte[Database.INT_SIZE];
+		int read= 0;
+		while (read < head.length) {
+			int n= pin.read(head, read, head.length - read);
+			if (n < 0)
+				break;
+			read+= n;
+		}
+		pin.unread(head, 0, read);
+		if (read < head.length || ByteBuffer.wrap(head).getInt() != MAGIC)
+			return pin;
+		return new InflatingInputStream(pin);
+	}
+
+	/**
+	 * Reads the chunk records of a compressed database sequentially, the table of chunk
+	 * offsets is skipped.
+	 */
+	private static class InflatingInputStream extends InputStream {
+		private final DataInputStream fIn;
+		private final ByteBuffer fChunk= ByteBuffer.allocate(Database.CHUNK_SIZE);
+		private byte[] fCompressed= new byte[Database.CHUNK_SIZE];
+		private int fChunksLeft;
+
+		InflatingInputStream(InputStream in) throws IOException {
+			fIn= new DataInputStream(in);
+			if (fIn.readInt() != MAGIC)
+				throw new IOException("Not a compressed database"); //$NON-NLS-1$
+			fChunksLeft= fIn.readInt();
+			fChunk.limit(0);
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fillChunk())
+				return -1;
+			return fChunk.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!fillChunk())
+				return -1;
+			len= Math.min(len, fChunk.remaining());
+			fChunk.get(b, off, len);
+			return len;
+		}
+
+		private boolean fillChunk() throws IOException {
+			if (fChunk.hasRemaining())
+				return true;
+			if (fChunksLeft <= 0)
+				return false;
+			fChunksLeft--;
+			fChunk.clear();
+			final byte kind= fIn.readByte();
+			switch (kind) {
+			case KIND_ZERO:
+				fChunk.put(new byte[Database.CHUNK_SIZE]);
+				break;
+			case KIND_STORED:
+				fIn.readFully(fChunk.array());
+				fChunk.position(Database.CHUNK_SIZE);
+				break;
+			case KIND_DEFLATED:
+				final int length= fIn.readInt();
+				if (length < 0)
+					throw new IOException("Invalid compressed chunk"); //$NON-NLS-1$
+				if (length > fCompressed.length) {
+					fCompressed= new byte[length];
+				}
+				fIn.readFully(fCompressed, 0, length);
+				inflate(fCompressed, length, fChunk);
+				break;
+			default:
+				throw new IOException("Invalid compressed chunk"); //$NON-NLS-1$
+			}
+			fChunk.flip();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			fIn.close();
+		}
+	}
+}
@@ -13,13 +13,22 @@ package org.eclipse.cdt.internal.core.pdom.db;
 import java.io.IOException;
 
 import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 
+import com.ibm.icu.text.MessageFormat;
+
 /**
  * @author Doug Schaefer
  */
 public class DBStatus extends Status {
+	/**
+	 * Status code of the error reported when a snapshot of a database is read after it has
+	 * been invalidated.
+	 */
+	public static final int SNAPSHOT_INVALIDATED= 1;
+
 	/**
 	 * @param exception
 	 */
@@ -30,4 +39,46 @@ public class DBStatus extends Status {
 	public DBStatus(String msg) {
 		super(IStatus.ERROR, CCorePlugin.PLUGIN_ID, 0, "Error", null); //$NON-NLS-1$
 	}
+
+	private DBStatus(int severity, int code, String msg) {
+		super(severity, CCorePlugin.PLUGIN_ID, code, msg, null);
+	}
+
+	/**
+	 * Creates the error reported when a snapshot is read after it has been invalidated.
+	 */
+	public static DBStatus createSnapshotInvalidated(String msg) {
+		return new DBStatus(IStatus.ERROR, SNAPSHOT_INVALIDATED, msg);
+	}
+
+	/**
+	 * Returns whether the exception reports that a snapshot of a database has been
+	 * invalidated, the query can be repeated on the database itself.
+	 */
+	public static boolean isSnapshotInvalidated(CoreException e) {
+		final IStatus status= e.getStatus();
+		return status.getCode() == SNAPSHOT_INVALIDATED && CCorePlugin.PLUGIN_ID.equals(status.getPlugin());
+	}
+
+	/**
+	 * Creates an informational status reporting the usage and the hit, miss and eviction
+	 * counters of the given chunk cache.
+	 */
+	public static DBStatus createCacheStatistics(ChunkCache cache) {
+		String msg= MessageFormat.format(Messages.getString("DBStatus.CacheStatistics"), //$NON-NLS-1$
+				new Object[] { cache.getUsedSize() / 1024, cache.getMaxSize() / 1024,
+						cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount() });
+		return new DBStatus(IStatus.INFO, 0, msg);
+	}
+
+	/**
+	 * Creates an informational status reporting the space saved by storing a database
+	 * with compressed chunks.
+	 */
+	public static DBStatus createCompressionStatistics(long size, long compressedSize) {
+		long saved= size > 0 ? (size - compressedSize) * 100 / size : 0;
+		String msg= MessageFormat.format(Messages.getString("DBStatus.CompressionStatistics"), //$NON-NLS-1$
+				new Object[] { size / 1024, compressedSize / 1024, saved });
+		return new DBStatus(IStatus.INFO, 0, msg);
+	}
 }
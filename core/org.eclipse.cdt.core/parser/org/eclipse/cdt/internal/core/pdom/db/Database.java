@@ -17,12 +17,17 @@ package org.eclipse.cdt.internal.core.pdom.db;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -88,12 +93,19 @@ public class Database {
 	public static final int VERSION_OFFSET = 0;
 	public static final int DATA_AREA = (CHUNK_SIZE / BLOCK_SIZE_DELTA - MIN_BLOCK_DELTAS + 2) * INT_SIZE;
 
+	/**
+	 * Whether databases are memory mapped by default, see {@link #Database(File, ChunkCache, int, boolean, boolean)}.
+	 */
+	private static final boolean sMemoryMapped= Boolean.getBoolean("org.eclipse.cdt.core.parser.pdom.mmap"); //$NON-NLS-1$
+
 	private static final int BLOCK_PREV_OFFSET = BLOCK_HEADER_SIZE;
 	private static final int BLOCK_NEXT_OFFSET = BLOCK_HEADER_SIZE + INT_SIZE;
 
 	private final File fLocation;
 	private final boolean fReadOnly;
-	private RandomAccessFile fFile;
+	private volatile RandomAccessFile fFile;
+	private final MappedRegions fMappedRegions;  // null, unless the database is memory mapped.
+	private final CompressedChunks fCompressedChunks;  // null, unless the database file is compressed.
 	private boolean fExclusiveLock;	 // Necessary for any write operation.
 	private boolean fLocked;		 // Necessary for any operation.
 	private boolean fIsMarkedIncomplete;
@@ -103,12 +115,20 @@ public class Database {
 	private Chunk[] fChunks;
 	private int fChunksUsed;
 	private int fChunksAllocated;
-	private ChunkCache fCache;
+	private ChunkCache fCache;	// The partition of the database, if the cache is partitioned.
 
 	private long malloced;
 	private long freed;
-	private long cacheHits;
-	private long cacheMisses;
+	private final LongAdder cacheHits= new LongAdder();
+	private final LongAdder cacheMisses= new LongAdder();
+
+	// Snapshots, see createSnapshot().
+	private final Database fSnapshotBase;	// null, unless this is a snapshot of another database.
+	private final List<Database> fSnapshots= new CopyOnWriteArrayList<>();
+	private volatile int fSnapshotEpoch;
+	private boolean fSnapshotInvalid;	// Protected by the monitor of the snapshot.
+	private final int fSnapshotChunkLimit;	// Maximum number of chunks preserved for a snapshot.
+	private int fPreservedChunkCount;	// Protected by the monitor of the snapshot.
 
 	/**
 	 * Construct a new Database object, creating a backing file if necessary.
@@ -119,13 +139,45 @@ public class Database {
 	 * @throws CoreException
 	 */
 	public Database(File location, ChunkCache cache, int version, boolean openReadOnly) throws CoreException {
+		this(location, cache, version, openReadOnly, sMemoryMapped);
+	}
+
+	/**
+	 * Construct a new Database object, creating a backing file if necessary.
+	 * @param location the local file path for the database
+	 * @param cache the cache to be used optimization
+	 * @param version the version number to store in the database (only applicable for new databases)
+	 * @param openReadOnly whether this Database object will ever need writing to
+	 * @param memoryMapped whether chunks are read from a memory mapping of the file rather than
+	 *     via system calls. Dirty chunks are still written back via the file channel.
+	 * @throws CoreException
+	 */
+	public Database(File location, ChunkCache cache, int version, boolean openReadOnly, boolean memoryMapped)
+			throws CoreException {
 		try {
 			fLocation = location;
 			fReadOnly= openReadOnly;
-			fCache= cache;
+			fCache= cache.createPartition();
+			fMappedRegions= memoryMapped && MappedRegions.isSupported() ? new MappedRegions(openReadOnly) : null;
+			fSnapshotBase= null;
+			fSnapshotChunkLimit= 0;
 			openFile();
 
-			int nChunksOnDisk = (int) (fFile.length() / CHUNK_SIZE);
+			int nChunksOnDisk;
+			if (CompressedChunks.isCompressed(fFile.getChannel())) {
+				if (!openReadOnly) {
+					String msg = MessageFormat.format(Messages.getString("Database.CompressedReadOnly"), //$NON-NLS-1$
+							new Object[] { fLocation.getName() });
+					fFile.close();
+					fCache.release();
+					throw new CoreException(new DBStatus(msg));
+				}
+				fCompressedChunks= new CompressedChunks(fFile.getChannel());
+				nChunksOnDisk= fCompressedChunks.getChunkCount();
+			} else {
+				fCompressedChunks= null;
+				nChunksOnDisk= (int) (fFile.length() / CHUNK_SIZE);
+			}
 			fHeaderChunk= new Chunk(this, 0);
 			fHeaderChunk.fLocked= true;		// Never makes it into the cache, needed to satisfy assertions.
 			if (nChunksOnDisk <= 0) {
@@ -139,18 +191,52 @@ public class Database {
 				fChunksUsed = fChunksAllocated = nChunksOnDisk;
 			}
 		} catch (IOException e) {
+			fCache.release();
 			throw new CoreException(new DBStatus(e));
 		}
 	}
 
+	/**
+	 * Creates a snapshot of the given database.
+	 */
+	private Database(Database base) {
+		fLocation= base.fLocation;
+		fReadOnly= true;
+		fCache= base.fCache;
+		fMappedRegions= null;
+		fCompressedChunks= null;
+		fSnapshotBase= base;
+		// The preserved copies of a snapshot are not part of the cache, they are limited to the
+		// size of the entire cache instead. Use the root, a partition may not have slots yet.
+		fSnapshotChunkLimit= (int) Math.max(1, base.fCache.getRoot().getMaxSize() / CHUNK_SIZE);
+		fVersion= base.fVersion;
+		fHeaderChunk= new Chunk(this, 0);
+		fHeaderChunk.copyFrom(base.fHeaderChunk);
+		fHeaderChunk.fLocked= true;
+		fChunks= new Chunk[base.fChunksUsed];
+		fChunksUsed= fChunksAllocated= fChunks.length;
+		fLocked= true;
+	}
+
 	private void openFile() throws FileNotFoundException {
 		fFile = new RandomAccessFile(fLocation, fReadOnly ? "r" : "rw"); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 	void read(ByteBuffer buf, long position) throws IOException {
+		if (fSnapshotBase != null) {
+			fSnapshotBase.read(buf, position);
+			return;
+		}
 		int retries= 0;
 		do {
 			try {
+				if (fCompressedChunks != null) {
+					fCompressedChunks.read(fFile.getChannel(), buf, position);
+					return;
+				}
+				if (fMappedRegions != null && fMappedRegions.read(fFile.getChannel(), buf, position)) {
+					return;
+				}
 				fFile.getChannel().read(buf, position);
 				return;
 			} catch (ClosedChannelException e) {
@@ -173,12 +259,15 @@ public class Database {
 		}
 	}
 
-	private void reopen(ClosedChannelException e, int attempt) throws ClosedChannelException, FileNotFoundException {
+	private synchronized void reopen(ClosedChannelException e, int attempt) throws ClosedChannelException, FileNotFoundException {
 		// Only if the current thread was not interrupted we try to reopen the file.
 		if (e instanceof ClosedByInterruptException || attempt >= 20) {
 			throw e;
 		}
-		openFile();
+		// Chunks are read concurrently, another thread may have reopened the file already.
+		if (!fFile.getChannel().isOpen()) {
+			openFile();
+		}
 	}
 
 	public void transferTo(FileChannel target) throws IOException {
@@ -197,6 +286,48 @@ public class Database {
         }
 	}
 
+	/**
+	 * Writes the content of the database in the compressed format that can be opened read-only
+	 * by {@link #Database(File, ChunkCache, int, boolean)}, or be converted back to a plain
+	 * database via {@link #decompress(InputStream)}. The output is written sequentially, such
+	 * that it can be streamed. The header chunk, which is read whenever the database is opened,
+	 * and chunks that do not compress well are stored uncompressed.
+	 * @return the number of bytes written.
+	 */
+	public long transferCompressedTo(OutputStream out) throws IOException {
+		assert fLocked;
+		final int chunkCount= fChunksUsed;
+		CompressedChunks.Writer writer= new CompressedChunks.Writer(out, chunkCount);
+		final byte[] content= new byte[CHUNK_SIZE];
+		for (int i= 0; i < chunkCount; i++) {
+			final ByteBuffer buf= ByteBuffer.wrap(content);
+			read(buf, (long) i * CHUNK_SIZE);
+			if (buf.hasRemaining()) {
+				// The file is shorter than the database, the chunk has not been flushed yet.
+				throw new IOException("Database must be flushed before it is transferred"); //$NON-NLS-1$
+			}
+			writer.writeChunk(content, i != 0);
+		}
+		return writer.finish();
+	}
+
+	/**
+	 * Returns a stream with the content of the plain database, in case the given stream
+	 * provides a database in the compressed format written by
+	 * {@link #transferCompressedTo(OutputStream)}. Otherwise the content of the given stream
+	 * is returned unchanged.
+	 */
+	public static InputStream decompress(InputStream in) throws IOException {
+		return CompressedChunks.decompress(in);
+	}
+
+	/**
+	 * Returns whether the database file is compressed, such a database is read-only.
+	 */
+	public boolean isCompressed() {
+		return fCompressedChunks != null;
+	}
+
 	public int getVersion() {
 		return fVersion;
 	}
@@ -213,6 +344,7 @@ public class Database {
 	 */
 	public void clear(int version) throws CoreException {
 		assert fExclusiveLock;
+		invalidateSnapshots();
 		removeChunksFromCache();
 
 		fVersion= version;
@@ -223,7 +355,18 @@ public class Database {
 		fChunksUsed = fChunksAllocated = fChunks.length;
 		try {
 			fHeaderChunk.flush();	// Zero out header chunk.
-			fFile.getChannel().truncate(CHUNK_SIZE);	// Truncate database.
+			// A file cannot be truncated while it is mapped, in case the regions cannot be unmapped
+			// the obsolete chunks are left in the file.
+			if (fMappedRegions == null) {
+				fFile.getChannel().truncate(CHUNK_SIZE);	// Truncate database.
+			} else {
+				fMappedRegions.clear(new MappedRegions.FileOperation() {
+					@Override
+					public void run() throws IOException {
+						fFile.getChannel().truncate(CHUNK_SIZE);
+					}
+				});
+			}
 		} catch (IOException e) {
 			CCorePlugin.log(e);
 		}
@@ -267,28 +410,183 @@ public class Database {
 		}
 		long long_index = offset / CHUNK_SIZE;
 		assert long_index < Integer.MAX_VALUE;
+		assert fLocked;
 
-		synchronized (fCache) {
-			assert fLocked;
-			final int index = (int) long_index;
+		// Lock-free lookup of a chunk that is in the cache. When holding the exclusive lock the
+		// chunk needs to be locked, which is done by the cache.
+		final int index = (int) long_index;
+		final Chunk[] chunks= fChunks;
+		if (index < chunks.length) {
+			final Chunk chunk= chunks[index];
+			if (chunk != null && chunk.fCacheIndex >= 0
+					&& (!fExclusiveLock || (chunk.fLocked && chunk.fSnapshotEpoch == fSnapshotEpoch))) {
+				chunk.fCacheHitFlag= true;
+				cacheHits.increment();
+				fCache.recordHit();
+				return chunk;
+			}
+		}
+		final Chunk chunk= loadChunk(index);
+		if (fExclusiveLock && chunk.fSnapshotEpoch != fSnapshotEpoch) {
+			// The chunk may be modified, preserve its current content for the open snapshots.
+			final int epoch= fSnapshotEpoch;
+			for (Database snapshot : fSnapshots) {
+				snapshot.preserveChunk(chunk);
+			}
+			chunk.fSnapshotEpoch= epoch;
+		}
+		return chunk;
+	}
+
+	private Chunk loadChunk(final int index) throws CoreException {
+		if (fSnapshotBase != null) {
+			return loadSnapshotChunk(index);
+		}
+		Chunk newChunk= null;
+		while (true) {
+			synchronized (fCache) {
+				if (index < 0 || index >= fChunks.length) {
+					databaseCorruptionDetected();
+				}
+				Chunk chunk= fChunks[index];
+				if (chunk == null && newChunk != null) {
+					// Put the chunk in fChunks after it was read successfully.
+					chunk= newChunk;
+					fChunks[index]= chunk;
+				}
+				if (chunk != null) {
+					if (chunk == newChunk) {
+						cacheMisses.increment();
+					} else {
+						cacheHits.increment();
+					}
+					fCache.add(chunk, fExclusiveLock);
+					return chunk;
+				}
+			}
+			// Read the chunk without holding the lock of the cache, such that other threads
+			// can access the cache in the meantime. In case another reader loads the same
+			// chunk concurrently, the chunk that makes it into fChunks first is used.
+			fCache.rebalance();
+			newChunk= new Chunk(this, index);
+			newChunk.read();
+		}
+	}
+
+	/**
+	 * Creates a read-only view of the current content of this database. The snapshot remains
+	 * valid while this database is modified, it can be accessed without locking and must be
+	 * closed via {@link #close()}.
+	 * <p>
+	 * Before a chunk is modified for the first time after the creation of a snapshot, its
+	 * content is copied to the snapshot. Chunks that remain unchanged are read from this
+	 * database. The memory used by a snapshot grows with the number of chunks it reads and
+	 * the number of chunks that are modified while it is open. When the writer has to preserve
+	 * more chunks than fit into the cache of this database, the snapshot is invalidated and
+	 * releases its chunks. Reading chunks does not invalidate a snapshot.
+	 * <p>
+	 * Must be called while a lock on the database is held and no writer has uncommitted changes.
+	 * After {@link #clear(int)} or {@link #close()} on this database, snapshots can no longer
+	 * read chunks they have not accessed before.
+	 */
+	public Database createSnapshot() {
+		assert fLocked;
+		assert fSnapshotBase == null;
+		Database snapshot= new Database(this);
+		fSnapshots.add(snapshot);
+		// Chunks need to be preserved again for the new snapshot.
+		fSnapshotEpoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Returns whether this database is a snapshot of another one.
+	 */
+	public boolean isSnapshot() {
+		return fSnapshotBase != null;
+	}
+
+	/**
+	 * Copies the content of the chunk of the base database into this snapshot, unless
+	 * the snapshot has a copy already. Called by the writer of the base database.
+	 */
+	private synchronized void preserveChunk(Chunk chunk) {
+		final int index= chunk.fSequenceNumber;
+		if (index < fChunks.length && fChunks[index] == null && !fSnapshotInvalid) {
+			if (++fPreservedChunkCount > fSnapshotChunkLimit) {
+				// The snapshot would keep more copies than fit into the cache, give it up.
+				fSnapshotBase.fSnapshots.remove(this);
+				fSnapshotInvalid= true;
+				fChunks= new Chunk[] { null };
+				return;
+			}
+			Chunk copy= new Chunk(this, index);
+			copy.copyFrom(chunk);
+			fChunks[index]= copy;
+		}
+	}
+
+	private Chunk loadSnapshotChunk(final int index) throws CoreException {
+		final Database base= fSnapshotBase;
+		synchronized (this) {
 			if (index < 0 || index >= fChunks.length) {
+				checkSnapshotValid();
 				databaseCorruptionDetected();
 			}
 			Chunk chunk= fChunks[index];
+			if (chunk != null) {
+				cacheHits.increment();
+				return chunk;
+			}
+			checkSnapshotValid();
+			// A chunk of the base database that is in memory may have been modified before
+			// the snapshot was taken without having been flushed, so it has to be copied.
+			synchronized (base.fCache) {
+				final Chunk baseChunk= index < base.fChunks.length ? base.fChunks[index] : null;
+				if (baseChunk != null) {
+					chunk= new Chunk(this, index);
+					chunk.copyFrom(baseChunk);
+					fChunks[index]= chunk;
+					cacheMisses.increment();
+					return chunk;
+				}
+			}
+		}
+
+		// Read the chunk from the file. In case the writer of the base database modifies and
+		// flushes the chunk in the meantime, it preserves the original content first.
+		final Chunk newChunk= new Chunk(this, index);
+		newChunk.read();
+		synchronized (this) {
+			checkSnapshotValid();
+			Chunk chunk= fChunks[index];
 			if (chunk == null) {
-				cacheMisses++;
-				chunk = new Chunk(this, index);
-				chunk.read();
-				// Put the chunk in fChunks after it was read successfully.
-				fChunks[index] = chunk;
-			} else {
-				cacheHits++;
+				chunk= newChunk;
+				fChunks[index]= chunk;
 			}
-			fCache.add(chunk, fExclusiveLock);
+			cacheMisses.increment();
 			return chunk;
 		}
 	}
 
+	private void checkSnapshotValid() throws CoreException {
+		assert Thread.holdsLock(this);
+		if (fSnapshotInvalid) {
+			String msg = MessageFormat.format(Messages.getString("Database.SnapshotInvalidated"), //$NON-NLS-1$
+					new Object[] { fLocation.getName() });
+			throw new CoreException(DBStatus.createSnapshotInvalidated(msg));
+		}
+	}
+
+	private void invalidateSnapshots() {
+		for (Database snapshot : fSnapshots) {
+			synchronized (snapshot) {
+				snapshot.fSnapshotInvalid= true;
+			}
+		}
+		fSnapshots.clear();
+	}
+
 	private void databaseCorruptionDetected() throws CoreException {
 		String msg = MessageFormat.format(Messages.getString("Database.CorruptedDatabase"), //$NON-NLS-1$
 				new Object[] { fLocation.getName() });
@@ -615,15 +913,28 @@ public class Database {
 	 * @throws CoreException
 	 */
 	public void close() throws CoreException {
+		if (fSnapshotBase != null) {
+			fSnapshotBase.fSnapshots.remove(this);
+			synchronized (this) {
+				fSnapshotInvalid= true;
+				fChunks= new Chunk[] { null };
+			}
+			return;
+		}
 		assert fExclusiveLock;
+		invalidateSnapshots();
 		flush();
 		removeChunksFromCache();
+		fCache.release();
 
 		// Chunks have been removed from the cache, so we are fine.
 		fHeaderChunk.clear(0, CHUNK_SIZE);
 		fHeaderChunk.fDirty= false;
 		fChunks= new Chunk[] { null };
 		fChunksUsed = fChunksAllocated = fChunks.length;
+		if (fMappedRegions != null) {
+			fMappedRegions.close();
+		}
 		try {
 			fFile.close();
 		} catch (IOException e) {
@@ -648,11 +959,26 @@ public class Database {
 	}
 
 	/**
-	 * Returns the cache used for this database.
+	 * Returns whether chunks are read from a memory mapping of the database file.
+	 */
+	public boolean isMemoryMapped() {
+		return fMappedRegions != null;
+	}
+
+	/**
+	 * Returns the number of bytes of the database file that are currently memory mapped.
+	 */
+	public long getMappedSizeBytes() {
+		return fMappedRegions != null ? fMappedRegions.getMappedSize() : 0;
+	}
+
+	/**
+	 * Returns the cache used for this database. In case the database uses a partition of
+	 * a cache, the partitioned cache is returned.
 	 * @since 4.0
 	 */
 	public ChunkCache getChunkCache() {
-		return fCache;
+		return fCache.getRoot();
 	}
 
 	/**
@@ -665,7 +991,10 @@ public class Database {
 	}
 
 	public void setLocked(boolean val) {
-		fLocked= val;
+		// A snapshot does not change, it can always be accessed.
+		if (fSnapshotBase == null) {
+			fLocked= val;
+		}
 	}
 
 	public void giveUpExclusiveLock(final boolean flush) throws CoreException {
@@ -781,18 +1110,22 @@ public class Database {
 	}
 
 	public void resetCacheCounters() {
-		cacheHits= cacheMisses= 0;
+		cacheHits.reset();
+		cacheMisses.reset();
 	}
 
 	public long getCacheHits() {
-		return cacheHits;
+		return cacheHits.sum();
 	}
 
 	public long getCacheMisses() {
-		return cacheMisses;
+		return cacheMisses.sum();
 	}
 
 	public long getSizeBytes() {
+		if (fSnapshotBase != null || fCompressedChunks != null) {
+			return (long) fChunksUsed * CHUNK_SIZE;
+		}
 		try {
 			return fFile.length();
 		} catch (IOException e) {
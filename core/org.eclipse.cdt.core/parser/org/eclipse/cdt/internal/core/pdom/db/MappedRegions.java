@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.db;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.cdt.core.CCorePlugin;
+
+/**
+ * Maps the file of a database into memory in large regions, such that the content of chunks
+ * can be read without a system call. Writes continue to go through the file channel, the
+ * mappings are shared and therefore observe the flushed chunks. The bytes are still copied
+ * into the buffers of the chunks, outside of the lock of the chunk cache.
+ * <p>
+ * Reads hold the read lock of a read/write guard while they access a region, the table of
+ * regions is replaced as a whole whenever a new region gets mapped. The regions are unmapped
+ * under the write lock before the file is truncated or closed, such that no read can use or
+ * map a region in the meantime.
+ * <p>
+ * There is no API for unmapping a region. In case that is not possible on the running VM,
+ * files are not mapped at all.
+ */
+final class MappedRegions {
+	/** Size of a region, must be a multiple of {@link Database#CHUNK_SIZE}. */
+	static final int REGION_SIZE= 64 * 1024 * 1024;
+
+	private static Exception sUnmapperFailure;
+	private static boolean sUnmapperFailureLogged;
+	private static final Unmapper UNMAPPER= createUnmapper();
+
+	private final boolean fMapPartialRegions;
+	private volatile MappedByteBuffer[] fRegions= new MappedByteBuffer[0];
+	private final ReentrantReadWriteLock fGuard= new ReentrantReadWriteLock();
+	/** Set when the file is closed or a region could not be unmapped, guarded by fGuard. */
+	private boolean fDisabled;
+
+	/**
+	 * Returns whether files can be mapped, which requires that the regions can be unmapped
+	 * before a file is truncated or closed.
+	 */
+	static synchronized boolean isSupported() {
+		if (UNMAPPER == null && !sUnmapperFailureLogged) {
+			sUnmapperFailureLogged= true;
+			CCorePlugin.log("Memory-mapped regions cannot be unmapped, the index is read via system calls", //$NON-NLS-1$
+					sUnmapperFailure);
+		}
+		return UNMAPPER != null;
+	}
+
+	/**
+	 * @param mapPartialRegions whether the region at the end of the file may be mapped before
+	 *     it is complete. This should only be done for files that do not grow, otherwise the
+	 *     region had to be remapped over and over again.
+	 */
+	MappedRegions(boolean mapPartialRegions) {
+		fMapPartialRegions= mapPartialRegions;
+	}
+
+	/**
+	 * Copies the bytes starting at the given position into the remaining space of the buffer.
+	 * @return whether the bytes could be read from a mapped region, if not the caller has to
+	 *     read them from the file.
+	 */
+	boolean read(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		final int length= buf.remaining();
+		final int regionIndex= (int) (position / REGION_SIZE);
+		final int offset= (int) (position % REGION_SIZE);
+		final int end= offset + length;
+		if (end > REGION_SIZE)
+			return false;
+
+		final Lock lock= fGuard.readLock();
+		lock.lock();
+		try {
+			// The file may have been closed or truncated since the read was requested.
+			if (fDisabled)
+				return false;
+			MappedByteBuffer region= getRegion(regionIndex);
+			if (region == null || region.capacity() < end) {
+				region= mapRegion(channel, regionIndex, end);
+				if (region == null)
+					return false;
+			}
+			// Work on a duplicate, the position and limit of the region are shared among threads.
+			final ByteBuffer view= region.duplicate();
+			view.limit(end);
+			view.position(offset);
+			buf.put(view);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private MappedByteBuffer getRegion(int regionIndex) {
+		final MappedByteBuffer[] regions= fRegions;
+		return regionIndex < regions.length ? regions[regionIndex] : null;
+	}
+
+	private synchronized MappedByteBuffer mapRegion(FileChannel channel, int regionIndex, int minSize)
+			throws IOException {
+		MappedByteBuffer region= getRegion(regionIndex);
+		if (region != null && region.capacity() >= minSize)
+			return region;
+		// A region that is too small is replaced only under the write lock, it may be in use.
+		if (region != null)
+			return null;
+
+		final long start= (long) regionIndex * REGION_SIZE;
+		final long size= Math.min(REGION_SIZE, channel.size() - start);
+		if (size < minSize || (size < REGION_SIZE && !fMapPartialRegions))
+			return null;
+
+		region= channel.map(MapMode.READ_ONLY, start, size);
+		final MappedByteBuffer[] regions= fRegions;
+		final MappedByteBuffer[] newRegions= Arrays.copyOf(regions, Math.max(regions.length, regionIndex + 1));
+		newRegions[regionIndex]= region;
+		fRegions= newRegions;
+		return region;
+	}
+
+	/**
+	 * Returns the number of bytes that are currently mapped.
+	 */
+	long getMappedSize() {
+		long result= 0;
+		for (MappedByteBuffer region : fRegions) {
+			if (region != null) {
+				result+= region.capacity();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * An operation on the file that must not run while regions of it are mapped.
+	 */
+	interface FileOperation {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Drops and unmaps all regions and performs the given operation, e.g. truncating the file,
+	 * before any region can be mapped again.
+	 * @return whether the operation has been performed. It is skipped in case the regions could
+	 *     not be unmapped, they stay mapped until they are garbage collected and the file must
+	 *     not be truncated.
+	 */
+	boolean clear(FileOperation operation) throws IOException {
+		final Lock lock= fGuard.writeLock();
+		lock.lock();
+		try {
+			if (!unmapAll())
+				return false;
+			operation.run();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drops and unmaps all regions, has to be called before the file is closed. No region is
+	 * mapped afterwards.
+	 */
+	void close() {
+		final Lock lock= fGuard.writeLock();
+		lock.lock();
+		try {
+			fDisabled= true;
+			unmapAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean unmapAll() {
+		final MappedByteBuffer[] regions;
+		synchronized (this) {
+			regions= fRegions;
+			fRegions= new MappedByteBuffer[0];
+		}
+		boolean unmapped= true;
+		for (MappedByteBuffer region : regions) {
+			if (region != null && !unmap(region)) {
+				unmapped= false;
+			}
+		}
+		if (!unmapped) {
+			// Don't map the file again, it would never be truncated.
+			fDisabled= true;
+		}
+		return unmapped;
+	}
+
+	private static boolean unmap(MappedByteBuffer region) {
+		try {
+			UNMAPPER.unmap(region);
+			return true;
+		} catch (Exception e) {
+			CCorePlugin.log("Cannot unmap a region of the index file", e); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	/**
+	 * Releases the memory mapping of a buffer, which otherwise is released only when the buffer
+	 * is garbage collected. There is no API for this, the method depends on the version of Java.
+	 */
+	private interface Unmapper {
+		void unmap(MappedByteBuffer buffer) throws Exception;
+	}
+
+	private static Unmapper createUnmapper() {
+		try {
+			// Java 9 and later.
+			final Class<?> unsafeClass= Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+			final Method invokeCleaner= unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+			final Field theUnsafe= unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+			theUnsafe.setAccessible(true);
+			final Object unsafe= theUnsafe.get(null);
+			return new Unmapper() {
+				@Override
+				public void unmap(MappedByteBuffer buffer) throws Exception {
+					invokeCleaner.invoke(unsafe, buffer);
+				}
+			};
+		} catch (Exception e) {
+			// Not Java 9, try the internals of Java 8.
+		}
+		try {
+			// Java 8, the buffers are instances of java.nio.DirectByteBuffer.
+			final Method cleanerMethod= Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner"); //$NON-NLS-1$ //$NON-NLS-2$
+			cleanerMethod.setAccessible(true);
+			final Method cleanMethod= Class.forName("sun.misc.Cleaner").getMethod("clean"); //$NON-NLS-1$ //$NON-NLS-2$
+			cleanMethod.setAccessible(true);
+			return new Unmapper() {
+				@Override
+				public void unmap(MappedByteBuffer buffer) throws Exception {
+					Object cleaner= cleanerMethod.invoke(buffer);
+					if (cleaner != null) {
+						cleanMethod.invoke(cleaner);
+					}
+				}
+			};
+		} catch (Exception e) {
+			// Logged when a database is opened with memory mapping, the plug-in may not be
+			// running yet.
+			sUnmapperFailure= e;
+		}
+		return null;
+	}
+}
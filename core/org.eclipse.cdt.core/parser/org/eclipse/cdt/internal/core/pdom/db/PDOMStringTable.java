@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.internal.core.pdom.db;
+
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * A hash table of reference counted strings in the Database. Every string is stored only once,
+ * such that records using the same string share a single {@link IString} record and two such
+ * strings are equal exactly when their records are equal.
+ * <p>
+ * Unlike {@link PDOMStringSet} the table is suited for a large number of strings, the buckets
+ * are spread over blocks of the database and the number of buckets grows with the number of
+ * strings.
+ */
+/*
+ * The header of the table, the root pointer points to it:
+ *
+ * offset            content
+ * 	                 _____________________________
+ * 0                | number of strings
+ * INT_SIZE         | number of bucket blocks
+ * 2 * INT_SIZE     | pointers to the bucket blocks, each of which holds BUCKETS_PER_BLOCK buckets
+ *
+ * A bucket is the pointer to the first entry of a singly linked list of entries:
+ *
+ * offset            content
+ * 	                 _____________________________
+ * 0                | pointer to the next entry
+ * PTR_SIZE         | pointer to the string
+ * 2 * PTR_SIZE     | hash of the string
+ * 2 * PTR_SIZE + 4 | reference count
+ */
+public class PDOMStringTable {
+	private static final int BUCKETS_PER_BLOCK = 1020;
+	private static final int MAX_BLOCKS = 1020;
+	private static final int LOAD_FACTOR = 2;
+
+	private static final int HEADER_SIZE = 2 * Database.INT_SIZE;
+	private static final int SIZE = 0;
+	private static final int BLOCK_COUNT = Database.INT_SIZE;
+	private static final int BLOCKS = HEADER_SIZE;
+
+	private static final int ENTRY_NEXT = 0;
+	private static final int ENTRY_STRING = Database.PTR_SIZE;
+	private static final int ENTRY_HASH = 2 * Database.PTR_SIZE;
+	private static final int ENTRY_REFERENCES = ENTRY_HASH + Database.INT_SIZE;
+	private static final int ENTRY_SIZE = ENTRY_REFERENCES + Database.INT_SIZE;
+
+	static {
+		assert HEADER_SIZE + MAX_BLOCKS * Database.PTR_SIZE <= Database.MAX_MALLOC_SIZE;
+		assert BUCKETS_PER_BLOCK * Database.PTR_SIZE <= Database.MAX_MALLOC_SIZE;
+	}
+
+	private final Database db;
+	private final long rootPointer;
+
+	/**
+	 * @param db the database containing the table
+	 * @param rootPointer offset into the database of the pointer to the table
+	 */
+	public PDOMStringTable(Database db, long rootPointer) {
+		this.db = db;
+		this.rootPointer = rootPointer;
+	}
+
+	/**
+	 * Returns the record of the string with the given characters, the string is added to the
+	 * table if necessary. Every call has to be balanced with a call to {@link #release(long)}.
+	 */
+	public long intern(char[] chars) throws CoreException {
+		long header = getHeader();
+		if (header == 0) {
+			header = createHeader();
+		}
+		final int hash = hash(chars);
+		long entry = findEntry(header, chars, hash);
+		if (entry != 0) {
+			db.putInt(entry + ENTRY_REFERENCES, db.getInt(entry + ENTRY_REFERENCES) + 1);
+			return db.getRecPtr(entry + ENTRY_STRING);
+		}
+
+		final long string = db.newString(chars).getRecord();
+		entry = db.malloc(ENTRY_SIZE);
+		db.putRecPtr(entry + ENTRY_STRING, string);
+		db.putInt(entry + ENTRY_HASH, hash);
+		db.putInt(entry + ENTRY_REFERENCES, 1);
+		final long bucket = getBucket(header, hash);
+		db.putRecPtr(entry + ENTRY_NEXT, db.getRecPtr(bucket));
+		db.putRecPtr(bucket, entry);
+
+		final int size = db.getInt(header + SIZE) + 1;
+		db.putInt(header + SIZE, size);
+		final int blockCount = db.getInt(header + BLOCK_COUNT);
+		if (size > LOAD_FACTOR * blockCount * BUCKETS_PER_BLOCK && blockCount < MAX_BLOCKS) {
+			rehash(header, Math.min(2 * blockCount, MAX_BLOCKS));
+		}
+		return string;
+	}
+
+	/**
+	 * Returns the record of the string with the given characters, or 0 if the table does not
+	 * contain such a string.
+	 */
+	public long find(char[] chars) throws CoreException {
+		final long header = getHeader();
+		if (header == 0)
+			return 0;
+		final long entry = findEntry(header, chars, hash(chars));
+		return entry != 0 ? db.getRecPtr(entry + ENTRY_STRING) : 0;
+	}
+
+	/**
+	 * Releases a reference to a string returned by {@link #intern(char[])}, the string is
+	 * deleted together with the last reference. A string that is not part of the table is
+	 * deleted right away.
+	 */
+	public void release(long string) throws CoreException {
+		final IString str = db.getString(string);
+		final long header = getHeader();
+		if (header != 0) {
+			final long bucket = getBucket(header, hash(str.getChars()));
+			long prev = 0;
+			long entry = db.getRecPtr(bucket);
+			while (entry != 0) {
+				final long next = db.getRecPtr(entry + ENTRY_NEXT);
+				if (db.getRecPtr(entry + ENTRY_STRING) == string) {
+					final int references = db.getInt(entry + ENTRY_REFERENCES) - 1;
+					if (references > 0) {
+						db.putInt(entry + ENTRY_REFERENCES, references);
+						return;
+					}
+					if (prev == 0) {
+						db.putRecPtr(bucket, next);
+					} else {
+						db.putRecPtr(prev + ENTRY_NEXT, next);
+					}
+					db.free(entry);
+					db.putInt(header + SIZE, db.getInt(header + SIZE) - 1);
+					break;
+				}
+				prev = entry;
+				entry = next;
+			}
+		}
+		str.delete();
+	}
+
+	/**
+	 * Returns the number of strings in the table.
+	 */
+	public int size() throws CoreException {
+		final long header = getHeader();
+		return header != 0 ? db.getInt(header + SIZE) : 0;
+	}
+
+	private long getHeader() throws CoreException {
+		return db.getRecPtr(rootPointer);
+	}
+
+	private long createHeader() throws CoreException {
+		final long header = db.malloc(HEADER_SIZE + MAX_BLOCKS * Database.PTR_SIZE);
+		db.putInt(header + BLOCK_COUNT, 1);
+		db.putRecPtr(header + BLOCKS, db.malloc(BUCKETS_PER_BLOCK * Database.PTR_SIZE));
+		db.putRecPtr(rootPointer, header);
+		return header;
+	}
+
+	private long findEntry(long header, char[] chars, int hash) throws CoreException {
+		long entry = db.getRecPtr(getBucket(header, hash));
+		while (entry != 0) {
+			if (db.getInt(entry + ENTRY_HASH) == hash
+					&& db.getString(db.getRecPtr(entry + ENTRY_STRING)).equals(chars)) {
+				return entry;
+			}
+			entry = db.getRecPtr(entry + ENTRY_NEXT);
+		}
+		return 0;
+	}
+
+	private long getBucket(long header, int hash) throws CoreException {
+		final int blockCount = db.getInt(header + BLOCK_COUNT);
+		final int index = (hash & Integer.MAX_VALUE) % (blockCount * BUCKETS_PER_BLOCK);
+		final long block = db.getRecPtr(header + BLOCKS + (index / BUCKETS_PER_BLOCK) * Database.PTR_SIZE);
+		return block + (index % BUCKETS_PER_BLOCK) * Database.PTR_SIZE;
+	}
+
+	/**
+	 * Distributes the entries over a new set of buckets. The entries are relinked, the strings
+	 * remain where they are.
+	 */
+	private void rehash(long header, int newBlockCount) throws CoreException {
+		final int oldBlockCount = db.getInt(header + BLOCK_COUNT);
+		final long[] oldBlocks = new long[oldBlockCount];
+		for (int i = 0; i < oldBlockCount; i++) {
+			oldBlocks[i] = db.getRecPtr(header + BLOCKS + i * Database.PTR_SIZE);
+		}
+		for (int i = 0; i < newBlockCount; i++) {
+			db.putRecPtr(header + BLOCKS + i * Database.PTR_SIZE, db.malloc(BUCKETS_PER_BLOCK * Database.PTR_SIZE));
+		}
+		db.putInt(header + BLOCK_COUNT, newBlockCount);
+
+		for (long block : oldBlocks) {
+			for (int i = 0; i < BUCKETS_PER_BLOCK; i++) {
+				long entry = db.getRecPtr(block + i * Database.PTR_SIZE);
+				while (entry != 0) {
+					final long next = db.getRecPtr(entry + ENTRY_NEXT);
+					final long bucket = getBucket(header, db.getInt(entry + ENTRY_HASH));
+					db.putRecPtr(entry + ENTRY_NEXT, db.getRecPtr(bucket));
+					db.putRecPtr(bucket, entry);
+					entry = next;
+				}
+			}
+			db.free(block);
+		}
+	}
+
+	private static int hash(char[] chars) {
+		int hash = 0;
+		for (char c : chars) {
+			hash = 31 * hash + c;
+		}
+		return hash;
+	}
+}
@@ -18,7 +18,6 @@ import org.eclipse.cdt.internal.core.pdom.db.BTree;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeComparator;
 import org.eclipse.cdt.internal.core.pdom.db.IBTreeVisitor;
-import org.eclipse.cdt.internal.core.pdom.db.IString;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.OperationCanceledException;
 
@@ -37,9 +36,7 @@ public class FindBinding {
 
 		@Override
 		public int compare(long record1, long record2) throws CoreException {
-			IString nm1 = PDOMNamedNode.getDBName(database, record1);
-			IString nm2 = PDOMNamedNode.getDBName(database, record2);
-			int cmp= nm1.compareCompatibleWithIgnoreCase(nm2);
+			int cmp= compareNames(database, record1, record2);
 			if (cmp == 0) {
 				long t1= PDOMBinding.getLocalToFileRec(database, record1);
 				long t2= PDOMBinding.getLocalToFileRec(database, record2);
@@ -63,21 +60,33 @@ public class FindBinding {
 		private final char[] fName;
 		private final int[] fConstants;
 		private final long fLocalToFile;
+		private final long fNameRecord;
 		protected PDOMBinding fResult;
 	
-		protected DefaultFindBindingVisitor(PDOMLinkage linkage, char[] name, int[] constants, long localToFile) {
+		protected DefaultFindBindingVisitor(PDOMLinkage linkage, char[] name, int[] constants, long localToFile)
+				throws CoreException {
 			fLinkage = linkage;
 			fName = name;
 			fConstants = constants;
 			fLocalToFile= localToFile;
+			fNameRecord= linkage.getPDOM().getStringTable().find(name);
+		}
+
+		/**
+		 * Returns whether there can be a binding with the name at all, names of bindings
+		 * are interned.
+		 */
+		public boolean isNameKnown() {
+			return fNameRecord != 0;
 		}
 		
 		// IBTreeVisitor
 		@Override
 		public int compare(long record) throws CoreException {
 			final Database db = fLinkage.getDB();
-			IString nm1 = PDOMNamedNode.getDBName(db, record);
-			int cmp= nm1.compareCompatibleWithIgnoreCase(fName); 
+			final long nameRecord= PDOMNamedNode.getDBNameRecord(db, record);
+			int cmp= fNameRecord != 0 && nameRecord == fNameRecord ?
+					0 : db.getString(nameRecord).compareCompatibleWithIgnoreCase(fName);
 			if (cmp == 0) {
 				long t1= PDOMBinding.getLocalToFileRec(db, record);
 				long t2= fLocalToFile;
@@ -160,16 +169,27 @@ public class FindBinding {
 		}
 		@Override
 		public int compare(long record1, long record2) throws CoreException {
-			return compare(PDOMNamedNode.getDBName(db, record1), PDOMNamedNode.getDBName(db, record2));	// compare names
-		}
-		private int compare(IString nameInDB, IString nameInDB2) throws CoreException {
-			return nameInDB.compareCompatibleWithIgnoreCase(nameInDB2);
+			return compareNames(db, record1, record2);
 		}
 	}
 
+	/**
+	 * Compares the names of two nodes. Names are interned, such that equal names can be
+	 * detected without comparing their characters.
+	 */
+	static int compareNames(Database db, long record1, long record2) throws CoreException {
+		final long name1= PDOMNamedNode.getDBNameRecord(db, record1);
+		final long name2= PDOMNamedNode.getDBNameRecord(db, record2);
+		if (name1 == name2)
+			return 0;
+		return db.getString(name1).compareCompatibleWithIgnoreCase(db.getString(name2));
+	}
+
 	public static PDOMBinding findBinding(BTree btree, final PDOMLinkage linkage, final char[] name, 
 			final int[] constants, final long localToFileRec) throws CoreException {
 		final DefaultFindBindingVisitor visitor = new DefaultFindBindingVisitor(linkage, name, constants, localToFileRec);
+		if (!visitor.isNameKnown())
+			return null;
 		btree.accept(visitor);
 		return visitor.getResult();
 	}
@@ -177,6 +197,8 @@ public class FindBinding {
 	public static PDOMBinding findBinding(IPDOMNode node, final PDOMLinkage linkage, final char[] name, final int[] constants,
 			long localToFileRec) throws CoreException {
 		final DefaultFindBindingVisitor visitor = new DefaultFindBindingVisitor(linkage, name, constants, localToFileRec);
+		if (!visitor.isNameKnown())
+			return null;
 		try {
 			node.accept(visitor);
 		} catch (OperationCanceledException e) {
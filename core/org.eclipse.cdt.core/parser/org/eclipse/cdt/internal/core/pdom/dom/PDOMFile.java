@@ -80,7 +80,8 @@ public class PDOMFile implements IIndexFragmentFile {
 	private static final int FIRST_MACRO_REFERENCE= LAST_USING_DIRECTIVE + Database.PTR_SIZE;
 	private static final int SIGNIFICANT_MACROS= FIRST_MACRO_REFERENCE + Database.PTR_SIZE;
 	private static final int REPLACEMENT_HEADER = SIGNIFICANT_MACROS + Database.PTR_SIZE;
-	private static final int RECORD_SIZE= REPLACEMENT_HEADER + Database.PTR_SIZE;   // 9*PTR_SIZE + 3+1+8+8+8+4 = 68
+	private static final int PARSE_COST= REPLACEMENT_HEADER + Database.PTR_SIZE;  // int
+	private static final int RECORD_SIZE= PARSE_COST + 4;   // 9*PTR_SIZE + 3+1+8+8+8+4+4 = 72
 
 	private static final int FLAG_PRAGMA_ONCE_SEMANTICS	= 0x01;
 
@@ -210,6 +211,7 @@ public class PDOMFile implements IIndexFragmentFile {
 		setSourceReadTime(sourceFile.getSourceReadTime());
 		setSizeAndEncodingHashcode(sourceFile.getSizeAndEncodingHashcode());
 		setContentsHash(sourceFile.getContentsHash());
+		setParseCost(sourceFile.getParseCost());
 
 		// Transfer the flags. 
 		Database db= fLinkage.getDB();
@@ -340,6 +342,18 @@ public class PDOMFile implements IIndexFragmentFile {
 		db.putLong(record + CONTENT_HASH, hash);
 	}
 
+	@Override
+	public int getParseCost() throws CoreException {
+		Database db = fLinkage.getDB();
+		return db.getInt(record + PARSE_COST);
+	}
+
+	@Override
+	public void setParseCost(int cost) throws CoreException {
+		Database db= fLinkage.getDB();
+		db.putInt(record + PARSE_COST, cost);
+	}
+
 	@Override
 	public int getScannerConfigurationHashcode() throws CoreException {
 		return 0;
@@ -20,6 +20,7 @@ import org.eclipse.cdt.core.parser.util.CharArrayUtils;
 import org.eclipse.cdt.internal.core.index.IIndexFragmentBinding;
 import org.eclipse.cdt.internal.core.pdom.db.Database;
 import org.eclipse.cdt.internal.core.pdom.db.IString;
+import org.eclipse.cdt.internal.core.pdom.db.PDOMStringTable;
 import org.eclipse.core.runtime.CoreException;
 
 /**
@@ -48,7 +49,7 @@ public abstract class PDOMNamedNode extends PDOMNode {
 
 		fName= name;
 		final Database db = linkage.getDB();
-		db.putRecPtr(record + NAME, name != null ? db.newString(name).getRecord() : 0);
+		db.putRecPtr(record + NAME, name != null ? linkage.getPDOM().getStringTable().intern(name) : 0);
 	}
 
 	/**
@@ -72,6 +73,14 @@ public abstract class PDOMNamedNode extends PDOMNode {
 		return db.getString(namerec);
 	}
 
+	/**
+	 * Returns the record of the name of the node. Names of bindings are interned, two of them
+	 * are equal exactly when their records are equal.
+	 */
+	public static long getDBNameRecord(Database db, long record) throws CoreException {
+		return db.getRecPtr(record + NAME);
+	}
+
 	public char[] getNameCharArray() throws CoreException {
 		if (fName != null)
 			return fName;
@@ -96,20 +105,28 @@ public abstract class PDOMNamedNode extends PDOMNode {
 
 		IString name= getDBName();
 		if (!name.equals(nameCharArray)) {
-			name.delete();
-			final Database db= getDB();
-			db.putRecPtr(record + NAME, db.newString(nameCharArray).getRecord());
+			deleteName();
+			final PDOMStringTable strings= getPDOM().getStringTable();
+			getDB().putRecPtr(record + NAME, strings.intern(nameCharArray));
 		}
 		fName= nameCharArray;
 	}
 
-	@Override
-	public void delete(PDOMLinkage linkage) throws CoreException {
+	/**
+	 * Releases the name of the node, for use when the node is deleted.
+	 */
+	protected void deleteName() throws CoreException {
 		final Database db = getDB();
 		final long namerec= db.getRecPtr(record + NAME);
 		if (namerec != 0) {
-			db.free(namerec);
+			getPDOM().getStringTable().release(namerec);
+			db.putRecPtr(record + NAME, 0);
 		}
+	}
+
+	@Override
+	public void delete(PDOMLinkage linkage) throws CoreException {
+		deleteName();
 		super.delete(linkage);
 	}
 
@@ -55,7 +55,8 @@ public class CPPFindBinding extends FindBinding {
 	public static class CPPFindBindingVisitor extends FindBinding.DefaultFindBindingVisitor {
 		private final int fConstant;
 		private final int fSigHash;
-		public CPPFindBindingVisitor(PDOMLinkage linkage, char[] name, int constant, int hash, long localToFile) {
+		public CPPFindBindingVisitor(PDOMLinkage linkage, char[] name, int constant, int hash, long localToFile)
+				throws CoreException {
 			super(linkage, name, new int[] {constant}, localToFile);
 			fConstant= constant;
 			fSigHash= hash;
@@ -100,6 +101,8 @@ public class CPPFindBinding extends FindBinding {
 	public static PDOMBinding findBinding(BTree btree, final PDOMLinkage linkage, final char[] name,
 			final int c2, final int ty2, long localToFileRec) throws CoreException {
 		CPPFindBindingVisitor visitor= new CPPFindBindingVisitor(linkage, name, c2, ty2, localToFileRec);
+		if (!visitor.isNameKnown())
+			return null;
 		btree.accept(visitor);
 		return visitor.getResult();
 	}
@@ -108,6 +111,8 @@ public class CPPFindBinding extends FindBinding {
 			int sigHash, long localToFileRec) throws CoreException {
 		CPPFindBindingVisitor visitor= new CPPFindBindingVisitor(linkage, name, constant, sigHash,
 				localToFileRec);
+		if (!visitor.isNameKnown())
+			return null;
 		try {
 			node.accept(visitor);
 		} catch (OperationCanceledException e) {
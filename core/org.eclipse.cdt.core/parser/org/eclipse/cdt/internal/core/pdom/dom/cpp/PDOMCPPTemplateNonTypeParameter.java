@@ -99,7 +99,7 @@ class PDOMCPPTemplateNonTypeParameter extends PDOMCPPBinding
 
 	@Override
 	public void forceDelete(PDOMLinkage linkage) throws CoreException {
-		getDBName().delete();
+		deleteName();
 		linkage.storeType(record + TYPE_OFFSET, null);
 		linkage.storeValue(record + DEFAULTVAL, null);
 	}
@@ -29,13 +29,17 @@ import org.eclipse.cdt.core.index.IIndexManager;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.cdt.core.model.ITranslationUnit;
 import org.eclipse.cdt.core.parser.IncludeExportPatterns;
+import org.eclipse.cdt.internal.core.dom.parser.cpp.semantics.InstantiationMemo;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
 import org.eclipse.cdt.internal.core.index.IWritableIndexManager;
 import org.eclipse.cdt.internal.core.model.CProject;
+import org.eclipse.cdt.internal.core.parser.scanner.LexedTokenCache;
 import org.eclipse.cdt.internal.core.pdom.AbstractIndexerTask;
 import org.eclipse.cdt.internal.core.pdom.ITodoTaskUpdater;
 import org.eclipse.cdt.internal.core.pdom.IndexerProgress;
+import org.eclipse.cdt.internal.core.pdom.PDOM;
 import org.eclipse.cdt.internal.core.pdom.db.ChunkCache;
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -70,6 +74,9 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 		setFileSizeLimits(fileLimit * 1024 * 1024, includedFileLimit * 1024 * 1024);
 		setIndexAllHeaderVersions(checkProperty(IndexerPreferences.KEY_INDEX_ALL_HEADER_VERSIONS));
 		setHeadersToIndexAllVersions(getStringSet(IndexerPreferences.KEY_INDEX_ALL_VERSIONS_SPECIFIC_HEADERS));
+		setParserThreadCount(getIntProperty(IndexerPreferences.KEY_PARSER_THREADS,
+				IndexerPreferences.DEFAULT_PARSER_THREADS));
+		setParallelNameResolution(checkProperty(IndexerPreferences.KEY_PARALLEL_NAME_RESOLUTION));
 		if (checkProperty(IndexerPreferences.KEY_SKIP_ALL_REFERENCES)) {
 			setSkipReferences(SKIP_ALL_REFERENCES);
 		} else {
@@ -294,6 +301,16 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 					+ fStatistics.fParsingTime + " parser, "    //$NON-NLS-1$
 					+ fStatistics.fResolutionTime + " resolution, "    //$NON-NLS-1$
 					+ fStatistics.fAddToIndexTime + " index update.");    //$NON-NLS-1$
+			String readerWaits= ""; //$NON-NLS-1$
+			if (index.getWritableFragment() instanceof PDOM) {
+				PDOM pdom= (PDOM) index.getWritableFragment();
+				readerWaits= ", " + pdom.getBlockedReadLockCount() + " blocked readers waited "   //$NON-NLS-1$ //$NON-NLS-2$
+						+ pdom.getReadLockWaitTime() + " ms";   //$NON-NLS-1$
+			}
+			System.out.println(indent + " Locks: "     //$NON-NLS-1$
+					+ fStatistics.fWriteLockWaitTime + " ms waiting for write lock, "    //$NON-NLS-1$
+					+ fStatistics.fLockYieldCount + " yields to readers"    //$NON-NLS-1$
+					+ readerWaits + ".");    //$NON-NLS-1$
 			System.out.println(indent + " Errors: "    //$NON-NLS-1$
 					+ fStatistics.fErrorCount + " internal, "    //$NON-NLS-1$
 					+ fStatistics.fUnresolvedIncludesCount + " include, "     //$NON-NLS-1$
@@ -319,6 +336,13 @@ public abstract class PDOMIndexerTask extends AbstractIndexerTask implements IPD
 					+ ChunkCache.getSharedInstance().getMaxSize() / 1024 / 1024 + "MB]: " +    //$NON-NLS-1$
 					+ hits + " hits, "      //$NON-NLS-1$
 					+ misses + "(" + nfPercent.format(missPct) + ") misses.");      //$NON-NLS-1$ //$NON-NLS-2$
+			System.out.println(indent + " "  //$NON-NLS-1$
+					+ DBStatus.createCacheStatistics(ChunkCache.getSharedInstance()).getMessage());
+			LexedTokenCache tokenCache= LexedTokenCache.getSharedInstance();
+			System.out.println(indent + " Token cache: " + tokenCache + ", "  //$NON-NLS-1$ //$NON-NLS-2$
+					+ nfPercent.format(tokenCache.getHitRate()) + " hit rate.");  //$NON-NLS-1$
+			System.out.println(indent + " Template instantiations: "  //$NON-NLS-1$
+					+ InstantiationMemo.getStatistics() + ".");  //$NON-NLS-1$
 
 			if (Boolean.parseBoolean(System.getProperty("SHOW_COMPRESSED_INDEXER_INFO"))) {    //$NON-NLS-1$
 				Calendar cal = Calendar.getInstance();
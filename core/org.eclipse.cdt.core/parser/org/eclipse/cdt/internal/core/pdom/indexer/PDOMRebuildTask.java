@@ -24,6 +24,7 @@ import org.eclipse.cdt.core.model.ITranslationUnit;
 import org.eclipse.cdt.internal.core.index.IWritableIndex;
 import org.eclipse.cdt.internal.core.index.IWritableIndexFragment;
 import org.eclipse.cdt.internal.core.index.IWritableIndexManager;
+import org.eclipse.cdt.internal.core.parser.scanner.LexedTokenCache;
 import org.eclipse.cdt.internal.core.pdom.IndexerProgress;
 import org.eclipse.cdt.internal.core.pdom.PDOMManager;
 import org.eclipse.cdt.internal.core.pdom.WritablePDOM;
@@ -106,6 +107,8 @@ public class PDOMRebuildTask implements IPDOMIndexerTask {
 		} finally {
 			index.releaseWriteLock();
 		}
+		// Start the rebuild with the tokens of the current file contents.
+		LexedTokenCache.getSharedInstance().clear();
 	}
 
 	private void createDelegate(ICProject project, IProgressMonitor monitor) throws CoreException {
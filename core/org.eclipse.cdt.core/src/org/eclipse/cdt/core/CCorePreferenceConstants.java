@@ -131,6 +131,19 @@ public class CCorePreferenceConstants {
 	 */
 	public static final String DEFAULT_MAX_INDEX_DB_CACHE_SIZE_MB = "256"; //$NON-NLS-1$
 
+	/**
+	 * Absolute maximum size of the cache for the tokens of lexed files in megabytes. The cache
+	 * is limited to 5% of max memory, in addition.
+	 * @since 6.4
+	 */
+	public static final String MAX_LEXED_TOKEN_CACHE_SIZE_MB = CCorePlugin.PLUGIN_ID + ".maxLexedTokenCacheSizeMB"; //$NON-NLS-1$
+
+	/**
+	 * Default absolute maximum size of the cache for the tokens of lexed files in megabytes.
+	 * @since 6.4
+	 */
+	public static final String DEFAULT_MAX_LEXED_TOKEN_CACHE_SIZE_MB = "32"; //$NON-NLS-1$
+
 	/**
 	 * Boolean preference controlling whether paths of non-workspace files are stored in index in canonical
 	 * form or not. Canonicalization is performed by calling {@link java.io.File#getCanonicalPath()}.
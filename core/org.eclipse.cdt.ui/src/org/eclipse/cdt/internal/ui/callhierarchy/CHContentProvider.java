@@ -34,6 +34,8 @@ import org.eclipse.cdt.core.model.ITranslationUnit;
 import org.eclipse.cdt.core.model.IVariable;
 import org.eclipse.cdt.ui.CUIPlugin;
 
+import org.eclipse.cdt.internal.core.pdom.db.DBStatus;
+
 import org.eclipse.cdt.internal.corext.util.CModelUtil;
 
 import org.eclipse.cdt.internal.ui.viewsupport.AsyncTreeContentProvider;
@@ -156,23 +158,46 @@ public class CHContentProvider extends AsyncTreeContentProvider {
 		}
 	}
 
-	private Object[] asyncronouslyComputeReferencedBy(CHNode parent) throws CoreException, InterruptedException {
+	private Object[] asyncronouslyComputeReferencedBy(final CHNode parent) throws CoreException, InterruptedException {
+		return queryIndex(new IndexQuery() {
+			@Override
+			public Object[] run(IIndex index) throws CoreException {
+				return CHQueries.findCalledBy(CHContentProvider.this, parent, index, NPM);
+			}
+		});
+	}
+
+	private Object[] asyncronouslyComputeRefersTo(final CHNode parent) throws CoreException, InterruptedException {
+		return queryIndex(new IndexQuery() {
+			@Override
+			public Object[] run(IIndex index) throws CoreException {
+				return CHQueries.findCalls(CHContentProvider.this, parent, index, NPM);
+			}
+		});
+	}
+
+	private interface IndexQuery {
+		Object[] run(IIndex index) throws CoreException;
+	}
+
+	private Object[] queryIndex(IndexQuery query) throws CoreException, InterruptedException {
 		ICProject[] scope= CoreModel.getDefault().getCModel().getCProjects();
 		IIndex index= CCorePlugin.getIndexManager().getIndex(scope, IIndexManager.ADD_EXTENSION_FRAGMENTS_CALL_HIERARCHY);
-		index.acquireReadLock();
+		// The queries may take a while, use a snapshot such that the indexer is not blocked.
+		IIndex snapshot= index.openSnapshot();
 		try {
-			return CHQueries.findCalledBy(this, parent, index, NPM);
+			return query.run(snapshot);
+		} catch (CoreException e) {
+			if (!DBStatus.isSnapshotInvalidated(e))
+				throw e;
 		} finally {
-			index.releaseReadLock();
+			snapshot.releaseReadLock();
 		}
-	}
-
-	private Object[] asyncronouslyComputeRefersTo(CHNode parent) throws CoreException, InterruptedException {
-		ICProject[] scope= CoreModel.getDefault().getCModel().getCProjects();
-		IIndex index= CCorePlugin.getIndexManager().getIndex(scope, IIndexManager.ADD_EXTENSION_FRAGMENTS_CALL_HIERARCHY);
+		// The indexer modified more of the index than the snapshot could preserve, repeat
+		// the query while holding a read lock on the index.
 		index.acquireReadLock();
 		try {
-			return CHQueries.findCalls(this, parent, index, NPM);
+			return query.run(index);
 		} finally {
 			index.releaseReadLock();
 		}
@@ -244,7 +244,9 @@ public final class ASTProvider {
 
 		synchronized (this) {
 			fActiveEditor= editor;
-			fTimeStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+			// The cache checks the contents of an AST it retained for the translation unit,
+			// later modifications are detected by the modification stamp.
+			fTimeStamp= getModificationStamp(editor);
 			fCache.setActiveElement(tu);
 		}
 
@@ -266,6 +268,16 @@ public final class ASTProvider {
 		updateModificationStamp();
 	}
 
+	private static long getModificationStamp(IWorkbenchPart editor) {
+		if (editor instanceof ITextEditor) {
+			ITextEditor textEditor= (ITextEditor) editor;
+			IDocument document= textEditor.getDocumentProvider().getDocument(textEditor.getEditorInput());
+			if (document instanceof IDocumentExtension4)
+				return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
 	private boolean updateModificationStamp() {
 		long timeStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 		ITextEditor textEditor= null;
@@ -304,6 +316,7 @@ public final class ASTProvider {
 			fActivationListener= null;
 		}
 		fCache.setActiveElement(null);
+		fCache.disposeRetainedASTs();
 	}
 
 	/**
@@ -30,6 +30,9 @@ public class Messages extends NLS {
 	public static String TeamProjectIndexExportWizardPage_labelProjectTable;
 	public static String TeamProjectIndexExportWizardPage_noProjectError;
 	public static String TeamProjectIndexExportWizardPage_resourceSnapshotButton;
+	public static String TeamProjectIndexExportWizardPage_compressIndexButton;
+	public static String TeamProjectIndexExportWizardPage_compressionTitle;
+	public static String TeamProjectIndexExportWizardPage_compressionStatistics;
 	public static String TeamProjectIndexExportWizardPage_selectAll;
 	public static String TeamProjectIndexExportWizardPage_title;
 	public static String TeamProjectIndexExportWizardPage_variableButton;
@@ -15,10 +15,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.jface.dialogs.ErrorDialog;
@@ -65,6 +67,7 @@ public class TeamProjectIndexExportWizardPage extends WizardPage implements List
 	private CheckboxTableViewer fProjectViewer;
     private Text fDestinationField;
     private Button fResourceSnapshotButton;
+    private Button fCompressIndexButton;
 
     /**
      *	Create an instance of this class
@@ -291,6 +294,13 @@ public class TeamProjectIndexExportWizardPage extends WizardPage implements List
         fResourceSnapshotButton.setLayoutData(gd= new GridData());
         gd.grabExcessHorizontalSpace= true;
         gd.horizontalAlignment= GridData.FILL;
+
+        fCompressIndexButton = new Button(resourceSnapshotDestinationGroup, SWT.CHECK);
+        fCompressIndexButton.setText(Messages.TeamProjectIndexExportWizardPage_compressIndexButton);
+        fCompressIndexButton.setFont(font);
+        fCompressIndexButton.setLayoutData(gd= new GridData());
+        gd.grabExcessHorizontalSpace= true;
+        gd.horizontalAlignment= GridData.FILL;
     }
 
 	protected void onInsertVariable() {
@@ -327,7 +337,15 @@ public class TeamProjectIndexExportWizardPage extends WizardPage implements List
     	final String dest= getDestinationValue();
     	final MultiStatus status= new MultiStatus(CUIPlugin.PLUGIN_ID, 
     			0, Messages.TeamProjectIndexExportWizardPage_errorExporting, null); 
-    	final boolean exportResourceSnapshot = fResourceSnapshotButton.getSelection();
+    	int options= 0;
+    	if (fResourceSnapshotButton.getSelection()) {
+    		options |= TeamPDOMExportOperation.EXPORT_OPTION_RESOURCE_SNAPSHOT;
+    	}
+    	if (fCompressIndexButton.getSelection()) {
+    		options |= TeamPDOMExportOperation.EXPORT_OPTION_COMPRESSED_INDEX;
+    	}
+    	final int exportOptions= options;
+    	final List<String> statistics= new ArrayList<String>();
 
     	IRunnableWithProgress op= new IRunnableWithProgress() {
 			@Override
@@ -336,11 +354,14 @@ public class TeamProjectIndexExportWizardPage extends WizardPage implements List
 				for (ICProject project : projects) {
 					TeamPDOMExportOperation op= new TeamPDOMExportOperation(project);
 					op.setTargetLocation(dest);
-					if (exportResourceSnapshot) {
-						op.setOptions(TeamPDOMExportOperation.EXPORT_OPTION_RESOURCE_SNAPSHOT);
-					}
+					op.setOptions(exportOptions);
 					try {
 						op.run(new SubProgressMonitor(monitor, 1));
+						IStatus compression= op.getCompressionStatistics();
+						if (compression != null) {
+							statistics.add(NLS.bind(Messages.TeamProjectIndexExportWizardPage_compressionStatistics,
+									project.getElementName(), compression.getMessage()));
+						}
 					} catch (CoreException e) {
 						status.merge(e.getStatus());
 					}
@@ -367,6 +388,16 @@ public class TeamProjectIndexExportWizardPage extends WizardPage implements List
             return false;
         }
 
+        if (!statistics.isEmpty()) {
+        	StringBuilder message= new StringBuilder();
+        	for (String line : statistics) {
+        		if (message.length() > 0)
+        			message.append('\n');
+        		message.append(line);
+        	}
+        	MessageDialog.openInformation(getContainer().getShell(),
+        			Messages.TeamProjectIndexExportWizardPage_compressionTitle, message.toString());
+        }
         return true;
     }
 
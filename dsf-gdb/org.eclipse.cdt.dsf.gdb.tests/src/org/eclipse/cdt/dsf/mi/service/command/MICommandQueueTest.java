@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.dsf.mi.service.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.dsf.concurrent.DataRequestMonitor;
+import org.eclipse.cdt.dsf.concurrent.DefaultDsfExecutor;
+import org.eclipse.cdt.dsf.concurrent.DsfExecutor;
+import org.eclipse.cdt.dsf.debug.service.command.ICommandControlService.ICommandControlDMContext;
+import org.eclipse.cdt.dsf.debug.service.command.ICommandListener;
+import org.eclipse.cdt.dsf.debug.service.command.ICommandResult;
+import org.eclipse.cdt.dsf.debug.service.command.ICommandToken;
+import org.eclipse.cdt.dsf.gdb.internal.GdbPlugin;
+import org.eclipse.cdt.dsf.mi.service.command.commands.MICommand;
+import org.eclipse.cdt.dsf.mi.service.command.output.MIInfo;
+import org.eclipse.cdt.dsf.service.DsfSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Verifies the handling of the command queue of {@link AbstractMIControl}
+ * against a fake back end, which answers the commands written by the control.
+ */
+public class MICommandQueueTest {
+	private static final int TIMEOUT = 5000;
+
+	private DsfExecutor fExecutor;
+	private DsfSession fSession;
+	private TestControl fControl;
+	private PipedOutputStream fBackendOutput;
+	private final BlockingQueue<String> fWrittenLines = new LinkedBlockingQueue<>();
+	private final List<Integer> fCompleted = Collections.synchronizedList(new ArrayList<Integer>());
+	private final List<ICommandToken> fRemoved = Collections.synchronizedList(new ArrayList<ICommandToken>());
+
+	private static class TestControl extends AbstractMIControl {
+		private final MIControlDMContext fContext;
+
+		public TestControl(DsfSession session) {
+			super(session, false, true, new CommandFactory());
+			fContext = new MIControlDMContext(session.getId(), "test");
+		}
+
+		@Override
+		public String getId() {
+			return "test";
+		}
+
+		@Override
+		public ICommandControlDMContext getContext() {
+			return fContext;
+		}
+
+		@Override
+		@Deprecated
+		public MIControlDMContext getControlDMContext() {
+			return fContext;
+		}
+
+		@Override
+		protected BundleContext getBundleContext() {
+			return GdbPlugin.getBundleContext();
+		}
+	}
+
+	/**
+	 * Collects the lines the control writes to the back end.
+	 */
+	private class LineOutputStream extends OutputStream {
+		private final StringBuilder fLine = new StringBuilder();
+
+		@Override
+		public void write(int b) throws IOException {
+			if (b == '\n') {
+				fWrittenLines.add(fLine.toString());
+				fLine.setLength(0);
+			} else {
+				fLine.append((char) b);
+			}
+		}
+	}
+
+	/**
+	 * Records the order in which the commands complete.
+	 */
+	private class TestMonitor extends DataRequestMonitor<MIInfo> {
+		private final int fNumber;
+		private final CountDownLatch fDone = new CountDownLatch(1);
+
+		public TestMonitor(int number) {
+			super(fExecutor, null);
+			fNumber = number;
+		}
+
+		@Override
+		protected void handleCompleted() {
+			fCompleted.add(fNumber);
+			fDone.countDown();
+		}
+
+		public void waitUntilDone() throws InterruptedException {
+			assertTrue("Command " + fNumber + " did not complete", fDone.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		}
+
+		public boolean isCompleted() {
+			return fDone.getCount() == 0;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		fExecutor = new DefaultDsfExecutor(GdbPlugin.PLUGIN_ID);
+		fSession = DsfSession.startSession(fExecutor, GdbPlugin.PLUGIN_ID);
+		fControl = new TestControl(fSession);
+		fBackendOutput = new PipedOutputStream();
+		final PipedInputStream input = new PipedInputStream(fBackendOutput);
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				fControl.addCommandListener(new ICommandListener() {
+					@Override
+					public void commandQueued(ICommandToken token) {
+					}
+
+					@Override
+					public void commandSent(ICommandToken token) {
+					}
+
+					@Override
+					public void commandRemoved(ICommandToken token) {
+						fRemoved.add(token);
+					}
+
+					@Override
+					public void commandDone(ICommandToken token, ICommandResult result) {
+					}
+				});
+				fControl.startCommandProcessing(input, new LineOutputStream());
+				return null;
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				fControl.stopCommandProcessing();
+				return null;
+			}
+		});
+		fBackendOutput.close();
+		DsfSession.endSession(fSession);
+		fExecutor.shutdown();
+	}
+
+	private <V> V runInExecutor(Callable<V> callable) throws Exception {
+		return fExecutor.submit(callable).get(TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	private void configure(final boolean batching, final int window) throws Exception {
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				fControl.setCommandBatching(batching);
+				fControl.setCommandWindow(window);
+				return null;
+			}
+		});
+	}
+
+	private MICommand<MIInfo> createCommand(String operation, String... params) {
+		return new MICommand<MIInfo>(fControl.getContext(), operation, params);
+	}
+
+	/**
+	 * Returns the next line written to the back end, or <code>null</code> if no
+	 * line is written within the given time.
+	 */
+	private String nextWrittenLine(long timeout) throws InterruptedException {
+		return fWrittenLines.poll(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	private String nextWrittenLine() throws InterruptedException {
+		String line = nextWrittenLine(TIMEOUT);
+		assertNotNull("No command written to the back end", line);
+		return line;
+	}
+
+	private static String getToken(String line) {
+		int i = 0;
+		while (i < line.length() && Character.isDigit(line.charAt(i)))
+			i++;
+		return line.substring(0, i);
+	}
+
+	private static String getCommand(String line) {
+		return line.substring(getToken(line).length());
+	}
+
+	private void reply(String line, String result) throws IOException {
+		fBackendOutput.write((getToken(line) + result + "\n").getBytes());
+		fBackendOutput.flush();
+	}
+
+	@Test
+	public void identicalQueriesNotCoalescedByDefault() throws Exception {
+		final TestMonitor rm1 = new TestMonitor(1);
+		final TestMonitor rm2 = new TestMonitor(2);
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				fControl.queueCommand(createCommand("-thread-info"), rm1);
+				fControl.queueCommand(createCommand("-thread-info"), rm2);
+				return null;
+			}
+		});
+
+		String line1 = nextWrittenLine();
+		String line2 = nextWrittenLine();
+		assertEquals("-thread-info", getCommand(line1));
+		assertEquals("-thread-info", getCommand(line2));
+		reply(line1, "^done");
+		reply(line2, "^done");
+		rm1.waitUntilDone();
+		rm2.waitUntilDone();
+		assertEquals(Arrays.asList(1, 2), fCompleted);
+	}
+
+	@Test
+	public void removeCoalescedQuery() throws Exception {
+		configure(true, 1);
+		final TestMonitor rm1 = new TestMonitor(1);
+		final TestMonitor rm2 = new TestMonitor(2);
+		final TestMonitor rm3 = new TestMonitor(3);
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				ICommandToken token1 = fControl.queueCommand(createCommand("-thread-info"), rm1);
+				fControl.queueCommand(createCommand("-thread-info"), rm2);
+				ICommandToken token3 = fControl.queueCommand(createCommand("-thread-info"), rm3);
+				assertEquals(1, fControl.getQueuedCommandCount());
+
+				// Remove the command the others are coalesced with and one of
+				// the coalesced commands.
+				fControl.removeCommand(token1);
+				fControl.removeCommand(token3);
+				assertEquals(1, fControl.getQueuedCommandCount());
+				return null;
+			}
+		});
+
+		String line = nextWrittenLine();
+		assertEquals("-thread-info", getCommand(line));
+		reply(line, "^done");
+		rm2.waitUntilDone();
+		assertTrue(rm2.isSuccess());
+		assertNull("Coalesced query written twice", nextWrittenLine(200));
+		assertFalse(rm1.isCompleted());
+		assertFalse(rm3.isCompleted());
+		assertEquals(2, fRemoved.size());
+	}
+
+	@Test
+	public void errorDeliveredToCoalescedQueries() throws Exception {
+		configure(true, 1);
+		final TestMonitor[] rms = { new TestMonitor(1), new TestMonitor(2), new TestMonitor(3) };
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				for (TestMonitor rm : rms) {
+					fControl.queueCommand(createCommand("-stack-info-depth"), rm);
+				}
+				return null;
+			}
+		});
+
+		String line = nextWrittenLine();
+		assertEquals("-stack-info-depth", getCommand(line));
+		reply(line, "^error,msg=\"No registers.\"");
+		for (TestMonitor rm : rms) {
+			rm.waitUntilDone();
+			assertFalse(rm.isSuccess());
+			assertTrue(rm.getStatus().getMessage().contains("No registers."));
+		}
+		assertNull("Coalesced query written twice", nextWrittenLine(200));
+	}
+
+	@Test
+	public void orderingUnderWindow() throws Exception {
+		configure(true, 2);
+		final TestMonitor[] rms = new TestMonitor[5];
+		runInExecutor(new Callable<Object>() {
+			@Override
+			public Object call() {
+				for (int i = 0; i < rms.length; i++) {
+					rms[i] = new TestMonitor(i);
+					fControl.queueCommand(createCommand("-data-evaluate-expression", Integer.toString(i)), rms[i]);
+				}
+				return null;
+			}
+		});
+
+		List<String> outstanding = new ArrayList<>();
+		int lastToken = 0;
+		for (int i = 0; i < rms.length; i++) {
+			String line = nextWrittenLine();
+			assertEquals("-data-evaluate-expression " + i, getCommand(line));
+			int token = Integer.parseInt(getToken(line));
+			assertTrue("Tokens out of order", token > lastToken);
+			lastToken = token;
+			outstanding.add(line);
+
+			if (outstanding.size() == 2) {
+				// The window is full, nothing more is written before a result is received.
+				assertNull("Window exceeded", nextWrittenLine(200));
+				reply(outstanding.remove(0), "^done");
+			}
+		}
+		for (String line : outstanding) {
+			reply(line, "^done");
+		}
+		for (TestMonitor rm : rms) {
+			rm.waitUntilDone();
+			assertTrue(rm.isSuccess());
+		}
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), fCompleted);
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.dsf.mi.service.command.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures {@link MIParser} the way the receiving thread of the MI control uses it, on
+ * transcripts of large outputs: -thread-info with many threads, -stack-list-frames with
+ * a deep stack, -data-read-memory and console output.
+ */
+public class MIParserSpeedTest extends PerformanceTestCase {
+	private static final int ITERATIONS = 10;
+	private static final int ROUNDS = 20;
+
+	public void testThreadInfo() {
+		measure(threadInfo(10000), 1);
+	}
+
+	public void testStackFrames() {
+		measure(stackFrames(5000), 1);
+	}
+
+	public void testReadMemory() {
+		measure(readMemory(64 * 1024), 1);
+	}
+
+	public void testConsole() {
+		measure(console(10000), 10001);
+	}
+
+	private void measure(List<String> lines, int expectedRecords) {
+		MIParser parser = new MIParser();
+		for (int i = 0; i < ITERATIONS; i++) {
+			startMeasuring();
+			for (int j = 0; j < ROUNDS; j++) {
+				assertEquals(expectedRecords, parse(parser, lines));
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private static int parse(MIParser parser, List<String> lines) {
+		int records = 0;
+		for (String line : lines) {
+			if (line.isEmpty())
+				continue;
+			MIParser.RecordType type = parser.getRecordType(line);
+			if (type == MIParser.RecordType.ResultRecord) {
+				if (parser.parseMIResultRecord(line) != null)
+					records++;
+			} else if (type == MIParser.RecordType.OOBRecord) {
+				if (parser.parseMIOOBRecord(line) != null)
+					records++;
+			}
+		}
+		return records;
+	}
+
+	private static List<String> threadInfo(int count) {
+		StringBuilder buf = new StringBuilder("42^done,threads=[");
+		for (int i = 1; i <= count; i++) {
+			if (i > 1)
+				buf.append(',');
+			buf.append("{id=\"").append(i).append("\",target-id=\"Thread 0x7ffff7fd").append(Integer.toHexString(i))
+					.append(" (LWP ").append(1000 + i).append(")\",name=\"worker-").append(i)
+					.append("\",frame={level=\"0\",addr=\"0x00007ffff78bc").append(Integer.toHexString(i))
+					.append("\",func=\"pthread_cond_wait@@GLIBC_2.3.2\",args=[],")
+					.append("file=\"../sysdeps/unix/sysv/linux/x86_64/pthread_cond_wait.S\",")
+					.append("fullname=\"/build/glibc/nptl/../sysdeps/unix/sysv/linux/x86_64/pthread_cond_wait.S\",")
+					.append("line=\"185\"},state=\"stopped\",core=\"").append(i % 8).append("\"}");
+		}
+		buf.append("],current-thread-id=\"1\"");
+		return transcript(buf);
+	}
+
+	private static List<String> stackFrames(int depth) {
+		StringBuilder buf = new StringBuilder("43^done,stack=[");
+		for (int i = 0; i < depth; i++) {
+			if (i > 0)
+				buf.append(',');
+			buf.append("frame={level=\"").append(i).append("\",addr=\"0x0000000000400").append(Integer.toHexString(i))
+					.append("\",func=\"recurse\",file=\"src/recurse.cpp\",fullname=\"/home/user/project/src/recurse.cpp\",")
+					.append("line=\"").append(10 + i % 20).append("\"}");
+		}
+		buf.append(']');
+		return transcript(buf);
+	}
+
+	private static List<String> readMemory(int bytes) {
+		StringBuilder buf = new StringBuilder("44^done,addr=\"0x601040\",nr-bytes=\"").append(bytes)
+				.append("\",total-bytes=\"").append(bytes).append("\",next-row=\"0x601050\",prev-row=\"0x601030\",")
+				.append("next-page=\"0x611040\",prev-page=\"0x5f1040\",memory=[");
+		for (int row = 0; row < bytes / 16; row++) {
+			if (row > 0)
+				buf.append(',');
+			buf.append("{addr=\"0x").append(Integer.toHexString(0x601040 + row * 16)).append("\",data=[");
+			for (int i = 0; i < 16; i++) {
+				if (i > 0)
+					buf.append(',');
+				buf.append("\"0x").append(Integer.toHexString(0x100 | ((row + i) & 0xff)).substring(1)).append('"');
+			}
+			buf.append("]}");
+		}
+		buf.append(']');
+		return transcript(buf);
+	}
+
+	private static List<String> console(int count) {
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			lines.add("~\"#" + i + "  0x0000000000400" + Integer.toHexString(i) + " in recurse (n=" + i
+					+ ") at src/recurse.cpp:12\\n\"");
+		}
+		lines.add("45^done");
+		lines.add("(gdb) ");
+		return lines;
+	}
+
+	private static List<String> transcript(StringBuilder resultRecord) {
+		List<String> lines = new ArrayList<>();
+		lines.add(resultRecord.toString());
+		lines.add("(gdb) ");
+		return lines;
+	}
+}
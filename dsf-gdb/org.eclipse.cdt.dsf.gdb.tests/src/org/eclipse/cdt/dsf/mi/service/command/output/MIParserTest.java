@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.dsf.mi.service.command.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MIParserTest {
+	private final MIParser fParser = new MIParser();
+
+	@Test
+	public void testRecordType() {
+		assertEquals(MIParser.RecordType.ResultRecord, fParser.getRecordType("12^done"));
+		assertEquals(MIParser.RecordType.PrimaryPrompt, fParser.getRecordType("(gdb) "));
+		assertEquals(MIParser.RecordType.OOBRecord, fParser.getRecordType("*stopped"));
+	}
+
+	@Test
+	public void testResultRecord() {
+		MIResultRecord rr = fParser.parseMIResultRecord(
+				"12^done,stack=[frame={level=\"0\",func=\"main\",args=[]},frame={level=\"1\",func=\"start\",args=[]}]");
+		assertEquals(12, rr.getToken());
+		assertEquals(MIResultRecord.DONE, rr.getResultClass());
+		MIResult[] results = rr.getMIResults();
+		assertEquals(1, results.length);
+		assertEquals("stack", results[0].getVariable());
+		MIList stack = (MIList) results[0].getMIValue();
+		assertEquals(2, stack.getMIResults().length);
+		assertEquals(0, stack.getMIValues().length);
+		MITuple frame = (MITuple) stack.getMIResults()[1].getMIValue();
+		assertEquals("start", ((MIConst) frame.getField("func")).getCString());
+		assertEquals(0, ((MIList) frame.getField("args")).getMIResults().length);
+		assertEquals("[frame={level=\"0\",func=\"main\",args=[]},frame={level=\"1\",func=\"start\",args=[]}]",
+				stack.toString());
+	}
+
+	@Test
+	public void testListOfValues() {
+		MIResultRecord rr = fParser.parseMIResultRecord("^done,thread-ids={thread-id=\"2\",thread-id=\"1\"},ids=[\"1\",\"2\"]");
+		assertEquals(-1, rr.getToken());
+		MIList ids = (MIList) rr.getMIResults()[1].getMIValue();
+		assertEquals(2, ids.getMIValues().length);
+		assertEquals("2", ((MIConst) ids.getMIValues()[1]).getCString());
+	}
+
+	@Test
+	public void testEscapes() {
+		MIResultRecord rr = fParser.parseMIResultRecord("^error,msg=\"No symbol \\\"x\\\" in \\\\ context.\\n\"");
+		assertEquals(MIResultRecord.ERROR, rr.getResultClass());
+		assertEquals("No symbol \"x\" in \\ context.\\n", ((MIConst) rr.getMIResults()[0].getMIValue()).getCString());
+
+		// Backslashes within stream records are not escaped.
+		MIOOBRecord oob = fParser.parseMIOOBRecord("~\"C:\\\\dir \\\"q\\\"\\n\"");
+		assertTrue(oob instanceof MIConsoleStreamOutput);
+		assertEquals("C:\\\\dir \"q\"\\n", ((MIStreamRecord) oob).getCString());
+	}
+
+	@Test
+	public void testAsyncRecord() {
+		MIOOBRecord oob = fParser.parseMIOOBRecord("*stopped,reason=\"breakpoint-hit\",bkptno=\"1\"");
+		assertTrue(oob instanceof MIExecAsyncOutput);
+		MIAsyncRecord async = (MIAsyncRecord) oob;
+		assertEquals("stopped", async.getAsyncClass());
+		assertEquals(2, async.getMIResults().length);
+		assertEquals("bkptno", async.getMIResults()[1].getVariable());
+
+		async = (MIAsyncRecord) fParser.parseMIOOBRecord("7=thread-group-added ");
+		assertEquals(7, async.getToken());
+		assertEquals("thread-group-added", async.getAsyncClass());
+	}
+
+	@Test
+	public void testMalformedLine() {
+		MIOOBRecord oob = fParser.parseMIOOBRecord("warning: something");
+		assertTrue(oob instanceof MITargetStreamOutput);
+		assertEquals("warning: something\n", ((MIStreamRecord) oob).getCString());
+
+		MIResultRecord rr = fParser.parseMIResultRecord("^done,value=\"unterminated");
+		assertEquals("unterminated", ((MIConst) rr.getMIResults()[0].getMIValue()).getCString());
+	}
+
+	@Test
+	public void testNamesAreShared() {
+		MIResultRecord rr1 = fParser.parseMIResultRecord("^done,frame={level=\"0\"}");
+		MIResultRecord rr2 = fParser.parseMIResultRecord("^done,frame={level=\"1\"}");
+		assertSame(rr1.getMIResults()[0].getVariable(), rr2.getMIResults()[0].getVariable());
+		MITuple frame1 = (MITuple) rr1.getMIResults()[0].getMIValue();
+		MITuple frame2 = (MITuple) rr2.getMIResults()[0].getMIValue();
+		assertSame(frame1.getMIResults()[0].getVariable(), frame2.getMIResults()[0].getVariable());
+	}
+}
@@ -196,4 +196,30 @@ public interface IGdbDebugPreferenceConstants {
 	 */
 	public static final int CONSOLE_BUFFERLINES_DEFAULT = 1000;
 
+	/**
+	 * The value is an integer specifying how many GDB/MI commands may be sent
+	 * to GDB before their results have been received.
+	 * @since 5.3
+	 */
+	public static final String PREF_COMMAND_WINDOW = PREFIX + "commandWindow"; //$NON-NLS-1$
+
+	/**
+	 * Default value for <code>PREF_COMMAND_WINDOW</code>.
+	 * @since 5.3
+	 */
+	public static final int COMMAND_WINDOW_DEFAULT = 3;
+
+	/**
+	 * Boolean preference whether identical GDB/MI queries are coalesced and
+	 * the commands which fit into the command window are sent to GDB at once.
+	 * @since 5.3
+	 */
+	public static final String PREF_COMMAND_BATCHING = PREFIX + "commandBatching"; //$NON-NLS-1$
+
+	/**
+	 * Default value for <code>PREF_COMMAND_BATCHING</code>.
+	 * @since 5.3
+	 */
+	public static final boolean COMMAND_BATCHING_DEFAULT = false;
+
 }
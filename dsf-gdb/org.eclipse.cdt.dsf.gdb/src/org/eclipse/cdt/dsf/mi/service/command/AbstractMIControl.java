@@ -25,9 +25,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -45,6 +47,7 @@ import org.eclipse.cdt.dsf.debug.service.command.ICommandListener;
 import org.eclipse.cdt.dsf.debug.service.command.ICommandResult;
 import org.eclipse.cdt.dsf.debug.service.command.ICommandToken;
 import org.eclipse.cdt.dsf.debug.service.command.IEventListener;
+import org.eclipse.cdt.dsf.gdb.IGdbDebugPreferenceConstants;
 import org.eclipse.cdt.dsf.gdb.internal.GdbDebugOptions;
 import org.eclipse.cdt.dsf.gdb.internal.GdbPlugin;
 import org.eclipse.cdt.dsf.mi.service.IMICommandControl;
@@ -53,6 +56,7 @@ import org.eclipse.cdt.dsf.mi.service.IMIExecutionDMContext;
 import org.eclipse.cdt.dsf.mi.service.command.commands.MICommand;
 import org.eclipse.cdt.dsf.mi.service.command.commands.RawCommand;
 import org.eclipse.cdt.dsf.mi.service.command.output.MIConst;
+import org.eclipse.cdt.dsf.mi.service.command.output.MIExecAsyncOutput;
 import org.eclipse.cdt.dsf.mi.service.command.output.MIInfo;
 import org.eclipse.cdt.dsf.mi.service.command.output.MIList;
 import org.eclipse.cdt.dsf.mi.service.command.output.MIOOBRecord;
@@ -79,8 +83,28 @@ public abstract class AbstractMIControl extends AbstractDsfService
     implements IMICommandControl
 {
 	private static final String MI_TRACE_IDENTIFIER = "[MI]"; //$NON-NLS-1$
-	private static final int NUMBER_CONCURRENT_COMMANDS = 3;
 	private static final int DEVELOPMENT_TRACE_LIMIT_CHARS = 5000;
+
+	/**
+	 * Operations of the queries which have no side effects in the back end.
+	 * An identical query which is still waiting to be sent is answered
+	 * together with the one queued before it.
+	 */
+	private static final Set<String> COALESCABLE_OPERATIONS = new HashSet<String>(Arrays.asList(
+			"-stack-info-depth", //$NON-NLS-1$
+			"-stack-info-frame", //$NON-NLS-1$
+			"-stack-list-frames", //$NON-NLS-1$
+			"-stack-list-arguments", //$NON-NLS-1$
+			"-stack-list-locals", //$NON-NLS-1$
+			"-stack-list-variables", //$NON-NLS-1$
+			"-thread-info", //$NON-NLS-1$
+			"-thread-list-ids", //$NON-NLS-1$
+			"-list-thread-groups", //$NON-NLS-1$
+			"-data-list-register-names", //$NON-NLS-1$
+			"-data-list-register-values", //$NON-NLS-1$
+			"-data-read-memory", //$NON-NLS-1$
+			"-data-read-memory-bytes", //$NON-NLS-1$
+			"-break-list")); //$NON-NLS-1$
 	
     /*
 	 *  Thread control variables for the transmit and receive threads.
@@ -125,6 +149,26 @@ public abstract class AbstractMIControl extends AbstractDsfService
     
     private final List<CommandHandle> fCommandQueue = new ArrayList<CommandHandle>();
 
+    /**
+     * Maximum number of commands which are handed to the back end before their
+     * results have been received.
+     */
+    private int fCommandWindow = IGdbDebugPreferenceConstants.COMMAND_WINDOW_DEFAULT;
+
+    /**
+     * Whether identical queries are coalesced and all commands which fit into
+     * the window are written to the back end at once.
+     */
+    private volatile boolean fCommandBatching = IGdbDebugPreferenceConstants.COMMAND_BATCHING_DEFAULT;
+
+    /*
+     *   Statistics, updated by the receiving thread.
+     */
+    private volatile long fRoundTripTime;
+    private volatile long fRoundTripCount;
+    private int fCommandsSinceStop;
+    private volatile int fCommandsPerStop;
+
     /**
      * Flag indicating that the command control has stopped processing commands.
      */
@@ -203,6 +247,91 @@ public abstract class AbstractMIControl extends AbstractDsfService
     		fUseThreadAndFrameOptions = true;
     	}
     }
+
+    /**
+     * Sets the maximum number of commands that are handed to the back end
+     * before their results have been received.  Commands exceeding the window
+     * stay in the queue, where they can still be removed or coalesced with
+     * identical queries.
+     * 
+     * @param window The number of outstanding commands, at least one.
+     * @since 5.3
+     */
+    @ConfinedToDsfExecutor("this.getExecutor()")
+    protected void setCommandWindow(int window) {
+    	fCommandWindow = Math.max(1, window);
+    }
+
+    /**
+     * Returns the maximum number of commands that are handed to the back end
+     * before their results have been received.
+     * @since 5.3
+     */
+    @ConfinedToDsfExecutor("this.getExecutor()")
+    public int getCommandWindow() {
+    	return fCommandWindow;
+    }
+
+    /**
+     * Enables or disables batching of commands.  With batching, a query identical
+     * to one which is still queued is answered together with it, and all
+     * commands which fit into the window are written to the back end at once.
+     * Without batching, one command is handed to the back end per dispatch cycle.
+     * 
+     * @since 5.3
+     */
+    @ConfinedToDsfExecutor("this.getExecutor()")
+    protected void setCommandBatching(boolean batching) {
+    	fCommandBatching = batching;
+    }
+
+    /**
+     * Returns whether commands are coalesced and written to the back end in batches.
+     * @since 5.3
+     */
+    public boolean isCommandBatching() {
+    	return fCommandBatching;
+    }
+
+    /**
+     * Returns the number of commands that are waiting to be handed to the back end.
+     * Commands coalesced with an identical one are not counted.
+     * @since 5.3
+     */
+    @ConfinedToDsfExecutor("this.getExecutor()")
+    public int getQueuedCommandCount() {
+    	return fCommandQueue.size();
+    }
+
+    /**
+     * Returns the number of commands that have been handed to the back end and
+     * whose results have not been received yet.
+     * @since 5.3
+     */
+    public int getPendingCommandCount() {
+    	// The transmitting thread moves commands from one collection to the other
+    	// one at a time, so the count is off by one at most.
+    	return fRxCommands.size() + fTxCommands.size();
+    }
+
+    /**
+     * Returns the average time between sending a command to the back end and
+     * receiving its result, in microseconds.
+     * @since 5.3
+     */
+    public long getAverageRoundTripTime() {
+    	long count = fRoundTripCount;
+    	return count == 0 ? 0 : fRoundTripTime / count / 1000;
+    }
+
+    /**
+     * Returns the number of commands whose results were received between the
+     * last two stopped events of the back end.
+     * @since 5.3
+     */
+    public int getCommandsPerStopEvent() {
+    	return fCommandsPerStop;
+    }
     
     /**
      * @since 3.0
@@ -273,10 +402,12 @@ public abstract class AbstractMIControl extends AbstractDsfService
     	/*
     	 *  First go through the commands which have been queueud and not yet sent to the backend.
     	 */
-    	for (CommandHandle commandHandle : fCommandQueue) {
-            if (commandHandle.getRequestMonitor() == null) continue;
-            commandHandle.getRequestMonitor().setStatus(genStatus("Connection is shut down")); //$NON-NLS-1$
-            commandHandle.getRequestMonitor().done();
+    	for (CommandHandle queuedHandle : fCommandQueue) {
+    		for (CommandHandle commandHandle : queuedHandle.getCoalescedHandles()) {
+    			if (commandHandle.getRequestMonitor() == null) continue;
+    			commandHandle.getRequestMonitor().setStatus(genStatus("Connection is shut down")); //$NON-NLS-1$
+    			commandHandle.getRequestMonitor().done();
+    		}
         }
     	fCommandQueue.clear();
     	
@@ -284,10 +415,12 @@ public abstract class AbstractMIControl extends AbstractDsfService
     	 *  Now go through the commands which are outstanding in that they have been sent to the backend.
     	 */
         synchronized(fRxCommands) {
-            for (CommandHandle commandHandle : fRxCommands.values()) {
-                if (commandHandle.getRequestMonitor() == null) continue;
-                commandHandle.getRequestMonitor().setStatus(genStatus( "Connection is shut down")); //$NON-NLS-1$
-                commandHandle.getRequestMonitor().done();
+            for (CommandHandle sentHandle : fRxCommands.values()) {
+            	for (CommandHandle commandHandle : sentHandle.getCoalescedHandles()) {
+            		if (commandHandle.getRequestMonitor() == null) continue;
+            		commandHandle.getRequestMonitor().setStatus(genStatus( "Connection is shut down")); //$NON-NLS-1$
+            		commandHandle.getRequestMonitor().done();
+            	}
             }
             fRxCommands.clear();
         }
@@ -297,10 +430,12 @@ public abstract class AbstractMIControl extends AbstractDsfService
          */
         List<CommandHandle> txCommands = new ArrayList<CommandHandle>();
         fTxCommands.drainTo(txCommands);
-        for (CommandHandle commandHandle : txCommands) {
-            if (commandHandle.getRequestMonitor() == null) continue;
-            commandHandle.getRequestMonitor().setStatus(genStatus("Connection is shut down")); //$NON-NLS-1$
-            commandHandle.getRequestMonitor().done();
+        for (CommandHandle txHandle : txCommands) {
+        	for (CommandHandle commandHandle : txHandle.getCoalescedHandles()) {
+        		if (commandHandle.getRequestMonitor() == null) continue;
+        		commandHandle.getRequestMonitor().setStatus(genStatus("Connection is shut down")); //$NON-NLS-1$
+        		commandHandle.getRequestMonitor().done();
+        	}
         }
         
         // Queue a null value to tell the send thread to shut down.
@@ -339,15 +474,22 @@ public abstract class AbstractMIControl extends AbstractDsfService
             rm.done();
         } else {
         	/*
-        	 *  We only allow three outstanding commands to be on the wire to the backend
+        	 *  We only allow a window of outstanding commands to be on the wire to the backend
         	 *  at any one time. This allows for coalescing as well as canceling
         	 *  existing commands on a state change. So we add it to the waiting list and let
-        	 *  the user know they can now work with this item if need be.
+        	 *  the user know they can now work with this item if need be.  A query identical
+        	 *  to one which is still waiting is answered together with it.
         	 */
-        	fCommandQueue.add(handle);
-            processCommandQueued(handle);
-            
-            if (fRxCommands.size() < NUMBER_CONCURRENT_COMMANDS) {
+        	CommandHandle queuedHandle = fCommandBatching ? findCoalescableCommand(miCommand) : null;
+        	if (queuedHandle != null) {
+        		queuedHandle.addCoalescedHandle(handle);
+        		processCommandQueued(handle);
+        	} else {
+        		fCommandQueue.add(handle);
+        		processCommandQueued(handle);
+        	}
+
+            if (queuedHandle == null && getPendingCommandCount() < fCommandWindow) {
                 // In a separate dispatch cycle.  This allows command listeners 
             	// to respond to the command queued event.  
                 getExecutor().execute(new DsfRunnable() {
@@ -362,58 +504,94 @@ public abstract class AbstractMIControl extends AbstractDsfService
         return handle;
     }
 
+    /**
+     * Returns the queued command which is identical to the given query and which
+     * can answer it, or <code>null</code>.  Only queries without side effects are
+     * coalesced, and only with a command which has no command with possible side
+     * effects queued after it.
+     */
+    private CommandHandle findCoalescableCommand(MICommand<MIInfo> command) {
+    	if (!COALESCABLE_OPERATIONS.contains(command.getOperation()))
+    		return null;
+    	for (int i = fCommandQueue.size(); --i >= 0;) {
+    		CommandHandle handle = fCommandQueue.get(i);
+    		if (command.getClass() == handle.getCommand().getClass() && command.equals(handle.getCommand()))
+    			return handle;
+    		if (!COALESCABLE_OPERATIONS.contains(handle.getCommand().getOperation()))
+    			return null;
+    	}
+    	return null;
+    }
+
+    /*
+     *   Hands the next queued command to the transmitting thread.  With batching,
+     *   queued commands are handed over until the window of outstanding commands
+     *   is full, and the ones handed over in the same dispatch cycle are written
+     *   to the back end at once.
+     */
     private void processNextQueuedCommand() {
-		if (!fCommandQueue.isEmpty()) {
-			final CommandHandle handle = fCommandQueue.remove(0);
-			if (handle != null) {
-				processCommandSent(handle);
-
-				// Older debuggers didn't support the --thread/--frame options
-				// Also, not all commands support those options (e.g., CLI commands)
-				if (!fUseThreadAndFrameOptions || !handle.getCommand().supportsThreadAndFrameOptions()) {
-					// Without the --thread/--frame, we need to send the proper 
-					// -thread-select and -stack-frame-select before sending the command
-					
-					final IDMContext targetContext = handle.fCommand.getContext();
-					final String targetThread = handle.getThreadId();
-					final int targetFrame = handle.getStackFrameId();
-
-					// The thread-select and frame-select make sense only if the thread is stopped.
-					IRunControl runControl = getServicesTracker().getService(IRunControl.class);
-					IMIExecutionDMContext execDmc = DMContexts.getAncestorOfType(targetContext, IMIExecutionDMContext.class);
-					if (runControl != null && execDmc != null && runControl.isSuspended(execDmc)) {
-						// Before the command is sent, Check the Thread Id and send it to 
-						// the queue only if the id has been changed. Also, don't send a threadId of 0,
-						// because that id is only used internally for single-threaded programs
-						if (targetThread != null && !targetThread.equals("0") && !targetThread.equals(fCurrentThreadId)) { //$NON-NLS-1$
-							fCurrentThreadId = targetThread;
-							resetCurrentStackLevel();
-							CommandHandle cmdHandle = new CommandHandle(
-									(MICommand<MIInfo>)getCommandFactory().createMIThreadSelect(targetContext, targetThread), null);
-							cmdHandle.generateTokenId();
-							fTxCommands.add(cmdHandle);
-						}
-
-						// Before the command is sent, Check the Stack level and send it to 
-						// the queue only if the level has been changed. 
-						if (targetFrame >= 0 && targetFrame != fCurrentStackLevel) {
-							fCurrentStackLevel = targetFrame;
-							CommandHandle cmdHandle = new CommandHandle(
-									(MICommand<MIInfo>)getCommandFactory().createMIStackSelectFrame(targetContext, targetFrame), null);
-							cmdHandle.generateTokenId();
-							fTxCommands.add(cmdHandle);
-						}
+    	if (!fCommandBatching) {
+    		if (!fCommandQueue.isEmpty()) {
+    			sendQueuedCommand(fCommandQueue.remove(0));
+    		}
+    		return;
+    	}
+		while (!fCommandQueue.isEmpty() && getPendingCommandCount() < fCommandWindow) {
+			sendQueuedCommand(fCommandQueue.remove(0));
+		}
+    }
+
+    private void sendQueuedCommand(final CommandHandle handle) {
+		if (handle != null) {
+			for (CommandHandle commandHandle : handle.getCoalescedHandles()) {
+				processCommandSent(commandHandle);
+			}
+
+			// Older debuggers didn't support the --thread/--frame options
+			// Also, not all commands support those options (e.g., CLI commands)
+			if (!fUseThreadAndFrameOptions || !handle.getCommand().supportsThreadAndFrameOptions()) {
+				// Without the --thread/--frame, we need to send the proper 
+				// -thread-select and -stack-frame-select before sending the command
+				
+				final IDMContext targetContext = handle.fCommand.getContext();
+				final String targetThread = handle.getThreadId();
+				final int targetFrame = handle.getStackFrameId();
+
+				// The thread-select and frame-select make sense only if the thread is stopped.
+				IRunControl runControl = getServicesTracker().getService(IRunControl.class);
+				IMIExecutionDMContext execDmc = DMContexts.getAncestorOfType(targetContext, IMIExecutionDMContext.class);
+				if (runControl != null && execDmc != null && runControl.isSuspended(execDmc)) {
+					// Before the command is sent, Check the Thread Id and send it to 
+					// the queue only if the id has been changed. Also, don't send a threadId of 0,
+					// because that id is only used internally for single-threaded programs
+					if (targetThread != null && !targetThread.equals("0") && !targetThread.equals(fCurrentThreadId)) { //$NON-NLS-1$
+						fCurrentThreadId = targetThread;
+						resetCurrentStackLevel();
+						CommandHandle cmdHandle = new CommandHandle(
+								(MICommand<MIInfo>)getCommandFactory().createMIThreadSelect(targetContext, targetThread), null);
+						cmdHandle.generateTokenId();
+						fTxCommands.add(cmdHandle);
 					}
-				}
 
-				if (!(handle.getCommand() instanceof RawCommand)) {
-					// Only generate a token id if the command is not a RawCommand
-					// RawCommands are sent to GDB without an answer expected, so we don't
-					// need a token id.  In fact, GDB will fail if we send one in this case.
-					handle.generateTokenId();
+					// Before the command is sent, Check the Stack level and send it to 
+					// the queue only if the level has been changed. 
+					if (targetFrame >= 0 && targetFrame != fCurrentStackLevel) {
+						fCurrentStackLevel = targetFrame;
+						CommandHandle cmdHandle = new CommandHandle(
+								(MICommand<MIInfo>)getCommandFactory().createMIStackSelectFrame(targetContext, targetFrame), null);
+						cmdHandle.generateTokenId();
+						fTxCommands.add(cmdHandle);
+					}
 				}
-		    	fTxCommands.add(handle);
 			}
+
+			if (!(handle.getCommand() instanceof RawCommand)) {
+				// Only generate a token id if the command is not a RawCommand
+				// RawCommands are sent to GDB without an answer expected, so we don't
+				// need a token id.  In fact, GDB will fail if we send one in this case.
+				handle.generateTokenId();
+			}
+	    	fTxCommands.add(handle);
 		}
     }
 
@@ -430,19 +608,28 @@ public abstract class AbstractMIControl extends AbstractDsfService
     	
     	synchronized(fCommandQueue) {
     		
-    		for ( CommandHandle handle : fCommandQueue ) {
+    		for (int i = 0; i < fCommandQueue.size(); i++) {
+    			CommandHandle handle = fCommandQueue.get(i);
     			if ( handle.equals(token)) {
-    				fCommandQueue.remove(handle);
-    				
-    				final CommandHandle finalHandle = handle;
-                    getExecutor().execute(new DsfRunnable() {
-                    	@Override
-                        public void run() {
-                        	processCommandRemoved(finalHandle);
-                        }
-                    });
-    				break;
+    				// A command coalesced with the removed one takes its place.
+    				CommandHandle successor = handle.removeFirstCoalescedHandle();
+    				if (successor != null) {
+    					fCommandQueue.set(i, successor);
+    				} else {
+    					fCommandQueue.remove(i);
+    				}
+    			} else if (!handle.removeCoalescedHandle(token)) {
+    				continue;
     			}
+    				
+    			final ICommandToken finalToken = token;
+    			getExecutor().execute(new DsfRunnable() {
+    				@Override
+    				public void run() {
+    					processCommandRemoved((CommandHandle) finalToken);
+    				}
+    			});
+    			break;
     		}
     	}
     }
@@ -556,12 +743,52 @@ public abstract class AbstractMIControl extends AbstractDsfService
         private MICommand<MIInfo> fCommand;
         private DataRequestMonitor<MIInfo> fRequestMonitor;
         private int fTokenId ;
+        // Identical commands which are answered by this one, only created when needed
+        private List<CommandHandle> fCoalescedHandles;
+        // Time at which the command was written to the back end
+        private long fSentTime;
         
         CommandHandle(MICommand<MIInfo> c, DataRequestMonitor<MIInfo> d) {
             fCommand = c; 
             fRequestMonitor = d;
             fTokenId = -1; // Only initialize to a real value when needed
         }
+
+        /**
+         * Returns this handle followed by the handles coalesced with it.
+         */
+        public List<CommandHandle> getCoalescedHandles() {
+        	if (fCoalescedHandles == null)
+        		return Collections.singletonList(this);
+        	List<CommandHandle> handles = new ArrayList<CommandHandle>(fCoalescedHandles.size() + 1);
+        	handles.add(this);
+        	handles.addAll(fCoalescedHandles);
+        	return handles;
+        }
+
+        public void addCoalescedHandle(CommandHandle handle) {
+        	if (fCoalescedHandles == null)
+        		fCoalescedHandles = new ArrayList<CommandHandle>(2);
+        	fCoalescedHandles.add(handle);
+        }
+
+        public boolean removeCoalescedHandle(ICommandToken token) {
+        	return fCoalescedHandles != null && fCoalescedHandles.remove(token);
+        }
+
+        /**
+         * Removes the first of the coalesced handles and makes it answer the
+         * remaining ones.
+         */
+        public CommandHandle removeFirstCoalescedHandle() {
+        	if (fCoalescedHandles == null || fCoalescedHandles.isEmpty())
+        		return null;
+        	CommandHandle successor = fCoalescedHandles.remove(0);
+        	if (!fCoalescedHandles.isEmpty())
+        		successor.fCoalescedHandles = fCoalescedHandles;
+        	fCoalescedHandles = null;
+        	return successor;
+        }
         
     	@Override
         public MICommand<MIInfo> getCommand() { return fCommand; }
@@ -618,77 +845,77 @@ public abstract class AbstractMIControl extends AbstractDsfService
 
         @Override
         public void run () {
-            while (true) {
-                CommandHandle commandHandle = null;
+            List<CommandHandle> commandHandles = new ArrayList<CommandHandle>();
+            boolean shutdown = false;
+            while (!shutdown) {
+                commandHandles.clear();
                 
                 /*
                  *   Note: Acquiring locks for both fRxCommands and fTxCommands collections. 
+                 *   With batching, all the commands that are waiting are taken at once, so that
+                 *   a batch of commands handed over together is written to the backend together.
                  */
                 synchronized(fTxCommands) {
                     try {
-                        commandHandle = fTxCommands.take();
+                        commandHandles.add(fTxCommands.take());
                     } catch (InterruptedException e) {
                         break;  // Shutting down.
                     }
+                    if (fCommandBatching) {
+                    	fTxCommands.drainTo(commandHandles);
+                    }
         
-                    if (commandHandle == fTerminatorHandle) {
-                        
-                        break; // Null command is an indicator that we're shutting down. 
+                    int terminator = commandHandles.indexOf(fTerminatorHandle);
+                    if (terminator >= 0) {
+                        // Null command is an indicator that we're shutting down. 
+                        commandHandles.subList(terminator, commandHandles.size()).clear();
+                        shutdown = true;
                     }
                     
                     /*
-                     *  We note that this is an outstanding request at this point.
+                     *  We note that these are outstanding requests at this point.
                      */
-                    if (!(commandHandle.getCommand() instanceof RawCommand)) {
-                    	// RawCommands will not get an answer, so we cannot put them in the receive queue.
-                    	fRxCommands.put(commandHandle.getTokenId(), commandHandle);
+                    long now = System.nanoTime();
+                    for (CommandHandle commandHandle : commandHandles) {
+                        if (!(commandHandle.getCommand() instanceof RawCommand)) {
+                        	// RawCommands will not get an answer, so we cannot put them in the receive queue.
+                        	commandHandle.fSentTime = now;
+                        	fRxCommands.put(commandHandle.getTokenId(), commandHandle);
+                        }
                     }
                 }
+                if (commandHandles.isEmpty()) {
+                	continue;
+                }
                 
                 /*
-                 *   Construct the new command and push this command out the pipeline.
+                 *   Construct the new commands and push them out the pipeline.
                  */
 
-                final String str;
-                if (commandHandle.getCommand() instanceof RawCommand) {
-                	// RawCommands CANNOT have a token id: GDB would read it as part of the RawCommand!
-                	str = commandHandle.getCommand().constructCommand();
-                } else if (fUseThreadGroupOption) {
-                	// Implies that fUseThreadAndFrameOptions == true
-                	str = commandHandle.getTokenId() + commandHandle.getCommand().constructCommand(commandHandle.getGroupId(),
-							   																	   commandHandle.getThreadId(),
-							   																	   commandHandle.getStackFrameId());                	
-                } else if (fUseThreadAndFrameOptions) {
-                	str = commandHandle.getTokenId() + commandHandle.getCommand().constructCommand(commandHandle.getThreadId(),
-							   																	   commandHandle.getStackFrameId());
-                } else {
-                	str = commandHandle.getTokenId() + commandHandle.getCommand().constructCommand();
+                StringBuilder batch = new StringBuilder();
+                for (CommandHandle commandHandle : commandHandles) {
+                	final String str;
+                	if (commandHandle.getCommand() instanceof RawCommand) {
+                		// RawCommands CANNOT have a token id: GDB would read it as part of the RawCommand!
+                		str = commandHandle.getCommand().constructCommand();
+                	} else if (fUseThreadGroupOption) {
+                		// Implies that fUseThreadAndFrameOptions == true
+                		str = commandHandle.getTokenId() + commandHandle.getCommand().constructCommand(commandHandle.getGroupId(),
+                				commandHandle.getThreadId(),
+                				commandHandle.getStackFrameId());                	
+                	} else if (fUseThreadAndFrameOptions) {
+                		str = commandHandle.getTokenId() + commandHandle.getCommand().constructCommand(commandHandle.getThreadId(),
+                				commandHandle.getStackFrameId());
+                	} else {
+                		str = commandHandle.getTokenId() + commandHandle.getCommand().constructCommand();
+                	}
+                	traceCommand(str);
+                	batch.append(str);
                 }
                 
                 try {
                     if (fOutputStream != null) {
-                        
-                        if (GdbDebugOptions.DEBUG) {
-                        	GdbDebugOptions.trace(String.format( "%s %s  %s", GdbPlugin.getDebugTime(), MI_TRACE_IDENTIFIER, str)); //$NON-NLS-1$
-                        }
-                        if (getMITracingStream() != null) {
-                        	try {
-                        		String message = GdbPlugin.getDebugTime() + " " + str; //$NON-NLS-1$
-                        		while (message.length() > 100) {
-                        			String partial = message.substring(0, 100) + "\\\n"; //$NON-NLS-1$
-                        			message = message.substring(100);
-                        			getMITracingStream().write(partial.getBytes());
-                        		}
-                        		getMITracingStream().write(message.getBytes());
-                        	} catch (IOException e) {
-                        		// The tracing stream could be closed at any time
-                        		// since the user can set a preference to turn off
-                        		// this tracing.
-                        		setMITracingStream(null);
-                        	}
-                        }
-
-                        fOutputStream.write(str.getBytes());
+                        fOutputStream.write(batch.toString().getBytes());
                         fOutputStream.flush();
                     }
                 } catch (IOException e) {
@@ -703,6 +930,31 @@ public abstract class AbstractMIControl extends AbstractDsfService
 			} catch (IOException e) {
 			}
         }
+
+        private void traceCommand(String str) {
+        	if (fOutputStream == null) {
+        		return;
+        	}
+        	if (GdbDebugOptions.DEBUG) {
+        		GdbDebugOptions.trace(String.format( "%s %s  %s", GdbPlugin.getDebugTime(), MI_TRACE_IDENTIFIER, str)); //$NON-NLS-1$
+        	}
+        	if (getMITracingStream() != null) {
+        		try {
+        			String message = GdbPlugin.getDebugTime() + " " + str; //$NON-NLS-1$
+        			while (message.length() > 100) {
+        				String partial = message.substring(0, 100) + "\\\n"; //$NON-NLS-1$
+        				message = message.substring(100);
+        				getMITracingStream().write(partial.getBytes());
+        			}
+        			getMITracingStream().write(message.getBytes());
+        		} catch (IOException e) {
+        			// The tracing stream could be closed at any time
+        			// since the user can set a preference to turn off
+        			// this tracing.
+        			setMITracingStream(null);
+        		}
+        	}
+        }
     }
 
     private class RxThread extends Thread {
@@ -784,6 +1036,18 @@ public abstract class AbstractMIControl extends AbstractDsfService
 			}
         }
         
+        /*
+         *  Records the number of commands since the previous stopped event.
+         */
+        private void processStopped() {
+        	fCommandsPerStop = fCommandsSinceStop;
+        	fCommandsSinceStop = 0;
+        	if (GdbDebugOptions.DEBUG) {
+        		GdbDebugOptions.trace(String.format("%s %s  %d commands since previous stop, %d commands pending, average round trip %d us\n", //$NON-NLS-1$
+        				GdbPlugin.getDebugTime(), MI_TRACE_IDENTIFIER, fCommandsPerStop, getPendingCommandCount(), getAverageRoundTripTime()));
+        	}
+        }
+
         private MIResult findResultRecord(MIResult[] results, String variable) {
             for (int i = 0; i < results.length; i++) {
                 if (variable.equals(results[i].getVariable())) {
@@ -919,72 +1183,69 @@ public abstract class AbstractMIControl extends AbstractDsfService
                         rr, fAccumulatedOOBRecords.toArray(new MIOOBRecord[fAccumulatedOOBRecords.size()]) );
                     fAccumulatedOOBRecords.clear();
                     fAccumulatedStreamRecords.clear();
+                    fRoundTripTime += System.nanoTime() - commandHandle.fSentTime;
+                    fRoundTripCount++;
+                    fCommandsSinceStop++;
                 	
                 	MIInfo result = commandHandle.getCommand().getResult(response);
-					DataRequestMonitor<MIInfo> rm = commandHandle.getRequestMonitor();
-					
+                	
+                	/*
+                	 * We need to indicate if this request had an error or not.
+                	 */
+                	Status status = null;
+                	String errorResult =  rr.getResultClass();
+                	if ( errorResult.equals(MIResultRecord.ERROR) ) {
+                		String statusString = getStatusString(commandHandle.getCommand(),response);
+                		String message = getBackendMessage(response);
+                		Exception exception = new Exception(message);
+                		status = new Status(IStatus.ERROR, GdbPlugin.PLUGIN_ID, REQUEST_FAILED, statusString, exception); 
+                	}
+                	
 					/*
 					 *  Not all users want to get there results. They indicate so by not having
-					 *  a completion object. 
+					 *  a completion object.  The identical commands coalesced with this one
+					 *  share its result.
 					 */
-					if ( rm != null ) {
-						rm.setData(result);
-						
-						/*
-						 * We need to indicate if this request had an error or not.
-						 */
-						String errorResult =  rr.getResultClass();
-						
-						if ( errorResult.equals(MIResultRecord.ERROR) ) {
-							String status = getStatusString(commandHandle.getCommand(),response);
-							String message = getBackendMessage(response);
-							Exception exception = new Exception(message);
-							rm.setStatus(new Status(IStatus.ERROR, GdbPlugin.PLUGIN_ID, REQUEST_FAILED, status, exception)); 
-						}
-						
-						/*
-						 *  We need to complete the command on the DSF thread for data security.
-						 */
-						final ICommandResult finalResult = result;
-						getExecutor().execute(new DsfRunnable() {
-							@Override
-	                        public void run() {
-	                        	/*
-	                        	 *  Complete the specific command.
-	                        	 */
-	                            if (commandHandle.getRequestMonitor() != null) {
-	                                commandHandle.getRequestMonitor().done();
-	                            }
-	                            
-	                            /*
-	                             *  Now tell the generic listeners about it.
-	                             */
-	                            processCommandDone(commandHandle, finalResult);
-	                        }
-	                        @Override
-                            public String toString() {
-	                            return "MI command output received for: " + commandHandle.getCommand(); //$NON-NLS-1$
-	                        }
-	                    });
-					} else {
-						/*
-						 *  While the specific requestor did not care about the completion  we
-						 *  need to call any listeners. This could have been a CLI command for
-						 *  example and  the CommandDone listeners there handle the IO as part
-						 *  of the work.
-						 */
-						final ICommandResult finalResult = result;
-						getExecutor().execute(new DsfRunnable() {
-							@Override
-	                        public void run() {
-	                            processCommandDone(commandHandle, finalResult);
-	                        }
-	                        @Override
-                            public String toString() {
-	                            return "MI command output received for: " + commandHandle.getCommand(); //$NON-NLS-1$
-	                        }
-	                    });
-					}
+                	final List<CommandHandle> commandHandles = commandHandle.getCoalescedHandles();
+                	for (CommandHandle handle : commandHandles) {
+                		DataRequestMonitor<MIInfo> rm = handle.getRequestMonitor();
+                		if ( rm != null ) {
+                			rm.setData(result);
+                			if (status != null) {
+                				rm.setStatus(status);
+                			}
+                		}
+                	}
+					
+					/*
+					 *  We need to complete the command on the DSF thread for data security.
+					 *  While some requestors did not care about the completion we need to
+					 *  call any listeners. This could have been a CLI command for example and
+					 *  the CommandDone listeners there handle the IO as part of the work.
+					 */
+					final ICommandResult finalResult = result;
+					getExecutor().execute(new DsfRunnable() {
+						@Override
+                        public void run() {
+							for (CommandHandle handle : commandHandles) {
+								/*
+								 *  Complete the specific command.
+								 */
+								if (handle.getRequestMonitor() != null) {
+									handle.getRequestMonitor().done();
+								}
+
+								/*
+								 *  Now tell the generic listeners about it.
+								 */
+								processCommandDone(handle, finalResult);
+							}
+                        }
+                        @Override
+                        public String toString() {
+                            return "MI command output received for: " + commandHandle.getCommand(); //$NON-NLS-1$
+                        }
+                    });
                 } else {
                     /*
                      *  GDB apparently can sometimes send multiple responses to the same command.  In those cases, 
@@ -1008,6 +1269,9 @@ public abstract class AbstractMIControl extends AbstractDsfService
         	} else if (recordType == MIParser.RecordType.OOBRecord) {
 				// Process OOBs
         		final MIOOBRecord oob = fMiParser.parseMIOOBRecord(line);
+        		if (oob instanceof MIExecAsyncOutput && "stopped".equals(((MIExecAsyncOutput)oob).getAsyncClass())) { //$NON-NLS-1$
+        			processStopped();
+        		}
 
         		fAccumulatedOOBRecords.add(oob);
         		// limit growth, but only if these are not responses to CLI commands
@@ -1154,17 +1418,19 @@ public abstract class AbstractMIControl extends AbstractDsfService
 		MIOutput miOutput = new MIOutput(resultRecord, new MIOOBRecord[0]);
 
 		final MIInfo info = commandHandle.getCommand().getResult(miOutput);
-		DataRequestMonitor<MIInfo> rm = commandHandle.getRequestMonitor();
-		
-		if ( rm != null ) {
-			rm.setData(info);			
-			rm.setStatus(new Status(IStatus.ERROR, GdbPlugin.PLUGIN_ID, statusCode, errorMessage, null)); 
-			rm.done();
-            
-            /*
-             *  Now tell the generic listeners about it.
-             */
-            processCommandDone(commandHandle, info);
+		for (CommandHandle handle : commandHandle.getCoalescedHandles()) {
+			DataRequestMonitor<MIInfo> rm = handle.getRequestMonitor();
+			
+			if ( rm != null ) {
+				rm.setData(info);			
+				rm.setStatus(new Status(IStatus.ERROR, GdbPlugin.PLUGIN_ID, statusCode, errorMessage, null)); 
+				rm.done();
+				
+				/*
+				 *  Now tell the generic listeners about it.
+				 */
+				processCommandDone(handle, info);
+			}
 		}
     }
 }
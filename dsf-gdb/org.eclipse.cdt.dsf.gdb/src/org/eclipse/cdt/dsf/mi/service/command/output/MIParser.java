@@ -97,6 +97,12 @@ public class MIParser {
     public String cliPrompt = primaryPrompt;
     public String secondaryPrompt = ">"; //$NON-NLS-1$
 
+    private static final MIResult[] NULL_RESULTS = new MIResult[0];
+    private static final MIValue[] NULL_VALUES = new MIValue[0];
+
+    /** Recently seen variable names, indexed by their hash code. */
+    private final String[] fNames = new String[256];
+
     public RecordType getRecordType(String line) {
         int i = 0;
         if (Character.isDigit(line.charAt(0))) {
@@ -120,37 +126,37 @@ public class MIParser {
      * 
      */
     public MIResultRecord parseMIResultRecord(String line) {
-        StringBuffer buffer = new StringBuffer(line);
+        Cursor cursor = new Cursor(line);
         // Fetch the Token/Id
-        int id = parseToken(buffer);
+        int id = parseToken(cursor);
         // Consume the '^'
-        buffer.deleteCharAt(0);
+        cursor.pos++;
         
         MIResultRecord rr = new MIResultRecord();
         rr.setToken(id);
-        if (buffer.toString().startsWith(MIResultRecord.DONE)) {
+        if (cursor.startsWith(MIResultRecord.DONE)) {
             rr.setResultClass(MIResultRecord.DONE);
-            buffer.delete(0, MIResultRecord.DONE.length());
-        } else if (buffer.toString().startsWith(MIResultRecord.ERROR)) {
+            cursor.pos += MIResultRecord.DONE.length();
+        } else if (cursor.startsWith(MIResultRecord.ERROR)) {
             rr.setResultClass(MIResultRecord.ERROR);
-            buffer.delete(0, MIResultRecord.ERROR.length());
-        } else if (buffer.toString().startsWith(MIResultRecord.EXIT)) {
+            cursor.pos += MIResultRecord.ERROR.length();
+        } else if (cursor.startsWith(MIResultRecord.EXIT)) {
             rr.setResultClass(MIResultRecord.EXIT);
-            buffer.delete(0, MIResultRecord.EXIT.length());
-        } else if (buffer.toString().startsWith(MIResultRecord.RUNNING)) {
+            cursor.pos += MIResultRecord.EXIT.length();
+        } else if (cursor.startsWith(MIResultRecord.RUNNING)) {
             rr.setResultClass(MIResultRecord.RUNNING);
-            buffer.delete(0, MIResultRecord.RUNNING.length());
-        } else if (buffer.toString().startsWith(MIResultRecord.CONNECTED)) {
+            cursor.pos += MIResultRecord.RUNNING.length();
+        } else if (cursor.startsWith(MIResultRecord.CONNECTED)) {
             rr.setResultClass(MIResultRecord.CONNECTED);
-            buffer.delete(0, MIResultRecord.CONNECTED.length());
+            cursor.pos += MIResultRecord.CONNECTED.length();
         } else {
             // Error throw an exception?
         }
 
         // Results are separated by commas.
-        if (buffer.length() > 0 && buffer.charAt(0) == ',') {
-            buffer.deleteCharAt(0);
-            MIResult[] res = processMIResults(new FSB(buffer));
+        if (cursor.at(',')) {
+            cursor.pos++;
+            MIResult[] res = processMIResults(cursor);
             rr.setMIResults(res);
         }
         return rr;
@@ -160,13 +166,13 @@ public class MIParser {
      * Find OutOfBand Records depending on the starting token.
      */
     public MIOOBRecord parseMIOOBRecord(String line) {
-        StringBuffer buffer = new StringBuffer(line);
-        int id = parseToken(buffer);
+        Cursor cursor = new Cursor(line);
+        int id = parseToken(cursor);
         MIOOBRecord oob = null;
-        char c = buffer.length() != 0 ? buffer.charAt(0) : 0;
+        char c = cursor.hasMore() ? cursor.current() : 0;
         if (c == '*' || c == '+' || c == '=') {
             // Consume the first char
-            buffer.deleteCharAt(0);
+            cursor.pos++;
             MIAsyncRecord async = null;
             switch (c) {
                 case '*' :
@@ -186,22 +192,21 @@ public class MIParser {
             }
             async.setToken(id);
             // Extract the Async-Class
-            int i = buffer.toString().indexOf(',');
+            int i = line.indexOf(',', cursor.pos);
             if (i != -1) {
-                String asyncClass = buffer.substring(0, i);
-                async.setAsyncClass(asyncClass);
+                async.setAsyncClass(name(line, cursor.pos, i));
                 // Consume the async-class and the comma
-                buffer.delete(0, i + 1);
+                cursor.pos = i + 1;
             } else {
-                async.setAsyncClass(buffer.toString().trim());
-                buffer.setLength(0);
+                async.setAsyncClass(line.substring(cursor.pos).trim());
+                cursor.pos = line.length();
             }
-            MIResult[] res = processMIResults(new FSB(buffer));
+            MIResult[] res = processMIResults(cursor);
             async.setMIResults(res);
             oob = async;
         } else if (c == '~' || c == '@' || c == '&') {
             // Consume the first char
-            buffer.deleteCharAt(0);
+            cursor.pos++;
             MIStreamRecord stream = null;
             switch (c) {
                 case '~' :
@@ -219,13 +224,13 @@ public class MIParser {
                 	assert false;
                 	stream = new MIConsoleStreamOutput();
             }
-            // translateCString() assumes that the leading " is deleted
-            if (buffer.length() > 0 && buffer.charAt(0) == '"') {
-                buffer.deleteCharAt(0);
+            // translateCString() assumes that the leading " is consumed
+            if (cursor.at('"')) {
+                cursor.pos++;
             }
             // Don't parse any backslashes - backslashes within stream records
             // aren't escaped.
-            stream.setCString(translateCString(new FSB(buffer), false));
+            stream.setCString(translateCString(cursor, false));
             oob = stream;
         } else {
             // Badly format MI line, just pass it to the user as target stream
@@ -236,21 +241,21 @@ public class MIParser {
         return oob;
     }
     
-    private int parseToken(StringBuffer buffer) {
+    private int parseToken(Cursor cursor) {
         int id = -1;
         // Fetch the Token/Id
-        if (Character.isDigit(buffer.charAt(0))) {
-            int i = 1;
-            while (i < buffer.length() && Character.isDigit(buffer.charAt(i))) {
-                i++;
-            }
-            String numbers = buffer.substring(0, i);
-            try {
-                id = Integer.parseInt(numbers);
-            } catch (NumberFormatException e) {
+        if (cursor.hasMore() && Character.isDigit(cursor.current())) {
+            long value = 0;
+            do {
+                if (value <= Integer.MAX_VALUE) {
+                    value = value * 10 + Character.digit(cursor.current(), 10);
+                }
+                // Consume the token.
+                cursor.pos++;
+            } while (cursor.hasMore() && Character.isDigit(cursor.current()));
+            if (value <= Integer.MAX_VALUE) {
+                id = (int) value;
             }
-            // Consume the token.
-            buffer.delete(0, i);
         }
         return id;
     }
@@ -259,15 +264,15 @@ public class MIParser {
      * Assuming that the usual leading comma was consumed.
      * Extract the MI Result comma seperated responses.
      */
-    private MIResult[] processMIResults(FSB buffer) {
+    private MIResult[] processMIResults(Cursor cursor) {
         List<MIResult> aList = new ArrayList<MIResult>();
-        MIResult result = processMIResult(buffer);
+        MIResult result = processMIResult(cursor);
         if (result != null) {
             aList.add(result);
         }
-        while (buffer.length() > 0 && buffer.charAt(0) == ',') {
-            buffer.deleteCharAt(0);
-            result = processMIResult(buffer);
+        while (cursor.at(',')) {
+            cursor.pos++;
+            result = processMIResult(cursor);
             if (result != null) {
                 aList.add(result);
             }
@@ -276,26 +281,25 @@ public class MIParser {
     }
 
     /**
-     * Construct the DsfMIResult.  Characters will be consume/delete
+     * Construct the DsfMIResult.  Characters will be consumed
      * moving forward constructing the AST.
      */
-    private MIResult processMIResult(FSB buffer) {
+    private MIResult processMIResult(Cursor cursor) {
         MIResult result = new MIResult();
         int equal;
-        if (buffer.length() > 0 && Character.isLetter(buffer.charAt(0)) && (equal = buffer.indexOf('=')) != -1) {
-            String variable = buffer.substring(0, equal);
-            result.setVariable(variable);
-            buffer.delete(0, equal + 1);
-            MIValue value = processMIValue(buffer);
+        if (cursor.hasMore() && Character.isLetter(cursor.current()) && (equal = cursor.text.indexOf('=', cursor.pos)) != -1) {
+            result.setVariable(name(cursor.text, cursor.pos, equal));
+            cursor.pos = equal + 1;
+            MIValue value = processMIValue(cursor);
             result.setMIValue(value);
-        } else if(buffer.length()>0 && buffer.charAt(0)=='"') {
+        } else if (cursor.at('"')) {
             // This an error but we just swallow it and move on.
-            MIValue value = processMIValue(buffer);
+            MIValue value = processMIValue(cursor);
             result.setMIValue(value);
         } else {
-            result.setVariable(buffer.toString());
+            result.setVariable(cursor.text.substring(cursor.pos));
             result.setMIValue(new MIConst()); // Empty string:???
-            buffer.setLength(0);
+            cursor.pos = cursor.text.length();
         }
         return result;
     }
@@ -303,21 +307,22 @@ public class MIParser {
     /**
      * Find a DsfMIValue implementation or return null.
      */
-    private MIValue processMIValue(FSB buffer) {
+    private MIValue processMIValue(Cursor cursor) {
         MIValue value = null;
-        if (buffer.length() > 0) {
-            if (buffer.charAt(0) == '{') {
-                buffer.deleteCharAt(0);
-                value = processMITuple(buffer);
-            } else if (buffer.charAt(0) == '[') {
-                buffer.deleteCharAt(0);
-                value = processMIList(buffer);
-            } else if (buffer.charAt(0) == '"') {
-                buffer.deleteCharAt(0);
+        if (cursor.hasMore()) {
+            char c = cursor.current();
+            if (c == '{') {
+                cursor.pos++;
+                value = processMITuple(cursor);
+            } else if (c == '[') {
+                cursor.pos++;
+                value = processMIList(cursor);
+            } else if (c == '"') {
+                cursor.pos++;
                 MIConst cnst = new MIConst();
                 // Parse backslashes - backslashes within result
                 // and out of band records are escaped.
-                cnst.setCString(translateCString(buffer, true));
+                cnst.setCString(translateCString(cursor, true));
                 value = cnst;
             }
         }
@@ -325,96 +330,126 @@ public class MIParser {
     }
 
     /**
-     * Assuming the starting '{' was deleted form the StringBuffer,
-     * go to the closing '}' consuming/deleting all the characters.
+     * Assuming the starting '{' was consumed, go to the closing '}'
+     * consuming all the characters.
      * This is usually call by processMIvalue();
      */
-    private MIValue processMITuple(FSB buffer) {
+    private MIValue processMITuple(Cursor cursor) {
         MITuple tuple = new MITuple();
-        List<MIValue> valueList = new ArrayList<MIValue>();
-        List<MIResult> resultList = new ArrayList<MIResult>();
+        List<MIValue> valueList = null;
+        List<MIResult> resultList = null;
         // Catch closing '}'
-        while (buffer.length() > 0 && buffer.charAt(0) != '}') {
+        while (cursor.hasMore() && cursor.current() != '}') {
             // Try for the DsfMIValue first
-            MIValue value = processMIValue(buffer);
+            MIValue value = processMIValue(cursor);
             if (value != null) {
+                if (valueList == null) {
+                    valueList = new ArrayList<MIValue>();
+                }
                 valueList.add(value);
             } else {
-                MIResult result = processMIResult(buffer);
+                MIResult result = processMIResult(cursor);
                 if (result != null) {
+                    if (resultList == null) {
+                        resultList = new ArrayList<MIResult>();
+                    }
                     resultList.add(result);
                 }
             }
-            if (buffer.length() > 0 && buffer.charAt(0) == ',') {
-                buffer.deleteCharAt(0);
+            if (cursor.at(',')) {
+                cursor.pos++;
             }
         }
-        if (buffer.length() > 0 && buffer.charAt(0) == '}') {
-            buffer.deleteCharAt(0);
+        if (cursor.at('}')) {
+            cursor.pos++;
         }
-        MIValue[] values = valueList.toArray(new MIValue[valueList.size()]);
-        MIResult[] res = resultList.toArray(new MIResult[resultList.size()]);
-        tuple.setMIValues(values);
-        tuple.setMIResults(res);
+        tuple.setMIValues(valueList == null ? NULL_VALUES : valueList.toArray(new MIValue[valueList.size()]));
+        tuple.setMIResults(resultList == null ? NULL_RESULTS : resultList.toArray(new MIResult[resultList.size()]));
         return tuple;
     }
 
     /**
-     * Assuming the leading '[' was deleted, find the closing
-     * ']' consuming/delete chars from the StringBuffer.
+     * Assuming the leading '[' was consumed, find the closing
+     * ']' consuming the chars.
      */
-    private MIValue processMIList(FSB buffer) {
+    private MIValue processMIList(Cursor cursor) {
         MIList list = new MIList();
-        List<MIValue> valueList = new ArrayList<MIValue>();
-        List<MIResult> resultList = new ArrayList<MIResult>();
+        List<MIValue> valueList = null;
+        List<MIResult> resultList = null;
         // catch closing ']'
-        while (buffer.length() > 0 && buffer.charAt(0) != ']') {
+        while (cursor.hasMore() && cursor.current() != ']') {
             // Try for the DsfMIValue first
-            MIValue value = processMIValue(buffer);
+            MIValue value = processMIValue(cursor);
             if (value != null) {
+                if (valueList == null) {
+                    valueList = new ArrayList<MIValue>();
+                }
                 valueList.add(value);
             } else {
-                MIResult result = processMIResult(buffer);
+                MIResult result = processMIResult(cursor);
                 if (result != null) {
+                    if (resultList == null) {
+                        resultList = new ArrayList<MIResult>();
+                    }
                     resultList.add(result);
                 }
             }
-            if (buffer.length() > 0 && buffer.charAt(0) == ',') {
-                buffer.deleteCharAt(0);
+            if (cursor.at(',')) {
+                cursor.pos++;
             }
         }
-        if (buffer.length() > 0 && buffer.charAt(0) == ']') {
-            buffer.deleteCharAt(0);
+        if (cursor.at(']')) {
+            cursor.pos++;
         }
-        MIValue[] values = valueList.toArray(new MIValue[valueList.size()]);
-        MIResult[] res = resultList.toArray(new MIResult[resultList.size()]);
-        list.setMIValues(values);
-        list.setMIResults(res);
+        list.setMIValues(valueList == null ? NULL_VALUES : valueList.toArray(new MIValue[valueList.size()]));
+        list.setMIResults(resultList == null ? NULL_RESULTS : resultList.toArray(new MIResult[resultList.size()]));
         return list;
     }
 
     /**
      * MI C-String rather MIConst values are enclosed in double quotes
      * and any double quotes or backslashes in the string are escaped.
-     * Assuming the starting double quote was removed. This method will
+     * Assuming the starting double quote was consumed. This method will
      * stop at the closing double quote, remove the extra backslash escaping
      * and return the string __without__ the enclosing double quotes. The
-     * original string buffer will move forward.
-     * @param buffer The string buffer to read from.
+     * cursor will move forward.
+     * @param cursor The cursor to read from.
      * @param parseBackslashes Defines whether backslashes should be parsed.
      * This parameter is necessary to differentiate between records which
      * contain escaped backslashes and records which do not.
      * @return The translated C string.
      */
-    private String translateCString(FSB buffer, boolean parseBackslashes) {
+    private String translateCString(Cursor cursor, boolean parseBackslashes) {
+        final String text = cursor.text;
+        final int start = cursor.pos;
+        final int end = text.length();
+
+        // Most strings contain no escapes, they can be returned as a substring.
+        int index = start;
+        while (index < end) {
+            char c = text.charAt(index);
+            if (c == '"') {
+                cursor.pos = index + 1;
+                return text.substring(start, index);
+            }
+            if (c == '\\') {
+                break;
+            }
+            index++;
+        }
+        if (index == end) {
+            cursor.pos = end;
+            return text.substring(start, end);
+        }
+
         boolean escape = false;
         boolean closingQuotes = false;
 
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder(index - start + 16);
+        sb.append(text, start, index);
 
-        int index = 0;
-        for (; index < buffer.length() && !closingQuotes; index++) {
-            char c = buffer.charAt(index);
+        for (; index < end && !closingQuotes; index++) {
+            char c = text.charAt(index);
             if (c == '\\') {
                 if (escape) {
                     sb.append(c);
@@ -441,10 +476,29 @@ public class MIParser {
                 escape = false;
             }
         }
-        buffer.delete(0, index);
+        cursor.pos = index;
         return sb.toString();
     }
 
+    /**
+     * Returns the variable name or async class at the given range of the line. The same
+     * names occur over and over again in the output of gdb, the strings are reused.
+     */
+    private String name(String line, int start, int end) {
+        final int length = end - start;
+        int hash = length;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        final int slot = (hash ^ (hash >>> 16)) & (fNames.length - 1);
+        String name = fNames[slot];
+        if (name == null || name.length() != length || !line.regionMatches(start, name, 0, length)) {
+            name = line.substring(start, end);
+            fNames[slot] = name;
+        }
+        return name;
+    }
+
     /**
      * Tests if this string starts with the specified prefix beginning
      * a specified index.
@@ -476,6 +530,9 @@ public class MIParser {
      * with this for large arrays. Use of FSB rather than String
      * Buffer makes MIParser N rather than N^2 because FSB can 
      * delete from the front in constant time.
+     * <p>
+     * The parser itself no longer uses this class, it reads the
+     * line through a {@link Cursor}.
      */
     public class FSB {
         StringBuffer buf;
@@ -575,4 +632,33 @@ public class MIParser {
             return true;
         }
     }
+
+    /**
+     * Position within the line being parsed. Characters are consumed
+     * by advancing the position, the line itself is never copied.
+     */
+    private static final class Cursor {
+        final String text;
+        int pos;
+
+        Cursor(String text) {
+            this.text = text;
+        }
+
+        boolean hasMore() {
+            return pos < text.length();
+        }
+
+        char current() {
+            return text.charAt(pos);
+        }
+
+        boolean at(char c) {
+            return pos < text.length() && text.charAt(pos) == c;
+        }
+
+        boolean startsWith(String prefix) {
+            return text.startsWith(prefix, pos);
+        }
+    }
 }
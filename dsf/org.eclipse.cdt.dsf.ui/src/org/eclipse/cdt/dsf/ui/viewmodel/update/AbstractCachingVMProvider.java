@@ -85,7 +85,31 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
          Platform.getDebugOption("org.eclipse.cdt.dsf.ui/debug/vm/cache")); //$NON-NLS-1$
     }   
 
-    private static final int MAX_CACHE_SIZE = 1000;
+    /**
+     * Default limit for the number of entries in the cache of a provider.
+     * @since 2.5
+     */
+    public static final int DEFAULT_MAX_CACHE_ENTRIES = 5000;
+
+    /**
+     * Default limit for the estimated heap size of the cache of a provider, in bytes.
+     * @since 2.5
+     */
+    public static final long DEFAULT_MAX_CACHE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Number of least recently used element entries among which the entry to
+     * evict is chosen.
+     */
+    private static final int EVICTION_CANDIDATES = 8;
+
+    /*
+     * Estimates of the heap used by the parts of an element entry, in bytes.
+     */
+    private static final int ENTRY_SIZE = 128;
+    private static final int CHILD_SIZE = 48;
+    private static final int CHILDREN_WINDOW_SIZE = 16 + 4 * WindowedChildrenMap.WINDOW_SIZE;
+    private static final int PROPERTY_SIZE = 64;
 
 	/**
      * Class representing a key to an element's data in the cache.  The main
@@ -230,21 +254,52 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
          */
         Map<String, Object> fArchiveProperties = null;
 
+        /**
+         * Number of times this entry was accessed, halved each time the entry
+         * survives an eviction as a candidate.
+         */
+        int fUseCount = 0;
+
+        /**
+         * Estimated heap size of this entry, as last accounted for in the
+         * size of the cache.
+         */
+        int fSize = 0;
+
 		/**
 		 * Ensure this cache entry has a map in which to hold the children
-		 * elements. If it doesn't, create one and give it an initial capacity
-		 * of 30% more than the number of children we know the parent currently
-		 * has (give it some room to grow). If we don't know the child count,
-		 * give the map some nominal initial capacity.
+		 * elements. If it doesn't, create one. The map only allocates space
+		 * for the ranges of children that are actually stored, so that only
+		 * the visible part of a large array or container is held in memory.
 		 */
         void ensureChildrenMap() {
             if (fChildren == null) {
-                Integer childrenCount = fChildrenCount;
-                childrenCount = childrenCount != null ? childrenCount : 0;
-                int capacity = Math.max((childrenCount.intValue() * 4)/3, 32);
-                fChildren = new HashMap<Integer,Object>(capacity);
+                fChildren = new WindowedChildrenMap();
             }
         }
+
+        int estimateSize() {
+            int size = ENTRY_SIZE;
+            if (fChildren != null) {
+                size += fChildren.size() * CHILD_SIZE;
+                if (fChildren instanceof WindowedChildrenMap) {
+                    size += ((WindowedChildrenMap)fChildren).getWindowCount() * CHILDREN_WINDOW_SIZE;
+                }
+            }
+            return size + estimateSize(fProperties) + estimateSize(fArchiveProperties);
+        }
+
+        private static int estimateSize(Map<String, Object> properties) {
+            if (properties == null) return 0;
+            int size = 0;
+            for (Object value : properties.values()) {
+                size += PROPERTY_SIZE;
+                if (value instanceof String) {
+                    size += 2 * ((String)value).length();
+                }
+            }
+            return size;
+        }
         
         @Override
         public String toString() {
@@ -381,6 +436,18 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
      * {@link FlushMarkerKey} for more details).
      */
     private final Map<Object, Entry> fCacheData = Collections.synchronizedMap(new HashMap<Object, Entry>(200, 0.75f));
+
+    private int fMaxCacheEntries = DEFAULT_MAX_CACHE_ENTRIES;
+    private long fMaxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+    /**
+     * Sum of the estimated sizes of the element entries in the cache.
+     */
+    private long fCacheSize = 0;
+
+    private long fCacheHits = 0;
+    private long fCacheMisses = 0;
+    private long fCacheEvictions = 0;
     
     /**
      * Pointer to the first cache entry in the double-linked list of cache entries.
@@ -473,6 +540,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
             // Check if the cache entry has this request result cached. 
             if (entry.fHasChildren != null) {
                 // Cache Hit!  Just return the value.
+                fCacheHits++;
                 if (DEBUG_CACHE && (DEBUG_PRESENTATION_ID == null || getPresentationContext().getId().equals(DEBUG_PRESENTATION_ID))) {
                     DsfUIPlugin.debug("cacheHitHasChildren(node = " + node + ", update = " + update + ", " + entry.fHasChildren + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
                 }
@@ -480,6 +548,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                 update.done();
             } else {
                 // Cache miss!  Save the flush counter of the entry and create a proxy update.
+                fCacheMisses++;
                 final int flushCounter = entry.fFlushCounter;
                 missUpdates.add( 
                     new VMHasChildrenUpdate(
@@ -522,6 +591,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
         // Check if the cache entry has this request result cached. 
         if(entry.fChildrenCount != null) {
             // Cache Hit!  Just return the value.
+            fCacheHits++;
             if (DEBUG_CACHE && (DEBUG_PRESENTATION_ID == null || getPresentationContext().getId().equals(DEBUG_PRESENTATION_ID))) {
                 DsfUIPlugin.debug("cacheHitChildrenCount(node = " + node + ", update = " + update + ", " + entry.fChildrenCount + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
             }
@@ -529,6 +599,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
             update.done();
         } else {
             // Cache miss!  Save the flush counter of the entry and create a proxy update.
+            fCacheMisses++;
             final int flushCounter = entry.fFlushCounter;
             IChildrenCountUpdate updateProxy = new VMChildrenCountUpdate(
                 update, 
@@ -567,6 +638,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
             // Need to retrieve all the children if there is no children information yet.
             // Or if the client requested all children (offset = -1, length -1) and all 
             // the children are not yet known.
+            fCacheMisses++;
             IChildrenUpdate updateProxy = new VMChildrenUpdate(
                 update, update.getOffset(), update.getLength(),
                 new ViewerDataRequestMonitor<List<Object>>(getExecutor(), update){
@@ -601,6 +673,9 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                                 update.setChild(child, offset);
                             }
                         }
+                        if (flushCounter == entry.fFlushCounter) {
+                            entryChanged(entry);
+                        }
                         update.done();
                     }
                     
@@ -623,6 +698,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
 
             // The following assert should never fail given the first if statement. 
             assert entry.fAllChildrenKnown;
+            fCacheHits++;
             
             // we have all of the children in cache; return from cache
             for(int position = 0; position < entry.fChildren.size(); position++) {
@@ -652,6 +728,8 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
             }
             
             if (!childrenMissingFromCache.isEmpty()) {
+                fCacheMisses++;
+
                 // Note: it is possible that entry.fAllChildrenKnown == true at this point.
                 // This can happen if the node's has children implementation returns true
                 // while the actual children update returns with no elements.  A node 
@@ -696,6 +774,9 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                                         }
                                     }
                                 }
+                                if (flushCounter == entry.fFlushCounter) {
+                                    entryChanged(entry);
+                                }
                                 multiRm.done();
                             }
                         }));
@@ -707,6 +788,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                 multiRm.setDoneCount(partialUpdates.size());
             } else {
                 // All children were found in cache.  Complete the update.
+                fCacheHits++;
                 update.done();
             }
         }
@@ -737,8 +819,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                 // Use special handling for null contexts, which we treat like it's an
                 // ancestor of all other contexts.
                 if (flushKey.includes(entryFlushKey)) {
-                    fCacheData.remove(entryFlushKey);
-                    entry.remove();
+                    removeEntry(entry);
                 }
                 
                 // If the flush context in current entry includes the current context
@@ -766,8 +847,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                         // There is no archived data, which means that this entry is empty, so remove it from cache 
                         // completely.
                         if (elementDataEntry.fArchiveProperties == null) {
-                            fCacheData.remove(entry.fKey);
-                            entry.remove();
+                            removeEntry(entry);
                         }                        
                     } else {
                         // We are not changing the archived data.  If archive data exists in the entry, leave it.
@@ -775,8 +855,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                         if (elementDataEntry.fArchiveProperties != null) {
                             elementDataEntry.fProperties = null;
                         } else {
-                            fCacheData.remove(entry.fKey);
-                            entry.remove();
+                            removeEntry(entry);
                         }
                     }
                     elementDataEntry.fFlushCounter++;                    
@@ -798,6 +877,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                         elementDataEntry.fProperties.put(PROP_CACHE_ENTRY_DIRTY, Boolean.TRUE);
                     }
                 }
+                updateEntrySize(elementDataEntry);
             }
             entry = entry.fPrevious;
         }
@@ -1017,6 +1097,9 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
         if (entry != null) {
             // Entry exists, move it to the end of the list.
             entry.reinsert(fCacheListHead);
+            if (entry.fUseCount < Integer.MAX_VALUE) {
+                entry.fUseCount++;
+            }
         } else if (create) {
             // Create a new entry and add it to the end of the list.
             entry = new ElementDataEntry(key);
@@ -1054,7 +1137,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
             if (rootElementChildren != null) {
                 entry.fHasChildren = rootElementChildren.length > 0;
                 entry.fChildrenCount = rootElementChildren.length;
-                entry.fChildren = new HashMap<Integer, Object>(entry.fChildrenCount * 4/3);
+                entry.fChildren = new WindowedChildrenMap();
                 for (int i = 0; i < rootElementChildren.length; i++) {
                     entry.fChildren.put(i, rootElementChildren[i]);
                 }
@@ -1070,6 +1153,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                 entry.fProperties.put(PROP_CACHE_ENTRY_DIRTY, true);
                 entry.fDirty = true;
             }
+            entryChanged(entry);
         }
     }
     
@@ -1079,11 +1163,120 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
     private void addEntry(Object key, Entry entry) {
         fCacheData.put(key, entry);
         entry.insert(fCacheListHead);
-        // If we are at capacity in the cache, remove the entry from head.
-        if (fCacheData.size() > MAX_CACHE_SIZE) {
-            fCacheData.remove(fCacheListHead.fNext.fKey);
-            fCacheListHead.fNext.remove();
+        if (entry instanceof ElementDataEntry) {
+            ElementDataEntry elementDataEntry = (ElementDataEntry)entry;
+            elementDataEntry.fSize = elementDataEntry.estimateSize();
+            fCacheSize += elementDataEntry.fSize;
+        }
+        evict(entry, null);
+    }
+
+    private void removeEntry(Entry entry) {
+        fCacheData.remove(entry.fKey);
+        entry.remove();
+        if (entry instanceof ElementDataEntry) {
+            fCacheSize -= ((ElementDataEntry)entry).fSize;
+        }
+    }
+
+    /**
+     * Updates the accounted size of the given entry after its data changed.
+     * Entries which were already removed from the cache are ignored.
+     */
+    private void updateEntrySize(ElementDataEntry entry) {
+        int size = entry.estimateSize();
+        if (fCacheData.get(entry.fKey) == entry) {
+            fCacheSize += size - entry.fSize;
         }
+        entry.fSize = size;
+    }
+
+    private void entryChanged(ElementDataEntry entry) {
+        updateEntrySize(entry);
+        evict(null, entry);
+    }
+
+    /**
+     * Removes entries until the cache is within its limits.  Entries are
+     * removed from the least recently used end of the list.  Of the first
+     * few element entries there, the one used least often relative to its
+     * size is evicted.  This way expanding a large array or container does
+     * not push the small and frequently used entries, such as those of the
+     * stack frames, out of the cache.  The use counts of the other
+     * candidates are halved, so that entries which are no longer used
+     * eventually age out.
+     *
+     * @param keep Entry that was just added and should not be evicted.
+     * @param changed Entry whose data just changed.  It is a candidate
+     * regardless of its position in the list, so that an array which grows
+     * beyond the limits of the cache is evicted itself rather than
+     * everything else.
+     */
+    private void evict(Entry keep, ElementDataEntry changed) {
+        while (fCacheData.size() > fMaxCacheEntries || fCacheSize > fMaxCacheSize) {
+            Entry head = fCacheListHead.fNext;
+            Entry victim = null;
+            if (head != keep && !(head instanceof ElementDataEntry) && fCacheData.size() > fMaxCacheEntries) {
+                // Markers at the head of the list have not been used in a long time.
+                victim = head;
+            } else {
+                ElementDataEntry candidate = changed != null && fCacheData.get(changed.fKey) == changed ? changed : null;
+                int candidates = 0;
+                for (Entry entry = head; entry != fCacheListHead && candidates < EVICTION_CANDIDATES; entry = entry.fNext) {
+                    if (entry == keep || entry == changed || !(entry instanceof ElementDataEntry)) continue;
+                    ElementDataEntry elementDataEntry = (ElementDataEntry)entry;
+                    candidates++;
+                    if (candidate == null || 
+                        (elementDataEntry.fUseCount + 1L) * candidate.fSize < (candidate.fUseCount + 1L) * elementDataEntry.fSize) 
+                    {
+                        candidate = elementDataEntry;
+                    }
+                }
+                for (Entry entry = head; entry != fCacheListHead && candidates > 0; entry = entry.fNext) {
+                    if (entry == keep || entry == changed || !(entry instanceof ElementDataEntry)) continue;
+                    ((ElementDataEntry)entry).fUseCount /= 2;
+                    candidates--;
+                }
+                victim = candidate;
+            }
+            if (victim == null) {
+                // Nothing left that can be evicted.
+                break;
+            }
+            if (DEBUG_CACHE && (DEBUG_PRESENTATION_ID == null || getPresentationContext().getId().equals(DEBUG_PRESENTATION_ID))) {
+                DsfUIPlugin.debug("cacheEvicted(" + victim.fKey + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (victim instanceof ElementDataEntry) {
+                fCacheEvictions++;
+            }
+            removeEntry(victim);
+        }
+    }
+
+    /**
+     * Sets the limits of the cache of this provider.  When the number of
+     * entries or their estimated heap size exceeds these limits, entries are
+     * evicted.  Should be called in the executor thread.
+     *
+     * @param maxEntries Maximum number of entries.
+     * @param maxSize Maximum estimated heap size of the entries in bytes.
+     *
+     * @since 2.5
+     */
+    protected void setCacheLimits(int maxEntries, long maxSize) {
+        fMaxCacheEntries = maxEntries;
+        fMaxCacheSize = maxSize;
+        evict(null, null);
+    }
+
+    /**
+     * Returns the statistics of the cache of this provider.  Should be called
+     * in the executor thread.
+     *
+     * @since 2.5
+     */
+    protected VMCacheStatistics getCacheStatistics() {
+        return new VMCacheStatistics(fCacheHits, fCacheMisses, fCacheEvictions, fCacheData.size(), fCacheSize);
     }
     
     /**
@@ -1169,6 +1362,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
             // found in the map.
             if (entry.fProperties != null && entry.fProperties.keySet().containsAll(update.getProperties())) {
                 // Cache Hit!  Just return the value.
+                fCacheHits++;
                 if (DEBUG_CACHE && (DEBUG_PRESENTATION_ID == null || getPresentationContext().getId().equals(DEBUG_PRESENTATION_ID))) {
                     DsfUIPlugin.debug("cacheHitProperties(node = " + node + ", update = " + update + ", " + entry.fProperties + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
                 }
@@ -1180,6 +1374,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                 update.done();
             } else {
                 // Cache miss!  Check if already cached properties can be re-used. 
+                fCacheMisses++;
                 Set<String> missingProperties = null;
                 if (entry.fProperties != null) {
                     missingProperties = new HashSet<String>(update.getProperties().size() * 4/3);
@@ -1261,6 +1456,7 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
                                 cachedStatus = PropertiesUpdateStatus.mergePropertiesStatus(
                                     cachedStatus, missUpdateStatus, _missingProperties);
                                 cachedProperties.put(PROP_UPDATE_STATUS, cachedStatus);
+                                entryChanged(entry);
                             } else {
                                 // We are not caching the result of this update, but we should still return valid data 
                                 // to the client.  In case the update was canceled we can also return valid data to the 
@@ -1329,6 +1525,14 @@ public class AbstractCachingVMProvider extends AbstractVMProvider
         }
     }
     
+    @Override
+    public void dispose() {
+        if (DEBUG_CACHE && (DEBUG_PRESENTATION_ID == null || getPresentationContext().getId().equals(DEBUG_PRESENTATION_ID))) {
+            DsfUIPlugin.debug("cacheStatistics(" + this + ", " + getCacheStatistics() + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        super.dispose();
+    }
+
     @Override
     public boolean shouldWaitHandleEventToComplete() {
         return fDelayEventHandleForViewUpdate;
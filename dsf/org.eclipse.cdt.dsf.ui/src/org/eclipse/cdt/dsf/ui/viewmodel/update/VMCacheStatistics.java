@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.dsf.ui.viewmodel.update;
+
+/**
+ * Snapshot of the statistics of the cache of a caching VM provider, i.e. of
+ * the cache of one view.
+ *
+ * @see AbstractCachingVMProvider#getCacheStatistics()
+ * @since 2.5
+ */
+public final class VMCacheStatistics {
+    private final long fHits;
+    private final long fMisses;
+    private final long fEvictions;
+    private final int fEntryCount;
+    private final long fEstimatedSize;
+
+    VMCacheStatistics(long hits, long misses, long evictions, int entryCount, long estimatedSize) {
+        fHits = hits;
+        fMisses = misses;
+        fEvictions = evictions;
+        fEntryCount = entryCount;
+        fEstimatedSize = estimatedSize;
+    }
+
+    /** Returns the number of updates which were completed from the cache. */
+    public long getHits() { return fHits; }
+
+    /** Returns the number of updates which had to be forwarded to the nodes. */
+    public long getMisses() { return fMisses; }
+
+    /** Returns the number of element entries removed to stay within the cache limits. */
+    public long getEvictions() { return fEvictions; }
+
+    /** Returns the number of element entries in the cache. */
+    public int getEntryCount() { return fEntryCount; }
+
+    /** Returns the estimated heap size of the element entries in bytes. */
+    public long getEstimatedSize() { return fEstimatedSize; }
+
+    @Override
+    public String toString() {
+        return "hits=" + fHits + ", misses=" + fMisses + ", evictions=" + fEvictions + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            ", entries=" + fEntryCount + ", size=" + fEstimatedSize; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
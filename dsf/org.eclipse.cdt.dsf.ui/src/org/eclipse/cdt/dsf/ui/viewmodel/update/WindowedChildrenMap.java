@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.dsf.ui.viewmodel.update;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Map of the children of an element, keyed by child index.  The children are
+ * stored in windows of consecutive indexes, which are only allocated for the
+ * ranges of children that were actually retrieved.  This keeps the children
+ * of large arrays or containers, of which the viewer only shows a small range
+ * at a time, compact: a child costs an array slot instead of a map entry and
+ * a boxed index.
+ * <p>
+ * Null values are not stored, putting <code>null</code> removes the child.
+ *
+ * @since 2.5
+ * @noextend This class is not intended to be subclassed by clients.
+ * @noreference This class is not intended to be referenced by clients.
+ */
+public class WindowedChildrenMap extends AbstractMap<Integer, Object> {
+
+    /** Number of children in a window. */
+    public static final int WINDOW_SIZE = 64;
+
+    /** Windows keyed by index of their first child, in index order. */
+    private final TreeMap<Integer, Object[]> fWindows = new TreeMap<Integer, Object[]>();
+
+    private int fSize = 0;
+
+    /**
+     * Returns the number of windows that have been allocated.
+     */
+    public int getWindowCount() {
+        return fWindows.size();
+    }
+
+    @Override
+    public int size() {
+        return fSize;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof Integer)) return null;
+        int index = ((Integer)key).intValue();
+        if (index < 0) return null;
+        Object[] window = fWindows.get(windowStart(index));
+        return window != null ? window[index - windowStart(index)] : null;
+    }
+
+    @Override
+    public Object put(Integer key, Object value) {
+        int index = key.intValue();
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid child index " + index); //$NON-NLS-1$
+        }
+        if (value == null) {
+            return remove(key);
+        }
+        int start = windowStart(index);
+        Object[] window = fWindows.get(start);
+        if (window == null) {
+            window = new Object[WINDOW_SIZE];
+            fWindows.put(start, window);
+        }
+        Object previous = window[index - start];
+        window[index - start] = value;
+        if (previous == null) {
+            fSize++;
+        }
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof Integer)) return null;
+        int index = ((Integer)key).intValue();
+        if (index < 0) return null;
+        int start = windowStart(index);
+        Object[] window = fWindows.get(start);
+        if (window == null) return null;
+        Object previous = window[index - start];
+        if (previous != null) {
+            window[index - start] = null;
+            fSize--;
+            if (isEmpty(window)) {
+                fWindows.remove(start);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        fWindows.clear();
+        fSize = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, Object>>() {
+            @Override
+            public int size() {
+                return fSize;
+            }
+
+            @Override
+            public Iterator<Map.Entry<Integer, Object>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        // Print the ranges of children only, the children themselves can be many.
+        StringBuilder buf = new StringBuilder("{"); //$NON-NLS-1$
+        int rangeStart = -1;
+        int rangeEnd = -1;
+        for (Map.Entry<Integer, Object[]> window : fWindows.entrySet()) {
+            Object[] children = window.getValue();
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == null) continue;
+                int index = window.getKey() + i;
+                if (rangeStart < 0 || index != rangeEnd + 1) {
+                    appendRange(buf, rangeStart, rangeEnd);
+                    rangeStart = index;
+                }
+                rangeEnd = index;
+            }
+        }
+        appendRange(buf, rangeStart, rangeEnd);
+        return buf.append('}').toString();
+    }
+
+    private static void appendRange(StringBuilder buf, int start, int end) {
+        if (start < 0) return;
+        if (buf.length() > 1) buf.append(", "); //$NON-NLS-1$
+        buf.append(start).append("->").append(end + 1); //$NON-NLS-1$
+    }
+
+    private static int windowStart(int index) {
+        return index - index % WINDOW_SIZE;
+    }
+
+    private static boolean isEmpty(Object[] window) {
+        for (Object child : window) {
+            if (child != null) return false;
+        }
+        return true;
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<Integer, Object>> {
+        // Iterate over a copy of the window keys, so that removing entries
+        // (and with them empty windows) does not affect the iteration.
+        private final Iterator<Integer> fStartsItr = new ArrayList<Integer>(fWindows.keySet()).iterator();
+        private int fStart;
+        private Object[] fWindow;
+        private int fNext;
+        private int fLastIndex = -1;
+
+        EntryIterator() {
+            advance(0);
+        }
+
+        private void advance(int from) {
+            fNext = from;
+            while (true) {
+                if (fWindow != null) {
+                    while (fNext < WINDOW_SIZE && fWindow[fNext] == null) {
+                        fNext++;
+                    }
+                    if (fNext < WINDOW_SIZE) return;
+                }
+                fWindow = null;
+                if (!fStartsItr.hasNext()) return;
+                fStart = fStartsItr.next();
+                fWindow = fWindows.get(fStart);
+                fNext = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return fWindow != null;
+        }
+
+        @Override
+        public Map.Entry<Integer, Object> next() {
+            if (fWindow == null) throw new NoSuchElementException();
+            fLastIndex = fStart + fNext;
+            Map.Entry<Integer, Object> entry = new SimpleImmutableEntry<Integer, Object>(fLastIndex, fWindow[fNext]);
+            advance(fNext + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (fLastIndex < 0) throw new IllegalStateException();
+            WindowedChildrenMap.this.remove(fLastIndex);
+            fLastIndex = -1;
+        }
+    }
+}
@@ -99,11 +99,13 @@ public abstract class AbstractCache<V> implements ICache<V> {
     
     @Override
     public boolean isValid() {
+        ConfinementChecker.check(this);
         return fValid;
     }
 
     @Override
     public V getData() {
+        ConfinementChecker.check(this);
         if (!fValid) {
             throw new IllegalStateException("Cache is not valid.  Cache data can be read only when cache is valid."); //$NON-NLS-1$
         }
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.dsf.concurrent;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.cdt.dsf.internal.DsfPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Debug checker for violations of {@link ConfinedToDsfExecutor}.  Code which
+ * may be reached from the wrong thread, for instance from a callback of a
+ * request monitor that was created with an executor other than the session's,
+ * calls {@link #check(Object)} with the confined object.  Services check it
+ * when they access their services tracker and caches when their data is read.
+ * The executor is obtained from the object as described by the value of the
+ * annotation of its class, which has to be the name of a method or a field.
+ * <p>
+ * The checker is turned on with the "debug/executor/confinement" tracing
+ * option; otherwise the checks do nothing.  A violation is written to the log
+ * with its stack trace, once for each location it occurs at.
+ *
+ * @since 2.8
+ */
+@ThreadSafe
+public final class ConfinementChecker {
+	private static final boolean ENABLED;
+
+	static {
+		ENABLED = DsfPlugin.DEBUG && Boolean.parseBoolean(
+				Platform.getDebugOption("org.eclipse.cdt.dsf/debug/executor/confinement")); //$NON-NLS-1$
+	}
+
+	/** Method or field that returns the executor of a class, as declared by its annotation. */
+	private static class ExecutorAccessor {
+		final Method fMethod;
+		final Field fField;
+
+		ExecutorAccessor(Method method, Field field) {
+			fMethod = method;
+			fField = field;
+		}
+
+		Object getExecutor(Object target) throws ReflectiveOperationException {
+			if (fMethod != null)
+				return fMethod.invoke(target);
+			if (fField != null)
+				return fField.get(target);
+			return null;
+		}
+	}
+
+	private static final ClassValue<ExecutorAccessor> fgAccessors = new ClassValue<ExecutorAccessor>() {
+		@Override
+		protected ExecutorAccessor computeValue(Class<?> type) {
+			ConfinedToDsfExecutor annotation = findAnnotation(type);
+			if (annotation == null)
+				return new ExecutorAccessor(null, null);
+			String name = annotation.value();
+			if (name.startsWith("this.")) //$NON-NLS-1$
+				name = name.substring(5);
+			if (name.endsWith("()")) //$NON-NLS-1$
+				name = name.substring(0, name.length() - 2);
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				try {
+					Method method = c.getDeclaredMethod(name);
+					method.setAccessible(true);
+					return new ExecutorAccessor(method, null);
+				} catch (NoSuchMethodException e) {
+				} catch (SecurityException e) {
+				}
+				try {
+					Field field = c.getDeclaredField(name);
+					field.setAccessible(true);
+					return new ExecutorAccessor(null, field);
+				} catch (NoSuchFieldException e) {
+				} catch (SecurityException e) {
+				}
+			}
+			// The executor cannot be determined from the object.
+			return new ExecutorAccessor(null, null);
+		}
+	};
+
+	/** Locations at which violations have been reported. */
+	private static final Set<String> fgReported = Collections.synchronizedSet(new HashSet<String>());
+
+	private ConfinementChecker() {
+	}
+
+	/**
+	 * Returns whether the checks are turned on.
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * Checks that the current thread is the dispatch thread of the executor
+	 * the given object is confined to, and reports a violation otherwise.
+	 *
+	 * @param target An object whose class or one of its super types is
+	 *            annotated with {@link ConfinedToDsfExecutor}.
+	 * @return <code>false</code> if a violation was found.
+	 */
+	public static boolean check(Object target) {
+		if (!ENABLED || target == null)
+			return true;
+		Object executor;
+		try {
+			executor = fgAccessors.get(target.getClass()).getExecutor(target);
+		} catch (ReflectiveOperationException e) {
+			return true;
+		}
+		if (executor instanceof ImmediateInDsfExecutor)
+			executor = ((ImmediateInDsfExecutor) executor).getDsfExecutor();
+		if (!(executor instanceof DsfExecutor) || ((DsfExecutor) executor).isInExecutorThread())
+			return true;
+
+		report(target);
+		return false;
+	}
+
+	private static ConfinedToDsfExecutor findAnnotation(Class<?> type) {
+		ConfinedToDsfExecutor annotation = type.getAnnotation(ConfinedToDsfExecutor.class);
+		if (annotation != null)
+			return annotation;
+		// Annotations of interfaces are not inherited.
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for (Class<?> i : c.getInterfaces()) {
+				annotation = findAnnotation(i);
+				if (annotation != null)
+					return annotation;
+			}
+		}
+		return null;
+	}
+
+	private static void report(Object target) {
+		Thread thread = Thread.currentThread();
+		IllegalStateException e = new IllegalStateException(target.getClass().getName()
+				+ " is confined to the DSF executor, but accessed in thread \"" + thread.getName() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+		// Skip the frames of the checker, identify the location by the checked method and its caller.
+		StackTraceElement[] stack = e.getStackTrace();
+		StringBuilder location = new StringBuilder();
+		for (int i = 2; i < stack.length && i < 4; i++) {
+			location.append(stack[i]).append(';');
+		}
+		if (!fgReported.add(location.toString()))
+			return;
+
+		DsfPlugin.debug(DsfPlugin.getDebugTime() + " " + e.getMessage() + " at " + location); //$NON-NLS-1$ //$NON-NLS-2$
+		DsfPlugin plugin = DsfPlugin.getDefault();
+		if (plugin != null) {
+			plugin.getLog().log(new Status(IStatus.ERROR, DsfPlugin.PLUGIN_ID, -1, "DSF executor confinement violation", e)); //$NON-NLS-1$
+		}
+	}
+}
@@ -17,6 +17,7 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.eclipse.cdt.dsf.concurrent.ConfinementChecker;
 import org.eclipse.cdt.dsf.concurrent.DsfExecutor;
 import org.eclipse.cdt.dsf.concurrent.IDsfStatusConstants;
 import org.eclipse.cdt.dsf.concurrent.RequestMonitor;
@@ -119,7 +120,10 @@ abstract public class AbstractDsfService
     abstract protected BundleContext getBundleContext();
     
     /**  Returns the tracker for the services that this service depends on. */
-    protected DsfServicesTracker getServicesTracker() { return fTracker; }
+    protected DsfServicesTracker getServicesTracker() {
+        ConfinementChecker.check(this);
+        return fTracker;
+    }
 
 	/**
 	 * Registers this DSF/OSGi service.
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.cdt.dsf.service;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -19,11 +22,10 @@ import java.util.Dictionary;
 import java.util.Formatter;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import org.eclipse.cdt.dsf.concurrent.ConfinedToDsfExecutor;
 import org.eclipse.cdt.dsf.concurrent.DsfExecutor;
@@ -89,6 +91,13 @@ public class DsfSession
 	 */
     private static final boolean DEBUG_SESSION_MODELADAPTERS;
 
+	/**
+	 * Has the "debug/session/profile" tracing option been turned on? Requires
+	 * "debug/session" to also be turned on.  When it is, the time spent in
+	 * event handlers is recorded and written to the trace when a session ends.
+	 */
+    private static final boolean DEBUG_SESSION_PROFILE;
+
     static {
     	DEBUG_SESSION = DsfPlugin.DEBUG && Boolean.parseBoolean(
                 Platform.getDebugOption("org.eclipse.cdt.dsf/debug/session")); //$NON-NLS-1$
@@ -98,6 +107,8 @@ public class DsfSession
                 Platform.getDebugOption("org.eclipse.cdt.dsf/debug/session/dispatches")); //$NON-NLS-1$
     	DEBUG_SESSION_MODELADAPTERS = DEBUG_SESSION && Boolean.parseBoolean(
     	        Platform.getDebugOption("org.eclipse.cdt.dsf/debug/session/modelAdapters")); //$NON-NLS-1$
+    	DEBUG_SESSION_PROFILE = DEBUG_SESSION && Boolean.parseBoolean(
+    	        Platform.getDebugOption("org.eclipse.cdt.dsf/debug/session/profile")); //$NON-NLS-1$
     }  
 	
     /** 
@@ -240,6 +251,14 @@ public class DsfSession
                 for (int i = 0; i < listeners.length; i++) {
                     listeners[i].sessionEnded(session);
                 }
+                if (DEBUG_SESSION_PROFILE) {
+                	StringBuilder msg = new StringBuilder();
+                	msg.append(DsfPlugin.getDebugTime()).append(" Event handler profile of session ").append(session.getId()); //$NON-NLS-1$
+                	for (EventHandlerProfile profile : session.getEventHandlerProfile()) {
+                		msg.append("\n    ").append(profile); //$NON-NLS-1$
+                	}
+                	DsfPlugin.debug(msg.toString());
+                }
             }});
         }
     }
@@ -262,6 +281,122 @@ public class DsfSession
         public int hashCode() { return fListener.hashCode(); }
     }
 
+    /** Type to which the method handles of event handlers are adapted */
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * An event handler method of a listener class.  The method is called
+     * through a method handle to avoid the cost of reflection for each event.
+     */
+    private static class EventHandler {
+        final Method fMethod;
+        final Class<?> fEventType;
+        /** <code>null</code> if the method is not accessible, it is then called reflectively */
+        final MethodHandle fHandle;
+
+        EventHandler(Method method) {
+            fMethod = method;
+            fEventType = method.getParameterTypes()[0];
+            MethodHandle handle = null;
+            try {
+                handle = MethodHandles.publicLookup().unreflect(method).asType(HANDLER_TYPE);
+            } catch (IllegalAccessException e) {
+                // Reported when the handler is called.
+            }
+            fHandle = handle;
+        }
+
+        void invoke(Object listener, Object event) throws Throwable {
+            if (fHandle != null) {
+                fHandle.invokeExact(listener, event);
+            } else {
+                try {
+                    fMethod.invoke(listener, event);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+
+    /** A listener and one of its event handlers that an event is dispatched to */
+    private static class Dispatch {
+        final ListenerEntry fEntry;
+        final EventHandler fHandler;
+
+        Dispatch(ListenerEntry entry, EventHandler handler) {
+            fEntry = entry;
+            fHandler = handler;
+        }
+    }
+
+    /** Event handlers of listener classes, computed once per class */
+    private static final ClassValue<EventHandler[]> fgEventHandlers = new ClassValue<EventHandler[]>() {
+        @Override
+        protected EventHandler[] computeValue(Class<?> listenerClass) {
+            Method[] methods = getEventHandlerMethods(listenerClass);
+            EventHandler[] handlers = new EventHandler[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                handlers[i] = new EventHandler(methods[i]);
+            }
+            return handlers;
+        }
+    };
+
+    /** 
+     * Order in which listeners are called: services in the order of their startup,
+     * followed by the other listeners in the order of their registration.
+     */
+    private static final Comparator<ListenerEntry> LISTENER_ORDER = new Comparator<ListenerEntry>() {
+        @Override
+        public int compare(ListenerEntry o1, ListenerEntry o2) {
+            if (o1.fListener instanceof IDsfService) {
+                if (o2.fListener instanceof IDsfService) {
+                    return ((IDsfService)o1.fListener).getStartupNumber() - ((IDsfService)o2.fListener).getStartupNumber();
+                }
+                return -1;
+            } 
+            return o2.fListener instanceof IDsfService ? 1 : 0;
+        }
+    };
+
+    /**
+     * Time spent by the event handlers of a listener class in handling one
+     * type of event.
+     * 
+     * @see DsfSession#setEventHandlerProfiling(boolean)
+     * @since 2.8
+     */
+    public static final class EventHandlerProfile {
+        private final Class<?> fEventType;
+        private final Class<?> fListenerType;
+        private int fCount;
+        private long fTime;
+
+        private EventHandlerProfile(Class<?> eventType, Class<?> listenerType) {
+            fEventType = eventType;
+            fListenerType = listenerType;
+        }
+
+        /** Returns the class of the handled events */
+        public Class<?> getEventType() { return fEventType; }
+
+        /** Returns the class of the listener */
+        public Class<?> getListenerType() { return fListenerType; }
+
+        /** Returns the number of handler calls */
+        public int getCount() { return fCount; }
+
+        /** Returns the total time spent in the handlers, in nanoseconds */
+        public long getTime() { return fTime; }
+
+        @Override
+        public String toString() {
+            return fEventType.getName() + " -> " + fListenerType.getName() + ": " + fCount + " calls, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + fTime / 1000 + " us"; //$NON-NLS-1$
+        }
+    }
+
     /** ID (plugin ID preferably) of the owner of this session */
     private final String fOwnerId;
     
@@ -274,8 +409,18 @@ public class DsfSession
     /** Service start-up counter for this session */ 
     private int fServiceInstanceCounter;
     
-    /** Map of registered event listeners. */
-    private Map<ListenerEntry,Method[]> fListeners = new HashMap<ListenerEntry,Method[]>();
+    /** Map of registered event listeners, in the order of their registration. */
+    private Map<ListenerEntry,EventHandler[]> fListeners = new LinkedHashMap<ListenerEntry,EventHandler[]>();
+
+    /** 
+     * Listeners and handlers to call for each type of event, in the order in which 
+     * they are called.  Discarded whenever the listeners change.
+     */
+    private final Map<Class<?>,Dispatch[]> fDispatchTables = new HashMap<Class<?>,Dispatch[]>();
+
+    /** Time spent in event handlers per event type and listener type, or <code>null</code> if not profiling */
+    private Map<Class<?>,Map<Class<?>,EventHandlerProfile>> fEventHandlerProfile =
+        DEBUG_SESSION_PROFILE ? new HashMap<Class<?>,Map<Class<?>,EventHandlerProfile>>() : null;
     
     /** 
      * Map of registered adapters, for implementing the <code>IDMContext.getAdapter()</code> 
@@ -332,7 +477,8 @@ public class DsfSession
 
         	DsfPlugin.debug(msg);
         }
-        fListeners.put(entry, getEventHandlerMethods(listener));
+        fListeners.put(entry, fgEventHandlers.get(listener.getClass()));
+        fDispatchTables.clear();
     }
     
     /**
@@ -358,7 +504,9 @@ public class DsfSession
 
         	DsfPlugin.debug(msg);
         }
-        fListeners.remove(entry);
+        if (fListeners.remove(entry) != null) {
+        	fDispatchTables.clear();
+        }
     }
 
     /**
@@ -368,7 +516,53 @@ public class DsfSession
      * used to prioritize service events.
      * @return current startup counter value
      */
-    public int getAndIncrementServiceStartupCounter() { return fServiceInstanceCounter++; }
+    public int getAndIncrementServiceStartupCounter() {
+    	// The order of the listeners depends on the startup numbers.
+    	fDispatchTables.clear();
+    	return fServiceInstanceCounter++; 
+    }
+
+    /**
+     * Turns recording of the time spent in service event handlers on or off.
+     * Turning it on discards the times recorded so far.
+     * 
+     * @see #getEventHandlerProfile()
+     * @since 2.8
+     */
+    public void setEventHandlerProfiling(boolean enable) {
+    	fEventHandlerProfile = enable ? new HashMap<Class<?>,Map<Class<?>,EventHandlerProfile>>() : null;
+    }
+
+    /**
+     * Returns whether the time spent in service event handlers is recorded.
+     * @since 2.8
+     */
+    public boolean isEventHandlerProfiling() {
+    	return fEventHandlerProfile != null;
+    }
+
+    /**
+     * Returns the time spent in service event handlers per event type and
+     * listener type since profiling was turned on, the most expensive first.
+     * 
+     * @see #setEventHandlerProfiling(boolean)
+     * @since 2.8
+     */
+    public List<EventHandlerProfile> getEventHandlerProfile() {
+    	List<EventHandlerProfile> result = new ArrayList<EventHandlerProfile>();
+    	if (fEventHandlerProfile != null) {
+    		for (Map<Class<?>,EventHandlerProfile> profiles : fEventHandlerProfile.values()) {
+    			result.addAll(profiles.values());
+    		}
+    		Collections.sort(result, new Comparator<EventHandlerProfile>() {
+    			@Override
+    			public int compare(EventHandlerProfile p1, EventHandlerProfile p2) {
+    				return Long.compare(p2.fTime, p1.fTime);
+    			}
+    		});
+    	}
+    	return result;
+    }
     
     /**
      * Dispatches the given event to service event listeners.  The event is submitted to 
@@ -478,70 +672,89 @@ public class DsfSession
         @SuppressWarnings("unchecked") 
         Dictionary<String,?> serviceProperties = (Dictionary<String,?>)_serviceProperties;
         
-        // Build a list of listeners;
-        SortedMap<ListenerEntry,List<Method>> listeners = new TreeMap<ListenerEntry,List<Method>>(new Comparator<ListenerEntry>() {
-            @Override
-                public int compare(ListenerEntry o1, ListenerEntry o2) {
-                    if (o1.fListener == o2.fListener) {
-                        return 0;
-                    } if (o1.fListener instanceof IDsfService && !(o2.fListener instanceof IDsfService)) {
-                        return -1;
-                    } else if (o2.fListener instanceof IDsfService && !(o1.fListener instanceof IDsfService)) {
-                        return 1;
-                    } else if ( (o1.fListener instanceof IDsfService) && (o2.fListener instanceof IDsfService) ) {
-                        return ((IDsfService)o1.fListener).getStartupNumber() - ((IDsfService)o2.fListener).getStartupNumber();
-                    }
-                    return 1;
-                }
-                
-                @Override
-                public boolean equals(Object obj) {
-                    return obj == this;
-                }
-            });
-
-        // Build a list of listeners and methods that are registered for this event class.
         Class<?> eventClass = event.getClass();
-        for (Map.Entry<ListenerEntry,Method[]> entry : fListeners.entrySet()) {
-            if (entry.getKey().fFilter != null && !entry.getKey().fFilter.match(serviceProperties)) {
+        Dispatch[] dispatches = fDispatchTables.get(eventClass);
+        if (dispatches == null) {
+            dispatches = createDispatchTable(eventClass);
+            fDispatchTables.put(eventClass, dispatches);
+        }
+        
+        // Call the listeners.  The table is not modified by listeners that are
+        // added or removed by the handlers.
+        ListenerEntry skippedEntry = null;
+        for (Dispatch dispatch : dispatches) {
+            ListenerEntry entry = dispatch.fEntry;
+            if (entry == skippedEntry) {
+                continue;
+            }
+            if (entry.fFilter != null && !entry.fFilter.match(serviceProperties)) {
                 // Dispatching service doesn't match the listener's filter, skip it.
+                skippedEntry = entry;
                 continue;
             }
-            Method[] allMethods = entry.getValue();
-            List<Method> matchingMethods = new ArrayList<Method>();
-            for (Method method : allMethods) {
-            	assert method.getParameterTypes().length > 0 : eventClass.getName() + "." + method.getName() //$NON-NLS-1$
-            		+ " signature contains zero parameters"; //$NON-NLS-1$
-    	    	if ( method.getParameterTypes()[0].isAssignableFrom(eventClass) ) {
-                    matchingMethods.add(method);
+            try {
+                if (DEBUG_SESSION_DISPATCHES) {
+                	DsfPlugin.debug(DsfPlugin.getDebugTime() + " Listener " + LoggingUtils.toString(entry.fListener) + " invoked with event " + LoggingUtils.toString(event));  //$NON-NLS-1$ //$NON-NLS-2$
                 }
+                Map<Class<?>,Map<Class<?>,EventHandlerProfile>> profile = fEventHandlerProfile;
+                if (profile == null) {
+                	dispatch.fHandler.invoke(entry.fListener, event);
+                } else {
+                	long start = System.nanoTime();
+                	try {
+                		dispatch.fHandler.invoke(entry.fListener, event);
+                	} finally {
+                		recordProfile(profile, eventClass, entry.fListener.getClass(), System.nanoTime() - start);
+                	}
+                }
+            }
+            catch (IllegalAccessException e) {
+                DsfPlugin.getDefault().getLog().log(new Status(
+                    IStatus.ERROR, DsfPlugin.PLUGIN_ID, -1, "Security exception when calling a service event handler method", e)); //$NON-NLS-1$
+                assert false : "IServiceEventListener.ServiceHandlerMethod method not accessible, is listener declared public?"; //$NON-NLS-1$
             }
-            if (!matchingMethods.isEmpty()) {
-                listeners.put(entry.getKey(), matchingMethods);
+            catch (Throwable e) {
+                DsfPlugin.getDefault().getLog().log(new Status(
+                    IStatus.ERROR, DsfPlugin.PLUGIN_ID, -1, "Invocation exception when calling a service event handler method", e)); //$NON-NLS-1$
+                assert false : "Exception thrown by a IServiceEventListener.ServiceHandlerMethod method"; //$NON-NLS-1$
             }
         }
-        
-        // Call the listeners
-        for (Map.Entry<ListenerEntry,List<Method>> entry : listeners.entrySet()) {
-            for (Method method : entry.getValue()) {
-                try {
-                    if (DEBUG_SESSION_DISPATCHES) {
-                    	DsfPlugin.debug(DsfPlugin.getDebugTime() + " Listener " + LoggingUtils.toString(entry.getKey().fListener) + " invoked with event " + LoggingUtils.toString(event));  //$NON-NLS-1$ //$NON-NLS-2$
-                    }
-                    method.invoke(entry.getKey().fListener, new Object[] { event } );
-                }
-                catch (IllegalAccessException e) {
-                    DsfPlugin.getDefault().getLog().log(new Status(
-                        IStatus.ERROR, DsfPlugin.PLUGIN_ID, -1, "Security exception when calling a service event handler method", e)); //$NON-NLS-1$
-                    assert false : "IServiceEventListener.ServiceHandlerMethod method not accessible, is listener declared public?"; //$NON-NLS-1$
-                }
-                catch (InvocationTargetException e) {
-                    DsfPlugin.getDefault().getLog().log(new Status(
-                        IStatus.ERROR, DsfPlugin.PLUGIN_ID, -1, "Invocation exception when calling a service event handler method", e)); //$NON-NLS-1$
-                    assert false : "Exception thrown by a IServiceEventListener.ServiceHandlerMethod method"; //$NON-NLS-1$
+    }
+
+    /**
+     * Builds the list of listeners and handlers that are registered for the given 
+     * event class, in the order in which they are to be called.
+     */
+    private Dispatch[] createDispatchTable(Class<?> eventClass) {
+        List<ListenerEntry> entries = new ArrayList<ListenerEntry>(fListeners.keySet());
+        // The sort is stable, listeners which are not services keep their order.
+        Collections.sort(entries, LISTENER_ORDER);
+        List<Dispatch> dispatches = new ArrayList<Dispatch>();
+        for (ListenerEntry entry : entries) {
+            for (EventHandler handler : fListeners.get(entry)) {
+                if (handler.fEventType.isAssignableFrom(eventClass)) {
+                    dispatches.add(new Dispatch(entry, handler));
                 }
             }
         }
+        return dispatches.toArray(new Dispatch[dispatches.size()]);
+    }
+
+    private static void recordProfile(Map<Class<?>,Map<Class<?>,EventHandlerProfile>> profile, 
+    		Class<?> eventClass, Class<?> listenerClass, long time) 
+    {
+        Map<Class<?>,EventHandlerProfile> eventProfile = profile.get(eventClass);
+        if (eventProfile == null) {
+            eventProfile = new HashMap<Class<?>,EventHandlerProfile>();
+            profile.put(eventClass, eventProfile);
+        }
+        EventHandlerProfile listenerProfile = eventProfile.get(listenerClass);
+        if (listenerProfile == null) {
+            listenerProfile = new EventHandlerProfile(eventClass, listenerClass);
+            eventProfile.put(listenerClass, listenerProfile);
+        }
+        listenerProfile.fCount++;
+        listenerProfile.fTime += time;
     }
 
 	/**
@@ -556,15 +769,15 @@ public class DsfSession
 	 * checked to ensure it takes a single parameter; an
 	 * {@link IllegalArgumentException} is thrown otherwise.
 	 * 
-	 * @param listener
-	 *            an object which should contain handler methods
+	 * @param listenerClass
+	 *            the class of an object which should contain handler methods
 	 * @return the collection of handler methods
 	 */
-    private Method[] getEventHandlerMethods(Object listener) 
+    private static Method[] getEventHandlerMethods(Class<?> listenerClass) 
     {
         List<Method> retVal = new ArrayList<Method>();
         try {
-            Method[] methods = listener.getClass().getMethods();
+            Method[] methods = listenerClass.getMethods();
             for (Method method : methods) {
                 if (method.isAnnotationPresent(DsfServiceEventHandler.class)) {
                     Class<?>[] paramTypes = method.getParameterTypes();
@@ -10,11 +10,13 @@
  *******************************************************************************/
 package org.eclipse.cdt.tests.dsf.events;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import org.eclipse.cdt.dsf.concurrent.DsfRunnable;
 import org.eclipse.cdt.dsf.service.DsfServicesTracker;
 import org.eclipse.cdt.dsf.service.DsfSession;
+import org.eclipse.cdt.dsf.service.DsfSession.EventHandlerProfile;
 import org.eclipse.cdt.tests.dsf.DsfTestPlugin;
 import org.eclipse.cdt.tests.dsf.TestDsfExecutor;
 import org.junit.After;
@@ -233,4 +235,34 @@ public class EventTest {
             Assert.assertTrue(0 == fService4.fEvent3RecipientNumber);	// service 4 specified filter to receive events only from service 2
         }}).get();
     }
+
+    /**
+     * Tests that the calls of the event handlers are recorded per event type 
+     * and listener type while profiling is turned on.
+     */
+    @Test public void eventProfileTest() throws ExecutionException, InterruptedException {
+        fExecutor.submit(new DsfRunnable() { @Override
+	public void run() {
+            fSession.setEventHandlerProfiling(true);
+        }}).get();
+        fService1.dispatchEvent1();
+        fService1.dispatchEvent3();
+        fExecutor.submit(new DsfRunnable() { @Override
+	public void run() {
+            // Services 1 to 3 receive both events, event 3 is handled by two methods.
+            List<EventHandlerProfile> profile = fSession.getEventHandlerProfile();
+            Assert.assertEquals(6, profile.size());
+            for (EventHandlerProfile entry : profile) {
+                if (entry.getEventType() == AbstractService.Event1.class) {
+                    Assert.assertEquals(1, entry.getCount());
+                } else {
+                    Assert.assertEquals(AbstractService.Event3.class, entry.getEventType());
+                    Assert.assertEquals(2, entry.getCount());
+                }
+                Assert.assertTrue(entry.getListenerType() != Service4.class);
+            }
+            fSession.setEventHandlerProfiling(false);
+            Assert.assertTrue(fSession.getEventHandlerProfile().isEmpty());
+        }}).get();
+    }
 }
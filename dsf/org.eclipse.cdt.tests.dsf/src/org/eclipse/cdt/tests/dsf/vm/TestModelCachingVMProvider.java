@@ -18,6 +18,7 @@ import org.eclipse.cdt.dsf.ui.viewmodel.IVMNode;
 import org.eclipse.cdt.dsf.ui.viewmodel.datamodel.AbstractDMVMProvider;
 import org.eclipse.cdt.dsf.ui.viewmodel.update.AutomaticUpdatePolicy;
 import org.eclipse.cdt.dsf.ui.viewmodel.update.IVMUpdatePolicy;
+import org.eclipse.cdt.dsf.ui.viewmodel.update.VMCacheStatistics;
 import org.eclipse.cdt.tests.dsf.vm.TestModel.TestElement;
 import org.eclipse.debug.internal.ui.viewers.model.provisional.IColumnPresentation;
 import org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext;
@@ -106,6 +107,16 @@ public class TestModelCachingVMProvider extends AbstractDMVMProvider {
         super.handleEvent(event);
     }
     
+    @Override
+    public void setCacheLimits(int maxEntries, long maxSize) {
+        super.setCacheLimits(maxEntries, maxSize);
+    }
+    
+    @Override
+    public VMCacheStatistics getCacheStatistics() {
+        return super.getCacheStatistics();
+    }
+    
     public TestElementVMContext getElementVMContext(IPresentationContext context, TestElement element) {
         return ((TestModelDMVMNode)getRootVMNode()).createVMContext(element);
     }
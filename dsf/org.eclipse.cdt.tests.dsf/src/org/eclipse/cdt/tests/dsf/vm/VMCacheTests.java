@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2017 CDT contributors and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.cdt.tests.dsf.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.cdt.dsf.concurrent.DataRequestMonitor;
+import org.eclipse.cdt.dsf.concurrent.DefaultDsfExecutor;
+import org.eclipse.cdt.dsf.concurrent.DsfExecutor;
+import org.eclipse.cdt.dsf.concurrent.ImmediateExecutor;
+import org.eclipse.cdt.dsf.service.DsfSession;
+import org.eclipse.cdt.dsf.ui.viewmodel.AbstractVMAdapter;
+import org.eclipse.cdt.dsf.ui.viewmodel.IVMProvider;
+import org.eclipse.cdt.dsf.ui.viewmodel.VMChildrenUpdate;
+import org.eclipse.cdt.dsf.ui.viewmodel.update.AbstractCachingVMProvider;
+import org.eclipse.cdt.dsf.ui.viewmodel.update.VMCacheStatistics;
+import org.eclipse.cdt.dsf.ui.viewmodel.update.WindowedChildrenMap;
+import org.eclipse.cdt.tests.dsf.vm.TestModel.TestElement;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.PresentationContext;
+import org.eclipse.jface.viewers.TreePath;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * Tests of the cache of {@link AbstractCachingVMProvider}: the map holding
+ * the children of an element, the eviction of entries when the cache exceeds
+ * its limits and the accounting of its estimated size.  The content updates
+ * are issued to the provider directly, so that the order in which the cache
+ * entries are used is known.
+ */
+public class VMCacheTests extends TestCase {
+
+    private static final int WINDOW_SIZE = WindowedChildrenMap.WINDOW_SIZE;
+    private static final int FRAME_COUNT = 4;
+    private static final int VARIABLE_COUNT = 2;
+    private static final int ARRAY_SIZE = 1000;
+
+    Display fDisplay;
+    DsfExecutor fDsfExecutor;
+    DsfSession fDsfSession;
+    IPresentationContext fPresentationContext;
+    TestModel fModel;
+    TestElement[] fFrames;
+    TestElement fArray;
+    AbstractVMAdapter fVMAdapter;
+    TestModelCachingVMProvider fVMProvider;
+    TestElementVMContext fInput;
+
+    public VMCacheTests(String name) {
+        super(name);
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        fDsfExecutor = new DefaultDsfExecutor();
+        fDsfSession = DsfSession.startSession(fDsfExecutor, getClass().getName());
+        fDisplay = PlatformUI.getWorkbench().getDisplay();
+        fPresentationContext = new PresentationContext("TestViewer");
+
+        // A few small frames with variables, followed by a large array.
+        fModel = new TestModel(fDsfSession);
+        fFrames = new TestElement[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            fFrames[i] = new TestElement(fModel, "frame." + i, makeModelElements("frame." + i, VARIABLE_COUNT));
+        }
+        fArray = new TestElement(fModel, "array", makeModelElements("array", ARRAY_SIZE));
+        TestElement[] rootChildren = Arrays.copyOf(fFrames, FRAME_COUNT + 1);
+        rootChildren[FRAME_COUNT] = fArray;
+        fModel.setRoot( new TestElement(fModel, "root", rootChildren) );
+
+        fVMAdapter = new AbstractVMAdapter() {
+            @Override
+            protected IVMProvider createViewModelProvider(IPresentationContext context) {
+                return fVMProvider;
+            }
+        };
+        fVMProvider = new TestModelCachingVMProvider(fVMAdapter, fPresentationContext, fDsfSession);
+        fInput = fVMProvider.getElementVMContext(fPresentationContext, fModel.getRootElement());
+
+        // The cache is flushed through the model proxies of the provider.
+        fVMProvider.createModelProxy(fInput, fPresentationContext).init(fPresentationContext);
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        fVMProvider.dispose();
+        fVMAdapter.dispose();
+        fPresentationContext.dispose();
+        DsfSession.endSession(fDsfSession);
+        fDsfExecutor.shutdown();
+    }
+
+    private TestElement[] makeModelElements(String prefix, int count) {
+        TestElement[] elements = new TestElement[count];
+        for (int i = 0; i < count; i++) {
+            elements[i] = new TestElement(fModel, prefix + "." + i, new TestElement[0]);
+        }
+        return elements;
+    }
+
+    private TreePath getPath(TestElement element) {
+        return TreePath.EMPTY.createChildPath(fVMProvider.getElementVMContext(fPresentationContext, element));
+    }
+
+    /**
+     * Retrieves all the children of the element at the given path through
+     * the cache of the provider.
+     */
+    private List<Object> getChildren(TreePath path) {
+        final boolean[] done = new boolean[1];
+        DataRequestMonitor<List<Object>> rm = new DataRequestMonitor<List<Object>>(ImmediateExecutor.getInstance(), null) {
+            @Override
+            protected void handleCompleted() {
+                done[0] = true;
+            }
+        };
+        fVMProvider.updateNode(
+            fVMProvider.getRootVMNode(),
+            new VMChildrenUpdate(path, fInput, fPresentationContext, -1, -1, rm));
+        while (!done[0])
+            if (!fDisplay.readAndDispatch ()) fDisplay.sleep ();
+        assertTrue(rm.getStatus().toString(), rm.isSuccess());
+        return rm.getData();
+    }
+
+    private void getFramesChildren() {
+        assertEquals(FRAME_COUNT + 1, getChildren(TreePath.EMPTY).size());
+        for (TestElement frame : fFrames) {
+            assertEquals(VARIABLE_COUNT, getChildren(getPath(frame)).size());
+        }
+    }
+
+    public void testChildrenMapWindows() {
+        WindowedChildrenMap map = new WindowedChildrenMap();
+
+        // Children on both sides of a window boundary and in a window
+        // separated from the others by an unused window.
+        int[] indexes = { 0, WINDOW_SIZE - 1, WINDOW_SIZE, 3 * WINDOW_SIZE + 1 };
+        for (int index : indexes) {
+            assertNull(map.put(index, "child." + index));
+        }
+        assertEquals(indexes.length, map.size());
+        assertEquals(3, map.getWindowCount());
+        for (int index : indexes) {
+            assertEquals("child." + index, map.get(index));
+        }
+        assertNull(map.get(1));
+        assertNull(map.get(2 * WINDOW_SIZE));
+        assertNull(map.get(-1));
+        assertNull(map.get("0"));
+        assertEquals(Arrays.asList(0, WINDOW_SIZE - 1, WINDOW_SIZE, 3 * WINDOW_SIZE + 1), new ArrayList<Integer>(map.keySet()));
+
+        // Replacing a child does not change the size.
+        assertEquals("child.0", map.put(0, "new.0"));
+        assertEquals(indexes.length, map.size());
+        assertEquals("new.0", map.get(0));
+
+        // Removing the only child of a window releases the window, putting
+        // null removes a child.
+        assertEquals("child." + WINDOW_SIZE, map.remove(WINDOW_SIZE));
+        assertEquals(2, map.getWindowCount());
+        assertEquals("child." + (3 * WINDOW_SIZE + 1), map.put(3 * WINDOW_SIZE + 1, null));
+        assertEquals(1, map.getWindowCount());
+        assertNull(map.remove(3 * WINDOW_SIZE + 1));
+        assertEquals(2, map.size());
+
+        try {
+            map.put(-1, "child");
+            fail("Negative index accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.getWindowCount());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    public void testChildrenMapRemoveWhileIterating() {
+        WindowedChildrenMap map = new WindowedChildrenMap();
+        for (int i = 0; i < 3 * WINDOW_SIZE; i++) {
+            map.put(i, "child." + i);
+        }
+        assertEquals(3, map.getWindowCount());
+
+        // Remove all the children of the middle window and the even children
+        // of the others.  The iteration continues after the window it is in
+        // is released.
+        int expected = 0;
+        for (Iterator<Map.Entry<Integer, Object>> itr = map.entrySet().iterator(); itr.hasNext();) {
+            Map.Entry<Integer, Object> entry = itr.next();
+            assertEquals(expected, entry.getKey().intValue());
+            assertEquals("child." + expected, entry.getValue());
+            if (expected / WINDOW_SIZE == 1 || expected % 2 == 0) {
+                itr.remove();
+            }
+            expected++;
+        }
+        assertEquals(3 * WINDOW_SIZE, expected);
+        assertEquals(WINDOW_SIZE, map.size());
+        assertEquals(2, map.getWindowCount());
+        for (int i = 0; i < 3 * WINDOW_SIZE; i++) {
+            assertEquals("Child " + i, i / WINDOW_SIZE != 1 && i % 2 != 0, map.containsKey(i));
+        }
+
+        // A child can only be removed once.
+        Iterator<Map.Entry<Integer, Object>> itr = map.entrySet().iterator();
+        try {
+            itr.remove();
+            fail("Removed before the first child");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(Integer.valueOf(1), itr.next().getKey());
+        itr.remove();
+        try {
+            itr.remove();
+            fail("Removed a child twice");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(Integer.valueOf(3), itr.next().getKey());
+        assertEquals(WINDOW_SIZE - 1, map.size());
+    }
+
+    public void testEvictionKeepsFrequentlyUsedEntries() {
+        // Use the entries of the frames a few times.
+        for (int i = 0; i < 4; i++) {
+            getFramesChildren();
+        }
+        VMCacheStatistics statistics = fVMProvider.getCacheStatistics();
+        assertEquals(0, statistics.getEvictions());
+
+        // Leave room for less than a byte per array element, then expand the
+        // array.
+        long maxSize = statistics.getEstimatedSize() + ARRAY_SIZE;
+        fVMProvider.setCacheLimits(AbstractCachingVMProvider.DEFAULT_MAX_CACHE_ENTRIES, maxSize);
+        assertEquals(ARRAY_SIZE, getChildren(getPath(fArray)).size());
+
+        // The array is evicted rather than the frames, which are still
+        // retrieved from the cache.
+        statistics = fVMProvider.getCacheStatistics();
+        assertEquals(1, statistics.getEvictions());
+        assertTrue(statistics.toString(), statistics.getEstimatedSize() <= maxSize);
+        getFramesChildren();
+        assertEquals(statistics.getMisses(), fVMProvider.getCacheStatistics().getMisses());
+
+        getChildren(getPath(fArray));
+        assertEquals(statistics.getMisses() + 1, fVMProvider.getCacheStatistics().getMisses());
+    }
+
+    public void testCacheSizeAfterFlush() {
+        getFramesChildren();
+        getChildren(getPath(fArray));
+        VMCacheStatistics statistics = fVMProvider.getCacheStatistics();
+        assertTrue(statistics.getEstimatedSize() > 0);
+        assertEquals(0, statistics.getEvictions());
+
+        // The entries hold no properties to archive, the automatic update
+        // policy removes them all.
+        fVMProvider.refresh();
+        assertEquals(0, fVMProvider.getCacheStatistics().getEstimatedSize());
+
+        // The size is accounted for again as the entries are filled.
+        getFramesChildren();
+        assertTrue(fVMProvider.getCacheStatistics().getEstimatedSize() > 0);
+        fVMProvider.refresh();
+        assertEquals(0, fVMProvider.getCacheStatistics().getEstimatedSize());
+    }
+}